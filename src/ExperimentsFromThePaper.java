@@ -1,3 +1,5 @@
+import static MPP_Tools.AUPRCEvaluation.compareWithReference;
+import static MPP_Tools.AUPRCEvaluation.computeAUPRCsAndPredictionStatistics;
 import static MPP_Tools.CoEvolutionNetwork.composeGephiFileWithNetwork;
 import static MPP_Tools.CoEvolutionNetwork.computeSimilaritiesBetweenOGs;
 import static MPP_Tools.CoEvolutionNetwork.drawPearsonCorrelationCoefficientDistributionGraph;
@@ -6,7 +8,13 @@ import static MPP_Tools.ComplementarityGraphs.drawFunctionBasedComplementarityGr
 import static MPP_Tools.ComplementarityGraphs.drawFunctionBasedComplementarityGraphForTwoMethods;
 import static MPP_Tools.ComplementarityGraphs.drawGeneFamilyBasedComplementarityGraphForTwoMethods;
 import static MPP_Tools.DistributionOfAUPRCsBoxPlot.drawDistributionOfAUPRCsBoxPlot;
+import static MPP_Tools.NetworkAnalytics.computeNetworkStatistics;
+import static MPP_Tools.NetworkAnalytics.computePercolationCurve;
+import static MPP_Tools.NetworkNullModel.testNetworkStatistics;
 import java.io.File;
+import java.util.Arrays;
+import utils.InformationContent;
+import utils.RUtils;
 
 /**
  *
@@ -37,6 +45,13 @@ public class ExperimentsFromThePaper
         boolean Fig4a = true;
         boolean Fig4b = true;
         boolean Fig4c = true;
+        boolean AUPRCReferenceCheck_MPP_I = true;
+        //-------------------------------------
+        
+        //-------------------------------------
+        //DRAW FIGURES WITH R SCRIPTS INSTEAD OF ChartRenderer (R and Rscript have to be in the path)
+        boolean useR = false;
+        int numRSessions = 4; //R sessions that draw figures concurrently
         //-------------------------------------
         
         //-----------------------------------
@@ -46,166 +61,213 @@ public class ExperimentsFromThePaper
         //-----------------------------------
         
         
-        double[] prThresholds = {0.5, 0.7, 0.9};
-        
-        File inGeneOntologyFile = new File(dataDir + "go_201401-termdb.obo-xml.gz");
-        File inFileWithFunctionFrequencies = new File(dataDir + "Uniprot-freqs-2071_organisms-Uniprot-GOA-2013-12-10.txt");
+        if (useR)
+            RUtils.startRSessions(numRSessions, 0);
         
-        if (Fig1a_MPP_H)
+        try
         {
-            File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-H-AUPRCs+prediction_statistics.txt"),
-                                                           new File(dataDir + "MPP-H-Baseline-AUPRCs+prediction_statistics.txt")};
-            String[] classifierNames = {"MPP-H", "Baseline"};
-            String[] colors = {"red", "black"};
-            
-            drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
-                                            inFileWithFunctionFrequencies, new File(outDir + "/Fig1a-MPP-H/"));
-        }
+            double[] prThresholds = {0.5, 0.7, 0.9};
         
-        if (Fig1a_MPP_O)
-        {
-            File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-O-AUPRCs+prediction_statistics.txt"),
-                                                           new File(dataDir + "MPP-O-Baseline-AUPRCs+prediction_statistics.txt")};
-            String[] classifierNames = {"MPP-O", "Baseline"};
-            String[] colors = {"red", "black"};
+            File inGeneOntologyFile = new File(dataDir + "go_201401-termdb.obo-xml.gz");
+            File inFileWithFunctionFrequencies = new File(dataDir + "Uniprot-freqs-2071_organisms-Uniprot-GOA-2013-12-10.txt");
+        
+            if (Fig1a_MPP_H)
+            {
+                File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-H-AUPRCs+prediction_statistics.txt"),
+                                                               new File(dataDir + "MPP-H-Baseline-AUPRCs+prediction_statistics.txt")};
+                String[] classifierNames = {"MPP-H", "Baseline"};
+                String[] colors = {"red", "black"};
             
-            drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
-                                            inFileWithFunctionFrequencies, new File(outDir + "/Fig1a-MPP-O/"));
-        }
+                drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                                inFileWithFunctionFrequencies, InformationContent.Bins.DEFAULT,
+                                                new File(outDir + "/Fig1a-MPP-H/"), useR);
+            }
         
-        if (Fig1_d_e)
-            for (double prThreshold : prThresholds)
+            if (Fig1a_MPP_O)
             {
-                File inFirstMethodPrecisionFile = new File(dataDir + "MPP-H_predictions.tsv.gz");
-                File inSecondMethodPrecisionFile = new File(dataDir + "MPP-O_predictions.tsv.gz");
-                String firstMethodName = "MPP-H";
-                String secondMethodName = "MPP-O";
-                File inOg2FunctionsFile = new File(dataDir + "og2funcs-eggNOG_3.txt.gz");
-                File outFolderForFig1d = new File(outDir + "/Fig1d/PR-" + prThreshold);
+                File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-O-AUPRCs+prediction_statistics.txt"),
+                                                               new File(dataDir + "MPP-O-Baseline-AUPRCs+prediction_statistics.txt")};
+                String[] classifierNames = {"MPP-O", "Baseline"};
+                String[] colors = {"red", "black"};
+            
+                drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                                inFileWithFunctionFrequencies, InformationContent.Bins.DEFAULT,
+                                                new File(outDir + "/Fig1a-MPP-O/"), useR);
+            }
+        
+            if (Fig1_d_e)
+                for (double prThreshold : prThresholds)
+                {
+                    File inFirstMethodPrecisionFile = new File(dataDir + "MPP-H_predictions.tsv.gz");
+                    File inSecondMethodPrecisionFile = new File(dataDir + "MPP-O_predictions.tsv.gz");
+                    String firstMethodName = "MPP-H";
+                    String secondMethodName = "MPP-O";
+                    File inOg2FunctionsFile = new File(dataDir + "og2funcs-eggNOG_3.txt.gz");
+                    File outFolderForFig1d = new File(outDir + "/Fig1d/PR-" + prThreshold);
                                                                                     
-                drawFunctionBasedComplementarityGraphForTwoMethods(inFirstMethodPrecisionFile, inSecondMethodPrecisionFile,
-                    firstMethodName, secondMethodName, "'yellow','green','blue'", prThreshold, inOg2FunctionsFile,
-                    inGeneOntologyFile, outFolderForFig1d);
+                    drawFunctionBasedComplementarityGraphForTwoMethods(inFirstMethodPrecisionFile, inSecondMethodPrecisionFile,
+                        firstMethodName, secondMethodName, "'yellow','green','blue'", prThreshold, inOg2FunctionsFile,
+                        inGeneOntologyFile, outFolderForFig1d, useR);
                 
-                drawGeneFamilyBasedComplementarityGraphForTwoMethods(inFirstMethodPrecisionFile, inSecondMethodPrecisionFile,
-                    new File(outFolderForFig1d + "/Functions_predicted_by_" + firstMethodName + "_and_" + secondMethodName + ".txt"),
-                    firstMethodName, secondMethodName, ".7, .17", "yellow, blue", prThreshold, inOg2FunctionsFile,
-                    inGeneOntologyFile, new File(outDir + "/Fig1e/PR-" + prThreshold));
-            }
+                    drawGeneFamilyBasedComplementarityGraphForTwoMethods(inFirstMethodPrecisionFile, inSecondMethodPrecisionFile,
+                        new File(outFolderForFig1d + "/Functions_predicted_by_" + firstMethodName + "_and_" + secondMethodName + ".txt"),
+                        firstMethodName, secondMethodName, ".7, .17", "yellow, blue", prThreshold, inOg2FunctionsFile,
+                        inGeneOntologyFile, new File(outDir + "/Fig1e/PR-" + prThreshold), useR);
+                }
         
-        if (Fig1_fgh_A)
-            for (double prThreshold : prThresholds)
-                drawFunctionBasedComplementarityGraphForTwoMethods(new File(dataDir + "MPP-H_predictions.tsv.gz"),
-                    new File(dataDir + "PP-H_predictions.tsv.gz"), "MPP-H", "PP", "'red','green','blue'", prThreshold,
-                    new File(dataDir + "og2funcs-eggNOG_3.txt.gz"), inGeneOntologyFile,
-                    new File(outDir + "/Fig1_fgh_A/PR-" + prThreshold));
-        
-        if (Fig1_fgh_B)
-            for (double prThreshold : prThresholds)
-                drawFunctionBasedComplementarityGraphForTwoMethods(new File(dataDir + "MPP-O_predictions.tsv.gz"),
-                    new File(dataDir + "PP-O_predictions.tsv.gz"), "MPP-O", "PP", "'red','green','blue'", prThreshold,
-                    new File(dataDir + "og2funcs-eggNOG_3.txt.gz"), inGeneOntologyFile,
-                    new File(outDir + "/Fig1_fgh_B/PR-" + prThreshold));
-        
-        if (Fig1_fgh_C)
-            for (double prThreshold : prThresholds)
-                drawFunctionBasedComplementarityGraphForTwoMethods(new File(dataDir + "MPP-I_predictions.tsv.gz"),
-                    new File(dataDir + "PP-I_predictions.tsv.gz"), "MPP-I", "PP", "'red','green','blue'", prThreshold,
-                    new File(dataDir + "og2funcs-eggNOG_4.txt.gz"), inGeneOntologyFile,
-                    new File(outDir + "/Fig1_fgh_C/PR-" + prThreshold));
-        
-        if (Fig2_a)
-        {
-            File[] inPrecisionFiles = {new File(dataDir + "Freshwater_predictions.tsv.gz"), new File(dataDir + "Marine_predictions.tsv.gz"),
-                                       new File(dataDir + "Thermal_springs_predictions.tsv.gz"), new File(dataDir + "Soil_predictions.tsv.gz"),
-                                       new File(dataDir + "Engineered_predictions.tsv.gz"), new File(dataDir + "Human_predictions.tsv.gz"),
-                                       new File(dataDir + "Plants_predictions.tsv.gz")};
+            if (Fig1_fgh_A)
+                for (double prThreshold : prThresholds)
+                    drawFunctionBasedComplementarityGraphForTwoMethods(new File(dataDir + "MPP-H_predictions.tsv.gz"),
+                        new File(dataDir + "PP-H_predictions.tsv.gz"), "MPP-H", "PP", "'red','green','blue'", prThreshold,
+                        new File(dataDir + "og2funcs-eggNOG_3.txt.gz"), inGeneOntologyFile,
+                        new File(outDir + "/Fig1_fgh_A/PR-" + prThreshold), useR);
+        
+            if (Fig1_fgh_B)
+                for (double prThreshold : prThresholds)
+                    drawFunctionBasedComplementarityGraphForTwoMethods(new File(dataDir + "MPP-O_predictions.tsv.gz"),
+                        new File(dataDir + "PP-O_predictions.tsv.gz"), "MPP-O", "PP", "'red','green','blue'", prThreshold,
+                        new File(dataDir + "og2funcs-eggNOG_3.txt.gz"), inGeneOntologyFile,
+                        new File(outDir + "/Fig1_fgh_B/PR-" + prThreshold), useR);
+        
+            if (Fig1_fgh_C)
+                for (double prThreshold : prThresholds)
+                    drawFunctionBasedComplementarityGraphForTwoMethods(new File(dataDir + "MPP-I_predictions.tsv.gz"),
+                        new File(dataDir + "PP-I_predictions.tsv.gz"), "MPP-I", "PP", "'red','green','blue'", prThreshold,
+                        new File(dataDir + "og2funcs-eggNOG_4.txt.gz"), inGeneOntologyFile,
+                        new File(outDir + "/Fig1_fgh_C/PR-" + prThreshold), useR);
+        
+            if (Fig2_a)
+            {
+                File[] inPrecisionFiles = {new File(dataDir + "Freshwater_predictions.tsv.gz"), new File(dataDir + "Marine_predictions.tsv.gz"),
+                                           new File(dataDir + "Thermal_springs_predictions.tsv.gz"), new File(dataDir + "Soil_predictions.tsv.gz"),
+                                           new File(dataDir + "Engineered_predictions.tsv.gz"), new File(dataDir + "Human_predictions.tsv.gz"),
+                                           new File(dataDir + "Plants_predictions.tsv.gz")};
             
-            String[] methodsNames = {"Freshwater", "Marine", "Thermal springs", "Soil", "Engineered", "Human", "Plants"};
+                String[] methodsNames = {"Freshwater", "Marine", "Thermal springs", "Soil", "Engineered", "Human", "Plants"};
             
-            for (double prThreshold : prThresholds)
-                drawFunctionBasedComplementarityGraphForMultipleModels(inPrecisionFiles, methodsNames, prThreshold,
-                                                                       new File(dataDir + "og2funcs-eggNOG_4.txt.gz"),
-                                                                       inGeneOntologyFile,
-                                                                       new File(outDir + "/Fig2a/PR-" + prThreshold));
-        }
+                for (double prThreshold : prThresholds)
+                    drawFunctionBasedComplementarityGraphForMultipleModels(inPrecisionFiles, methodsNames, prThreshold,
+                                                                           new File(dataDir + "og2funcs-eggNOG_4.txt.gz"),
+                                                                           inGeneOntologyFile,
+                                                                           new File(outDir + "/Fig2a/PR-" + prThreshold), useR);
+            }
         
-        if (Fig3a)
-        {
-            String outDir3 = outDir + "Fig3a/";
+            if (Fig3a || Fig3c)
+            {
+                //Feature selection for both figures is performed in one pass over the data sets
+                int[] goFunctionsOnWhich_MPP_PerformsBetter = {51540, 4812};
+                int[] goFunctionsOnWhich_PP_PerformsBetter = {3954, 6520};
+                File[] outFolders = {new File(outDir + "Fig3a/"), new File(outDir + "Fig3c/")};
             
-            int goFunctionOnWhich_MPP_PerformsBetter = 51540;
-            int goFunctionOnWhich_PP_PerformsBetter = 3954;
+                int from = (Fig3a ? 0 : 1);
+                int to = (Fig3c ? 2 : 1);
             
-            randomForestFeatureSelection(new File(dataDir + "MPP-I.arff.zip"), new File(dataDir + "PP-I.arff.zip"),
-                                         goFunctionOnWhich_MPP_PerformsBetter, goFunctionOnWhich_PP_PerformsBetter,
-                                         new File(outDir3));
+                randomForestFeatureSelection(new File(dataDir + "MPP-I.arff.zip"), new File(dataDir + "PP-I.arff.zip"),
+                                             Arrays.copyOfRange(goFunctionsOnWhich_MPP_PerformsBetter, from, to),
+                                             Arrays.copyOfRange(goFunctionsOnWhich_PP_PerformsBetter, from, to),
+                                             Arrays.copyOfRange(outFolders, from, to), new File(outDir + "HMC_cache/"));
+            }
+        
+            if (Fig3a)
+            {
+                String outDir3 = outDir + "Fig3a/";
+            
+                computeSimilaritiesBetweenOGs(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"),
+                                              new File(outDir3 + "Pearson_correlation_coefficients.txt"));
 
-            computeSimilaritiesBetweenOGs(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"),
-                                          new File(outDir3 + "Pearson_correlation_coefficients.txt"));
+                drawPearsonCorrelationCoefficientDistributionGraph(new File(outDir3 + "Pearson_correlation_coefficients.txt"),
+                                                                   new File(outDir3), useR);
 
-            drawPearsonCorrelationCoefficientDistributionGraph(new File(outDir3 + "Pearson_correlation_coefficients.txt"),
-                                                               new File(outDir3));
+                composeGephiFileWithNetwork(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
+                                            new File(outDir3 + "Pearson_correlation_coefficients.txt"),
+                                            new File(outDir3 + "CoEvolution_network.gexf"), 500, 1, true);
 
-            composeGephiFileWithNetwork(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
-                                        new File(outDir3 + "Pearson_correlation_coefficients.txt"),
-                                        new File(outDir3 + "CoEvolution_network.gexf"));
-        }
+                computeNetworkStatistics(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
+                                         new File(outDir3 + "Pearson_correlation_coefficients.txt"), new File(outDir3));
+
+                computePercolationCurve(new File(outDir3 + "Pearson_correlation_coefficients.txt"), 0.3, 0.01, new File(outDir3));
+
+                testNetworkStatistics(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
+                                      new File(outDir3 + "Pearson_correlation_coefficients.txt"), 1000, 1, new File(outDir3));
+            }
         
-        if (Fig3c)
-        {
-            String outDir3 = outDir + "Fig3c/";
-            
-            int goFunctionOnWhich_MPP_PerformsBetter = 4812;
-            int goFunctionOnWhich_PP_PerformsBetter = 6520;
+            if (Fig3c)
+            {
+                String outDir3 = outDir + "Fig3c/";
             
-            randomForestFeatureSelection(new File(dataDir + "MPP-I.arff.zip"), new File(dataDir + "PP-I.arff.zip"),
-                                         goFunctionOnWhich_MPP_PerformsBetter, goFunctionOnWhich_PP_PerformsBetter,
-                                         new File(outDir3));
+                computeSimilaritiesBetweenOGs(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"),
+                                              new File(outDir3 + "Pearson_correlation_coefficients.txt"));
 
-            computeSimilaritiesBetweenOGs(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"),
-                                          new File(outDir3 + "Pearson_correlation_coefficients.txt"));
+                drawPearsonCorrelationCoefficientDistributionGraph(new File(outDir3 + "Pearson_correlation_coefficients.txt"),
+                                                                   new File(outDir3), useR);
 
-            drawPearsonCorrelationCoefficientDistributionGraph(new File(outDir3 + "Pearson_correlation_coefficients.txt"),
-                                                               new File(outDir3));
+                composeGephiFileWithNetwork(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
+                                            new File(outDir3 + "Pearson_correlation_coefficients.txt"),
+                                            new File(outDir3 + "CoEvolution_network.gexf"), 500, 1, true);
 
-            composeGephiFileWithNetwork(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
-                                        new File(outDir3 + "Pearson_correlation_coefficients.txt"),
-                                        new File(outDir3 + "CoEvolution_network.gexf"));
-        }
+                computeNetworkStatistics(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
+                                         new File(outDir3 + "Pearson_correlation_coefficients.txt"), new File(outDir3));
+
+                computePercolationCurve(new File(outDir3 + "Pearson_correlation_coefficients.txt"), 0.3, 0.01, new File(outDir3));
+
+                testNetworkStatistics(new File(outDir3 + "MPP-I.csv"), new File(outDir3 + "PP-I.csv"), 0.7,
+                                      new File(outDir3 + "Pearson_correlation_coefficients.txt"), 1000, 1, new File(outDir3));
+            }
         
-        if (Fig4a)
-        {
-            File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-I-AUPRCs+prediction_statistics.txt"),
-                                                           new File(dataDir + "MPP-16S-5k-AUPRCs+prediction_statistics.txt"),
-                                                           new File(dataDir + "MPP-16S-Baseline-AUPRCs+prediction_statistics.txt")};
-            String[] classifierNames = {"I", "16S", "Baseline"};
-            String[] colors = {"red", "black", "grey"};
+            if (Fig4a)
+            {
+                File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-I-AUPRCs+prediction_statistics.txt"),
+                                                               new File(dataDir + "MPP-16S-5k-AUPRCs+prediction_statistics.txt"),
+                                                               new File(dataDir + "MPP-16S-Baseline-AUPRCs+prediction_statistics.txt")};
+                String[] classifierNames = {"I", "16S", "Baseline"};
+                String[] colors = {"red", "black", "grey"};
             
-            drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
-                                            inFileWithFunctionFrequencies, new File(outDir + "/Fig4a/"));
-        }
+                drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                                inFileWithFunctionFrequencies, InformationContent.Bins.DEFAULT,
+                                                new File(outDir + "/Fig4a/"), useR);
+            }
         
-        if (Fig4b)
-        {
-            File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-I-ABUNDANT-AUPRCs+prediction_statistics.txt"),
-                                                           new File(dataDir + "MPP-16S-ABUNDANT-AUPRCs+prediction_statistics.txt")};
-            String[] classifierNames = {"I", "16S"};
-            String[] colors = {"red", "black"};
+            if (Fig4b)
+            {
+                File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-I-ABUNDANT-AUPRCs+prediction_statistics.txt"),
+                                                               new File(dataDir + "MPP-16S-ABUNDANT-AUPRCs+prediction_statistics.txt")};
+                String[] classifierNames = {"I", "16S"};
+                String[] colors = {"red", "black"};
             
-            drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
-                                            inFileWithFunctionFrequencies, new File(outDir + "/Fig4b/"));
-        }
+                drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                                inFileWithFunctionFrequencies, InformationContent.Bins.DEFAULT,
+                                                new File(outDir + "/Fig4b/"), useR);
+            }
         
-        if (Fig4c)
-        {
-            File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-I-RARE-AUPRCs+prediction_statistics.txt"),
-                                                           new File(dataDir + "MPP-16S-RARE-AUPRCs+prediction_statistics.txt")};
-            String[] classifierNames = {"I", "16S"};
-            String[] colors = {"red", "black"};
+            if (Fig4c)
+            {
+                File[] inFilesWithAUPRCsAndPredictionsStats = {new File(dataDir + "MPP-I-RARE-AUPRCs+prediction_statistics.txt"),
+                                                               new File(dataDir + "MPP-16S-RARE-AUPRCs+prediction_statistics.txt")};
+                String[] classifierNames = {"I", "16S"};
+                String[] colors = {"red", "black"};
+            
+                drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                                inFileWithFunctionFrequencies, InformationContent.Bins.DEFAULT,
+                                                new File(outDir + "/Fig4c/"), useR);
+            }
+        
+            if (AUPRCReferenceCheck_MPP_I)
+            {
+                //Numbers of predictions must match the shipped file; AUPRCs differ, since the shipped ones are cross-validated
+                new File(outDir + "/AUPRC_reference_check/").mkdirs();
+                File outFileWithAUPRCs = new File(outDir + "/AUPRC_reference_check/MPP-I-AUPRCs+prediction_statistics.txt");
             
-            drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
-                                            inFileWithFunctionFrequencies, new File(outDir + "/Fig4c/"));
+                computeAUPRCsAndPredictionStatistics(new File(dataDir + "MPP-I_predictions.tsv.gz"),
+                                                     new File(dataDir + "og2funcs-eggNOG_3.txt.gz"), 0.5, outFileWithAUPRCs);
+                compareWithReference(outFileWithAUPRCs, new File(dataDir + "MPP-I-AUPRCs+prediction_statistics.txt"));
+            }
+            
+            //Figures drawn in R sessions may still be running
+            RUtils.waitForRScripts();
+        }
+        finally
+        {
+            RUtils.stopRSessions();
         }
     }
 }
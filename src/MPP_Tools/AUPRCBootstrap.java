@@ -0,0 +1,472 @@
+package MPP_Tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import static MPP_Tools.AUPRCEvaluation.areaUnderPRCurve;
+import static org.apache.commons.math3.util.Precision.round;
+import utils.InformationContent;
+import static utils.RandomUtils.splitRandoms;
+import static utils.ResourceLoaders.loadOg2FunctionsFromFile;
+
+/**
+ * Bootstrap confidence intervals of GO function-level AUPRCs computed from tables with Pr scores.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class AUPRCBootstrap
+{
+    /**
+     * Computes percentile bootstrap confidence intervals of AUPRCs of several classification models and of differences
+     * between AUPRCs of each pair of models. Each bootstrap replicate resamples with replacement the gene families that
+     * have known functions and Pr scores in all tables; the same resample is used for all GO functions and models, so
+     * differences are paired. AUPRC is computed as in "AUPRCEvaluation.computeAUPRCsAndPredictionStatistics".
+     *
+     * Pr scores of each function and model are sorted once. A replicate only walks the sorted gene families and sums
+     * their multiplicities in the resample, so no sorting is done per replicate. Replicates are processed in parallel,
+     * each with its own random generator (see "RandomUtils.splitRandoms").
+     *
+     * Outputs:
+     *  1. AUPRC_bootstrap-functions.txt - for each GO function its generality level (S - IC>8, M - 4<=IC<=8, G - IC<4),
+     *     the number of positive gene families, AUPRC of each model with confidence interval and the difference between
+     *     AUPRCs of each pair of models with confidence interval.
+     *  2. AUPRC_bootstrap-generality_levels.txt - the same statistics for the mean AUPRC of functions of each generality
+     *     level and of all functions. In a replicate, the mean is taken over functions with positive gene families in the
+     *     resample.
+     *
+     * @param inFilesWithPrScores           Tables with Pr scores outputted by the classification models.
+     * @param methodsNames                  Names of the methods, i.e., classification models.
+     * @param inOg2FunctionsFile            File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param inFileWithFunctionFrequencies File with frequencies of GO functions appearance in Uniprot-GOA.
+     * @param numBootstraps                 Number of bootstrap replicates (e.g., 1000).
+     * @param confidenceLevel               Confidence level of intervals (e.g., 0.95).
+     * @param seed                          Seed for the random generator.
+     * @param outFolder                     Folder in which the output files will be saved.
+     *
+     * @throws IOException
+     */
+    public static void bootstrapAUPRCs(File[] inFilesWithPrScores, String[] methodsNames, File inOg2FunctionsFile,
+                                       File inFileWithFunctionFrequencies, int numBootstraps, double confidenceLevel,
+                                       long seed, File outFolder) throws IOException
+    {
+        bootstrapAUPRCs(inFilesWithPrScores, methodsNames, inOg2FunctionsFile, inFileWithFunctionFrequencies,
+                        InformationContent.Bins.DEFAULT, numBootstraps, confidenceLevel, seed, outFolder);
+    }
+
+    /**
+     * Computes bootstrap confidence intervals as "bootstrapAUPRCs", with levels of GO functions generality defined by IC
+     * bins. Quantile bins ("InformationContent.Bins.quantiles") are fitted to ICs of the functions in the bootstrap.
+     *
+     * @param inFilesWithPrScores           Tables with Pr scores outputted by the classification models.
+     * @param methodsNames                  Names of the methods, i.e., classification models.
+     * @param inOg2FunctionsFile            File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param inFileWithFunctionFrequencies File with frequencies of GO functions appearance in Uniprot-GOA.
+     * @param bins                          Levels of GO functions generality.
+     * @param numBootstraps                 Number of bootstrap replicates (e.g., 1000).
+     * @param confidenceLevel               Confidence level of intervals (e.g., 0.95).
+     * @param seed                          Seed for the random generator.
+     * @param outFolder                     Folder in which the output files will be saved.
+     *
+     * @throws IOException
+     */
+    public static void bootstrapAUPRCs(File[] inFilesWithPrScores, String[] methodsNames, File inOg2FunctionsFile,
+                                       File inFileWithFunctionFrequencies, InformationContent.Bins bins, int numBootstraps,
+                                       double confidenceLevel, long seed, File outFolder) throws IOException
+    {
+        int numMethods = inFilesWithPrScores.length;
+
+        Map<Integer, Set<Integer>> og2functions = loadOg2FunctionsFromFile(inOg2FunctionsFile);
+        InformationContent informationContent = InformationContent.load(inFileWithFunctionFrequencies);
+
+        AUPRCEvaluation.PrScores[] tables = new AUPRCEvaluation.PrScores[numMethods];
+        for (int m = 0; m < numMethods; m++)
+            tables[m] = AUPRCEvaluation.PrScores.load(inFilesWithPrScores[m]);
+
+        //Gene families with known functions that have Pr scores in all tables
+        List<Map<Integer, Integer>> rowOfOg = new ArrayList<>();
+        List<Map<Integer, Integer>> columnOfFunction = new ArrayList<>();
+
+        for (AUPRCEvaluation.PrScores table : tables)
+        {
+            Map<Integer, Integer> rows = new HashMap<>();
+            for (int i = 0; i < table.ogs.length; i++)
+                rows.put(table.ogs[i], i);
+            rowOfOg.add(rows);
+
+            Map<Integer, Integer> columns = new HashMap<>();
+            for (int j = 0; j < table.functions.length; j++)
+                columns.put(table.functions[j], j);
+            columnOfFunction.add(columns);
+        }
+
+        List<Integer> ogList = new ArrayList<>();
+        for (int og : tables[0].ogs)
+            if (og2functions.containsKey(og) && rowOfOg.stream().allMatch(rows -> rows.containsKey(og)))
+                ogList.add(og);
+
+        int numOGs = ogList.size();
+
+        //Functions with Pr scores in all tables and at least one positive gene family
+        List<Integer> funcList = new ArrayList<>();
+        for (int func : tables[0].functions)
+            if (columnOfFunction.stream().allMatch(columns -> columns.containsKey(func)) &&
+                ogList.stream().anyMatch(og -> og2functions.get(og).contains(func)))
+                funcList.add(func);
+
+        funcList.sort(null);
+
+        int numFuncs = funcList.size();
+
+        System.out.println("Gene families in bootstrap: " + numOGs);
+        System.out.println("Functions in bootstrap: " + numFuncs);
+
+        //Generality levels of functions and, as the last level, all functions
+        int[] funcs = funcList.stream().mapToInt(Integer::intValue).toArray();
+
+        double[] ics = new double[numFuncs];
+        for (int f = 0; f < numFuncs; f++)
+            ics[f] = informationContent.ic(funcs[f]);
+
+        bins = bins.fit(ics);
+
+        int[] generality = informationContent.bins(funcs, bins);
+
+        String[] generalityLevels = Arrays.copyOf(bins.names(), bins.numBins() + 1);
+        generalityLevels[bins.numBins()] = "All";
+
+        boolean[][] positive = new boolean[numFuncs][numOGs];
+        int[] numPositives = new int[numFuncs];
+
+        for (int f = 0; f < numFuncs; f++)
+        {
+            int func = funcList.get(f);
+
+            for (int k = 0; k < numOGs; k++)
+                if (og2functions.get(ogList.get(k)).contains(func))
+                {
+                    positive[f][k] = true;
+                    numPositives[f]++;
+                }
+        }
+
+        //Sort gene families of each function and model once by decreasing Pr score
+        int[][][] order = new int[numMethods][numFuncs][];
+
+        IntStream.range(0, numMethods * numFuncs).parallel().forEach(task -> {
+            int m = task / numFuncs;
+            int f = task % numFuncs;
+
+            double[] column = tables[m].scores[columnOfFunction.get(m).get(funcList.get(f))];
+
+            double[] scores = new double[numOGs];
+            for (int k = 0; k < numOGs; k++)
+                scores[k] = column[rowOfOg.get(m).get(ogList.get(k))];
+
+            order[m][f] = sortByDecreasingScore(scores);
+        });
+
+        //Point estimates
+        int[] ones = new int[numOGs];
+        Arrays.fill(ones, 1);
+
+        double[][] auprcs = new double[numMethods][numFuncs];
+        double[] tps = new double[numOGs];
+        double[] fps = new double[numOGs];
+
+        for (int m = 0; m < numMethods; m++)
+            for (int f = 0; f < numFuncs; f++)
+                auprcs[m][f] = weightedAUPRC(order[m][f], positive[f], ones, tps, fps);
+
+        SplittableRandom[] randoms = splitRandoms(new SplittableRandom(seed), numBootstraps);
+
+        double[][][] replicates = new double[numMethods][numFuncs][numBootstraps];
+
+        IntStream.range(0, numBootstraps).parallel().forEach(b -> {
+            int[] weights = new int[numOGs];
+            for (int k = 0; k < numOGs; k++)
+                weights[randoms[b].nextInt(numOGs)]++;
+
+            double[] replicateTps = new double[numOGs];
+            double[] replicateFps = new double[numOGs];
+
+            for (int m = 0; m < numMethods; m++)
+                for (int f = 0; f < numFuncs; f++)
+                    replicates[m][f][b] = weightedAUPRC(order[m][f], positive[f], weights, replicateTps, replicateFps);
+        });
+
+        outFolder.mkdirs();
+
+        double alpha = 1 - confidenceLevel;
+        String ci = (int)Math.round(confidenceLevel * 100) + "% CI";
+
+        //Per function
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFolder + "/AUPRC_bootstrap-functions.txt"));
+
+        bw.write("GO function\tGenerality\t# of positive gene families");
+        writeHeader(bw, methodsNames, ci);
+
+        for (int f = 0; f < numFuncs; f++)
+        {
+            bw.write(funcList.get(f) + "\t" + (generality[f] < 0 ? "NA" : generalityLevels[generality[f]]) + "\t" + numPositives[f]);
+
+            for (int m = 0; m < numMethods; m++)
+                writeEstimate(bw, auprcs[m][f], replicates[m][f], alpha);
+
+            for (int m1 = 0; m1 < numMethods; m1++)
+                for (int m2 = m1 + 1; m2 < numMethods; m2++)
+                {
+                    double[] differences = new double[numBootstraps];
+                    for (int b = 0; b < numBootstraps; b++)
+                        differences[b] = replicates[m1][f][b] - replicates[m2][f][b];
+
+                    writeEstimate(bw, auprcs[m1][f] - auprcs[m2][f], differences, alpha);
+                }
+
+            bw.write("\n");
+        }
+
+        bw.close();
+
+        //Per generality level
+        bw = new BufferedWriter(new FileWriter(outFolder + "/AUPRC_bootstrap-generality_levels.txt"));
+
+        bw.write("Generality\t# of functions");
+        writeHeader(bw, methodsNames, ci);
+
+        System.out.println("-----------------------------------------------------");
+        System.out.println("MEAN AUPRC WITH " + ci + " (" + numBootstraps + " bootstrap replicates)");
+        System.out.println("-----------------------------------------------------");
+
+        for (int level = 0; level < generalityLevels.length; level++)
+        {
+            boolean[] inLevel = new boolean[numFuncs];
+            int numInLevel = 0;
+
+            for (int f = 0; f < numFuncs; f++)
+                if (level == generalityLevels.length - 1 || generality[f] == level)
+                {
+                    inLevel[f] = true;
+                    numInLevel++;
+                }
+
+            double[] means = new double[numMethods];
+            double[][] replicateMeans = new double[numMethods][numBootstraps];
+
+            for (int m = 0; m < numMethods; m++)
+                means[m] = mean(auprcs[m], inLevel);
+
+            //In a replicate, only functions with AUPRC of all models are considered
+            for (int b = 0; b < numBootstraps; b++)
+            {
+                boolean[] complete = inLevel.clone();
+                double[][] values = new double[numMethods][numFuncs];
+
+                for (int m = 0; m < numMethods; m++)
+                    for (int f = 0; f < numFuncs; f++)
+                    {
+                        values[m][f] = replicates[m][f][b];
+
+                        if (Double.isNaN(values[m][f]))
+                            complete[f] = false;
+                    }
+
+                for (int m = 0; m < numMethods; m++)
+                    replicateMeans[m][b] = mean(values[m], complete);
+            }
+
+            bw.write(generalityLevels[level] + "\t" + numInLevel);
+
+            for (int m = 0; m < numMethods; m++)
+            {
+                double[] interval = writeEstimate(bw, means[m], replicateMeans[m], alpha);
+
+                System.out.println(generalityLevels[level] + " - " + methodsNames[m] + ": " + round(means[m], 4) +
+                                   " [" + round(interval[0], 4) + ", " + round(interval[1], 4) + "]");
+            }
+
+            for (int m1 = 0; m1 < numMethods; m1++)
+                for (int m2 = m1 + 1; m2 < numMethods; m2++)
+                {
+                    double[] differences = new double[numBootstraps];
+                    for (int b = 0; b < numBootstraps; b++)
+                        differences[b] = replicateMeans[m1][b] - replicateMeans[m2][b];
+
+                    double[] interval = writeEstimate(bw, means[m1] - means[m2], differences, alpha);
+
+                    System.out.println(generalityLevels[level] + " - " + methodsNames[m1] + " - " + methodsNames[m2] + ": " +
+                                       round(means[m1] - means[m2], 4) + " [" + round(interval[0], 4) + ", " +
+                                       round(interval[1], 4) + "]");
+                }
+
+            bw.write("\n");
+        }
+
+        bw.close();
+    }
+
+    /**
+     * Orders indices of non-missing scores by decreasing score. The last index of each group of equal scores is stored
+     * as ~index, so that the groups can be found without the scores. Scores are replaced by their ranks among distinct
+     * scores and the ranks are sorted together with indices as primitive long keys.
+     */
+    static int[] sortByDecreasingScore(double[] scores)
+    {
+        double[] distinct = new double[scores.length];
+        int numValues = 0;
+
+        for (double score : scores)
+            if (!Double.isNaN(score))
+                distinct[numValues++] = score;
+
+        long[] keys = new long[numValues];
+
+        distinct = Arrays.copyOf(distinct, numValues);
+        Arrays.sort(distinct);
+
+        int numDistinct = 0;
+        for (int i = 0; i < numValues; i++)
+            if (numDistinct == 0 || distinct[i] != distinct[numDistinct - 1])
+                distinct[numDistinct++] = distinct[i];
+
+        int n = 0;
+        for (int k = 0; k < scores.length; k++)
+            if (!Double.isNaN(scores[k]))
+            {
+                long rank = numDistinct - 1 - Arrays.binarySearch(distinct, 0, numDistinct, scores[k]);
+                keys[n++] = (rank << 32) | k;
+            }
+
+        Arrays.sort(keys);
+
+        int[] order = new int[numValues];
+
+        for (int i = 0; i < numValues; i++)
+        {
+            order[i] = (int)keys[i];
+
+            if (i == numValues - 1 || (keys[i] >>> 32) != (keys[i + 1] >>> 32))
+                order[i] = ~order[i];
+        }
+
+        return order;
+    }
+
+    /**
+     * AUPRC where each gene family counts as many times as given by its weight.
+     */
+    static double weightedAUPRC(int[] order, boolean[] positive, int[] weights, double[] tps, double[] fps)
+    {
+        int numThresholds = 0;
+        double tp = 0, fp = 0;
+
+        for (int entry : order)
+        {
+            int k = (entry < 0 ? ~entry : entry);
+
+            if (positive[k])
+                tp += weights[k];
+            else
+                fp += weights[k];
+
+            if (entry < 0)
+            {
+                tps[numThresholds] = tp;
+                fps[numThresholds] = fp;
+                numThresholds++;
+            }
+        }
+
+        return areaUnderPRCurve(tps, fps, numThresholds, tp);
+    }
+
+    /**
+     * Mean of non-missing values of selected functions.
+     */
+    private static double mean(double[] values, boolean[] selected)
+    {
+        double sum = 0;
+        int count = 0;
+
+        for (int f = 0; f < values.length; f++)
+            if (selected[f] && !Double.isNaN(values[f]))
+            {
+                sum += values[f];
+                count++;
+            }
+
+        return (count == 0 ? Double.NaN : sum / count);
+    }
+
+    private static void writeHeader(BufferedWriter bw, String[] methodsNames, String ci) throws IOException
+    {
+        for (String method : methodsNames)
+            bw.write("\t" + method + " AUPRC\t" + method + " " + ci + " low\t" + method + " " + ci + " high");
+
+        for (int m1 = 0; m1 < methodsNames.length; m1++)
+            for (int m2 = m1 + 1; m2 < methodsNames.length; m2++)
+            {
+                String difference = methodsNames[m1] + " - " + methodsNames[m2];
+                bw.write("\t" + difference + "\t" + difference + " " + ci + " low\t" + difference + " " + ci + " high");
+            }
+
+        bw.write("\n");
+    }
+
+    /**
+     * Writes estimate and its percentile confidence interval computed from bootstrap replicates.
+     *
+     * @return Confidence interval.
+     */
+    private static double[] writeEstimate(BufferedWriter bw, double estimate, double[] replicates, double alpha) throws IOException
+    {
+        double[] interval = percentileInterval(replicates, alpha);
+
+        bw.write("\t" + format(estimate) + "\t" + format(interval[0]) + "\t" + format(interval[1]));
+
+        return interval;
+    }
+
+    private static String format(double value)
+    {
+        return (Double.isNaN(value) ? "NA" : String.valueOf(round(value, 4)));
+    }
+
+    /**
+     * Quantiles alpha/2 and 1-alpha/2 of non-missing values with linear interpolation (R "quantile" type 7).
+     */
+    static double[] percentileInterval(double[] values, double alpha)
+    {
+        double[] sorted = new double[values.length];
+        int n = 0;
+
+        for (double value : values)
+            if (!Double.isNaN(value))
+                sorted[n++] = value;
+
+        if (n == 0)
+            return new double[] {Double.NaN, Double.NaN};
+
+        sorted = Arrays.copyOf(sorted, n);
+        Arrays.sort(sorted);
+
+        return new double[] {quantile(sorted, alpha / 2), quantile(sorted, 1 - alpha / 2)};
+    }
+
+    private static double quantile(double[] sorted, double p)
+    {
+        double h = (sorted.length - 1) * p;
+        int low = (int)Math.floor(h);
+        int high = Math.min(low + 1, sorted.length - 1);
+
+        return sorted[low] + (h - low) * (sorted[high] - sorted[low]);
+    }
+}
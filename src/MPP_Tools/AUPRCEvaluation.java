@@ -0,0 +1,386 @@
+package MPP_Tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import static org.apache.commons.math3.util.Precision.round;
+import static utils.FileUtils.findReaderType;
+import static utils.ResourceLoaders.loadOg2FunctionsFromFile;
+import static utils.ResourceLoaders.ogStrToOgInt;
+
+/**
+ * Evaluates tables with Pr scores (e.g., *_predictions.tsv.gz) against known functions of gene families.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class AUPRCEvaluation
+{
+    /**
+     * Computes for each GO function the area under the precision-recall curve (AUPRC) and the number of gene families
+     * for which the function was predicted at Pr >= prThreshold. The precision-recall curve has a point for each
+     * distinct Pr score of a function and points between them are interpolated as in Davis and Goadrich (2006).
+     *
+     * AUPRC is computed over gene families that have at least one known function; a gene family is a positive example
+     * of a GO function if the function is among its known functions. Missing scores (NA) are left out. Functions
+     * without positive examples have no AUPRC and are not written. Scores of each function are sorted with a primitive
+     * sort, separately for positive and negative examples, and functions are evaluated in parallel.
+     *
+     * The shipped "*-AUPRCs+prediction_statistics.txt" files cannot be reproduced from the shipped "*_predictions.tsv.gz"
+     * tables: AUPRCs in the paper were computed from cross-validated Pr scores over all gene families with known
+     * functions, while the tables hold Pr scores of the final models trained on all gene families and cover only the
+     * gene families in a model's dataset. Pr scores of training gene families are optimistic, so AUPRCs computed here are
+     * mostly higher (e.g., for MPP-I with eggNOG 3 functions, higher for 659 out of 673 functions, by 0.16 on average).
+     * Numbers of predictions do not depend on cross-validation and match the shipped files; see "compareWithReference".
+     *
+     * Outputs a tab delimited file in the format of "*-AUPRCs+prediction_statistics.txt" files with columns
+     * "GO function", "AUPRC" and "# of gene families for which a GO function was predicted at Pr>=X%", which can be
+     * used as input of "DistributionOfAUPRCsBoxPlot.drawDistributionOfAUPRCsBoxPlot".
+     *
+     * @param inFileWithPrScores    Table with Pr scores, where rows are gene families and columns are GO functions.
+     * @param inOg2FunctionsFile    File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param prThreshold           Predictions with Pr >= prThreshold are counted as predictions (e.g., 0.5).
+     * @param outFile               Output file.
+     *
+     * @throws IOException
+     */
+    public static void computeAUPRCsAndPredictionStatistics(File inFileWithPrScores, File inOg2FunctionsFile,
+                                                            double prThreshold, File outFile) throws IOException
+    {
+        Map<Integer, Set<Integer>> og2functions = loadOg2FunctionsFromFile(inOg2FunctionsFile);
+
+        PrScores prScores = PrScores.load(inFileWithPrScores);
+
+        int[] funcs = prScores.functions;
+
+        double[] auprcs = new double[funcs.length];
+        int[] numPredictions = new int[funcs.length];
+
+        IntStream.range(0, funcs.length).parallel().forEach(j -> {
+            double[] scores = prScores.scores[j];
+
+            double[] positives = new double[scores.length];
+            double[] negatives = new double[scores.length];
+            int numPositives = 0, numNegatives = 0;
+
+            for (int i = 0; i < scores.length; i++)
+            {
+                if (Double.isNaN(scores[i]))
+                    continue;
+
+                if (scores[i] >= prThreshold)
+                    numPredictions[j]++;
+
+                Set<Integer> known = og2functions.get(prScores.ogs[i]);
+
+                if (known == null)
+                    continue;
+                else if (known.contains(funcs[j]))
+                    positives[numPositives++] = scores[i];
+                else
+                    negatives[numNegatives++] = scores[i];
+            }
+
+            auprcs[j] = auprc(Arrays.copyOf(positives, numPositives), Arrays.copyOf(negatives, numNegatives));
+        });
+
+        //Write functions in ascending order
+        Integer[] order = new Integer[funcs.length];
+        for (int j = 0; j < funcs.length; j++)
+            order[j] = j;
+        Arrays.sort(order, (a, b) -> Integer.compare(funcs[a], funcs[b]));
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
+
+        bw.write("#GO function\tAUPRC\t# of gene families for which a GO function was predicted at Pr>=" +
+                 (int)Math.round(prThreshold * 100) + "%\n");
+
+        int numEvaluated = 0;
+
+        for (int j : order)
+            if (!Double.isNaN(auprcs[j]))
+            {
+                bw.write(funcs[j] + "\t" + round(auprcs[j], 10) + "\t" + numPredictions[j] + "\n");
+                numEvaluated++;
+            }
+
+        bw.close();
+
+        System.out.println("Functions with AUPRC: " + numEvaluated);
+    }
+
+    /**
+     * Compares a file outputted by "computeAUPRCsAndPredictionStatistics" with a shipped "*-AUPRCs+prediction_statistics.txt"
+     * file of the same model (e.g., MPP-I_predictions.tsv.gz evaluated with og2funcs-eggNOG_3.txt.gz against
+     * MPP-I-AUPRCs+prediction_statistics.txt). Numbers of predictions must be equal for all functions in both files;
+     * differences of AUPRCs are only reported, since the shipped AUPRCs come from cross-validation (see
+     * "computeAUPRCsAndPredictionStatistics").
+     *
+     * @param inFileWithAUPRCs          File outputted by "computeAUPRCsAndPredictionStatistics".
+     * @param inReferenceFileWithAUPRCs Shipped file with AUPRCs and prediction statistics.
+     *
+     * @throws IOException if the files have no functions in common or numbers of predictions differ.
+     */
+    public static void compareWithReference(File inFileWithAUPRCs, File inReferenceFileWithAUPRCs) throws IOException
+    {
+        Map<Integer, double[]> evaluated = loadAUPRCsAndPredictionStatistics(inFileWithAUPRCs);
+        Map<Integer, double[]> reference = loadAUPRCsAndPredictionStatistics(inReferenceFileWithAUPRCs);
+
+        int numShared = 0, numCountMismatches = 0, numOff = 0;
+        double sumDifference = 0, maxDifference = 0;
+        String firstMismatch = null;
+
+        for (int func : new TreeSet<>(reference.keySet()))
+        {
+            double[] e = evaluated.get(func);
+            double[] r = reference.get(func);
+
+            if (e == null)
+                continue;
+
+            numShared++;
+
+            if (e[1] != r[1])
+            {
+                numCountMismatches++;
+                if (firstMismatch == null)
+                    firstMismatch = "GO " + func + ": " + (int)e[1] + " vs. " + (int)r[1];
+            }
+
+            double difference = e[0] - r[0];
+            sumDifference += difference;
+            maxDifference = Math.max(maxDifference, Math.abs(difference));
+            if (Math.abs(difference) > 0.05)
+                numOff++;
+        }
+
+        if (numShared == 0)
+            throw new IOException("No functions in common with " + inReferenceFileWithAUPRCs);
+
+        System.out.println("Functions in common with the reference: " + numShared + " (evaluated " + evaluated.size() +
+                           ", reference " + reference.size() + ")");
+        System.out.println("Mean AUPRC difference: " + round(sumDifference / numShared, 4) + ", max. absolute: " +
+                           round(maxDifference, 4) + ", functions with absolute difference > 0.05: " + numOff);
+
+        if (numCountMismatches > 0)
+            throw new IOException("Numbers of predictions differ from " + inReferenceFileWithAUPRCs + " for " +
+                                  numCountMismatches + " functions, e.g., " + firstMismatch);
+
+        System.out.println("Numbers of predictions match the reference");
+    }
+
+    /**
+     * Loads a "*-AUPRCs+prediction_statistics.txt" file into a map from GO function to {AUPRC, # of predictions}.
+     */
+    private static Map<Integer, double[]> loadAUPRCsAndPredictionStatistics(File inFileWithAUPRCs) throws IOException
+    {
+        Map<Integer, double[]> stats = new HashMap<>();
+
+        BufferedReader br = findReaderType(inFileWithAUPRCs);
+
+        String line;
+
+        while ((line = br.readLine()) != null)
+            if (!line.startsWith("#") && !line.trim().isEmpty())
+            {
+                String[] parts = line.split("\t");
+                stats.put(Integer.parseInt(parts[0].trim()), new double[] {Double.parseDouble(parts[1].trim()),
+                                                                           Double.parseDouble(parts[2].trim())});
+            }
+
+        br.close();
+
+        return stats;
+    }
+
+    /**
+     * Computes AUPRC from scores of positive and negative examples. Arrays are sorted in place.
+     *
+     * @return AUPRC or NaN if there are no positive examples.
+     */
+    static double auprc(double[] positives, double[] negatives)
+    {
+        Arrays.sort(positives);
+        Arrays.sort(negatives);
+
+        //Walk both arrays from the highest score, one step for each distinct score
+        int numThresholds = 0;
+        double[] tps = new double[positives.length + negatives.length];
+        double[] fps = new double[positives.length + negatives.length];
+
+        int p = positives.length - 1;
+        int n = negatives.length - 1;
+        int tp = 0, fp = 0;
+
+        while (p >= 0 || n >= 0)
+        {
+            double threshold = Math.max(p >= 0 ? positives[p] : Double.NEGATIVE_INFINITY,
+                                        n >= 0 ? negatives[n] : Double.NEGATIVE_INFINITY);
+
+            while (p >= 0 && positives[p] == threshold)
+            {
+                tp++;
+                p--;
+            }
+
+            while (n >= 0 && negatives[n] == threshold)
+            {
+                fp++;
+                n--;
+            }
+
+            tps[numThresholds] = tp;
+            fps[numThresholds] = fp;
+            numThresholds++;
+        }
+
+        return areaUnderPRCurve(tps, fps, numThresholds, positives.length);
+    }
+
+    /**
+     * Area under the precision-recall curve given by the (possibly weighted) numbers of true and false positives at
+     * decreasing thresholds. Between two points, the number of false positives grows linearly with the number of true
+     * positives (Davis and Goadrich, 2006). The curve begins at recall 0 with the precision of the first point.
+     *
+     * @param tps           Cumulative true positives at each threshold.
+     * @param fps           Cumulative false positives at each threshold.
+     * @param numThresholds Number of thresholds, i.e., used positions of tps and fps.
+     * @param numPositives  Total number of positive examples.
+     *
+     * @return AUPRC or NaN if numPositives is 0.
+     */
+    static double areaUnderPRCurve(double[] tps, double[] fps, int numThresholds, double numPositives)
+    {
+        if (numPositives <= 0)
+            return Double.NaN;
+
+        double area = 0;
+
+        double prevTp = 0, prevFp = 0;
+        double prevRecall = 0, prevPrecision = Double.NaN;
+
+        for (int t = 0; t < numThresholds; t++)
+        {
+            double tp = tps[t];
+            double fp = fps[t];
+
+            if (tp == prevTp)
+            {
+                prevFp = fp;
+                prevPrecision = Double.NaN;
+                continue;
+            }
+
+            if (Double.isNaN(prevPrecision))
+                prevPrecision = (prevTp == 0 ? tp / (tp + fp) : prevTp / (prevTp + prevFp));
+
+            //Interpolate with a step of one true positive (or less, if counts are weighted)
+            double skew = (fp - prevFp) / (tp - prevTp);
+            int steps = (int)Math.max(1, Math.ceil(tp - prevTp));
+
+            for (int s = 1; s <= steps; s++)
+            {
+                double x = (tp - prevTp) * s / steps;
+                double precision = (prevTp + x) / (prevTp + x + prevFp + skew * x);
+                double recall = (prevTp + x) / numPositives;
+
+                area += (recall - prevRecall) * (precision + prevPrecision) / 2;
+
+                prevRecall = recall;
+                prevPrecision = precision;
+            }
+
+            prevTp = tp;
+            prevFp = fp;
+        }
+
+        return area;
+    }
+
+    /**
+     * Table with Pr scores stored by columns: scores[j][i] is the Pr score of function functions[j] for gene family
+     * ogs[i] or NaN if the score is missing.
+     */
+    static class PrScores
+    {
+        final int[] ogs;
+        final int[] functions;
+        final double[][] scores;
+
+        private PrScores(int[] ogs, int[] functions, double[][] scores)
+        {
+            this.ogs = ogs;
+            this.functions = functions;
+            this.scores = scores;
+        }
+
+        static PrScores load(File inFileWithPrScores) throws IOException
+        {
+            int[] functions = new int[0];
+            List<Integer> ogs = new ArrayList<>();
+            List<double[]> rows = new ArrayList<>();
+
+            BufferedReader br = findReaderType(inFileWithPrScores);
+
+            String line;
+            boolean header = true;
+
+            while ((line = br.readLine()) != null)
+            {
+                String[] parts = line.split("\t");
+
+                if (header)
+                {
+                    header = false;
+
+                    functions = new int[parts.length - 1];
+                    for (int j = 1; j < parts.length; j++)
+                        functions[j - 1] = Integer.parseInt(parts[j].trim());
+
+                    continue;
+                }
+
+                double[] row = new double[functions.length];
+
+                for (int j = 0; j < functions.length; j++)
+                {
+                    String val = (j + 1 < parts.length ? parts[j + 1].trim() : "NA");
+                    row[j] = (val.equals("NA") || val.isEmpty() ? Double.NaN : Double.parseDouble(val));
+                }
+
+                ogs.add(ogStrToOgInt(parts[0].trim()));
+                rows.add(row);
+            }
+
+            br.close();
+
+            System.out.println("Gene families: " + rows.size());
+            System.out.println("Functions: " + functions.length);
+
+            double[][] scores = new double[functions.length][rows.size()];
+
+            for (int i = 0; i < rows.size(); i++)
+            {
+                double[] row = rows.get(i);
+
+                for (int j = 0; j < functions.length; j++)
+                    scores[j][i] = row[j];
+            }
+
+            int[] ogArray = new int[ogs.size()];
+            for (int i = 0; i < ogArray.length; i++)
+                ogArray[i] = ogs.get(i);
+
+            return new PrScores(ogArray, functions, scores);
+        }
+    }
+}
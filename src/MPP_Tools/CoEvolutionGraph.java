@@ -0,0 +1,364 @@
+package MPP_Tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import static MPP_Tools.CoEvolutionNetwork.parsePCCs;
+import static org.apache.commons.math3.util.Precision.round;
+import utils.CsrGraph;
+import static utils.FileUtils.findReaderType;
+
+/**
+ * In-memory co-evolution network with the same nodes and edges as the network written by
+ * "CoEvolutionNetwork.composeGephiFileWithNetwork". Nodes have dense ids in the sorted order of gene family names.
+ * Each edge belongs to exactly one layer: MPP only, PP only or both (shared).
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class CoEvolutionGraph
+{
+    public static final byte LAYER_MPP = 0;
+    public static final byte LAYER_PP = 1;
+    public static final byte LAYER_SHARED = 2;
+
+    /** MPP profiles-based network: MPP and shared edges weighted by MPP correlation. */
+    public static final int NETWORK_MPP = 0;
+    /** PP profiles-based network: PP and shared edges weighted by PP correlation. */
+    public static final int NETWORK_PP = 1;
+    /** Shared edges weighted by the average of MPP and PP correlations. */
+    public static final int NETWORK_SHARED = 2;
+    /** All edges weighted as in the Gephi file. */
+    public static final int NETWORK_ALL = 3;
+
+    public static final String[] NETWORK_NAMES = {"MPP", "PP", "MPP+PP", "All"};
+
+    String mppSpecificFunction = "";
+    String ppSpecificFunction = "";
+
+    /** "MPP", "PP" or "both" for each gene family annotated with the MPP- and/or PP-specific function. */
+    Map<String, String> ogMethod = new HashMap<>();
+
+    /** Gene families of the data sets with selected features, including those without edges. */
+    TreeSet<String> datasetOgs = new TreeSet<>();
+
+    List<String> ogs = new ArrayList<>();
+    Map<String, Integer> ogIndex = new HashMap<>();
+
+    int numEdges = 0;
+    int[] sources = new int[16];
+    int[] targets = new int[16];
+    double[] mppPCCs = new double[16];
+    double[] ppPCCs = new double[16];
+    byte[] layers = new byte[16];
+
+    /**
+     * Loads gene families and determines whether they are associated with MPP- or PP-specific GO function.
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     *
+     * @return Graph without nodes and edges that holds only annotations of gene families.
+     *
+     * @throws IOException
+     */
+    public static CoEvolutionGraph loadAnnotations(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures) throws IOException
+    {
+        CoEvolutionGraph graph = new CoEvolutionGraph();
+
+        BufferedReader br = findReaderType(inMPPDatasetWithSelectedFeatures);
+
+        String line;
+
+        boolean header = true;
+
+        while((line=br.readLine()) != null)
+            if (header)
+            {
+                graph.mppSpecificFunction = line.substring(line.lastIndexOf(",") + 1);
+                header = false;
+            }
+            else
+            {
+                String og = line.substring(0, line.indexOf(","));
+
+                graph.datasetOgs.add(og);
+
+                if (line.substring(line.lastIndexOf(",") + 1).equals("1"))
+                    graph.ogMethod.put(og, "MPP");
+            }
+
+        br.close();
+
+        br = findReaderType(inPPDatasetWithSelectedFeatures);
+
+        header = true;
+
+        while((line=br.readLine()) != null)
+            if (header)
+            {
+                graph.ppSpecificFunction = line.substring(line.lastIndexOf(",") + 1);
+                header = false;
+            }
+            else
+            {
+                String og = line.substring(0, line.indexOf(","));
+
+                graph.datasetOgs.add(og);
+
+                if (line.substring(line.lastIndexOf(",") + 1).equals("1"))
+                {
+                    if (graph.ogMethod.containsKey(og))
+                        graph.ogMethod.put(og, "both");
+                    else
+                        graph.ogMethod.put(og, "PP");
+                }
+            }
+
+        br.close();
+
+        return graph;
+    }
+
+    /**
+     * Loads the co-evolution network.
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param pccThreshold  The network will include only edges with the absolute value of Pearson correlation coefficient > pccThreshold
+     *                      and interconnected nodes.
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     *
+     * @throws IOException
+     */
+    public static CoEvolutionGraph load(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                        double pccThreshold, File inFileWithPCC) throws IOException
+    {
+        CoEvolutionGraph graph = loadAnnotations(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures);
+
+        //Collect edges with gene family names replaced by temporary ids in the order of appearance
+        Map<String, Integer> tmpIndex = new HashMap<>();
+        List<String> tmpOgs = new ArrayList<>();
+
+        BufferedReader br = findReaderType(inFileWithPCC);
+
+        String line;
+
+        boolean header = true;
+
+        while((line=br.readLine()) != null)
+            if (header)
+                header = false;
+            else
+            {
+                double[] pccs = parsePCCs(line);
+
+                boolean inMPP = pccs[0] > pccThreshold;
+                boolean inPP = pccs[1] > pccThreshold;
+
+                if (!inMPP && !inPP)
+                    continue;
+
+                int dash = line.indexOf("-");
+                int firstTab = line.indexOf("\t");
+
+                graph.addEdge(tmpId(line.substring(0, dash), tmpIndex, tmpOgs), tmpId(line.substring(dash + 1, firstTab), tmpIndex, tmpOgs),
+                              pccs[0], pccs[1], (inMPP && inPP ? LAYER_SHARED : (inMPP ? LAYER_MPP : LAYER_PP)));
+            }
+
+        br.close();
+
+        //Renumber nodes in the sorted order of names
+        graph.ogs.addAll(new TreeSet<>(tmpOgs));
+
+        for (int i = 0; i < graph.ogs.size(); i++)
+            graph.ogIndex.put(graph.ogs.get(i), i);
+
+        int[] tmpToFinal = new int[tmpOgs.size()];
+        for (int i = 0; i < tmpOgs.size(); i++)
+            tmpToFinal[i] = graph.ogIndex.get(tmpOgs.get(i));
+
+        for (int e = 0; e < graph.numEdges; e++)
+        {
+            graph.sources[e] = tmpToFinal[graph.sources[e]];
+            graph.targets[e] = tmpToFinal[graph.targets[e]];
+        }
+
+        return graph;
+    }
+
+    private static int tmpId(String og, Map<String, Integer> tmpIndex, List<String> tmpOgs)
+    {
+        Integer id = tmpIndex.get(og);
+
+        if (id == null)
+        {
+            id = tmpOgs.size();
+            tmpIndex.put(og, id);
+            tmpOgs.add(og);
+        }
+
+        return id;
+    }
+
+    private void addEdge(int source, int target, double pccMPP, double pccPP, byte layer)
+    {
+        if (numEdges == sources.length)
+        {
+            int capacity = 2 * sources.length;
+
+            sources = Arrays.copyOf(sources, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            mppPCCs = Arrays.copyOf(mppPCCs, capacity);
+            ppPCCs = Arrays.copyOf(ppPCCs, capacity);
+            layers = Arrays.copyOf(layers, capacity);
+        }
+
+        sources[numEdges] = source;
+        targets[numEdges] = target;
+        mppPCCs[numEdges] = pccMPP;
+        ppPCCs[numEdges] = pccPP;
+        layers[numEdges] = layer;
+
+        numEdges++;
+    }
+
+    public int numNodes()
+    {
+        return ogs.size();
+    }
+
+    public int numEdges()
+    {
+        return numEdges;
+    }
+
+    public List<String> ogs()
+    {
+        return ogs;
+    }
+
+    /**
+     * Gene families of the data sets with selected features in sorted order, including gene families without edges,
+     * which are not nodes of the graph.
+     */
+    public Set<String> datasetOgs()
+    {
+        return datasetOgs;
+    }
+
+    /**
+     * Annotation of the node: "MPP", "PP", "both" or null if the gene family is not annotated with either function.
+     */
+    public String method(int node)
+    {
+        return method(ogs.get(node));
+    }
+
+    /**
+     * Annotation of a gene family: "MPP", "PP", "both" or null if it is not annotated with either function.
+     */
+    public String method(String og)
+    {
+        return ogMethod.get(og);
+    }
+
+    public String mppSpecificFunction()
+    {
+        return mppSpecificFunction;
+    }
+
+    public String ppSpecificFunction()
+    {
+        return ppSpecificFunction;
+    }
+
+    /**
+     * Weight of an edge as written to the Gephi file.
+     */
+    public double edgeWeight(int edge)
+    {
+        if (layers[edge] == LAYER_SHARED)
+            return round((mppPCCs[edge] + ppPCCs[edge]) / (double)2, 4);
+        else if (layers[edge] == LAYER_MPP)
+            return mppPCCs[edge];
+        else
+            return ppPCCs[edge];
+    }
+
+    /**
+     * Checks whether an edge is a part of a network (NETWORK_MPP, NETWORK_PP, NETWORK_SHARED or NETWORK_ALL).
+     */
+    public boolean inNetwork(int edge, int network)
+    {
+        switch (network)
+        {
+            case NETWORK_MPP:
+                return layers[edge] != LAYER_PP;
+            case NETWORK_PP:
+                return layers[edge] != LAYER_MPP;
+            case NETWORK_SHARED:
+                return layers[edge] == LAYER_SHARED;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Edges of a network.
+     *
+     * @param network   NETWORK_MPP, NETWORK_PP, NETWORK_SHARED or NETWORK_ALL.
+     *
+     * @return Source nodes (index 0) and target nodes (index 1) of edges.
+     */
+    public int[][] networkEdges(int network)
+    {
+        int cnt = 0;
+        for (int e = 0; e < numEdges; e++)
+            if (inNetwork(e, network))
+                cnt++;
+
+        int[][] edges = new int[2][cnt];
+
+        cnt = 0;
+        for (int e = 0; e < numEdges; e++)
+            if (inNetwork(e, network))
+            {
+                edges[0][cnt] = sources[e];
+                edges[1][cnt++] = targets[e];
+            }
+
+        return edges;
+    }
+
+    /**
+     * Builds the adjacency structure of a network over all nodes of the graph.
+     *
+     * @param network   NETWORK_MPP, NETWORK_PP, NETWORK_SHARED or NETWORK_ALL.
+     */
+    public CsrGraph network(int network)
+    {
+        int[] networkSources = new int[numEdges];
+        int[] networkTargets = new int[numEdges];
+        double[] networkWeights = new double[numEdges];
+
+        int cnt = 0;
+
+        for (int e = 0; e < numEdges; e++)
+            if (inNetwork(e, network))
+            {
+                networkSources[cnt] = sources[e];
+                networkTargets[cnt] = targets[e];
+                networkWeights[cnt] = (network == NETWORK_MPP ? mppPCCs[e] : (network == NETWORK_PP ? ppPCCs[e] : edgeWeight(e)));
+                cnt++;
+            }
+
+        return new CsrGraph(ogs.size(), networkSources, networkTargets, networkWeights, cnt);
+    }
+}
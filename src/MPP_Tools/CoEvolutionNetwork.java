@@ -2,31 +2,49 @@ package MPP_Tools;
 
 import com.google.common.collect.ArrayTable;
 import com.google.common.collect.Table;
-import com.google.common.collect.TreeBasedTable;
+import java.awt.Color;
+import java.awt.geom.Point2D;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.stream.IntStream;
 import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import static org.apache.commons.math3.util.Precision.round;
-import static utils.ArffUtils.selectSubsetOfLabelsFromHMCArff;
+import static utils.ArffUtils.projectHMCDataset;
+import utils.BoxPlotStatistics;
+import static utils.ChartRenderer.drawHistogram;
 import static utils.FileUtils.findReaderType;
-import static utils.RUtils.executeRScript;
-import weka.core.Instances;
-import weka.core.converters.CSVSaver;
-import weka.core.converters.ConverterUtils;
-import weka.filters.Filter;
-import weka.filters.unsupervised.attribute.Remove;
-import weka.filters.unsupervised.instance.RemoveRange;
+import utils.ForceDirectedLayout;
+import utils.HmcDataset;
+import static utils.LocalitySensitiveHashing.candidatePairs;
+import static utils.LocalitySensitiveHashing.mergePairs;
+import static utils.LocalitySensitiveHashing.simHashBandKeys;
+import utils.NetworkWriter;
+import utils.ProfileMatrixFile;
+import utils.QuantileSketch;
+import utils.RandomForest;
+import static utils.RUtils.submitRScript;
+import static utils.ResourceLoaders.loadOgProfilesFromCsv;
+import static utils.SimilarityUtils.findNearestNeighbours;
+import static utils.SimilarityUtils.pearsonCorrelation;
+import static utils.SimilarityUtils.standardizeProfiles;
 
 /**
  *
@@ -35,9 +53,13 @@ import weka.filters.unsupervised.instance.RemoveRange;
  */
 public class CoEvolutionNetwork
 {
+    /** Largest number of coefficients per method for which PCC histograms have exact counts (8 bytes each). */
+    private static final int MAX_EXACT_HISTOGRAM_VALUES = 1 << 24;
+    
     /**
-     * Performs Random Forest-based feature selection by keeping the features with positive values of Gini Index.
-     * This procedure depends on R and 'randomForest' R package.
+     * Performs Random Forest-based feature selection by keeping the features with positive values of mean decrease
+     * in accuracy on gene families annotated with the selected function (see "utils.RandomForest"). Random Forest
+     * reads features decoded into doubles (see "HmcDataset.features"), which take 8 bytes per value of a data set.
      * 
      * @param inMPPArffFile         Input file with metagenome phyletic profiles (MPP) data set in ARFF format.
      * @param inPPArffFile          Input file with phyletic profiles (PP) data set in ARFF format matched with MPP.
@@ -50,11 +72,31 @@ public class CoEvolutionNetwork
      *                              (see file "MPP-I_and_PP-I_AUPRCs.tsv" in "data").
      * @param outFolder             MPP and PP data sets with the selected features will be outputted to this folder.
      * 
-     * @throws Exception 
+     * @throws IOException 
+     */
+    public static void randomForestFeatureSelection(File inMPPArffFile, File inPPArffFile,
+                                                    int mppRelatedFunction, int ppRelatedFunction,
+                                                    File outFolder) throws IOException
+    {
+        randomForestFeatureSelection(inMPPArffFile, inPPArffFile, mppRelatedFunction, ppRelatedFunction, outFolder, null);
+    }
+    
+    /**
+     * Performs "randomForestFeatureSelection" with data sets loaded with "HmcDataset.loadWithCache", so that a binary
+     * form of each ARFF file (".hmc") is saved in the cache folder and reused in the next runs.
+     * 
+     * @param inMPPArffFile         Input file with metagenome phyletic profiles (MPP) data set in ARFF format.
+     * @param inPPArffFile          Input file with phyletic profiles (PP) data set in ARFF format matched with MPP.
+     * @param mppRelatedFunction    GO function that is predicted by MPP better than by PP.
+     * @param ppRelatedFunction     GO function that is predicted by PP better than by MPP.
+     * @param outFolder             MPP and PP data sets with the selected features will be outputted to this folder.
+     * @param cacheFolder           Folder for binary forms of the data sets or null to parse ARFF files every time.
+     * 
+     * @throws IOException 
      */
     public static void randomForestFeatureSelection(File inMPPArffFile, File inPPArffFile,
                                                     int mppRelatedFunction, int ppRelatedFunction,
-                                                    File outFolder) throws Exception
+                                                    File outFolder, File cacheFolder) throws IOException
     {
         if (!outFolder.exists())
             outFolder.mkdirs();
@@ -63,27 +105,14 @@ public class CoEvolutionNetwork
         //SELECT GENE FAMILIES ANNOTATED WITH THE mppRelatedFunction AND
         //ppRelatedFunction GO FUNCTIONS
         //----------------------------------------------------------------
-        Set<String> selectedOGs = new TreeSet<>();
+        HmcDataset mppDataset = HmcDataset.loadWithCache(inMPPArffFile, cacheFolder);
         
-        BufferedReader br = findReaderType(inMPPArffFile); //becuase MPP and PP data sets are paired, it is enough to read gene families from one of them
+        //becuase MPP and PP data sets are paired, it is enough to read gene families from one of them
+        Set<String> selectedOGs = new TreeSet<>();
         
-        String line;
-                
-        while((line=br.readLine()) != null)
-            if (!line.startsWith("@") && !line.isEmpty())
-            {
-                String og = line.substring(0, line.indexOf(","));
-                String funcsStr = line.substring(line.lastIndexOf(",") + 1).trim();
-                
-                String[] parts = funcsStr.split("@");
-                
-                Set<Integer> funcs = new HashSet<>();
-                for (String part : parts)
-                    funcs.add(Integer.parseInt(part));
-                
-                if (funcs.contains(mppRelatedFunction) || funcs.contains(ppRelatedFunction))
-                    selectedOGs.add(og);
-            }
+        for (int i = 0; i < mppDataset.numInstances(); i++)
+            if (mppDataset.isAnnotatedWith(i, mppRelatedFunction) || mppDataset.isAnnotatedWith(i, ppRelatedFunction))
+                selectedOGs.add(mppDataset.og(i));
         
         System.out.println(selectedOGs.size() + " gene families are annotated with the selected GO functions: " + mppRelatedFunction + " and " + ppRelatedFunction);
         
@@ -97,147 +126,169 @@ public class CoEvolutionNetwork
         {
             System.out.println("Performing feature selection for the data set: " + f.getName());
             
-            System.out.println("\tPreparing data for feature selection");
-            
-            //Create binary class ARFF file for the method-specific selected GO function 
-            List<String> selectedFunction = new ArrayList<>();
-
-            if (f == inMPPArffFile)
-                selectedFunction.add(String.valueOf(mppRelatedFunction));
-            else
-                selectedFunction.add(String.valueOf(ppRelatedFunction));
-
-            String singleLabelArffFile = outFolder + "/" + f.getName().substring(0, f.getName().lastIndexOf(".arff")) + ".arff";
-
-            selectSubsetOfLabelsFromHMCArff(selectedFunction, f, new File(singleLabelArffFile));
-
-            
-            //Remove ID attribute and save the data set into CSV format
-            ConverterUtils.DataSource source = new ConverterUtils.DataSource(singleLabelArffFile);
-            Instances data = source.getDataSet();
-            
-            Remove remove = new Remove();
-            remove.setAttributeIndices("1");
-            remove.setInvertSelection(false);
-            remove.setInputFormat(data);
-            data = Filter.useFilter(data, remove);
-            
-            String goFunc = data.attribute(data.numAttributes() - 1).name();
-            
-            String singleLabelCsvFile = outFolder + "/" + f.getName().substring(0, f.getName().lastIndexOf(".arff")) + ".csv";
-
-            CSVSaver saver = new CSVSaver();
-            saver.setInstances(data);
-            saver.setFile(new File(singleLabelCsvFile));
-            saver.writeBatch();
-            
-
-            //Create R script that will compute feature importances
-            System.out.println("\tGenerating R script");
-            
-            String singleLabelRScriptFile = outFolder + "/" + f.getName().substring(0, f.getName().lastIndexOf(".arff")) + ".r";
-
-            String singleLabelImportanceMatrixFile = outFolder + "/" + f.getName().substring(0, f.getName().lastIndexOf(".arff")) + "-FIs.txt";
-            
-            
-            BufferedWriter bwS = new BufferedWriter(new FileWriter(singleLabelRScriptFile));
-
-            bwS.write("library(randomForest)\n");
-            bwS.write("data <- read.csv(\"" + singleLabelCsvFile.replace("\\", "/") + "\")\n");
-
-            if (f == inMPPArffFile)
-                bwS.write("data$X" + mppRelatedFunction + " <- factor(data$X" + mppRelatedFunction + ")\n");
-            else
-            {
-                bwS.write("cols <- colnames(data)\n");
-                bwS.write("data[cols] <- lapply(data[cols], factor)\n");
-            }
-
-            bwS.write("set.seed(1)\n");
-            bwS.write("data.rf <- randomForest(data$X" + goFunc + " ~ ., data=data, ntree=200, importance=TRUE)\n");
-            bwS.write("imp <- round(importance(data.rf), 2)\n");
-            bwS.write("impdf <- as.data.frame(imp)\n");
-            bwS.write("write.table(impdf, file=\"" + singleLabelImportanceMatrixFile.replace("\\", "/") +
-                      "\", sep = \"\\t\")\n");
-
-            bwS.close();
-
-            System.out.println("\tExecuting R script");
-            executeRScript(singleLabelRScriptFile);
+            int selectedFunction = (f == inMPPArffFile ? mppRelatedFunction : ppRelatedFunction);
             
+            HmcDataset dataset = (f == inMPPArffFile ? mppDataset : HmcDataset.loadWithCache(f, cacheFolder));
             
-            //Extract indices of the selected features
-            List<Integer> indicesOfTheSelectedFeatures = new ArrayList<>();
-            indicesOfTheSelectedFeatures.add(0); //keep ID
-
-            br = findReaderType(new File(singleLabelImportanceMatrixFile));
-
-            int featureIndex = 1;
-
-            while((line=br.readLine()) != null)
+            if (!dataset.functionsInHierarchy().contains(selectedFunction))
             {
-                if (line.startsWith("\"0\"\t\"1\"\t\"MeanDecreaseAccuracy\"\t\"MeanDecreaseGini\"")) //skip header
-                    continue;
-
-                String[] parts = line.split("\t");
-
-                if (Double.parseDouble(parts[2]) > 0)
-                    indicesOfTheSelectedFeatures.add(featureIndex);
-                
-                featureIndex++;
+                System.out.println("\tFunction " + selectedFunction + " is not in the class hierarchy");
+                continue;
             }
             
-            System.out.println((indicesOfTheSelectedFeatures.size() - 1) + " features selected");
+            //Compute feature importances and create data set with the selected features and gene families annotated with the selected GO functions
+            System.out.println("\tComputing feature importances");
             
+            String singleLabelCsvFile = outFolder + "/" + f.getName().substring(0, f.getName().lastIndexOf(".arff")) + ".csv";
             
-            //Create data set with the selected features
-            source = new ConverterUtils.DataSource(singleLabelArffFile);
-            data = source.getDataSet();
-            
-            indicesOfTheSelectedFeatures.add(data.numAttributes() - 1);
-            
-            int[] indicesOfTheSelectedFeaturesArray = new int[indicesOfTheSelectedFeatures.size()];
-            for (int i = 0; i < indicesOfTheSelectedFeatures.size(); i++)
-                indicesOfTheSelectedFeaturesArray[i] = indicesOfTheSelectedFeatures.get(i);
-
-            remove = new Remove();
-            remove.setAttributeIndicesArray(indicesOfTheSelectedFeaturesArray);
-            remove.setInvertSelection(true);
-            remove.setInputFormat(data);
-            data = Filter.useFilter(data, remove);
-            
+            int numSelectedFeatures = selectFeaturesForFunction(dataset, selectedFunction, selectedOGs, new File(singleLabelCsvFile));
             
-            //Keep only gene families that are annotated with the selected GO functions 
-            String indicesOfOGsThatAreIrrelevant = "";
-            for (int i = 0; i < data.numInstances(); i++)
-            {
-                String og = data.instance(i).stringValue(0);
+            System.out.println(numSelectedFeatures + " features selected");
+        }
+    }
+    
+    /**
+     * Performs "randomForestFeatureSelection" for many pairs of GO functions. Each data set is read only once; feature
+     * selection for different pairs is performed concurrently. Outputs for each pair are saved in a subfolder
+     * of outFolder named "mppRelatedFunction-ppRelatedFunction".
+     * 
+     * @param inMPPArffFile         Input file with metagenome phyletic profiles (MPP) data set in ARFF format.
+     * @param inPPArffFile          Input file with phyletic profiles (PP) data set in ARFF format matched with MPP.
+     * @param mppRelatedFunctions   GO functions that are predicted by MPP better than by PP.
+     * @param ppRelatedFunctions    GO functions that are predicted by PP better than by MPP; ppRelatedFunctions[i] is
+     *                              paired with mppRelatedFunctions[i].
+     * @param outFolder             Folder in which subfolders with the results for each pair will be created.
+     * 
+     * @throws IOException 
+     */
+    public static void randomForestFeatureSelection(File inMPPArffFile, File inPPArffFile,
+                                                    int[] mppRelatedFunctions, int[] ppRelatedFunctions,
+                                                    File outFolder) throws IOException
+    {
+        File[] outFolders = new File[mppRelatedFunctions.length];
+        
+        for (int i = 0; i < mppRelatedFunctions.length; i++)
+            outFolders[i] = new File(outFolder + "/" + mppRelatedFunctions[i] + "-" + ppRelatedFunctions[i]);
+        
+        randomForestFeatureSelection(inMPPArffFile, inPPArffFile, mppRelatedFunctions, ppRelatedFunctions, outFolders);
+    }
+    
+    /**
+     * Performs "randomForestFeatureSelection" for many pairs of GO functions. Each data set is read only once; feature
+     * selection for different pairs is performed concurrently.
+     * 
+     * @param inMPPArffFile         Input file with metagenome phyletic profiles (MPP) data set in ARFF format.
+     * @param inPPArffFile          Input file with phyletic profiles (PP) data set in ARFF format matched with MPP.
+     * @param mppRelatedFunctions   GO functions that are predicted by MPP better than by PP.
+     * @param ppRelatedFunctions    GO functions that are predicted by PP better than by MPP; ppRelatedFunctions[i] is
+     *                              paired with mppRelatedFunctions[i].
+     * @param outFolders            MPP and PP data sets with the selected features for the i-th pair will be outputted
+     *                              to outFolders[i].
+     * 
+     * @throws IOException 
+     */
+    public static void randomForestFeatureSelection(File inMPPArffFile, File inPPArffFile,
+                                                    int[] mppRelatedFunctions, int[] ppRelatedFunctions,
+                                                    File[] outFolders) throws IOException
+    {
+        randomForestFeatureSelection(inMPPArffFile, inPPArffFile, mppRelatedFunctions, ppRelatedFunctions, outFolders, null);
+    }
+    
+    /**
+     * Performs "randomForestFeatureSelection" for many pairs of GO functions with data sets loaded with
+     * "HmcDataset.loadWithCache", so that a binary form of each ARFF file (".hmc") is saved in the cache folder and
+     * reused in the next runs. Features decoded for Random Forest are shared by all pairs.
+     * 
+     * @param inMPPArffFile         Input file with metagenome phyletic profiles (MPP) data set in ARFF format.
+     * @param inPPArffFile          Input file with phyletic profiles (PP) data set in ARFF format matched with MPP.
+     * @param mppRelatedFunctions   GO functions that are predicted by MPP better than by PP.
+     * @param ppRelatedFunctions    GO functions that are predicted by PP better than by MPP; ppRelatedFunctions[i] is
+     *                              paired with mppRelatedFunctions[i].
+     * @param outFolders            MPP and PP data sets with the selected features for the i-th pair will be outputted
+     *                              to outFolders[i].
+     * @param cacheFolder           Folder for binary forms of the data sets or null to parse ARFF files every time.
+     * 
+     * @throws IOException 
+     */
+    public static void randomForestFeatureSelection(File inMPPArffFile, File inPPArffFile,
+                                                    int[] mppRelatedFunctions, int[] ppRelatedFunctions,
+                                                    File[] outFolders, File cacheFolder) throws IOException
+    {
+        System.out.println("Loading data sets");
+        
+        HmcDataset mppDataset = HmcDataset.loadWithCache(inMPPArffFile, cacheFolder);
+        HmcDataset ppDataset = HmcDataset.loadWithCache(inPPArffFile, cacheFolder);
+        
+        String mppName = inMPPArffFile.getName().substring(0, inMPPArffFile.getName().lastIndexOf(".arff"));
+        String ppName = inPPArffFile.getName().substring(0, inPPArffFile.getName().lastIndexOf(".arff"));
+        
+        try
+        {
+            IntStream.range(0, mppRelatedFunctions.length).parallel().forEach(k -> {
+                int mppRelatedFunction = mppRelatedFunctions[k];
+                int ppRelatedFunction = ppRelatedFunctions[k];
                 
-                if (!selectedOGs.contains(og))
-                    indicesOfOGsThatAreIrrelevant += "," + (i + 1);
-            }
-            
-            indicesOfOGsThatAreIrrelevant = indicesOfOGsThatAreIrrelevant.substring(1);
-            
-            RemoveRange removeInstances = new RemoveRange();
-            removeInstances.setInstancesIndices(indicesOfOGsThatAreIrrelevant);
-            removeInstances.setInvertSelection(false);
-            removeInstances.setInputFormat(data);
-            data = Filter.useFilter(data, removeInstances);
-            
-            saver = new CSVSaver();
-            saver.setInstances(data);
-            saver.setFile(new File(singleLabelCsvFile));
-            saver.writeBatch();
-            
-            
-            //Remove reduntant files
-            new File(singleLabelArffFile).delete();
-            new File(singleLabelRScriptFile).delete();
-            new File(singleLabelImportanceMatrixFile).delete();
+                if (!mppDataset.functionsInHierarchy().contains(mppRelatedFunction) || !ppDataset.functionsInHierarchy().contains(ppRelatedFunction))
+                {
+                    System.out.println("Skipping pair " + mppRelatedFunction + "-" + ppRelatedFunction + ": function is not in the class hierarchy");
+                    return;
+                }
+                
+                //Gene families annotated with either of the functions (MPP and PP data sets are paired, so it is enough to check one of them)
+                Set<String> selectedOGs = new HashSet<>();
+                for (int i = 0; i < mppDataset.numInstances(); i++)
+                    if (mppDataset.isAnnotatedWith(i, mppRelatedFunction) || mppDataset.isAnnotatedWith(i, ppRelatedFunction))
+                        selectedOGs.add(mppDataset.og(i));
+                
+                try
+                {
+                    outFolders[k].mkdirs();
+                    
+                    int numMppFeatures = selectFeaturesForFunction(mppDataset, mppRelatedFunction, selectedOGs, new File(outFolders[k] + "/" + mppName + ".csv"));
+                    int numPpFeatures = selectFeaturesForFunction(ppDataset, ppRelatedFunction, selectedOGs, new File(outFolders[k] + "/" + ppName + ".csv"));
+                    
+                    System.out.println("Pair " + mppRelatedFunction + "-" + ppRelatedFunction + ": " + selectedOGs.size() + " gene families, "
+                                       + numMppFeatures + " MPP and " + numPpFeatures + " PP features selected");
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
         }
     }
     
+    /**
+     * Selects features important for the function with Random Forest (the same criterion as in "randomForestFeatureSelection")
+     * and saves the selected features of the selected gene families in CSV format.
+     * 
+     * @return Number of selected features.
+     */
+    private static int selectFeaturesForFunction(HmcDataset dataset, int function, Set<String> selectedOGs, File outCsvFile) throws IOException
+    {
+        //Compute feature importances with Random Forest (200 trees and seed 1, as in the former R script)
+        RandomForest.Importances importances = RandomForest.computeFeatureImportances(dataset.features(), dataset.binaryClasses(function), 2, 200, 1);
+        
+        //Select features that increase accuracy on gene families annotated with the function
+        boolean[] selectedFeatures = new boolean[dataset.numFeatures()];
+        int numSelectedFeatures = 0;
+        
+        for (int j = 0; j < dataset.numFeatures(); j++)
+            if (round(importances.classSpecificMeanDecreaseAccuracy[1][j], 2) > 0)
+            {
+                selectedFeatures[j] = true;
+                numSelectedFeatures++;
+            }
+        
+        projectHMCDataset(dataset, selectedFeatures, selectedOGs, function, outCsvFile);
+        
+        return numSelectedFeatures;
+    }
+    
     /**
      * Computes similarities between gene family profiles. Similarity is measured as Pearson correlation coefficient.
      * Please note that the direction of correlation is irrelevant in this application.
@@ -297,26 +348,8 @@ public class CoEvolutionNetwork
         for (File f : csvFiles)
         {
             //Load instances
-            Map<String, double[]> ogRepresentingVectors = new TreeMap<>();
-            
-            br = findReaderType(f);
-            
-            header = true;
-            
-            while((line=br.readLine()) != null)
-                if (header)
-                    header = false;
-                else
-                {
-                    String parts[] = line.substring(line.indexOf(",") + 1).trim().split(",");
-                    
-                    double[] vals = new double[parts.length - 1];
-                    for (int i = 0; i < parts.length - 1; i++)
-                        vals[i] = Double.parseDouble(parts[i]);
-                    
-                    ogRepresentingVectors.put(line.substring(0, line.indexOf(",")), vals);
-                }
-            
+            Map<String, double[]> ogRepresentingVectors = loadOgProfilesFromCsv(f);
+
             //Compute similarities between gene families in MPP and PP
             for (Set<String> pair : ogPairs)
             {
@@ -352,374 +385,861 @@ public class CoEvolutionNetwork
         
         bw.close();
     }
-    
+
     /**
-     * Draws histograms with distributions of Pearson corelation coefficients for MPP and PP.
-     * Histograms can help to determine the threshold that will be used to filter out less relevant edges in a graph.
-     * This procedure depends on R.
-     * 
-     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
-     * @param outFolder     Histograms in PNG format for MPP and PP will be outputted to this folder.
-     * 
+     * Computes similarities only between each gene family and its k most similar gene families in MPP and in PP, instead
+     * of between all pairs of gene families. Similarity is measured as the absolute value of Pearson correlation coefficient.
+     * Since each gene family contributes at most k edges per data set, the size of the network stays bounded regardless
+     * of the number of gene families.
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param k                                 Number of nearest neighbours kept for each gene family in each data set.
+     * @param outFileWithPearsonCorrelationCoefficientsForOGPairs   Output file in the format outputted by "computeSimilaritiesBetweenOGs",
+     *                                                              which lists the union of MPP and PP nearest neighbour pairs
+     *                                                              and can be used as input to "composeGephiFileWithNetwork".
+     *
      * @throws IOException
-     * @throws InterruptedException 
      */
-    public static void drawPearsonCorrelationCoefficientDistributionGraph(File inFileWithPCC, File outFolder) throws IOException, InterruptedException
+    public static void computeNearestNeighbourSimilaritiesBetweenOGs(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                                     int k, File outFileWithPearsonCorrelationCoefficientsForOGPairs) throws IOException
     {
-        if (!outFolder.exists())
-            outFolder.mkdirs();
-        
-        //Load Pearson correlation coefficients from file
-        Table<String, String, Double> ogPair_method_PCC = TreeBasedTable.create();
-        
-        List<String> methods = new ArrayList<>();
-        
-        BufferedReader br = findReaderType(inFileWithPCC);
-        
-        String line;
-        
-        boolean header = true;
-                
-        while((line=br.readLine()) != null)
-            if (header)
-            {
-                header = false;
-                
-                String[] parts = line.split("\t");
-                
-                for (int i = 1; i < parts.length; i++)
-                    methods.add(parts[i]);
-            }
-            else
-            {
-                String[] parts = line.split("\t");
-                
-                for (int i = 1; i < parts.length; i++)
-                    ogPair_method_PCC.put(parts[0], methods.get(i - 1), Double.parseDouble(parts[i]));
-            }
-        
-        
-        //Draw histograms with distributions of Pearson correlation coefficients for MPP and PP
-        for (String method : methods)
-        {
-            String histogramDataFilePath = outFolder + "/" + method + "-histogram.csv";
-            
-            BufferedWriter bw = new BufferedWriter(new FileWriter(histogramDataFilePath));
-            
-            for (String ogPair : ogPair_method_PCC.rowKeySet())
-                bw.write(String.valueOf(ogPair_method_PCC.get(ogPair, method)) + "\n");
-            
-            bw.close();
-            
-            String histogramRScriptFilePath = outFolder + "/" + method + "-histogram.r";
+        //Load and standardize profiles
+        Map<String, double[]> mppProfiles = loadOgProfilesFromCsv(inMPPDatasetWithSelectedFeatures);
+        Map<String, double[]> ppProfiles = loadOgProfilesFromCsv(inPPDatasetWithSelectedFeatures);
 
-            bw = new BufferedWriter(new FileWriter(histogramRScriptFilePath));
+        List<String> ogs = new ArrayList<>(mppProfiles.keySet()); //sorted, so that i < j implies that ogs[i] precedes ogs[j] in a pair name
 
-            bw.write("png('" + histogramDataFilePath.substring(0, histogramRScriptFilePath.lastIndexOf(".")).replace("\\", "/") + ".png')\n");
-            bw.write("data <- read.csv('" + histogramDataFilePath.replace("\\", "/") + "', header=F)\n");
-            bw.write("histogram <- hist(data$V1, plot=F)\n");
-            bw.write("plot(histogram, ylim=c(0, max(histogram$counts) + 5), main='', xlab='Pearson correlation coefficient')\n");
-            bw.write("text(histogram$mids, histogram$counts + 60, histogram$counts, cex=0.75)\n");
-            bw.write("dev.off()\n");
+        System.out.println("Nearest neighbours (k=" + k + ") will be computed for " + ogs.size() + " gene families");
 
-            bw.close();
+        checkPairedProfiles(ogs, ppProfiles, inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures);
 
-            executeRScript(histogramRScriptFilePath);
-            
-            //Remove reduntant files
-            new File(histogramDataFilePath).delete();
-            new File(histogramRScriptFilePath).delete();
+        double[][] mppVectors = standardizeProfiles(ogs, mppProfiles);
+        double[][] ppVectors = standardizeProfiles(ogs, ppProfiles);
+
+        //Find nearest neighbours in each data set
+        int[][] mppNeighbours = findNearestNeighbours(mppVectors, k);
+        int[][] ppNeighbours = findNearestNeighbours(ppVectors, k);
+
+        //Merge neighbour lists of both data sets into a list of unique pairs, each encoded as (smaller index << 32 | larger index)
+        long numSlots = 0;
+        for (int[][] neighbours : new int[][][] {mppNeighbours, ppNeighbours})
+            for (int[] neighboursOfOg : neighbours)
+                numSlots += neighboursOfOg.length;
+
+        if (numSlots > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Too many nearest neighbour pairs (" + numSlots + "), decrease k");
+
+        long[] pairs = new long[(int)numSlots];
+        int numPairs = 0;
+
+        for (int[][] neighbours : new int[][][] {mppNeighbours, ppNeighbours})
+            for (int i = 0; i < neighbours.length; i++)
+                for (int j : neighbours[i])
+                    pairs[numPairs++] = ((long)Math.min(i, j) << 32) | Math.max(i, j);
+
+        Arrays.sort(pairs, 0, numPairs);
+
+        //Save correlation coefficients of the nearest neighbour pairs
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFileWithPearsonCorrelationCoefficientsForOGPairs));
+
+        bw.write("Gene family pair\tMPP\tPP\n");
+
+        int numUniquePairs = 0;
+
+        for (int p = 0; p < numPairs; p++)
+        {
+            if (p > 0 && pairs[p] == pairs[p - 1])
+                continue;
+
+            int first = (int)(pairs[p] >>> 32);
+            int second = (int)pairs[p];
+
+            bw.write(ogs.get(first) + "-" + ogs.get(second) + "\t" +
+                     Math.abs(round(pearsonCorrelation(mppVectors[first], mppVectors[second]), 4)) + "\t" +
+                     Math.abs(round(pearsonCorrelation(ppVectors[first], ppVectors[second]), 4)) + "\n");
+
+            numUniquePairs++;
         }
+
+        bw.close();
+
+        System.out.println("Number of nearest neighbour gene family pairs: " + numUniquePairs);
     }
-    
+
     /**
-     * Generates gexf file with the description of coevolution network, which can be visualized in Gephi (http://gephi.org).
+     * Checks that each gene family of the MPP data set also has a profile in the PP data set.
+     *
+     * @throws IOException if a gene family is missing from the PP data set.
+     */
+    private static void checkPairedProfiles(List<String> ogs, Map<String, double[]> ppProfiles,
+                                            File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures) throws IOException
+    {
+        for (String og : ogs)
+            if (!ppProfiles.containsKey(og))
+                throw new IOException("Gene family " + og + " from " + inMPPDatasetWithSelectedFeatures + " is missing from " +
+                                      inPPDatasetWithSelectedFeatures + ", the MPP and PP data sets must have the same gene families");
+    }
+
+    /**
+     * Approximate alternative to "computeSimilaritiesBetweenOGs" for large sets of gene families. Candidate pairs are
+     * generated with locality-sensitive hashing: random-hyperplane SimHash of standardized profiles, for continuous (MPP)
+     * as well as binary (PP) profiles. Standardized profiles are centered, so shared zeros of binary profiles count
+     * towards their similarity, and bands are sign-canonical, so anti-correlated profiles are candidates as well. Only
+     * the candidate pairs are verified with exact Pearson correlation coefficient.
+     * Increasing the number of bands increases recall at the cost of speed, while increasing the number of rows per
+     * band does the opposite. Recall is estimated against exact similarities of a random sample of gene families.
      * 
+     * The search remains approximate: a pair with Pearson correlation coefficient r agrees on a band with probability
+     * (1 - arccos(|r|) / pi) ^ rowsPerBand, so a pair just above pccThreshold is missed with probability
+     * (1 - (1 - arccos(pccThreshold) / pi) ^ rowsPerBand) ^ numBands. Constant profiles have no correlation and are
+     * never candidates.
+     *
      * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
      * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
-     * @param pccThreshold  The network will include only edges with the absolute value of Pearson correlation coefficient > pccThreshold
-     *                      and interconnected nodes.
-     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
-     * @param outGephiFile  Gexf file with the description of network.
-     * 
-     * @throws IOException 
+     * @param pccThreshold                      Only pairs with the absolute value of Pearson correlation coefficient > pccThreshold
+     *                                          in MPP or in PP are outputted.
+     * @param numBands                          Number of LSH bands.
+     * @param rowsPerBand                       Number of hyperplanes per LSH band (at most 63).
+     * @param recallSampleSize                  Number of randomly selected gene families used to estimate recall (0 to skip).
+     * @param seed                              Seed of the random number generator.
+     * @param outFileWithPearsonCorrelationCoefficientsForOGPairs   Output file in the format outputted by "computeSimilaritiesBetweenOGs".
+     *
+     * @throws IOException
      */
-    public static void composeGephiFileWithNetwork(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
-                                                   double pccThreshold, File inFileWithPCC, File outGephiFile) throws IOException
+    public static void computeApproximateSimilaritiesBetweenOGs(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                                double pccThreshold, int numBands, int rowsPerBand, int recallSampleSize,
+                                                                long seed, File outFileWithPearsonCorrelationCoefficientsForOGPairs) throws IOException
     {
-        String mppSpecificFunction = "";
-        String ppSpecificFunction = "";
-        
-        //---------------------
-        //LOAD NODES AND EDGES
-        //---------------------
-        //Load gene families and determine whether they are associated with MPP- or PP-specific GO function
-        Map<String, String> ogMethod = new HashMap<>();
-        
-        BufferedReader br = findReaderType(inMPPDatasetWithSelectedFeatures);
-        
-        String line;
-        
-        boolean header = true;
-        
-        while((line=br.readLine()) != null)
-            if (header)
-            {
-                mppSpecificFunction = line.substring(line.lastIndexOf(",") + 1);
-                header = false;
-            }
-            else if (line.substring(line.lastIndexOf(",") + 1).equals("1"))
-               ogMethod.put(line.substring(0, line.indexOf(",")), "MPP");
-        
-        
-        br = findReaderType(inPPDatasetWithSelectedFeatures);
-        
-        header = true;
-        
-        while((line=br.readLine()) != null)
-            if (header)
-            {
-                ppSpecificFunction = line.substring(line.lastIndexOf(",") + 1);
-                header = false;
-            }
-            else if (line.substring(line.lastIndexOf(",") + 1).equals("1"))
-            {
-                String og = line.substring(0, line.indexOf(","));
-                
-                if (ogMethod.containsKey(og))
-                    ogMethod.put(og, "both");
-                else
-                    ogMethod.put(og, "PP");
-            }
-        
-        
-        //Load correlations that are > threshold
-        Map<String, Double> ogPairPCC_MPP = new HashMap<>();
-        Map<String, Double> ogPairPCC_PP = new HashMap<>();
-        
-        br = findReaderType(inFileWithPCC);
-        
-        header = true;
-        
-        while((line=br.readLine()) != null)
-            if (header)
-                header = false;
-            else
+        //Load profiles
+        Map<String, double[]> mppProfiles = loadOgProfilesFromCsv(inMPPDatasetWithSelectedFeatures);
+        Map<String, double[]> ppProfiles = loadOgProfilesFromCsv(inPPDatasetWithSelectedFeatures);
+
+        List<String> ogs = new ArrayList<>(mppProfiles.keySet());
+
+        System.out.println("Approximate pairwise similarity will be computed for " + ogs.size() + " gene families");
+
+        checkPairedProfiles(ogs, ppProfiles, inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures);
+
+        double[][][] standardizedVectors = {standardizeProfiles(ogs, mppProfiles), standardizeProfiles(ogs, ppProfiles)};
+        String[] methods = {"MPP", "PP"};
+
+        //Generate candidate pairs
+        List<long[]> candidatesPerMethod = new ArrayList<>();
+
+        for (int m = 0; m < methods.length; m++)
+        {
+            System.out.println("\t" + methods[m] + ": SimHash with " + numBands + " bands x " + rowsPerBand + " rows");
+            long[][] bandKeys = simHashBandKeys(standardizedVectors[m], numBands, rowsPerBand, seed + m);
+
+            long[] candidates = candidatePairs(bandKeys);
+            candidatesPerMethod.add(candidates);
+
+            System.out.println("\t" + methods[m] + ": " + candidates.length + " candidate pairs");
+        }
+
+        long[] candidates = mergePairs(candidatesPerMethod);
+
+        long numAllPairs = (long)ogs.size() * (ogs.size() - 1) / 2;
+        System.out.println("Number of candidate gene family pairs: " + candidates.length + " of " + numAllPairs + " (" +
+                           round((double)candidates.length / (double)numAllPairs * (double)100, 2) + "%)");
+
+        //Verify candidates with exact Pearson correlation coefficients
+        double[][] pccs = new double[candidates.length][2];
+
+        IntStream.range(0, candidates.length).parallel().forEach(p -> {
+            int first = (int)(candidates[p] >>> 32);
+            int second = (int)candidates[p];
+
+            for (int m = 0; m < methods.length; m++)
+                pccs[p][m] = Math.abs(round(pearsonCorrelation(standardizedVectors[m][first], standardizedVectors[m][second]), 4));
+        });
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFileWithPearsonCorrelationCoefficientsForOGPairs));
+
+        bw.write("Gene family pair\tMPP\tPP\n");
+
+        int numVerifiedPairs = 0;
+
+        for (int p = 0; p < candidates.length; p++)
+            if (pccs[p][0] > pccThreshold || pccs[p][1] > pccThreshold)
             {
-                String[] parts = line.split("\t");
-                
-                Double pccMPP = Double.parseDouble(parts[1]);
-                Double pccPP = Double.parseDouble(parts[2]);
-                
-                if (pccMPP > pccThreshold)
-                    ogPairPCC_MPP.put(parts[0], pccMPP);
-                
-                if (pccPP > pccThreshold)
-                    ogPairPCC_PP.put(parts[0], pccPP);
+                bw.write(ogs.get((int)(candidates[p] >>> 32)) + "-" + ogs.get((int)candidates[p]) + "\t" + pccs[p][0] + "\t" + pccs[p][1] + "\n");
+                numVerifiedPairs++;
             }
-        
-        
-        //--------------------------------
-        //COMPUTE WEIGHTs OF SHARED EDGES
-        //--------------------------------
-        Map<String, Double> ogPairPCC_MPP_PP = new HashMap<>();
-        
-        Set<String> sharedPairs = new HashSet<>(ogPairPCC_MPP.keySet());
-        sharedPairs.retainAll(ogPairPCC_PP.keySet());
 
-        for (String sharedPair : sharedPairs)
+        bw.close();
+
+        System.out.println("Number of verified gene family pairs with PCC > " + pccThreshold + ": " + numVerifiedPairs);
+
+        //Estimate recall on a sample of gene families
+        if (recallSampleSize <= 0)
+            return;
+
+        List<Integer> sample = new ArrayList<>();
+        for (int i = 0; i < ogs.size(); i++)
+            sample.add(i);
+
+        Collections.shuffle(sample, new Random(seed));
+        sample = sample.subList(0, Math.min(recallSampleSize, sample.size()));
+
+        for (int m = 0; m < methods.length; m++)
         {
-            double mppCC = ogPairPCC_MPP.get(sharedPair);
-            double ppCC = ogPairPCC_PP.get(sharedPair);
-            
-            ogPairPCC_MPP_PP.put(sharedPair, round((mppCC + ppCC) / (double)2, 4));
-            
-            ogPairPCC_MPP.remove(sharedPair);
-            ogPairPCC_PP.remove(sharedPair);
+            final int method = m;
+
+            long[] found = sample.parallelStream().mapToLong(i -> {
+                long truePairs = 0;
+                long truePairsFound = 0;
+
+                for (int j = 0; j < ogs.size(); j++)
+                    if (j != i && Math.abs(round(pearsonCorrelation(standardizedVectors[method][i], standardizedVectors[method][j]), 4)) > pccThreshold)
+                    {
+                        truePairs++;
+
+                        if (Arrays.binarySearch(candidates, ((long)Math.min(i, j) << 32) | Math.max(i, j)) >= 0)
+                            truePairsFound++;
+                    }
+
+                return (truePairs << 32) | truePairsFound;
+            }).toArray();
+
+            long truePairs = 0;
+            long truePairsFound = 0;
+            for (long f : found)
+            {
+                truePairs += f >>> 32;
+                truePairsFound += f & 0xFFFFFFFFL;
+            }
+
+            System.out.println("Estimated recall for " + methods[m] + " (" + sample.size() + " sampled gene families): " +
+                               (truePairs == 0 ? "NA (no pairs with PCC > " + pccThreshold + " in the sample)" :
+                                round((double)truePairsFound / (double)truePairs, 4) + " (" + truePairsFound + " of " + truePairs + " pairs)"));
         }
+    }
 
-        
-        //--------------------
-        //GENERATE GEPHI FILE
-        //--------------------
-        FileWriter fw = new FileWriter(outGephiFile);
-        BufferedWriter bw = new BufferedWriter(fw);
+    /**
+     * Out-of-core alternative to "computeSimilaritiesBetweenOGs" for data sets whose profiles do not fit into memory.
+     * Profiles are first converted into binary matrices of standardized profiles that are memory mapped block by block.
+     * The space of gene family pairs is split into tiles of tileSize x tileSize gene families; each finished tile is
+     * written to the work folder and recorded in a manifest. If the computation is interrupted, calling the procedure
+     * again with the same arguments resumes from the completed tiles.
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param tileSize                          Number of gene families per tile side. Each thread keeps four blocks of
+     *                                          tileSize profiles in memory.
+     * @param workFolder                        Folder for binary profiles, finished tiles and the manifest.
+     * @param outFileWithPearsonCorrelationCoefficientsForOGPairs   Output file in the format outputted by "computeSimilaritiesBetweenOGs".
+     *
+     * @throws IOException
+     */
+    public static void computeSimilaritiesBetweenOGsOutOfCore(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                              int tileSize, File workFolder,
+                                                              File outFileWithPearsonCorrelationCoefficientsForOGPairs) throws IOException
+    {
+        List<File> tileFiles = computeSimilarityTiles(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures,
+                                                      tileSize, 0, 1, workFolder);
+
+        concatenateSimilarityFiles(tileFiles, false, outFileWithPearsonCorrelationCoefficientsForOGPairs);
+    }
 
-        bw.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        bw.write("<gexf xmlns=\"http://www.gexf.net/1.3draft\" xmlns:viz=\"http://www.gexf.net/1.1draft/viz\" version=\"1.3\">\n");
-        bw.write("\t<graph defaultedgetype=\"undirected\" idtype=\"string\" type=\"static\">\n");
+    /**
+     * Computes one shard of "computeSimilaritiesBetweenOGs", so that the computation can be distributed over independent
+     * processes or machines that share a file system. Tiles of tileSize x tileSize gene families are assigned to shards
+     * in round-robin order, which depends only on the number of gene families, the tile size and the number of shards.
+     * Each shard is resumable in the same way as "computeSimilaritiesBetweenOGsOutOfCore". Outputs of all shards are
+     * combined with "mergeSimilarityShards".
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param shardIndex                        Index of the shard (0 to numShards - 1).
+     * @param numShards                         Number of shards.
+     * @param tileSize                          Number of gene families per tile side. All shards must use the same tile size.
+     * @param workFolder                        Work folder of this shard (must not be shared with other shards).
+     * @param outShardFile                      Output file with the pairs of this shard in the format outputted by
+     *                                          "computeSimilaritiesBetweenOGs".
+     *
+     * @throws IOException
+     */
+    public static void computeSimilaritiesBetweenOGs(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                     int shardIndex, int numShards, int tileSize, File workFolder,
+                                                     File outShardFile) throws IOException
+    {
+        if (numShards < 1 || shardIndex < 0 || shardIndex >= numShards)
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + numShards);
 
-        bw.write("\t\t<nodes>\n");
-        
-        //Include in graph only interconnected nodes
-        Set<String> interconnectedNodes = new TreeSet<>();
+        System.out.println("Computing shard " + (shardIndex + 1) + " of " + numShards);
+
+        List<File> tileFiles = computeSimilarityTiles(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures,
+                                                      tileSize, shardIndex, numShards, workFolder);
+
+        //Write to a temporary file first, so that the existence of the shard file means that the shard is complete
+        File tmpShardFile = new File(outShardFile.getAbsolutePath() + ".tmp");
+
+        concatenateSimilarityFiles(tileFiles, false, tmpShardFile);
+
+        Files.move(tmpShardFile.toPath(), outShardFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Combines outputs of all shards computed by "computeSimilaritiesBetweenOGs" with a shard specification into a
+     * single file with Pearson correlation coefficients.
+     *
+     * @param inShardFiles  Output files of all shards.
+     * @param outFileWithPearsonCorrelationCoefficientsForOGPairs   Output file in the format outputted by "computeSimilaritiesBetweenOGs".
+     *
+     * @throws IOException
+     */
+    public static void mergeSimilarityShards(File[] inShardFiles, File outFileWithPearsonCorrelationCoefficientsForOGPairs) throws IOException
+    {
+        for (File f : inShardFiles)
+            if (!f.exists())
+                throw new IOException("Shard file " + f + " does not exist, the shard has not been completed");
+
+        concatenateSimilarityFiles(Arrays.asList(inShardFiles), true, outFileWithPearsonCorrelationCoefficientsForOGPairs);
+
+        System.out.println("Merged " + inShardFiles.length + " shards into " + outFileWithPearsonCorrelationCoefficientsForOGPairs.getName());
+    }
+
+    /**
+     * Computes the tiles of gene family pairs that belong to the shard (tiles are assigned to shards in round-robin
+     * order) and skips tiles already listed in the manifest of the work folder.
+     *
+     * @return Files of all tiles of the shard, in tile order.
+     */
+    private static List<File> computeSimilarityTiles(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                     int tileSize, int shardIndex, int numShards, File workFolder) throws IOException
+    {
+        if (!workFolder.exists())
+            workFolder.mkdirs();
+
+        File mppMatrixFile = new File(workFolder, "MPP-profiles.bin");
+        File ppMatrixFile = new File(workFolder, "PP-profiles.bin");
+        File ogsFile = new File(workFolder, "Gene_families.txt");
+        File manifestFile = new File(workFolder, "Manifest.txt");
 
-        for (String ogPair : ogPairPCC_MPP.keySet())
+        String signature = "#tileSize=" + tileSize + "\tshard=" + shardIndex + "/" + numShards +
+                           "\tMPP=" + inMPPDatasetWithSelectedFeatures.getAbsolutePath() + "|" + inMPPDatasetWithSelectedFeatures.length() +
+                           "|" + inMPPDatasetWithSelectedFeatures.lastModified() +
+                           "\tPP=" + inPPDatasetWithSelectedFeatures.getAbsolutePath() + "|" + inPPDatasetWithSelectedFeatures.length() +
+                           "|" + inPPDatasetWithSelectedFeatures.lastModified();
+
+        //Resume from the manifest if it was written for the same input and tiling
+        Set<String> completedTiles = new HashSet<>();
+        List<String> ogs = new ArrayList<>();
+
+        if (manifestFile.exists() && mppMatrixFile.exists() && ppMatrixFile.exists() && ogsFile.exists())
         {
-            interconnectedNodes.add(ogPair.substring(0, ogPair.indexOf("-")));
-            interconnectedNodes.add(ogPair.substring(ogPair.indexOf("-") + 1));
+            BufferedReader br = findReaderType(manifestFile);
+
+            String line = br.readLine();
+
+            boolean sameInputAndTiling = signature.equals(line);
+
+            if (sameInputAndTiling)
+                while((line=br.readLine()) != null)
+                    if (!line.isEmpty())
+                        completedTiles.add(line.substring(0, line.lastIndexOf("\t")));
+
+            br.close();
+
+            if (sameInputAndTiling)
+            {
+                br = findReaderType(ogsFile);
+
+                while((line=br.readLine()) != null)
+                    ogs.add(line);
+
+                br.close();
+            }
         }
 
-        for (String ogPair : ogPairPCC_PP.keySet())
+        if (ogs.isEmpty())
         {
-            interconnectedNodes.add(ogPair.substring(0, ogPair.indexOf("-")));
-            interconnectedNodes.add(ogPair.substring(ogPair.indexOf("-") + 1));
+            System.out.println("Converting profiles into binary matrices");
+
+            //The manifest is removed first and written only after the conversion, so that partial matrices of an
+            //interrupted conversion are never taken for complete ones
+            Files.deleteIfExists(manifestFile.toPath());
+
+            ogs = ProfileMatrixFile.writeStandardizedProfiles(inMPPDatasetWithSelectedFeatures, null, mppMatrixFile);
+
+            Map<String, Integer> ogToRow = new HashMap<>();
+            for (int i = 0; i < ogs.size(); i++)
+                ogToRow.put(ogs.get(i), i);
+
+            ProfileMatrixFile.writeStandardizedProfiles(inPPDatasetWithSelectedFeatures, ogToRow, ppMatrixFile);
+
+            BufferedWriter bw = new BufferedWriter(new FileWriter(ogsFile));
+            for (String og : ogs)
+                bw.write(og + "\n");
+            bw.close();
+
+            File tmpManifestFile = new File(workFolder, manifestFile.getName() + ".tmp");
+
+            bw = new BufferedWriter(new FileWriter(tmpManifestFile));
+            bw.write(signature + "\n");
+            bw.close();
+
+            Files.move(tmpManifestFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            completedTiles.clear();
         }
-        
-        for (String ogPair : ogPairPCC_MPP_PP.keySet())
+
+        //Enumerate tiles of the shard
+        int numBlocks = (ogs.size() + tileSize - 1) / tileSize;
+
+        List<int[]> shardTiles = new ArrayList<>();
+        List<File> tileFiles = new ArrayList<>();
+        List<int[]> pendingTiles = new ArrayList<>();
+
+        int tileIndex = 0;
+
+        for (int firstBlock = 0; firstBlock < numBlocks; firstBlock++)
+            for (int secondBlock = firstBlock; secondBlock < numBlocks; secondBlock++, tileIndex++)
+                if (tileIndex % numShards == shardIndex)
+                {
+                    int[] tile = {firstBlock, secondBlock};
+
+                    shardTiles.add(tile);
+                    tileFiles.add(new File(workFolder, "Tile-" + firstBlock + "-" + secondBlock + ".txt"));
+
+                    if (!completedTiles.contains(firstBlock + "\t" + secondBlock) || !tileFiles.get(tileFiles.size() - 1).exists())
+                        pendingTiles.add(tile);
+                }
+
+        System.out.println("Pairwise similarity will be computed for " + ogs.size() + " gene families in " + shardTiles.size() +
+                           " tiles (" + (shardTiles.size() - pendingTiles.size()) + " already completed)");
+
+        //Compute pending tiles in parallel; a tile becomes visible only after it is completely written
+        final List<String> ogNames = ogs;
+
+        try
         {
-            interconnectedNodes.add(ogPair.substring(0, ogPair.indexOf("-")));
-            interconnectedNodes.add(ogPair.substring(ogPair.indexOf("-") + 1));
+            pendingTiles.parallelStream().forEach(tile -> {
+                try
+                {
+                    double[][] mppFirst = ProfileMatrixFile.readBlock(mppMatrixFile, tile[0] * tileSize, tileSize);
+                    double[][] ppFirst = ProfileMatrixFile.readBlock(ppMatrixFile, tile[0] * tileSize, tileSize);
+                    double[][] mppSecond = (tile[0] == tile[1] ? mppFirst : ProfileMatrixFile.readBlock(mppMatrixFile, tile[1] * tileSize, tileSize));
+                    double[][] ppSecond = (tile[0] == tile[1] ? ppFirst : ProfileMatrixFile.readBlock(ppMatrixFile, tile[1] * tileSize, tileSize));
+
+                    File tileFile = new File(workFolder, "Tile-" + tile[0] + "-" + tile[1] + ".txt");
+                    File tmpTileFile = new File(workFolder, tileFile.getName() + ".tmp");
+
+                    BufferedWriter bw = new BufferedWriter(new FileWriter(tmpTileFile));
+
+                    int numPairs = 0;
+
+                    for (int i = 0; i < mppFirst.length; i++)
+                        for (int j = (tile[0] == tile[1] ? i + 1 : 0); j < mppSecond.length; j++)
+                        {
+                            String firstOG = ogNames.get(tile[0] * tileSize + i);
+                            String secondOG = ogNames.get(tile[1] * tileSize + j);
+
+                            bw.write((firstOG.compareTo(secondOG) < 0 ? firstOG + "-" + secondOG : secondOG + "-" + firstOG) + "\t" +
+                                     Math.abs(round(pearsonCorrelation(mppFirst[i], mppSecond[j]), 4)) + "\t" +
+                                     Math.abs(round(pearsonCorrelation(ppFirst[i], ppSecond[j]), 4)) + "\n");
+
+                            numPairs++;
+                        }
+
+                    bw.close();
+
+                    Files.move(tmpTileFile.toPath(), tileFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                    synchronized (manifestFile)
+                    {
+                        try (FileOutputStream fos = new FileOutputStream(manifestFile, true))
+                        {
+                            fos.write((tile[0] + "\t" + tile[1] + "\t" + numPairs + "\n").getBytes(StandardCharsets.UTF_8));
+                            fos.getFD().sync();
+                        }
+                    }
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
         }
 
-        List<String> ogs = new ArrayList<>(interconnectedNodes);
+        return tileFiles;
+    }
 
-        
-        //Enumerate interconnected nodes and define their properties
-        Set<String> ogsAnnotatedWith_MPP_SpecificFunction = new HashSet<>();
-        Set<String> ogsAnnotatedWith_PP_SpecificFunction = new HashSet<>();
-        Set<String> ogsAnnotatedWith_BOTH_Functions = new HashSet<>();
-        
-        for (int i = 0; i < ogs.size(); i++)
+    /**
+     * Writes the header of the file with Pearson correlation coefficients followed by the pairs from the input files.
+     *
+     * @param inFiles       Files with gene family pairs.
+     * @param skipHeaders   Whether the first line of each input file is a header that should be skipped.
+     * @param outFile       Output file in the format outputted by "computeSimilaritiesBetweenOGs".
+     */
+    private static void concatenateSimilarityFiles(List<File> inFiles, boolean skipHeaders, File outFile) throws IOException
+    {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
+
+        bw.write("Gene family pair\tMPP\tPP\n");
+
+        for (File f : inFiles)
         {
-            bw.write("\t\t\t<node id=\"" + i + "\" label=\"" + ogs.get(i) + "\">\n");
+            BufferedReader br = findReaderType(f);
 
-            String method = ogMethod.get(ogs.get(i));
+            String line;
 
-            if (method.equals("MPP")) //red
-            {
-                bw.write("\t\t\t\t<viz:color r=\"255\" g=\"0\" b=\"0\" a=\"0.6\"/>\n");
-                ogsAnnotatedWith_MPP_SpecificFunction.add(ogs.get(i));
-            }
-            else if (method.equals("PP")) //blue
-            {
-                bw.write("\t\t\t\t<viz:color r=\"0\" g=\"0\" b=\"255\" a=\"0.6\"/>\n");
-                ogsAnnotatedWith_PP_SpecificFunction.add(ogs.get(i));
-            }
-            else if (method.equals("both")) //green
-            {
-                bw.write("\t\t\t\t<viz:color r=\"0\" g=\"255\" b=\"0\" a=\"0.6\"/>\n");
-                ogsAnnotatedWith_BOTH_Functions.add(ogs.get(i));
-            }
+            boolean header = skipHeaders;
 
-            bw.write("\t\t\t</node>\n");
-        }
-        bw.write("\t\t</nodes>\n");
+            while((line=br.readLine()) != null)
+                if (header)
+                    header = false;
+                else
+                    bw.write(line + "\n");
 
-        
-        //Enumerate edges and define their properties
-        bw.write("\t\t<edges>\n");
+            br.close();
+        }
 
-        Set<String> MPP_specificFunctionOGsConnectedIn_MPP_Network = new TreeSet<>();
-        Set<String> MPP_specificFunctionOGsConnectedIn_PP_Network = new TreeSet<>();
-        Set<String> PP_specificFunctionOGsConnectedIn_MPP_Network = new TreeSet<>();
-        Set<String> PP_specificFunctionOGsConnectedIn_PP_Network = new TreeSet<>();
+        bw.close();
+    }
 
-        int cnt = 0;
+    /**
+     * Draws histograms with distributions of Pearson corelation coefficients for MPP and PP.
+     * Histograms can help to determine the threshold that will be used to filter out less relevant edges in a graph.
+     * Histograms are drawn by ChartRenderer. Coefficients are streamed from the file into quantile sketches sized to the
+     * number of gene family pairs, so bin counts are exact for up to MAX_EXACT_HISTOGRAM_VALUES pairs. For more pairs,
+     * memory stays bounded and counts are approximate, within the error bound written to PCC_statistics.txt, and they
+     * are marked with "~" in the histograms. PCC_statistics.txt also lists quartiles, whiskers and the number of
+     * outliers of each distribution (see "BoxPlotStatistics").
+     * 
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param outFolder     Histograms in SVG and PNG format (only PNG with R) for MPP and PP will be outputted to this folder.
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawPearsonCorrelationCoefficientDistributionGraph(File inFileWithPCC, File outFolder) throws IOException, InterruptedException
+    {
+        drawPearsonCorrelationCoefficientDistributionGraph(inFileWithPCC, outFolder, false);
+    }
+    
+    /**
+     * Performs "drawPearsonCorrelationCoefficientDistributionGraph" and draws the histograms by R instead of
+     * ChartRenderer if useR is true.
+     * 
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param outFolder     Histograms in SVG and PNG format (only PNG with R) for MPP and PP will be outputted to this folder.
+     * @param useR          True to draw with R scripts instead of ChartRenderer (Rscript has to be in the path).
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawPearsonCorrelationCoefficientDistributionGraph(File inFileWithPCC, File outFolder, boolean useR) throws IOException, InterruptedException
+    {
+        if (!outFolder.exists())
+            outFolder.mkdirs();
+        
+        //Count gene family pairs, so that sketches hold all coefficients unless there are too many of them
+        BufferedReader br = findReaderType(inFileWithPCC);
+        
+        long numPairs = -1;
+        while (br.readLine() != null)
+            numPairs++;
+        
+        br.close();
+        
+        int k = (int)Math.max(QuantileSketch.DEFAULT_K, Math.min(numPairs + 1, MAX_EXACT_HISTOGRAM_VALUES));
+        
+        //Stream Pearson correlation coefficients from file into a quantile sketch for each method; with R, they are also
+        //written to data files of R scripts
+        br = findReaderType(inFileWithPCC);
         
-        //MPP layer
-        for (String ogPair : ogPairPCC_MPP.keySet())
+        String[] methods = br.readLine().split("\t");
+        methods = Arrays.copyOfRange(methods, 1, methods.length);
+        
+        QuantileSketch[] sketches = new QuantileSketch[methods.length];
+        BufferedWriter[] dataWriters = new BufferedWriter[methods.length];
+        
+        for (int m = 0; m < methods.length; m++)
         {
-            String firstOG = ogPair.substring(0, ogPair.indexOf("-"));
-            String secondOG = ogPair.substring(ogPair.indexOf("-") + 1);
+            sketches[m] = new QuantileSketch(k);
             
-            bw.write("\t\t\t<edge id=\"" + cnt + "\" source=\"" +
-                     ogs.indexOf(firstOG) + "\" target=\"" +
-                     ogs.indexOf(secondOG) + "\" weight=\"" +
-                     ogPairPCC_MPP.get(ogPair) + "\">\n");
-            bw.write("\t\t\t\t<viz:color r=\"255\" g=\"0\" b=\"0\" a=\"1\"/>\n");
-            bw.write("\t\t\t</edge>\n");
+            if (useR)
+                dataWriters[m] = new BufferedWriter(new FileWriter(outFolder + "/" + methods[m] + "-histogram.csv"));
+        }
+        
+        String line;
+        
+        while((line=br.readLine()) != null)
+        {
+            String[] parts = line.split("\t");
             
-            cnt++;
-
-            if (ogsAnnotatedWith_MPP_SpecificFunction.contains(firstOG) || ogsAnnotatedWith_BOTH_Functions.contains(firstOG))
-                MPP_specificFunctionOGsConnectedIn_MPP_Network.add(firstOG);
+            for (int i = 1; i < parts.length; i++)
+            {
+                double pcc = Double.parseDouble(parts[i]);
+                
+                sketches[i - 1].update(pcc);
+                
+                if (useR)
+                    dataWriters[i - 1].write(String.valueOf(pcc) + "\n");
+            }
+        }
+        
+        br.close();
+        
+        
+        //Summary statistics of distributions
+        BoxPlotStatistics[] stats = new BoxPlotStatistics[methods.length];
+        for (int m = 0; m < methods.length; m++)
+            stats[m] = BoxPlotStatistics.of(sketches[m]);
+        
+        BoxPlotStatistics.write(methods, stats, new File(outFolder + "/PCC_statistics.txt"));
+        
+        
+        //Draw histograms with distributions of Pearson correlation coefficients for MPP and PP; R scripts run
+        //concurrently if pooled R sessions are started (see "RUtils.startRSessions")
+        for (int m = 0; m < methods.length; m++)
+            if (useR)
+            {
+                String histogramDataFilePath = outFolder + "/" + methods[m] + "-histogram.csv";
             
-            if (ogsAnnotatedWith_MPP_SpecificFunction.contains(secondOG) || ogsAnnotatedWith_BOTH_Functions.contains(secondOG))
-                MPP_specificFunctionOGsConnectedIn_MPP_Network.add(secondOG);
-
-            if (ogsAnnotatedWith_PP_SpecificFunction.contains(firstOG) || ogsAnnotatedWith_BOTH_Functions.contains(firstOG))
-                PP_specificFunctionOGsConnectedIn_MPP_Network.add(firstOG);
+                dataWriters[m].close();
             
-            if (ogsAnnotatedWith_PP_SpecificFunction.contains(secondOG) || ogsAnnotatedWith_BOTH_Functions.contains(secondOG))
-                PP_specificFunctionOGsConnectedIn_MPP_Network.add(secondOG);
-        }
+                String histogramRScriptFilePath = outFolder + "/" + methods[m] + "-histogram.r";
 
-        //PP layer
-        for (String ogPair : ogPairPCC_PP.keySet())
-        {
-            String firstOG = ogPair.substring(0, ogPair.indexOf("-"));
-            String secondOG = ogPair.substring(ogPair.indexOf("-") + 1);
-
-            bw.write("\t\t\t<edge id=\"" + cnt + "\" source=\"" +
-                     ogs.indexOf(firstOG) + "\" target=\"" +
-                     ogs.indexOf(secondOG) + "\" weight=\"" +
-                     ogPairPCC_PP.get(ogPair) + "\">\n");
-            bw.write("\t\t\t\t<viz:color r=\"0\" g=\"0\" b=\"255\" a=\"1\"/>\n");
-            bw.write("\t\t\t</edge>\n");
-            
-            cnt++;
+                BufferedWriter bw = new BufferedWriter(new FileWriter(histogramRScriptFilePath));
 
-            if (ogsAnnotatedWith_MPP_SpecificFunction.contains(firstOG) || ogsAnnotatedWith_BOTH_Functions.contains(firstOG))
-                MPP_specificFunctionOGsConnectedIn_PP_Network.add(firstOG);
-            
-            if (ogsAnnotatedWith_MPP_SpecificFunction.contains(secondOG) || ogsAnnotatedWith_BOTH_Functions.contains(secondOG))
-                MPP_specificFunctionOGsConnectedIn_PP_Network.add(secondOG);
+                bw.write("png('" + histogramDataFilePath.substring(0, histogramRScriptFilePath.lastIndexOf(".")).replace("\\", "/") + ".png')\n");
+                bw.write("data <- read.csv('" + histogramDataFilePath.replace("\\", "/") + "', header=F)\n");
+                bw.write("histogram <- hist(data$V1, plot=F)\n");
+                bw.write("plot(histogram, ylim=c(0, max(histogram$counts) + 5), main='', xlab='Pearson correlation coefficient')\n");
+                bw.write("text(histogram$mids, histogram$counts + 60, histogram$counts, cex=0.75)\n");
+                bw.write("dev.off()\n");
+
+                bw.close();
 
-            if (ogsAnnotatedWith_PP_SpecificFunction.contains(firstOG) || ogsAnnotatedWith_BOTH_Functions.contains(firstOG))
-                PP_specificFunctionOGsConnectedIn_PP_Network.add(firstOG);
+                submitRScript(histogramRScriptFilePath, histogramDataFilePath, histogramRScriptFilePath);
+            }
+            else
+                drawHistogram(sketches[m], "Pearson correlation coefficient",
+                              new File(outFolder + "/" + methods[m] + "-histogram.svg"), new File(outFolder + "/" + methods[m] + "-histogram.png"));
+    }
+    
+    /**
+     * Generates gexf file with the description of coevolution network, which can be visualized in Gephi (http://gephi.org).
+     * Edges are streamed from the file with Pearson correlation coefficients directly to the output file, so only the
+     * nodes are kept in memory.
+     * 
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param pccThreshold  The network will include only edges with the absolute value of Pearson correlation coefficient > pccThreshold
+     *                      and interconnected nodes.
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param outGephiFile  Gexf file with the description of network. Use extension ".graphml" to output the network in
+     *                      GraphML format or ".bin" to output it as a binary edge list (see "utils.BinaryEdgeListWriter").
+     * 
+     * @throws IOException 
+     */
+    public static void composeGephiFileWithNetwork(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                   double pccThreshold, File inFileWithPCC, File outGephiFile) throws IOException
+    {
+        composeGephiFileWithNetwork(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures, pccThreshold, inFileWithPCC,
+                                    outGephiFile, 0, 0, false);
+    }
+    
+    /**
+     * Generates gexf file with the description of coevolution network, in which nodes are positioned with a
+     * force-directed layout (Fruchterman-Reingold with Barnes-Hut approximation, see "utils.ForceDirectedLayout").
+     * The layout is reproducible for the same seed, so the network can be opened in Gephi without running a layout.
+     * Optionally, communities are detected in MPP and PP profiles-based networks and their ids are written as node
+     * attributes "MPP community" and "PP community" (-1 if the node is not connected in the network). Counts of
+     * annotated gene families per community are saved in "Communities.txt" in the folder of outGephiFile (see
+     * "NetworkAnalytics.detectCommunities").
+     * 
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param pccThreshold  The network will include only edges with the absolute value of Pearson correlation coefficient > pccThreshold
+     *                      and interconnected nodes.
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param outGephiFile  Gexf file with the description of network. Use extension ".graphml" to output the network in
+     *                      GraphML format or ".bin" to output it as a binary edge list (see "utils.BinaryEdgeListWriter").
+     * @param layoutIterations  Number of iterations of the layout algorithm; 0 for no layout.
+     * @param layoutSeed        Seed for the random initial positions of nodes.
+     * @param detectCommunities Whether to detect communities.
+     * 
+     * @throws IOException 
+     */
+    public static void composeGephiFileWithNetwork(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                   double pccThreshold, File inFileWithPCC, File outGephiFile,
+                                                   int layoutIterations, long layoutSeed, boolean detectCommunities) throws IOException
+    {
+        //---------------------
+        //LOAD NODES AND EDGES
+        //---------------------
+        //Load gene families and determine whether they are associated with MPP- or PP-specific GO function
+        CoEvolutionGraph annotations = CoEvolutionGraph.loadAnnotations(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures);
+        
+        String mppSpecificFunction = annotations.mppSpecificFunction();
+        String ppSpecificFunction = annotations.ppSpecificFunction();
+        
+        Map<String, String> ogMethod = annotations.ogMethod;
+        
+        
+        //-----------------------------------------------------------------
+        //COLLECT INTERCONNECTED NODES (WITH AT LEAST ONE EDGE > THRESHOLD)
+        //-----------------------------------------------------------------
+        Set<String> interconnectedNodes = new TreeSet<>();
+        
+        BufferedReader br = findReaderType(inFileWithPCC);
+        
+        String line;
+        
+        boolean header = true;
+        
+        while((line=br.readLine()) != null)
+            if (header)
+                header = false;
+            else
+            {
+                double[] pccs = parsePCCs(line);
+                
+                if (pccs[0] > pccThreshold || pccs[1] > pccThreshold)
+                {
+                    interconnectedNodes.add(line.substring(0, line.indexOf("-")));
+                    interconnectedNodes.add(line.substring(line.indexOf("-") + 1, line.indexOf("\t")));
+                }
+            }
+        
+        br.close();
+        
+        
+        //-------------------------
+        //LAYOUT AND COMMUNITIES
+        //-------------------------
+        //Node ids in the graph are positions in the sorted list of interconnected nodes, as in the Gephi file
+        double[] positions = null;
+        int[][] communities = null;
+        
+        if (layoutIterations > 0 || detectCommunities)
+        {
+            CoEvolutionGraph graph = CoEvolutionGraph.load(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures,
+                                                           pccThreshold, inFileWithPCC);
+            
+            if (layoutIterations > 0)
+                positions = ForceDirectedLayout.layout(graph.network(CoEvolutionGraph.NETWORK_ALL), layoutIterations, layoutSeed);
             
-            if (ogsAnnotatedWith_PP_SpecificFunction.contains(secondOG) || ogsAnnotatedWith_BOTH_Functions.contains(secondOG))
-                PP_specificFunctionOGsConnectedIn_PP_Network.add(secondOG);
+            if (detectCommunities)
+                communities = NetworkAnalytics.detectCommunities(graph, new File(outGephiFile.getAbsoluteFile().getParent() + "/Communities.txt"));
         }
-
-        //Connections in both layers
-        for (String ogPair : ogPairPCC_MPP_PP.keySet())
+        
+        
+        //--------------------
+        //GENERATE GEPHI FILE
+        //--------------------
+        NetworkWriter writer = (communities == null ? NetworkWriter.create(outGephiFile)
+                                                    : NetworkWriter.create(outGephiFile, "MPP community", "PP community"));
+        
+        //Enumerate interconnected nodes and define their properties; node ids are positions in the sorted list of nodes
+        List<String> ogs = new ArrayList<>(interconnectedNodes);
+        
+        Map<String, Integer> ogIndex = new HashMap<>();
+        
+        boolean[] annotatedWith_MPP_SpecificFunction = new boolean[ogs.size()]; //including gene families annotated with both functions
+        boolean[] annotatedWith_PP_SpecificFunction = new boolean[ogs.size()];
+        
+        int numAnnotatedWith_MPP_SpecificFunction = 0;
+        int numAnnotatedWith_PP_SpecificFunction = 0;
+        int numAnnotatedWith_BOTH_Functions = 0;
+        
+        for (int i = 0; i < ogs.size(); i++)
         {
-            String firstOG = ogPair.substring(0, ogPair.indexOf("-"));
-            String secondOG = ogPair.substring(ogPair.indexOf("-") + 1);
-
-            bw.write("\t\t\t<edge id=\"" + cnt + "\" source=\"" +
-                     ogs.indexOf(firstOG) + "\" target=\"" +
-                     ogs.indexOf(secondOG) + "\" weight=\"" +
-                     ogPairPCC_MPP_PP.get(ogPair) + "\">\n");
-            bw.write("\t\t\t\t<viz:color r=\"0\" g=\"255\" b=\"0\" a=\"1\"/>\n");
-            bw.write("\t\t\t</edge>\n");
+            ogIndex.put(ogs.get(i), i);
+            
+            String method = ogMethod.get(ogs.get(i));
             
-            cnt++;
+            Color color = null;
             
-            if (ogsAnnotatedWith_MPP_SpecificFunction.contains(firstOG) || ogsAnnotatedWith_BOTH_Functions.contains(firstOG))
+            if ("MPP".equals(method)) //red
             {
-                MPP_specificFunctionOGsConnectedIn_MPP_Network.add(firstOG);
-                MPP_specificFunctionOGsConnectedIn_PP_Network.add(firstOG);
+                color = new Color(255, 0, 0, 153);
+                annotatedWith_MPP_SpecificFunction[i] = true;
+                numAnnotatedWith_MPP_SpecificFunction++;
             }
-            
-            if (ogsAnnotatedWith_MPP_SpecificFunction.contains(secondOG) || ogsAnnotatedWith_BOTH_Functions.contains(secondOG))
+            else if ("PP".equals(method)) //blue
             {
-                MPP_specificFunctionOGsConnectedIn_MPP_Network.add(secondOG);
-                MPP_specificFunctionOGsConnectedIn_PP_Network.add(secondOG);
+                color = new Color(0, 0, 255, 153);
+                annotatedWith_PP_SpecificFunction[i] = true;
+                numAnnotatedWith_PP_SpecificFunction++;
             }
-
-            if (ogsAnnotatedWith_PP_SpecificFunction.contains(firstOG) || ogsAnnotatedWith_BOTH_Functions.contains(firstOG))
+            else if ("both".equals(method)) //green
             {
-                PP_specificFunctionOGsConnectedIn_MPP_Network.add(firstOG);
-                PP_specificFunctionOGsConnectedIn_PP_Network.add(firstOG);
+                color = new Color(0, 255, 0, 153);
+                annotatedWith_MPP_SpecificFunction[i] = true;
+                annotatedWith_PP_SpecificFunction[i] = true;
+                numAnnotatedWith_BOTH_Functions++;
             }
             
-            if (ogsAnnotatedWith_PP_SpecificFunction.contains(secondOG) || ogsAnnotatedWith_BOTH_Functions.contains(secondOG))
+            writer.writeNode(i, ogs.get(i), color, (positions == null ? null : new Point2D.Double(positions[2 * i], positions[2 * i + 1])),
+                             (communities == null ? null : new int[] {communities[0][i], communities[1][i]}));
+        }
+        
+        
+        //Stream edges and define their properties: red - MPP layer, blue - PP layer, green - connections in both layers
+        boolean[] MPP_specificFunctionOGConnectedIn_MPP_Network = new boolean[ogs.size()];
+        boolean[] MPP_specificFunctionOGConnectedIn_PP_Network = new boolean[ogs.size()];
+        boolean[] PP_specificFunctionOGConnectedIn_MPP_Network = new boolean[ogs.size()];
+        boolean[] PP_specificFunctionOGConnectedIn_PP_Network = new boolean[ogs.size()];
+        
+        br = findReaderType(inFileWithPCC);
+        
+        header = true;
+        
+        while((line=br.readLine()) != null)
+            if (header)
+                header = false;
+            else
             {
-                PP_specificFunctionOGsConnectedIn_MPP_Network.add(secondOG);
-                PP_specificFunctionOGsConnectedIn_PP_Network.add(secondOG);
+                double[] pccs = parsePCCs(line);
+                
+                boolean inMPP = pccs[0] > pccThreshold;
+                boolean inPP = pccs[1] > pccThreshold;
+                
+                if (!inMPP && !inPP)
+                    continue;
+                
+                int firstOG = ogIndex.get(line.substring(0, line.indexOf("-")));
+                int secondOG = ogIndex.get(line.substring(line.indexOf("-") + 1, line.indexOf("\t")));
+                
+                if (inMPP && inPP)
+                    writer.writeEdge(firstOG, secondOG, round((pccs[0] + pccs[1]) / (double)2, 4), new Color(0, 255, 0));
+                else if (inMPP)
+                    writer.writeEdge(firstOG, secondOG, pccs[0], new Color(255, 0, 0));
+                else
+                    writer.writeEdge(firstOG, secondOG, pccs[1], new Color(0, 0, 255));
+                
+                for (int og = firstOG; ; og = secondOG)
+                {
+                    if (inMPP)
+                    {
+                        MPP_specificFunctionOGConnectedIn_MPP_Network[og] |= annotatedWith_MPP_SpecificFunction[og];
+                        PP_specificFunctionOGConnectedIn_MPP_Network[og] |= annotatedWith_PP_SpecificFunction[og];
+                    }
+                    
+                    if (inPP)
+                    {
+                        MPP_specificFunctionOGConnectedIn_PP_Network[og] |= annotatedWith_MPP_SpecificFunction[og];
+                        PP_specificFunctionOGConnectedIn_PP_Network[og] |= annotatedWith_PP_SpecificFunction[og];
+                    }
+                    
+                    if (og == secondOG)
+                        break;
+                }
             }
-        }
-
-        bw.write("\t\t</edges>\n");
-
-        bw.write("\t</graph>\n");
-
-        bw.write("</gexf>\n");
-
-        bw.close();
+        
+        br.close();
+        
+        writer.close();
 
         //Statistics
         System.out.println("-------------------");
@@ -727,25 +1247,35 @@ public class CoEvolutionNetwork
         System.out.println("-------------------");
         System.out.println(interconnectedNodes.size() + " gene families have similar profiles in MPP and/or PP, and are included in the network, of which:");
         
-        System.out.println("\t" + (ogsAnnotatedWith_MPP_SpecificFunction.size() + ogsAnnotatedWith_BOTH_Functions.size()) + " are annotated in Uniprot-GOA with a GO function, which MPP predicted better than PP (MPP-specific)");
-        System.out.println("\t" + (ogsAnnotatedWith_PP_SpecificFunction.size() + ogsAnnotatedWith_BOTH_Functions.size()) + " are annotated in Uniprot-GOA with a GO function, which PP predicted better than MPP (PP-specific)");
-        System.out.println("\t" + ogsAnnotatedWith_BOTH_Functions.size() + " of the " + interconnectedNodes.size() + " gene families are annotated in Uniprot-GOA with both functions");
+        System.out.println("\t" + (numAnnotatedWith_MPP_SpecificFunction + numAnnotatedWith_BOTH_Functions) + " are annotated in Uniprot-GOA with a GO function, which MPP predicted better than PP (MPP-specific)");
+        System.out.println("\t" + (numAnnotatedWith_PP_SpecificFunction + numAnnotatedWith_BOTH_Functions) + " are annotated in Uniprot-GOA with a GO function, which PP predicted better than MPP (PP-specific)");
+        System.out.println("\t" + numAnnotatedWith_BOTH_Functions + " of the " + interconnectedNodes.size() + " gene families are annotated in Uniprot-GOA with both functions");
         
-        System.out.println("\n" + MPP_specificFunctionOGsConnectedIn_MPP_Network.size() + " gene families annotated with an MPP-specific GO function are connected in the MPP profiles-based similarity network");
-        System.out.println(PP_specificFunctionOGsConnectedIn_MPP_Network.size() + " gene families annotated with a PP-specific GO function are connected in the MPP profiles-based similarity network");
-        System.out.println(MPP_specificFunctionOGsConnectedIn_PP_Network.size() + " gene families annotated with an MPP-specific GO function are connected in the PP profiles-based similarity network");
-        System.out.println(PP_specificFunctionOGsConnectedIn_PP_Network.size() + " gene falimies annotated with a PP-specific GO function are connected in the PP profiles-based similarity network");
+        System.out.println("\n" + countTrue(MPP_specificFunctionOGConnectedIn_MPP_Network) + " gene families annotated with an MPP-specific GO function are connected in the MPP profiles-based similarity network");
+        System.out.println(countTrue(PP_specificFunctionOGConnectedIn_MPP_Network) + " gene families annotated with a PP-specific GO function are connected in the MPP profiles-based similarity network");
+        System.out.println(countTrue(MPP_specificFunctionOGConnectedIn_PP_Network) + " gene families annotated with an MPP-specific GO function are connected in the PP profiles-based similarity network");
+        System.out.println(countTrue(PP_specificFunctionOGConnectedIn_PP_Network) + " gene falimies annotated with a PP-specific GO function are connected in the PP profiles-based similarity network");
         
         //Instructions on how to draw the network
         System.out.println("\n---------------------------------------------");
         System.out.println("INSTRUCTIONS ON HOW TO VISUALIZE THE NETWORK");
         System.out.println("---------------------------------------------");
         System.out.println("This script outputs a gexf file that can be visualized in Gephi (http://gephi.org).");
-        System.out.println("After instaling Gephi, select File > Open and choose the gexf file. On the \"Import report\"");
-        System.out.println("window select \"Ok\" and you will see the raw network. The next step is to select a layout.");
-        System.out.println("We recommend Fruchterman Reingold, which can be selected in the panel \"Layout\" on the left side.");
-        System.out.println("Press the \"Run\" button to apply the layout. Please note that layout algorithms are stohastic");
-        System.out.println("and each time will rearrange the network in a sligtly different manner.");
+        
+        if (positions != null)
+        {
+            System.out.println("After instaling Gephi, select File > Open and choose the gexf file. On the \"Import report\"");
+            System.out.println("window select \"Ok\" and you will see the network laid out with Fruchterman Reingold layout");
+            System.out.println("(" + layoutIterations + " iterations, seed " + layoutSeed + "). The same seed always gives the same layout.");
+        }
+        else
+        {
+            System.out.println("After instaling Gephi, select File > Open and choose the gexf file. On the \"Import report\"");
+            System.out.println("window select \"Ok\" and you will see the raw network. The next step is to select a layout.");
+            System.out.println("We recommend Fruchterman Reingold, which can be selected in the panel \"Layout\" on the left side.");
+            System.out.println("Press the \"Run\" button to apply the layout. Please note that layout algorithms are stohastic");
+            System.out.println("and each time will rearrange the network in a sligtly different manner.");
+        }
         
         //Network legend
         System.out.println("\n-------");
@@ -763,4 +1293,28 @@ public class CoEvolutionNetwork
         System.out.println("\nWidth of the edges represents the level of similarity, where thicker edges represent higher similarity.");
         System.out.println("The edges represent the absolute values of correlation coefficients > " + pccThreshold);
     }
+    
+    /**
+     * Parses MPP and PP Pearson correlation coefficients from a line of the file outputted by "computeSimilaritiesBetweenOGs".
+     * Shared with "CoEvolutionGraph" and "NetworkAnalytics", which read the same file.
+     */
+    static double[] parsePCCs(String line)
+    {
+        int firstTab = line.indexOf("\t");
+        int secondTab = line.indexOf("\t", firstTab + 1);
+        int thirdTab = line.indexOf("\t", secondTab + 1);
+        
+        return new double[] {Double.parseDouble(line.substring(firstTab + 1, secondTab)),
+                             Double.parseDouble(line.substring(secondTab + 1, thirdTab == -1 ? line.length() : thirdTab))};
+    }
+    
+    private static int countTrue(boolean[] values)
+    {
+        int cnt = 0;
+        for (boolean value : values)
+            if (value)
+                cnt++;
+        
+        return cnt;
+    }
 }
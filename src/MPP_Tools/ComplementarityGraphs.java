@@ -2,6 +2,7 @@ package MPP_Tools;
 
 import com.google.common.collect.ArrayTable;
 import com.google.common.collect.Table;
+import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -17,9 +18,13 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import static org.apache.commons.math3.util.Precision.round;
+import static utils.ChartRenderer.drawBarChart;
+import static utils.ChartRenderer.drawHorizontalStackedBar;
+import static utils.ChartRenderer.drawVennDiagram;
+import static utils.ChartRenderer.parseColor;
 import static utils.FileUtils.findReaderType;
 import static utils.GoFunctionsUtils.extractOnlyProkaryoticGOs;
-import static utils.RUtils.executeRScript;
+import static utils.RUtils.submitRScript;
 import static utils.ResourceLoaders.extractOg2FuncsFromPrTable;
 import static utils.ResourceLoaders.loadOg2FunctionsFromFile;
 import static utils.ResourceLoaders.loadPrScoresTable;
@@ -34,7 +39,7 @@ public class ComplementarityGraphs
     /**
      * Draws graph that shows the level of complementarity between two classification models in terms of functions
      * they are able to predict at a specific level of precision (Pr).
-     * This code assumes that you have R on your computer.
+     * The graph is drawn by ChartRenderer.
      * 
      * @param inFirstMethodPrecisionFile    The table with Pr scores outputted by the first classification model.
      * @param inSecondMethodPrecisionFile   The table with Pr scored outputted by the second classification model.
@@ -55,6 +60,36 @@ public class ComplementarityGraphs
                                                                           String colors, double prThreshold,
                                                                           File inOg2FunctionsFile, File inGeneOntologyFile,
                                                                           File outFolder) throws IOException, InterruptedException
+    {
+        drawFunctionBasedComplementarityGraphForTwoMethods(inFirstMethodPrecisionFile, inSecondMethodPrecisionFile,
+                                                           firstMethodName, secondMethodName, colors, prThreshold,
+                                                           inOg2FunctionsFile, inGeneOntologyFile, outFolder, false);
+    }
+    
+    /**
+     * Performs "drawFunctionBasedComplementarityGraphForTwoMethods" and draws the graph by R instead of
+     * ChartRenderer if useR is true.
+     * 
+     * @param inFirstMethodPrecisionFile    The table with Pr scores outputted by the first classification model.
+     * @param inSecondMethodPrecisionFile   The table with Pr scored outputted by the second classification model.
+     * @param firstMethodName               The name of the first method, i.e., classification model.
+     * @param secondMethodName              The name of the second method.
+     * @param colors                        Color scheme, composed of three colors. Accepts color definitions from the R color pallete.
+     * @param prThreshold                   Predictions with Pr >= prThreshold will be considered as positive.
+     * @param inOg2FunctionsFile            File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param inGeneOntologyFile            Gene ontology in obo-xml.gz format.
+     * @param outFolder                     Folder that will contain graph and statistics files.
+     * @param useR                          True to draw with R scripts instead of ChartRenderer (Rscript has to be in the path).
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawFunctionBasedComplementarityGraphForTwoMethods(File inFirstMethodPrecisionFile,
+                                                                          File inSecondMethodPrecisionFile,
+                                                                          String firstMethodName, String secondMethodName,
+                                                                          String colors, double prThreshold,
+                                                                          File inOg2FunctionsFile, File inGeneOntologyFile,
+                                                                          File outFolder, boolean useR) throws IOException, InterruptedException
     {
         if (!outFolder.exists())
             outFolder.mkdirs();
@@ -164,12 +199,6 @@ public class ComplementarityGraphs
         
         bw.close();
         
-        //Create data file for drawing histogram
-        String dataFilePath = outFolder.getAbsolutePath() + "/Histogram_data.txt";
-        bw = new BufferedWriter(new FileWriter(new File(dataFilePath)));
-        
-        bw.write("COUNTS\tCATEGORY\n");
-        
         Set<Integer> firstMethodSpecificFunctions = new TreeSet<>();
         Set<Integer> secondMethodSpecificFunctions = new TreeSet<>();
         Set<Integer> bothMethodsFunctions = new TreeSet<>();
@@ -181,24 +210,13 @@ public class ComplementarityGraphs
             boolean both = funcCombCount.get(func, firstMethodName + "+" + secondMethodName) > 0;
             
             if (first && !second && !both)
-            {
-                bw.write("1\t1\n"); //First
                 firstMethodSpecificFunctions.add(func);
-            }
             else if (!first && second && !both)
-            {
-                bw.write("3\t1\n"); //Second
                 secondMethodSpecificFunctions.add(func);
-            }
             else
-            {
-                bw.write("2\t1\n"); //Both
                 bothMethodsFunctions.add(func);
-            }
         }
         
-        bw.close();
-        
         bw = new BufferedWriter(new FileWriter(new File(outFolder + "/Graph_statistics+Legend.txt")));
         
         int total = firstMethodSpecificFunctions.size() + secondMethodSpecificFunctions.size() + bothMethodsFunctions.size();
@@ -232,35 +250,59 @@ public class ComplementarityGraphs
             bw.write(func + "\n");
         bw.close();
         
-        //Generate and run R script
-        String rScriptFilePath = outFolder.getAbsolutePath() + "/Rscript.r";
-        bw = new BufferedWriter(new FileWriter(rScriptFilePath));
-        
         Double prThresholdPerc = prThreshold * 100;
         
-        bw.write("jpeg('" + (outFolder.getAbsolutePath() + "/Histogram.jpg").replace('\\', '/') + "',width=500,height=180)\n");  
-        bw.write("data = read.table('" + dataFilePath.replaceAll("\\\\", "/") + "', header = T, sep = '\t', na.strings = '?')\n");
-        bw.write("counts <- table(data$COUNTS, data$CATEGORY)\n");
-        bw.write("barplot(counts,horiz=T,col=c(" + colors + "),cex.axis=1.8,cex.names=1.8,cex.lab=1.4,names.arg = c(\"Pr \\u2265 " +
-                 prThresholdPerc.intValue() + "%\")," + "xlab=\"GO functions predicted by: " + firstMethodName + ", both, " +
-                 secondMethodName + "\")\n");
-        
-        bw.write("dev.off()\n");
-                
-        bw.close();
-        
-        executeRScript(rScriptFilePath);
-        
-
-        new File(dataFilePath).delete();
-        new File(rScriptFilePath).delete();
+        if (useR)
+        {
+            //Create data file for drawing histogram
+            String dataFilePath = outFolder.getAbsolutePath() + "/Histogram_data.txt";
+            bw = new BufferedWriter(new FileWriter(new File(dataFilePath)));
+            
+            bw.write("COUNTS\tCATEGORY\n");
+            
+            for (int i = 0; i < firstMethodSpecificFunctions.size(); i++)
+                bw.write("1\t1\n"); //First
+            for (int i = 0; i < bothMethodsFunctions.size(); i++)
+                bw.write("2\t1\n"); //Both
+            for (int i = 0; i < secondMethodSpecificFunctions.size(); i++)
+                bw.write("3\t1\n"); //Second
+            
+            bw.close();
+            
+            //Generate and run R script
+            String rScriptFilePath = outFolder.getAbsolutePath() + "/Rscript.r";
+            bw = new BufferedWriter(new FileWriter(rScriptFilePath));
+            
+            bw.write("jpeg('" + (outFolder.getAbsolutePath() + "/Histogram.jpg").replace('\\', '/') + "',width=500,height=180)\n");  
+            bw.write("data = read.table('" + dataFilePath.replaceAll("\\\\", "/") + "', header = T, sep = '\t', na.strings = '?')\n");
+            bw.write("counts <- table(data$COUNTS, data$CATEGORY)\n");
+            bw.write("barplot(counts,horiz=T,col=c(" + colors + "),cex.axis=1.8,cex.names=1.8,cex.lab=1.4,names.arg = c(\"Pr \\u2265 " +
+                     prThresholdPerc.intValue() + "%\")," + "xlab=\"GO functions predicted by: " + firstMethodName + ", both, " +
+                     secondMethodName + "\")\n");
+            
+            bw.write("dev.off()\n");
+            
+            bw.close();
+            
+            //The figure is drawn concurrently if pooled R sessions are started (see "RUtils.startRSessions")
+            submitRScript(rScriptFilePath, dataFilePath, rScriptFilePath);
+        }
+        else
+        {
+            double[] counts = {firstMethodSpecificFunctions.size(), bothMethodsFunctions.size(), secondMethodSpecificFunctions.size()};
+            Color[] barColors = {parseColor(color[0]), parseColor(color[1]), parseColor(color[2])};
+            
+            drawHorizontalStackedBar(counts, barColors, "Pr \u2265 " + prThresholdPerc.intValue() + "%",
+                                     "GO functions predicted by: " + firstMethodName + ", both, " + secondMethodName,
+                                     new File(outFolder + "/Histogram.svg"), new File(outFolder + "/Histogram.png"));
+        }
     }
     
     
     /**
      * Draws graph that shows the level of complementarity between two classification models in terms of
      * gene families to which they are able to assign GO functions at a specific level of precision (Pr).
-     * This code assumes that you have R on your computer and R package ‘venneuler’.
+     * The graph is drawn by ChartRenderer.
      * 
      * @param inFirstMethodPrecisionFile            The table with Pr scores outputted by the first classification model. 
      * @param inSecondMethodPrecisionFile           The table with Pr scored outputted by the second classification model.
@@ -287,6 +329,41 @@ public class ComplementarityGraphs
                                                                             String colorCodes, String colorNames,
                                                                             double prThreshold, File inOg2FunctionsFile,
                                                                             File inGeneOntologyFile, File outFolder) throws IOException, InterruptedException
+    {
+        drawGeneFamilyBasedComplementarityGraphForTwoMethods(inFirstMethodPrecisionFile, inSecondMethodPrecisionFile,
+                                                             inFileWithListOfConsideredFunctions,
+                                                             firstMethodName, secondMethodName, colorCodes, colorNames,
+                                                             prThreshold, inOg2FunctionsFile, inGeneOntologyFile,
+                                                             outFolder, false);
+    }
+    
+    /**
+     * Performs "drawGeneFamilyBasedComplementarityGraphForTwoMethods" and draws the graph by R and R package ‘venneuler’ instead of
+     * ChartRenderer if useR is true.
+     * 
+     * @param inFirstMethodPrecisionFile            The table with Pr scores outputted by the first classification model. 
+     * @param inSecondMethodPrecisionFile           The table with Pr scored outputted by the second classification model.
+     * @param inFileWithListOfConsideredFunctions   Supply file with a list of functions if you want to observe complementarity
+     * @param firstMethodName                       The name of the first method, i.e., classification model.
+     * @param secondMethodName                      The name of the second method.
+     * @param colorCodes                            Color scheme, composed of two colors separated by comma. Accepts color
+     * @param colorNames                            Two color names separated by comma that will be used to generate graph's legend.
+     * @param prThreshold                           Predictions with Pr >= prThreshold will be considered as positive.
+     * @param inOg2FunctionsFile                    File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param inGeneOntologyFile                    Gene ontology in obo-xml.gz format.
+     * @param outFolder                             Folder that will contain graph and statistics files.
+     * @param useR                                  True to draw with R scripts instead of ChartRenderer (Rscript has to be in the path).
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawGeneFamilyBasedComplementarityGraphForTwoMethods(File inFirstMethodPrecisionFile,
+                                                                            File inSecondMethodPrecisionFile,
+                                                                            File inFileWithListOfConsideredFunctions,
+                                                                            String firstMethodName, String secondMethodName,
+                                                                            String colorCodes, String colorNames,
+                                                                            double prThreshold, File inOg2FunctionsFile,
+                                                                            File inGeneOntologyFile, File outFolder, boolean useR) throws IOException, InterruptedException
     {
         if (!outFolder.exists())
             outFolder.mkdirs();
@@ -419,31 +496,41 @@ public class ComplementarityGraphs
         
         bw.close();
         
-        //Write R script
-        String rScriptFilePath = outFolder.getAbsolutePath() + "/Rscript.r";
-        fw = new FileWriter(new File(rScriptFilePath));
-        bw = new BufferedWriter(fw);
-        
-        bw.write("library(venneuler)\n");
-        bw.write("pdf('" + outFolder.getAbsolutePath().replace("\\", "/") + "/Venn_diagram.pdf')\n");
-        bw.write("vd <- venneuler(c('" + secondMethodName + "'=" + secondOnlyCount + ",'" + firstMethodName + "&" + secondMethodName +
-                 "'=" + overlapCount + ",'" + firstMethodName + "'=" + firstOnlyCount + "))\n");
-        bw.write("vd$labels <- rep(\"\", length(vd$labels))\n");
-        bw.write("vd$colors <- c(" + colorCodes + ")\n");
-        bw.write("plot(vd)\n");
-        bw.write("dev.off()\n");
-        
-        bw.close();
-        
-        executeRScript(rScriptFilePath);
-        
-        new File(rScriptFilePath).delete();
+        if (useR)
+        {
+            //Write R script
+            String rScriptFilePath = outFolder.getAbsolutePath() + "/Rscript.r";
+            fw = new FileWriter(new File(rScriptFilePath));
+            bw = new BufferedWriter(fw);
+        
+            bw.write("library(venneuler)\n");
+            bw.write("pdf('" + outFolder.getAbsolutePath().replace("\\", "/") + "/Venn_diagram.pdf')\n");
+            bw.write("vd <- venneuler(c('" + secondMethodName + "'=" + secondOnlyCount + ",'" + firstMethodName + "&" + secondMethodName +
+                     "'=" + overlapCount + ",'" + firstMethodName + "'=" + firstOnlyCount + "))\n");
+            bw.write("vd$labels <- rep(\"\", length(vd$labels))\n");
+            bw.write("vd$colors <- c(" + colorCodes + ")\n");
+            bw.write("plot(vd)\n");
+            bw.write("dev.off()\n");
+        
+            bw.close();
+        
+            //The figure is drawn concurrently if pooled R sessions are started (see "RUtils.startRSessions")
+            submitRScript(rScriptFilePath, rScriptFilePath);
+        }
+        else
+        {
+            //Venneuler assigns colors to sets in order of their appearance - the second method first
+            String[] codes = colorCodes.split(",");
+            
+            drawVennDiagram(firstOnlyCount, overlapCount, secondOnlyCount, parseColor(codes[1]), parseColor(codes[0]),
+                            new File(outFolder + "/Venn_diagram.svg"), new File(outFolder + "/Venn_diagram.png"));
+        }
     }
     
     /**
      * Draws graph that shows the level of complementarity between multiple classification models in terms of functions
      * they are able to predict at a specific level of precision (Pr).
-     * This code assumes that you have R on your computer.
+     * The graph is drawn by ChartRenderer.
      * 
      * @param inPrecisionFiles      Tables with Pr scores outputted by the classification models.
      * @param methodsNames          Names of the methods, i.e., classification models.
@@ -458,6 +545,29 @@ public class ComplementarityGraphs
     public static void drawFunctionBasedComplementarityGraphForMultipleModels(File[] inPrecisionFiles, String[] methodsNames,
                                                                               double prThreshold, File inOg2FunctionsFile,
                                                                               File inGeneOntologyFile, File outFolder) throws IOException, InterruptedException
+    {
+        drawFunctionBasedComplementarityGraphForMultipleModels(inPrecisionFiles, methodsNames, prThreshold,
+                                                               inOg2FunctionsFile, inGeneOntologyFile, outFolder, false);
+    }
+    
+    /**
+     * Performs "drawFunctionBasedComplementarityGraphForMultipleModels" and draws the graph by R instead of
+     * ChartRenderer if useR is true.
+     * 
+     * @param inPrecisionFiles      Tables with Pr scores outputted by the classification models.
+     * @param methodsNames          Names of the methods, i.e., classification models.
+     * @param prThreshold           Predictions with Pr >= prThreshold will be considered as positive.
+     * @param inOg2FunctionsFile    File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param inGeneOntologyFile    Gene ontology in obo-xml.gz format.
+     * @param outFolder             Folder that will contain graph and statistics files.
+     * @param useR                  True to draw with R scripts instead of ChartRenderer (Rscript has to be in the path).
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawFunctionBasedComplementarityGraphForMultipleModels(File[] inPrecisionFiles, String[] methodsNames,
+                                                                              double prThreshold, File inOg2FunctionsFile,
+                                                                              File inGeneOntologyFile, File outFolder, boolean useR) throws IOException, InterruptedException
     {
         if (!outFolder.exists())
             outFolder.mkdirs();
@@ -530,11 +640,6 @@ public class ComplementarityGraphs
         //Extract data for drawing histogram
         Map<Integer, Integer> numMethods_FuncCount = new TreeMap<>();
         
-        String dataFilePath = outFolder.getAbsolutePath() + "/Histogram_data.txt";
-        fw = new FileWriter(dataFilePath);
-        bw = new BufferedWriter(fw);
-        bw.write("COUNTS\n");
-        
         for (int func : funcMethodCorrectPredictions.rowKeySet())
         {
             int cntMethods = 0;
@@ -545,8 +650,6 @@ public class ComplementarityGraphs
             if (cntMethods == 0)
                 continue;
             
-            bw.write(String.valueOf(cntMethods) + "\n");
-            
             int cntFuncs = 0;
             if (numMethods_FuncCount.containsKey(cntMethods))
                 cntFuncs = numMethods_FuncCount.get(cntMethods);
@@ -554,8 +657,6 @@ public class ComplementarityGraphs
             numMethods_FuncCount.put(cntMethods, cntFuncs);
         }
         
-        bw.close();
-        
         fw = new FileWriter(new File(outFolder + "/Graph_statistics.txt"));
         bw = new BufferedWriter(fw);
         
@@ -571,23 +672,51 @@ public class ComplementarityGraphs
         
         bw.close();
         
-        //Prepare R script
-        String rScriptFilePath = outFolder.getAbsolutePath() + "/Rscript.r";
-        fw = new FileWriter(rScriptFilePath);
-        bw = new BufferedWriter(fw);
-        
-        bw.write("pdf('" + (outFolder.getAbsolutePath() + "/Graph.pdf").replace('\\', '/') + "')\n");  
-        bw.write("data = read.table('" + dataFilePath.replace("\\", "/") + "', header = T)\n");
-        bw.write("counts <- table(data$COUNTS)\n");
-        bw.write("par(lwd = 4)\n");
-        bw.write("barplot(counts, cex.axis = 2.6, cex.names = 2.6)\n");
-        bw.write("dev.off()\n");
+        if (useR)
+        {
+            String dataFilePath = outFolder.getAbsolutePath() + "/Histogram_data.txt";
+            fw = new FileWriter(dataFilePath);
+            bw = new BufferedWriter(fw);
+            bw.write("COUNTS\n");
+            
+            for (int numMethods : numMethods_FuncCount.keySet())
+                for (int i = 0; i < numMethods_FuncCount.get(numMethods); i++)
+                    bw.write(String.valueOf(numMethods) + "\n");
+            
+            bw.close();
+            
+            //Prepare R script
+            String rScriptFilePath = outFolder.getAbsolutePath() + "/Rscript.r";
+            fw = new FileWriter(rScriptFilePath);
+            bw = new BufferedWriter(fw);
+        
+            bw.write("pdf('" + (outFolder.getAbsolutePath() + "/Graph.pdf").replace('\\', '/') + "')\n");  
+            bw.write("data = read.table('" + dataFilePath.replace("\\", "/") + "', header = T)\n");
+            bw.write("counts <- table(data$COUNTS)\n");
+            bw.write("par(lwd = 4)\n");
+            bw.write("barplot(counts, cex.axis = 2.6, cex.names = 2.6)\n");
+            bw.write("dev.off()\n");
                 
-        bw.close();
+            bw.close();
         
-        executeRScript(rScriptFilePath);
-        
-        new File(dataFilePath).delete();
-        new File(rScriptFilePath).delete();
+            //The figure is drawn concurrently if pooled R sessions are started (see "RUtils.startRSessions")
+            submitRScript(rScriptFilePath, dataFilePath, rScriptFilePath);
+        }
+        else
+        {
+            String[] categories = new String[numMethods_FuncCount.size()];
+            double[] heights = new double[numMethods_FuncCount.size()];
+            
+            int k = 0;
+            for (int numMethods : numMethods_FuncCount.keySet())
+            {
+                categories[k] = String.valueOf(numMethods);
+                heights[k] = numMethods_FuncCount.get(numMethods);
+                k++;
+            }
+            
+            drawBarChart(categories, heights, parseColor("grey"), 4,
+                         new File(outFolder + "/Graph.svg"), new File(outFolder + "/Graph.png"));
+        }
     }
 }
@@ -1,23 +1,22 @@
 package MPP_Tools;
 
-import com.google.common.collect.ArrayTable;
-import com.google.common.collect.Table;
-import java.io.BufferedReader;
+import java.awt.Color;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import static MPP_Tools.PairedAUPRCTests.testDifferencesBetweenClassifiers;
 import static org.apache.commons.math3.util.Precision.round;
-import static utils.FileUtils.findReaderType;
+import utils.AUPRCTable;
+import utils.BoxPlotStatistics;
+import static utils.ChartRenderer.drawBoxPlot;
+import static utils.ChartRenderer.parseColor;
 import static utils.GoFunctionsUtils.extractOnlyProkaryoticGOs;
-import static utils.GoFunctionsUtils.loadGOFunctionFrequencies;
-import static utils.RUtils.executeRScript;
+import utils.InformationContent;
+import utils.QuantileSketch;
+import static utils.RUtils.submitRScript;
 
 
 /**
@@ -26,11 +25,19 @@ import static utils.RUtils.executeRScript;
  */
 public class DistributionOfAUPRCsBoxPlot
 {
+    /** Number of random permutations and seed of permutation tests in Paired_tests.txt. */
+    private static final int NUM_PERMUTATIONS = 100000;
+    private static final long SEED = 1;
+    
     /**
      * Draws box-plots, each showing a distribution of GO function-level AUPRCs for a specific classification model and
      * a specific level of GO functions generality. Generality is defined as information content (IC), where high numbers
-     * indicate that a GO function is specific and, therefore, contributes more information about gene's function.
-     * This code assumes that you have R on your computer.
+     * indicate that a GO function is specific and, therefore, contributes more information about gene's function. Functions
+     * are divided into specific (S, IC>8), medium specific (M, 4<=IC<=8) and general (G, IC<4) functions; functions with
+     * unknown IC are left out of box plots. Box plots are drawn by ChartRenderer. Quartiles, notches, whiskers and the number
+     * of outliers of each box plot are written to BoxPlot_statistics.txt (see "BoxPlotStatistics"). Differences between
+     * classifiers within each generality level are tested with paired tests (see
+     * "PairedAUPRCTests.testDifferencesBetweenClassifiers"), which are written to Paired_tests.txt.
      * 
      * @param inFilesWithAUPRCsAndPredictionsStats      An array of tab delimited files, one for each classifier. 
      *                                                  Tab delimited file lists for each GO function an AUPRC for a specific 
@@ -38,7 +45,8 @@ public class DistributionOfAUPRCsBoxPlot
      *                                                  which the function was predicted at Pr>=50% by the classifier.
      * @param classifierNames                           An array with classifier names.
      * @param colors                                    An array of colors that will be used to color box plots of different
-     *                                                  classifiers. Use R specific color definitions.
+     *                                                  classifiers. Use R specific color definitions
+     *                                                  (e.g., 'red') or #RRGGBB.
      * @param inGeneOntologyFile                        Gene ontology in obo-xml.gz format.
      * @param inFileWithFunctionFrequencies             File with frequencies of GO functions appearance in Uniprot-GOA.
      * @param outFolder                                 Folder that will contain graph and statistics files.
@@ -49,117 +57,119 @@ public class DistributionOfAUPRCsBoxPlot
     public static void drawDistributionOfAUPRCsBoxPlot(File[] inFilesWithAUPRCsAndPredictionsStats, String[] classifierNames,
                                                        String[] colors, File inGeneOntologyFile, File inFileWithFunctionFrequencies,
                                                        File outFolder) throws IOException, InterruptedException
+    {
+        drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                        inFileWithFunctionFrequencies, InformationContent.Bins.DEFAULT, outFolder);
+    }
+    
+    /**
+     * Draws box-plots as "drawDistributionOfAUPRCsBoxPlot", with levels of GO functions generality defined by IC bins,
+     * e.g., bins with other cut-offs or bins with equal numbers of functions ("InformationContent.Bins.quantiles").
+     * Quantile bins are fitted to ICs of the learnable prokaryotic functions.
+     * 
+     * @param inFilesWithAUPRCsAndPredictionsStats      An array of tab delimited files, one for each classifier.
+     * @param classifierNames                           An array with classifier names.
+     * @param colors                                    An array of colors of box plots of different classifiers.
+     * @param inGeneOntologyFile                        Gene ontology in obo-xml.gz format.
+     * @param inFileWithFunctionFrequencies             File with frequencies of GO functions appearance in Uniprot-GOA.
+     * @param bins                                      Levels of GO functions generality.
+     * @param outFolder                                 Folder that will contain graph and statistics files.
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawDistributionOfAUPRCsBoxPlot(File[] inFilesWithAUPRCsAndPredictionsStats, String[] classifierNames,
+                                                       String[] colors, File inGeneOntologyFile, File inFileWithFunctionFrequencies,
+                                                       InformationContent.Bins bins, File outFolder) throws IOException, InterruptedException
+    {
+        drawDistributionOfAUPRCsBoxPlot(inFilesWithAUPRCsAndPredictionsStats, classifierNames, colors, inGeneOntologyFile,
+                                        inFileWithFunctionFrequencies, bins, outFolder, false);
+    }
+    
+    /**
+     * Draws box-plots as "drawDistributionOfAUPRCsBoxPlot" with levels of GO functions generality defined by IC bins,
+     * by R instead of ChartRenderer if useR is true.
+     * 
+     * @param inFilesWithAUPRCsAndPredictionsStats      An array of tab delimited files, one for each classifier.
+     * @param classifierNames                           An array with classifier names.
+     * @param colors                                    An array of colors of box plots of different classifiers.
+     * @param inGeneOntologyFile                        Gene ontology in obo-xml.gz format.
+     * @param inFileWithFunctionFrequencies             File with frequencies of GO functions appearance in Uniprot-GOA.
+     * @param bins                                      Levels of GO functions generality.
+     * @param outFolder                                 Folder that will contain graph and statistics files.
+     * @param useR                                      True to draw with R scripts instead of ChartRenderer (Rscript has to be in the path).
+     * 
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public static void drawDistributionOfAUPRCsBoxPlot(File[] inFilesWithAUPRCsAndPredictionsStats, String[] classifierNames,
+                                                       String[] colors, File inGeneOntologyFile, File inFileWithFunctionFrequencies,
+                                                       InformationContent.Bins bins, File outFolder, boolean useR) throws IOException, InterruptedException
     {
         if (!outFolder.exists())
             outFolder.mkdirs();
         
         //Extract only learnable prokaryotic GO functions from the GO subset gosubset_prok
-        Map<Integer, List<Double>> funcAUPRCs = new TreeMap<>();
-        Map<Integer, List<Integer>> funcStats = new TreeMap<>();
+        AUPRCTable allAUPRCs = AUPRCTable.load(inFilesWithAUPRCsAndPredictionsStats, classifierNames);
         
-        for (File f : inFilesWithAUPRCsAndPredictionsStats)
-        {
-            BufferedReader br = findReaderType(f);
-            
-            String line;
-            
-            while((line=br.readLine()) != null)
-                if (!line.startsWith("#"))
-                {
-                    String[] parts = line.split("\t");
-                    
-                    int func = Integer.parseInt(parts[0]);
-                    double auprc = Double.parseDouble(parts[1]);
-                    int numPredictions = Integer.parseInt(parts[2]);
-                    
-                    List<Double> auprcs = new ArrayList<>();
-                    if (funcAUPRCs.containsKey(func))
-                        auprcs = funcAUPRCs.get(func);
-                    
-                    auprcs.add(auprc);
-                    
-                    funcAUPRCs.put(func, auprcs);
-                    
-                    
-                    List<Integer> stats = new ArrayList<>();
-                    if (funcStats.containsKey(func))
-                        stats = funcStats.get(func);
-                    
-                    stats.add(numPredictions);
-                    
-                    funcStats.put(func, stats);
-                }
-        }
+        Set<Integer> allFuncs = new HashSet<>();
+        for (int f = 0; f < allAUPRCs.numFunctions(); f++)
+            allFuncs.add(allAUPRCs.function(f));
         
-        Set<Integer> prokFuncs = extractOnlyProkaryoticGOs(funcAUPRCs.keySet(), inGeneOntologyFile);
-        funcAUPRCs.keySet().retainAll(prokFuncs); //Remove non-prokaryotic GO functions
+        Set<Integer> prokFuncs = extractOnlyProkaryoticGOs(allFuncs, inGeneOntologyFile);
         
-        Set<Integer> nonLearnableFuncs = new HashSet<>();
-        for (int func : funcAUPRCs.keySet())
+        boolean[] learnableProkFuncs = new boolean[allAUPRCs.numFunctions()];
+        for (int f = 0; f < allAUPRCs.numFunctions(); f++)
         {
-            List<Integer> stats = funcStats.get(func);
-            
             int sum = 0;
-            for (int stat : stats)
-                sum += stat;
+            for (int c = 0; c < allAUPRCs.numClassifiers(); c++)
+                sum += Math.max(0, allAUPRCs.numPredictions(c, f));
             
-            if (sum == 0)
-                nonLearnableFuncs.add(func);
+            //Remove non-prokaryotic and non-learnable GO functions
+            learnableProkFuncs[f] = prokFuncs.contains(allAUPRCs.function(f)) && sum > 0;
         }
         
-        funcAUPRCs.keySet().removeAll(nonLearnableFuncs); //Remove non-learnable GO functions
+        AUPRCTable auprcs = allAUPRCs.select(learnableProkFuncs);
         
         
         //Divide functions in categories according to their level of generality
-        Map<Integer, Double> funcFreq = loadGOFunctionFrequencies(inFileWithFunctionFrequencies);
+        InformationContent informationContent = InformationContent.load(inFileWithFunctionFrequencies);
         
-        String[] generalityLevels = {"S", "M", "G"};
-        List<String> methodGenerality = new ArrayList<>();
-        for (String generalityLevel : generalityLevels)
-            for (String method : classifierNames)            
-                methodGenerality.add(method + "-" + generalityLevel);
-        
-        Table<Integer, String, Double> function_MethodGenerality_AUPRCs = ArrayTable.create(funcAUPRCs.keySet(), methodGenerality);
+        int[] funcs = new int[auprcs.numFunctions()];
+        double[] ics = new double[auprcs.numFunctions()];
         
-        for (int func : funcAUPRCs.keySet())
+        for (int f = 0; f < auprcs.numFunctions(); f++)
         {
-            List<Double> auprcs = funcAUPRCs.get(func);
-            
-            for (int i = 0; i < auprcs.size(); i++)
-            {
-                double IC = -(Math.log(funcFreq.get(func)) / Math.log(2));
-                
-                String generalityCategory;
-                if (IC > 8)
-                    generalityCategory = "S";
-                else if (IC >= 4)
-                    generalityCategory = "M";
-                else
-                    generalityCategory = "G";
-                
-                function_MethodGenerality_AUPRCs.put(func, classifierNames[i] + "-" + generalityCategory, auprcs.get(i));
-            }
+            funcs[f] = auprcs.function(f);
+            ics[f] = informationContent.ic(funcs[f]);
         }
         
+        bins = bins.fit(ics);
+        
+        String[] generalityLevels = bins.names();
+        int[] generality = informationContent.bins(funcs, bins);
+        
         
         //Write the table to file
         String dataFile = outFolder.getAbsolutePath() + "/AUPRCs_data.txt";
         BufferedWriter bw = new BufferedWriter(new FileWriter(new File(dataFile)));
         
         bw.write("Function");
-        for (String mg : function_MethodGenerality_AUPRCs.columnKeySet())
-            bw.write("\t" + mg);
+        for (String generalityLevel : generalityLevels)
+            for (String method : classifierNames)
+                bw.write("\t" + method + "-" + generalityLevel);
         bw.write("\n");
         
-        for (int func : function_MethodGenerality_AUPRCs.rowKeySet())
+        for (int f = 0; f < auprcs.numFunctions(); f++)
         {
-            bw.write(String.valueOf(func));
+            bw.write(String.valueOf(auprcs.function(f)));
             
-            for (String mg : function_MethodGenerality_AUPRCs.columnKeySet())
-            {
-                Double auprc = function_MethodGenerality_AUPRCs.get(func, mg);
-                bw.write("\t" + (auprc == null ? "NA" : String.valueOf(round(auprc, 4))));
-            }
+            for (int level = 0; level < generalityLevels.length; level++)
+                for (int c = 0; c < auprcs.numClassifiers(); c++)
+                {
+                    double auprc = auprcs.auprc(c, f);
+                    bw.write("\t" + (generality[f] != level || Double.isNaN(auprc) ? "NA" : String.valueOf(round(auprc, 4))));
+                }
             
             bw.write("\n");
         }
@@ -170,57 +180,103 @@ public class DistributionOfAUPRCsBoxPlot
         //Write file with statistics and legend
         bw = new BufferedWriter(new FileWriter(new File(outFolder + "/Graph_statistics+Legend.txt")));
         
-        bw.write(function_MethodGenerality_AUPRCs.rowKeySet().size() + " learnable GO functions with at least one prediction at Pr>=50%\n");
+        bw.write(auprcs.numFunctions() + " learnable GO functions with at least one prediction at Pr>=50%\n");
                 
         bw.write("\nLEGEND:\n");
-        bw.write("S - specific GO functions with IC>8\n");
-        bw.write("M - medium specific GO functions with 4<=IC<=8\n");
-        bw.write("G - general GO functions with IC<4\n");
+        for (int level = 0; level < bins.numBins(); level++)
+            bw.write(bins.legend(level) + "\n");
         
         bw.close();
         
         
-        //Generate R script
-        String generalityRScript = outFolder.getAbsolutePath() + "/Rscript.r";
-        bw = new BufferedWriter(new FileWriter(new File(generalityRScript)));
+        //Paired tests of differences between classifiers within each generality level
+        testDifferencesBetweenClassifiers(auprcs, generality, generalityLevels, NUM_PERMUTATIONS, SEED,
+                                          new File(outFolder + "/Paired_tests.txt"));
+        
+        
+        //Box plot statistics of each classifier and generality level from quantile sketches filled in one pass over
+        //functions; sketches hold all functions, so the statistics are exact
+        int numBoxes = generalityLevels.length * classifierNames.length;
+        
+        String[] names = new String[numBoxes];
+        QuantileSketch[] sketches = new QuantileSketch[numBoxes];
+        
+        for (int b = 0; b < numBoxes; b++)
+        {
+            names[b] = classifierNames[b % classifierNames.length] + "-" + generalityLevels[b / classifierNames.length];
+            sketches[b] = new QuantileSketch(Math.max(QuantileSketch.DEFAULT_K, auprcs.numFunctions() + 1));
+        }
+        
+        for (int f = 0; f < auprcs.numFunctions(); f++)
+            for (int c = 0; c < auprcs.numClassifiers(); c++)
+                if (generality[f] >= 0 && !Double.isNaN(auprcs.auprc(c, f)))
+                    sketches[generality[f] * classifierNames.length + c].update(round(auprcs.auprc(c, f), 4));
+        
+        BoxPlotStatistics[] stats = new BoxPlotStatistics[numBoxes];
+        for (int b = 0; b < numBoxes; b++)
+            stats[b] = BoxPlotStatistics.of(sketches[b]);
+        
+        BoxPlotStatistics.write(names, stats, new File(outFolder + "/BoxPlot_statistics.txt"));
+        
         
-        bw.write("pdf('" + outFolder.getAbsolutePath().replace('\\', '/') + "/BoxPlot.pdf')\n");
-        bw.write("data = read.table('" + dataFile.replace('\\', '/') + "', header = T, sep = '\t', na.strings = 'NA', check.names = F)\n");
-        bw.write("par(cex.axis=0.9)\n");
-        bw.write("par(cex.lab=1.2)\n");
-        bw.write("boxplot(data[c(2:ncol(data))], las = 2, at = c(");
-        String delimiter = "";
-        for (int i = 1; i <= (classifierNames.length * 3) + 2; i++)
-            if (i % (classifierNames.length + 1) != 0)
+        if (useR)
+        {
+            //Generate R script
+            String generalityRScript = outFolder.getAbsolutePath() + "/Rscript.r";
+            bw = new BufferedWriter(new FileWriter(new File(generalityRScript)));
+        
+            bw.write("pdf('" + outFolder.getAbsolutePath().replace('\\', '/') + "/BoxPlot.pdf')\n");
+            bw.write("data = read.table('" + dataFile.replace('\\', '/') + "', header = T, sep = '\t', na.strings = 'NA', check.names = F)\n");
+            bw.write("par(cex.axis=0.9)\n");
+            bw.write("par(cex.lab=1.2)\n");
+            bw.write("boxplot(data[c(2:ncol(data))], las = 2, at = c(");
+            String delimiter = "";
+            for (int i = 1; i <= (classifierNames.length * generalityLevels.length) + generalityLevels.length - 1; i++)
+                if (i % (classifierNames.length + 1) != 0)
+                {
+                    bw.write(delimiter + i);
+                    delimiter = ",";
+                }
+        
+            bw.write("), col = c(");
+            delimiter = "";
+            for (int i = 0; i < generalityLevels.length; i++)
             {
-                bw.write(delimiter + i);
+                bw.write(delimiter);
+            
+                String del = "";
+                for (int j = 0; j < classifierNames.length; j++)
+                {
+                    bw.write(del + "'" + colors[j] + "'");
+                    del = ",";
+                }
+            
                 delimiter = ",";
             }
         
-        bw.write("), col = c(");
-        delimiter = "";
-        for (int i = 0; i < 3; i++)
+            bw.write("), main = '', ylab = 'AUPRC', notch = T, varwidth = T, outline = T)\n");
+        
+            bw.write("dev.off()\n");
+        
+            bw.close();
+        
+            //The figure is drawn concurrently if pooled R sessions are started (see "RUtils.startRSessions")
+            submitRScript(generalityRScript, generalityRScript);
+        }
+        else
         {
-            bw.write(delimiter);
+            //Box plots are placed at positions that leave an empty slot between generality levels
+            double[] positions = new double[numBoxes];
+            Color[] boxColors = new Color[numBoxes];
             
-            String del = "";
-            for (int j = 0; j < classifierNames.length; j++)
+            for (int b = 0; b < numBoxes; b++)
             {
-                bw.write(del + "'" + colors[j] + "'");
-                del = ",";
+                positions[b] = b + 1 + b / classifierNames.length;
+                boxColors[b] = parseColor(colors[b % classifierNames.length]);
             }
             
-            delimiter = ",";
+            drawBoxPlot(names, stats, positions, boxColors, "AUPRC",
+                        new File(outFolder + "/BoxPlot.svg"), new File(outFolder + "/BoxPlot.png"));
         }
-        
-        bw.write("), main = '', ylab = 'AUPRC', notch = T, varwidth = T, outline = T)\n");
-        
-        bw.write("dev.off()\n");
-        
-        bw.close();
-        
-        executeRScript(generalityRScript);
-        
-        new File(generalityRScript).delete();
     }
 }
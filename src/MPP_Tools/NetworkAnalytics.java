@@ -0,0 +1,513 @@
+package MPP_Tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import static MPP_Tools.CoEvolutionNetwork.parsePCCs;
+import org.apache.commons.math3.distribution.HypergeometricDistribution;
+import static org.apache.commons.math3.util.Precision.round;
+import utils.CsrGraph;
+import static utils.FileUtils.findReaderType;
+import utils.Louvain;
+import utils.UnionFind;
+
+/**
+ * Structural statistics of the co-evolution network computed on a compressed sparse row adjacency structure, so the
+ * network does not have to be opened in Gephi to obtain them.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class NetworkAnalytics
+{
+    /**
+     * Computes degrees, connected components, clustering coefficients and layer overlap for MPP profiles-based network
+     * (MPP layer + shared edges), PP profiles-based network (PP layer + shared edges), network of shared edges and
+     * the whole network. Networks are analysed in parallel.
+     *
+     * Outputs:
+     *  1. Network_statistics.txt - a table with columns "Network", "Statistic" and "Value". Gene families count as
+     *     nodes of a network if they have at least one edge in it. Average local clustering coefficient is computed over
+     *     nodes with degree >= 2.
+     *  2. Degree_distribution.txt - a table with columns "Network", "Degree" and "# of gene families".
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param pccThreshold  The network includes only edges with the absolute value of Pearson correlation coefficient > pccThreshold.
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param outFolder     Folder in which the output files will be saved.
+     *
+     * @throws IOException
+     */
+    public static void computeNetworkStatistics(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                                double pccThreshold, File inFileWithPCC, File outFolder) throws IOException
+    {
+        CoEvolutionGraph graph = CoEvolutionGraph.load(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures,
+                                                       pccThreshold, inFileWithPCC);
+
+        int numNetworks = CoEvolutionGraph.NETWORK_NAMES.length;
+
+        CsrGraph[] networks = new CsrGraph[numNetworks];
+        NetworkStatistics[] statistics = new NetworkStatistics[numNetworks];
+
+        IntStream.range(0, numNetworks).parallel().forEach(n -> {
+            networks[n] = graph.network(n);
+            statistics[n] = analyse(networks[n]);
+        });
+
+        outFolder.mkdirs();
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFolder + "/Network_statistics.txt"));
+        bw.write("Network\tStatistic\tValue\n");
+
+        for (int n = 0; n < numNetworks; n++)
+        {
+            String name = CoEvolutionGraph.NETWORK_NAMES[n];
+            NetworkStatistics s = statistics[n];
+
+            bw.write(name + "\tNodes\t" + s.numNodes + "\n");
+            bw.write(name + "\tEdges\t" + s.numEdges + "\n");
+            bw.write(name + "\tConnected components\t" + s.numComponents + "\n");
+            bw.write(name + "\tNodes in the largest component\t" + s.largestComponentSize + "\n");
+            bw.write(name + "\tMean degree\t" + round(s.meanDegree, 4) + "\n");
+            bw.write(name + "\tMax degree\t" + s.maxDegree + "\n");
+            bw.write(name + "\tDensity\t" + round(s.density, 6) + "\n");
+            bw.write(name + "\tTriangles\t" + s.numTriangles + "\n");
+            bw.write(name + "\tGlobal clustering coefficient\t" + round(s.globalClustering, 4) + "\n");
+            bw.write(name + "\tAverage local clustering coefficient\t" + round(s.averageLocalClustering, 4) + "\n");
+        }
+
+        //Overlap of MPP and PP profiles-based networks
+        int mppNodes = 0, ppNodes = 0, sharedNodes = 0;
+
+        for (int i = 0; i < graph.numNodes(); i++)
+        {
+            boolean inMPP = networks[CoEvolutionGraph.NETWORK_MPP].degree(i) > 0;
+            boolean inPP = networks[CoEvolutionGraph.NETWORK_PP].degree(i) > 0;
+
+            if (inMPP)
+                mppNodes++;
+            if (inPP)
+                ppNodes++;
+            if (inMPP && inPP)
+                sharedNodes++;
+        }
+
+        int mppEdges = statistics[CoEvolutionGraph.NETWORK_MPP].numEdges;
+        int ppEdges = statistics[CoEvolutionGraph.NETWORK_PP].numEdges;
+        int sharedEdges = statistics[CoEvolutionGraph.NETWORK_SHARED].numEdges;
+
+        double nodeJaccard = jaccard(sharedNodes, mppNodes, ppNodes);
+        double edgeJaccard = jaccard(sharedEdges, mppEdges, ppEdges);
+
+        bw.write("MPP vs. PP\tShared nodes\t" + sharedNodes + "\n");
+        bw.write("MPP vs. PP\tNode Jaccard index\t" + round(nodeJaccard, 4) + "\n");
+        bw.write("MPP vs. PP\tShared edges\t" + sharedEdges + "\n");
+        bw.write("MPP vs. PP\tEdge Jaccard index\t" + round(edgeJaccard, 4) + "\n");
+
+        bw.close();
+
+        bw = new BufferedWriter(new FileWriter(outFolder + "/Degree_distribution.txt"));
+        bw.write("Network\tDegree\t# of gene families\n");
+
+        for (int n = 0; n < numNetworks; n++)
+        {
+            int[] degreeCounts = statistics[n].degreeCounts;
+
+            for (int degree = 1; degree < degreeCounts.length; degree++)
+                if (degreeCounts[degree] > 0)
+                    bw.write(CoEvolutionGraph.NETWORK_NAMES[n] + "\t" + degree + "\t" + degreeCounts[degree] + "\n");
+        }
+
+        bw.close();
+
+        //Summary
+        System.out.println("-------------------------------");
+        System.out.println("NETWORK STRUCTURE (threshold " + pccThreshold + ")");
+        System.out.println("-------------------------------");
+
+        for (int n = 0; n < numNetworks; n++)
+        {
+            NetworkStatistics s = statistics[n];
+
+            System.out.println(CoEvolutionGraph.NETWORK_NAMES[n] + ": " + s.numNodes + " nodes, " + s.numEdges + " edges, "
+                               + s.numComponents + " components (largest " + s.largestComponentSize + " nodes), "
+                               + "global clustering " + round(s.globalClustering, 4));
+        }
+
+        System.out.println("MPP and PP profiles-based networks share " + sharedNodes + " nodes (Jaccard " + round(nodeJaccard, 4)
+                           + ") and " + sharedEdges + " edges (Jaccard " + round(edgeJaccard, 4) + ")");
+    }
+
+    /**
+     * Computes the percolation curve of MPP profiles-based network, PP profiles-based network and the whole network
+     * (an edge is in the whole network if its correlation is above the threshold in MPP or PP): the number of nodes,
+     * edges, connected components and the size of the largest component at each threshold from 1 - thresholdStep
+     * down to minThreshold. Edges are sorted once by correlation (counting sort over the four decimals written by
+     * "computeSimilaritiesBetweenOGs") and added in descending order to an incremental union-find, so the whole curve
+     * is computed in a single pass per network.
+     *
+     * Outputs Percolation_curve.txt - a table with columns "Network", "Threshold", "Nodes", "Edges",
+     * "Connected components" and "Nodes in the largest component".
+     *
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param minThreshold  The lowest threshold on the curve.
+     * @param thresholdStep Difference between two consecutive thresholds (e.g., 0.01).
+     * @param outFolder     Folder in which the output file will be saved.
+     *
+     * @throws IOException
+     */
+    public static void computePercolationCurve(File inFileWithPCC, double minThreshold, double thresholdStep, File outFolder) throws IOException
+    {
+        final int scale = 10000;
+
+        int minKey = (int)Math.round(minThreshold * scale);
+
+        //Load edges above the lowest threshold; keys are correlations multiplied by 10^4
+        Map<String, Integer> ogIndex = new HashMap<>();
+
+        int[] numEdges = new int[3];
+        int[][] sources = new int[3][16];
+        int[][] targets = new int[3][16];
+        int[][] keys = new int[3][16];
+
+        BufferedReader br = findReaderType(inFileWithPCC);
+
+        String line;
+
+        boolean header = true;
+
+        while((line=br.readLine()) != null)
+            if (header)
+                header = false;
+            else
+            {
+                double[] pccs = parsePCCs(line);
+
+                int[] layerKeys = new int[3];
+                layerKeys[0] = (int)Math.round(pccs[0] * scale);
+                layerKeys[1] = (int)Math.round(pccs[1] * scale);
+                layerKeys[2] = Math.max(layerKeys[0], layerKeys[1]);
+
+                if (layerKeys[2] <= minKey)
+                    continue;
+
+                int dash = line.indexOf("-");
+                int firstTab = line.indexOf("\t");
+
+                int firstOG = nodeId(line.substring(0, dash), ogIndex);
+                int secondOG = nodeId(line.substring(dash + 1, firstTab), ogIndex);
+
+                for (int l = 0; l < 3; l++)
+                    if (layerKeys[l] > minKey)
+                    {
+                        if (numEdges[l] == keys[l].length)
+                        {
+                            sources[l] = Arrays.copyOf(sources[l], 2 * numEdges[l]);
+                            targets[l] = Arrays.copyOf(targets[l], 2 * numEdges[l]);
+                            keys[l] = Arrays.copyOf(keys[l], 2 * numEdges[l]);
+                        }
+
+                        sources[l][numEdges[l]] = firstOG;
+                        targets[l][numEdges[l]] = secondOG;
+                        keys[l][numEdges[l]] = layerKeys[l];
+                        numEdges[l]++;
+                    }
+            }
+
+        br.close();
+
+        //Thresholds in descending order
+        int stepKey = Math.max(1, (int)Math.round(thresholdStep * scale));
+
+        List<Integer> thresholdKeys = new ArrayList<>();
+        for (int key = scale - stepKey; key >= minKey; key -= stepKey)
+            thresholdKeys.add(key);
+
+        int numNodes = ogIndex.size();
+
+        String[] layerNames = {"MPP", "PP", "All"};
+        String[][] rows = new String[3][];
+
+        IntStream.range(0, 3).parallel().forEach(l -> {
+            //Counting sort of edges by key in descending order
+            int[] bucketStart = new int[scale + 2];
+            for (int e = 0; e < numEdges[l]; e++)
+                bucketStart[scale - keys[l][e] + 1]++;
+
+            for (int b = 0; b <= scale; b++)
+                bucketStart[b + 1] += bucketStart[b];
+
+            int[] order = new int[numEdges[l]];
+            for (int e = 0; e < numEdges[l]; e++)
+                order[bucketStart[scale - keys[l][e]]++] = e;
+
+            //Add edges to union-find and record the state of the network at each threshold
+            UnionFind components = new UnionFind(numNodes);
+            boolean[] connected = new boolean[numNodes];
+            int numConnected = 0;
+
+            rows[l] = new String[thresholdKeys.size()];
+
+            int next = 0;
+
+            for (int t = 0; t < thresholdKeys.size(); t++)
+            {
+                int thresholdKey = thresholdKeys.get(t);
+
+                for (; next < order.length && keys[l][order[next]] > thresholdKey; next++)
+                {
+                    int e = order[next];
+
+                    for (int og : new int[] {sources[l][e], targets[l][e]})
+                        if (!connected[og])
+                        {
+                            connected[og] = true;
+                            numConnected++;
+                        }
+
+                    components.union(sources[l][e], targets[l][e]);
+                }
+
+                rows[l][t] = layerNames[l] + "\t" + round(thresholdKey / (double)scale, 4) + "\t" + numConnected + "\t" + next
+                             + "\t" + (components.numSets() - (numNodes - numConnected)) + "\t" + (numConnected == 0 ? 0 : components.largestSetSize());
+            }
+        });
+
+        outFolder.mkdirs();
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFolder + "/Percolation_curve.txt"));
+        bw.write("Network\tThreshold\tNodes\tEdges\tConnected components\tNodes in the largest component\n");
+
+        for (int l = 0; l < 3; l++)
+            for (String row : rows[l])
+                bw.write(row + "\n");
+
+        bw.close();
+
+        System.out.println("Percolation curve for " + thresholdKeys.size() + " thresholds is saved in " + outFolder + "/Percolation_curve.txt");
+    }
+
+    private static int nodeId(String og, Map<String, Integer> ogIndex)
+    {
+        Integer id = ogIndex.get(og);
+
+        if (id == null)
+        {
+            id = ogIndex.size();
+            ogIndex.put(og, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Detects communities (Louvain method, see "utils.Louvain") in MPP profiles-based network and PP profiles-based
+     * network (in parallel) and counts gene families annotated with MPP- and PP-specific function in each community.
+     *
+     * Outputs a table with columns "Network", "Community", "# of gene families", "# annotated with MPP-specific function",
+     * "p-value (MPP-specific)", "# annotated with PP-specific function" and "p-value (PP-specific)". P-values are
+     * hypergeometric upper-tail probabilities of observing at least that many annotated gene families in a community
+     * of that size, given the number of annotated gene families in the network. Gene families annotated with both
+     * functions are counted in both columns.
+     *
+     * @param graph     Co-evolution network.
+     * @param outFileWithCommunities    File in which the table will be saved.
+     *
+     * @return Community of each node in MPP (index CoEvolutionGraph.NETWORK_MPP) and PP network (index CoEvolutionGraph.NETWORK_PP);
+     *         -1 for nodes that are not connected in the network.
+     *
+     * @throws IOException
+     */
+    public static int[][] detectCommunities(CoEvolutionGraph graph, File outFileWithCommunities) throws IOException
+    {
+        int[] networks = {CoEvolutionGraph.NETWORK_MPP, CoEvolutionGraph.NETWORK_PP};
+
+        int[][] communities = new int[2][];
+        double[] modularities = new double[2];
+
+        IntStream.range(0, 2).parallel().forEach(n -> {
+            CsrGraph network = graph.network(networks[n]);
+
+            communities[n] = Louvain.detectCommunities(network);
+            modularities[n] = Louvain.modularity(network, communities[n]);
+        });
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFileWithCommunities));
+        bw.write("Network\tCommunity\t# of gene families\t# annotated with GO:" + graph.mppSpecificFunction() + " (MPP-specific)\tp-value (MPP-specific)"
+                 + "\t# annotated with GO:" + graph.ppSpecificFunction() + " (PP-specific)\tp-value (PP-specific)\n");
+
+        System.out.println("------------");
+        System.out.println("COMMUNITIES");
+        System.out.println("------------");
+
+        for (int n = 0; n < 2; n++)
+        {
+            int numCommunities = 0;
+            for (int c : communities[n])
+                numCommunities = Math.max(numCommunities, c + 1);
+
+            int[] sizes = new int[numCommunities];
+            int[] mppAnnotated = new int[numCommunities];
+            int[] ppAnnotated = new int[numCommunities];
+
+            int numNodes = 0, numMppAnnotated = 0, numPpAnnotated = 0;
+
+            for (int i = 0; i < graph.numNodes(); i++)
+            {
+                int c = communities[n][i];
+
+                if (c == -1)
+                    continue;
+
+                String method = graph.method(i);
+
+                boolean mpp = "MPP".equals(method) || "both".equals(method);
+                boolean pp = "PP".equals(method) || "both".equals(method);
+
+                sizes[c]++;
+                numNodes++;
+
+                if (mpp)
+                {
+                    mppAnnotated[c]++;
+                    numMppAnnotated++;
+                }
+
+                if (pp)
+                {
+                    ppAnnotated[c]++;
+                    numPpAnnotated++;
+                }
+            }
+
+            String name = CoEvolutionGraph.NETWORK_NAMES[networks[n]];
+
+            for (int c = 0; c < numCommunities; c++)
+                bw.write(name + "\t" + c + "\t" + sizes[c]
+                         + "\t" + mppAnnotated[c] + "\t" + enrichmentPValue(mppAnnotated[c], sizes[c], numMppAnnotated, numNodes)
+                         + "\t" + ppAnnotated[c] + "\t" + enrichmentPValue(ppAnnotated[c], sizes[c], numPpAnnotated, numNodes) + "\n");
+
+            System.out.println(name + " profiles-based network: " + numCommunities + " communities, modularity " + round(modularities[n], 4));
+        }
+
+        bw.close();
+
+        return communities;
+    }
+
+    /**
+     * Probability of at least k annotated nodes in a community of the given size.
+     */
+    private static double enrichmentPValue(int k, int communitySize, int numAnnotated, int numNodes)
+    {
+        if (k == 0)
+            return 1;
+
+        return new HypergeometricDistribution(null, numNodes, numAnnotated, communitySize).upperCumulativeProbability(k);
+    }
+
+    /**
+     * Computes statistics of a single network.
+     */
+    static NetworkStatistics analyse(CsrGraph network)
+    {
+        NetworkStatistics s = new NetworkStatistics();
+
+        int numNodes = network.numNodes();
+        int[] offsets = network.offsets();
+        int[] neighbours = network.neighbours();
+
+        s.numEdges = network.numEdges();
+
+        //Degrees
+        for (int i = 0; i < numNodes; i++)
+            s.maxDegree = Math.max(s.maxDegree, network.degree(i));
+
+        s.degreeCounts = new int[s.maxDegree + 1];
+
+        for (int i = 0; i < numNodes; i++)
+            s.degreeCounts[network.degree(i)]++;
+
+        s.numNodes = numNodes - s.degreeCounts[0];
+        s.meanDegree = (s.numNodes == 0 ? 0 : 2 * (double)s.numEdges / s.numNodes);
+        s.density = (s.numNodes < 2 ? 0 : 2 * (double)s.numEdges / ((double)s.numNodes * (s.numNodes - 1)));
+
+        //Connected components (isolated nodes are not part of the network)
+        UnionFind components = new UnionFind(numNodes);
+
+        for (int i = 0; i < numNodes; i++)
+            for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                if (neighbours[k] > i)
+                    components.union(i, neighbours[k]);
+
+        s.numComponents = components.numSets() - s.degreeCounts[0];
+        s.largestComponentSize = (s.numNodes == 0 ? 0 : components.largestSetSize());
+
+        //Triangles through each node; each triangle is found twice per node (once from each of the other two nodes)
+        long[] trianglesPerNode = new long[numNodes];
+
+        IntStream.range(0, numNodes).parallel().forEach(i -> {
+            long cnt = 0;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                cnt += network.countCommonNeighbours(i, neighbours[k]);
+
+            trianglesPerNode[i] = cnt / 2;
+        });
+
+        long triangles = 0;
+        long connectedTriples = 0;
+        double sumOfLocalClustering = 0;
+        int nodesWithLocalClustering = 0;
+
+        for (int i = 0; i < numNodes; i++)
+        {
+            long degree = network.degree(i);
+            long triples = degree * (degree - 1) / 2;
+
+            triangles += trianglesPerNode[i];
+            connectedTriples += triples;
+
+            if (degree >= 2)
+            {
+                sumOfLocalClustering += trianglesPerNode[i] / (double)triples;
+                nodesWithLocalClustering++;
+            }
+        }
+
+        s.numTriangles = triangles / 3;
+        s.globalClustering = (connectedTriples == 0 ? 0 : triangles / (double)connectedTriples);
+        s.averageLocalClustering = (nodesWithLocalClustering == 0 ? 0 : sumOfLocalClustering / nodesWithLocalClustering);
+
+        return s;
+    }
+
+    private static double jaccard(int intersection, int first, int second)
+    {
+        int union = first + second - intersection;
+
+        return (union == 0 ? 0 : intersection / (double)union);
+    }
+
+    static class NetworkStatistics
+    {
+        int numNodes;
+        int numEdges;
+        int numComponents;
+        int largestComponentSize;
+        int maxDegree;
+        double meanDegree;
+        double density;
+        long numTriangles;
+        double globalClustering;
+        double averageLocalClustering;
+        int[] degreeCounts;
+    }
+}
@@ -0,0 +1,344 @@
+package MPP_Tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import static org.apache.commons.math3.util.Precision.round;
+import static utils.RandomUtils.splitRandoms;
+
+/**
+ * Permutation tests that put the network statistics printed by "CoEvolutionNetwork.composeGephiFileWithNetwork"
+ * against a null model.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class NetworkNullModel
+{
+    private static final byte MPP_SPECIFIC = 1;
+    private static final byte PP_SPECIFIC = 2;
+
+    /** Number of edge swaps per edge in a degree-preserving rewiring. */
+    private static final int SWAPS_PER_EDGE = 10;
+
+    private static final String[] STATISTICS = {
+        "Gene families annotated with MPP-specific function connected in MPP network",
+        "Gene families annotated with PP-specific function connected in MPP network",
+        "Gene families annotated with MPP-specific function connected in PP network",
+        "Gene families annotated with PP-specific function connected in PP network",
+        "Edges between gene families annotated with MPP-specific function in MPP network",
+        "Edges between gene families annotated with PP-specific function in MPP network",
+        "Edges between gene families annotated with MPP-specific function in PP network",
+        "Edges between gene families annotated with PP-specific function in PP network"};
+
+    /**
+     * Computes empirical p-values of network statistics under two null models:
+     *  1. Label shuffle - annotations with MPP- and PP-specific function are randomly permuted among all gene families
+     *     of the data sets with selected features, while edges are kept. Gene families without edges are not nodes of
+     *     the network, but they take part in the shuffle, so that a label may move to a gene family that is not
+     *     connected in either network.
+     *  2. Degree-preserving rewiring - edges of MPP and PP profiles-based networks are randomly swapped
+     *     ((a,b),(c,d) -> (a,d),(c,b)) so that the degree of each node stays the same, while annotations are kept.
+     *     Whether a gene family is connected in a network does not change under rewiring, so only edge-based
+     *     statistics are tested.
+     *
+     * P-value is (1 + # of permutations with statistic >= observed) / (1 + # of permutations). Permutations are
+     * processed in parallel, each with its own random generators (see "RandomUtils.splitRandoms").
+     *
+     * Outputs Network_null_model.txt - a table with columns "Null model", "Statistic", "Observed",
+     * "Mean under null model" and "p-value".
+     *
+     * @param inMPPDatasetWithSelectedFeatures  The MPP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param inPPDatasetWithSelectedFeatures   The PP data set with selected features outputted by "randomForestFeatureSelection" procedure.
+     * @param pccThreshold  The network includes only edges with the absolute value of Pearson correlation coefficient > pccThreshold.
+     * @param inFileWithPCC File that contains Pearson correlation coefficients outputted by "computeSimilaritiesBetweenOGs".
+     * @param numPermutations   Number of permutations for each null model (e.g., 1000).
+     * @param seed          Seed for the random generator.
+     * @param outFolder     Folder in which the output file will be saved.
+     *
+     * @throws IOException
+     */
+    public static void testNetworkStatistics(File inMPPDatasetWithSelectedFeatures, File inPPDatasetWithSelectedFeatures,
+                                             double pccThreshold, File inFileWithPCC, int numPermutations, long seed,
+                                             File outFolder) throws IOException
+    {
+        CoEvolutionGraph graph = CoEvolutionGraph.load(inMPPDatasetWithSelectedFeatures, inPPDatasetWithSelectedFeatures,
+                                                       pccThreshold, inFileWithPCC);
+
+        int numNodes = graph.numNodes();
+
+        //Nodes of the network are followed by gene families without edges; edges refer only to the nodes
+        List<String> ogs = new ArrayList<>(graph.ogs());
+        for (String og : graph.datasetOgs())
+            if (Collections.binarySearch(graph.ogs(), og) < 0)
+                ogs.add(og);
+
+        int numOGs = ogs.size();
+
+        System.out.println("Gene families in the label shuffle: " + numOGs + " (" + numNodes + " in the network)");
+
+        byte[] labels = new byte[numOGs];
+
+        for (int i = 0; i < numOGs; i++)
+        {
+            String method = graph.method(ogs.get(i));
+
+            if ("MPP".equals(method))
+                labels[i] = MPP_SPECIFIC;
+            else if ("PP".equals(method))
+                labels[i] = PP_SPECIFIC;
+            else if ("both".equals(method))
+                labels[i] = MPP_SPECIFIC | PP_SPECIFIC;
+        }
+
+        int[][] mppEdges = graph.networkEdges(CoEvolutionGraph.NETWORK_MPP);
+        int[][] ppEdges = graph.networkEdges(CoEvolutionGraph.NETWORK_PP);
+
+        long[] observed = computeStatistics(labels, mppEdges, ppEdges);
+
+        //Generators 2p and 2p+1 shuffle labels and rewire edges in permutation p
+        SplittableRandom[] randoms = splitRandoms(new SplittableRandom(seed), 2 * numPermutations);
+
+        long[][] shuffled = new long[numPermutations][];
+        long[][] rewired = new long[numPermutations][];
+
+        IntStream.range(0, numPermutations).parallel().forEach(p -> {
+            //Label shuffle
+            byte[] permutedLabels = labels.clone();
+            SplittableRandom random = randoms[2 * p];
+
+            for (int i = numOGs - 1; i > 0; i--)
+            {
+                int j = random.nextInt(i + 1);
+                byte tmp = permutedLabels[i];
+                permutedLabels[i] = permutedLabels[j];
+                permutedLabels[j] = tmp;
+            }
+
+            shuffled[p] = computeStatistics(permutedLabels, mppEdges, ppEdges);
+
+            //Degree-preserving rewiring
+            rewired[p] = computeStatistics(labels, rewire(mppEdges, randoms[2 * p + 1]), rewire(ppEdges, randoms[2 * p + 1]));
+        });
+
+        outFolder.mkdirs();
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFolder + "/Network_null_model.txt"));
+        bw.write("Null model\tStatistic\tObserved\tMean under null model\tp-value\n");
+
+        System.out.println("-----------------------------------------------------");
+        System.out.println("NETWORK STATISTICS VS. NULL MODELS (" + numPermutations + " permutations)");
+        System.out.println("-----------------------------------------------------");
+
+        for (int model = 0; model < 2; model++)
+        {
+            String name = (model == 0 ? "Label shuffle" : "Degree-preserving rewiring");
+            long[][] nullStatistics = (model == 0 ? shuffled : rewired);
+
+            for (int s = (model == 0 ? 0 : 4); s < STATISTICS.length; s++)
+            {
+                long sum = 0;
+                int numAtLeastObserved = 0;
+
+                for (int p = 0; p < numPermutations; p++)
+                {
+                    sum += nullStatistics[p][s];
+
+                    if (nullStatistics[p][s] >= observed[s])
+                        numAtLeastObserved++;
+                }
+
+                double mean = (numPermutations == 0 ? 0 : sum / (double)numPermutations);
+                double pValue = (1 + numAtLeastObserved) / (double)(1 + numPermutations);
+
+                bw.write(name + "\t" + STATISTICS[s] + "\t" + observed[s] + "\t" + round(mean, 4) + "\t" + round(pValue, 6) + "\n");
+
+                System.out.println(name + " - " + STATISTICS[s] + ": " + observed[s] + " (null mean " + round(mean, 2) + ", p = " + round(pValue, 4) + ")");
+            }
+        }
+
+        bw.close();
+    }
+
+    /**
+     * Computes statistics listed in STATISTICS. Gene families that are not end points of edges are not connected.
+     */
+    private static long[] computeStatistics(byte[] labels, int[][] mppEdges, int[][] ppEdges)
+    {
+        long[] statistics = new long[STATISTICS.length];
+
+        for (int network = 0; network < 2; network++)
+        {
+            int[][] edges = (network == 0 ? mppEdges : ppEdges);
+
+            boolean[] connected = new boolean[labels.length];
+
+            for (int e = 0; e < edges[0].length; e++)
+            {
+                int source = edges[0][e];
+                int target = edges[1][e];
+
+                connected[source] = true;
+                connected[target] = true;
+
+                if ((labels[source] & labels[target] & MPP_SPECIFIC) != 0)
+                    statistics[4 + 2 * network]++;
+                if ((labels[source] & labels[target] & PP_SPECIFIC) != 0)
+                    statistics[5 + 2 * network]++;
+            }
+
+            for (int i = 0; i < labels.length; i++)
+                if (connected[i])
+                {
+                    if ((labels[i] & MPP_SPECIFIC) != 0)
+                        statistics[2 * network]++;
+                    if ((labels[i] & PP_SPECIFIC) != 0)
+                        statistics[1 + 2 * network]++;
+                }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Degree-preserving rewiring by double edge swaps that do not create self-loops or multiple edges.
+     */
+    private static int[][] rewire(int[][] edges, SplittableRandom random)
+    {
+        int numEdges = edges[0].length;
+
+        int[] sources = edges[0].clone();
+        int[] targets = edges[1].clone();
+
+        if (numEdges < 2)
+            return new int[][] {sources, targets};
+
+        LongHashSet existing = new LongHashSet(numEdges);
+        for (int e = 0; e < numEdges; e++)
+            existing.add(edgeKey(sources[e], targets[e]));
+
+        long numSwaps = (long)SWAPS_PER_EDGE * numEdges;
+
+        for (long swap = 0; swap < numSwaps; swap++)
+        {
+            int e1 = random.nextInt(numEdges);
+            int e2 = random.nextInt(numEdges);
+
+            int a = sources[e1], b = targets[e1];
+            int c = sources[e2], d = targets[e2];
+
+            //Randomly choose between (a,d),(c,b) and (a,c),(d,b)
+            if (random.nextBoolean())
+            {
+                int tmp = c;
+                c = d;
+                d = tmp;
+            }
+
+            if (a == d || c == b || e1 == e2)
+                continue;
+
+            long newKey1 = edgeKey(a, d);
+            long newKey2 = edgeKey(c, b);
+
+            if (newKey1 == newKey2 || existing.contains(newKey1) || existing.contains(newKey2))
+                continue;
+
+            existing.remove(edgeKey(sources[e1], targets[e1]));
+            existing.remove(edgeKey(sources[e2], targets[e2]));
+            existing.add(newKey1);
+            existing.add(newKey2);
+
+            sources[e1] = a;
+            targets[e1] = d;
+            sources[e2] = c;
+            targets[e2] = b;
+        }
+
+        return new int[][] {sources, targets};
+    }
+
+    private static long edgeKey(int first, int second)
+    {
+        return ((long)Math.min(first, second) << 32) | Math.max(first, second);
+    }
+
+    /**
+     * Open addressing set of non-negative long keys with linear probing.
+     */
+    private static class LongHashSet
+    {
+        private static final long EMPTY = -1;
+
+        private final long[] keys;
+        private final int mask;
+
+        LongHashSet(int expectedSize)
+        {
+            int capacity = Integer.highestOneBit(Math.max(4, 4 * expectedSize) - 1) << 1;
+
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            mask = capacity - 1;
+        }
+
+        private int slot(long key)
+        {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h >>> 32) & mask;
+        }
+
+        boolean contains(long key)
+        {
+            for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask)
+                if (keys[i] == key)
+                    return true;
+
+            return false;
+        }
+
+        void add(long key)
+        {
+            int i = slot(key);
+            while (keys[i] != EMPTY && keys[i] != key)
+                i = (i + 1) & mask;
+
+            keys[i] = key;
+        }
+
+        /**
+         * Removes a key and shifts back the following keys of the probe sequence.
+         */
+        void remove(long key)
+        {
+            int i = slot(key);
+            while (keys[i] != key)
+            {
+                if (keys[i] == EMPTY)
+                    return;
+                i = (i + 1) & mask;
+            }
+
+            int gap = i;
+            for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask)
+            {
+                int home = slot(keys[j]);
+
+                //Move the key into the gap if the gap lies between its home slot and its current slot
+                if (((j - home) & mask) >= ((j - gap) & mask))
+                {
+                    keys[gap] = keys[j];
+                    gap = j;
+                }
+            }
+
+            keys[gap] = EMPTY;
+        }
+    }
+}
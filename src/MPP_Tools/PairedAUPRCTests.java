@@ -0,0 +1,320 @@
+package MPP_Tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.stat.inference.AlternativeHypothesis;
+import org.apache.commons.math3.stat.inference.BinomialTest;
+import org.apache.commons.math3.stat.inference.WilcoxonSignedRankTest;
+import static org.apache.commons.math3.util.Precision.round;
+import utils.AUPRCTable;
+import static utils.RandomUtils.splitRandoms;
+
+/**
+ * Paired tests of differences between GO function-level AUPRCs of classifiers.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class PairedAUPRCTests
+{
+    /** Up to this number of non-zero differences the Wilcoxon and permutation tests enumerate all sign assignments. */
+    private static final int MAX_EXACT_PERMUTATION_SIZE = 20;
+
+    /** Monte Carlo permutations are processed in this number of blocks, each with its own random generator. */
+    private static final int NUM_PERMUTATION_BLOCKS = 64;
+
+    private static final String[] TESTS = {"Wilcoxon signed-rank", "Sign test", "Permutation"};
+
+    /**
+     * Compares each pair of classifiers within each level of GO functions generality with three paired two-sided tests
+     * over GO functions that have AUPRC of both classifiers:
+     *  1. Wilcoxon signed-rank test; functions with equal AUPRCs are left out and the p-value is exact for up to 20
+     *     functions, otherwise it is based on normal approximation.
+     *  2. Sign test - binomial test of the number of functions with higher AUPRC of the first classifier.
+     *  3. Permutation test of the mean difference, where signs of differences are permuted. Up to 20 non-zero
+     *     differences, all sign assignments are enumerated (exact test), otherwise numPermutations random assignments
+     *     are drawn and p-value is (1 + # of permutations with |mean| >= |observed mean|) / (1 + numPermutations).
+     *     Permutations are processed in parallel, in blocks with their own random generators (see
+     *     "RandomUtils.splitRandoms").
+     *
+     * P-values of each test are corrected for multiple testing over all comparisons with Holm's and Benjamini-Hochberg
+     * procedures.
+     *
+     * Outputs a tab delimited file with columns "Generality", "Classifier 1", "Classifier 2", "# of GO functions",
+     * "Mean difference", "Median difference" and for each test "p-value", "Holm" and "BH".
+     *
+     * @param auprcs              AUPRCs of GO functions.
+     * @param generality          Index of the generality level in generalityLevels for each function in auprcs.
+     * @param generalityLevels    Levels of GO functions generality (e.g., S, M, G).
+     * @param numPermutations     Number of random permutations (e.g., 100000).
+     * @param seed                Seed for the random generator.
+     * @param outFile             Output file.
+     *
+     * @throws IOException
+     */
+    public static void testDifferencesBetweenClassifiers(AUPRCTable auprcs, int[] generality, String[] generalityLevels,
+                                                         int numPermutations, long seed, File outFile) throws IOException
+    {
+        List<String[]> comparisons = new ArrayList<>();
+        List<double[]> differences = new ArrayList<>();
+
+        for (int level = 0; level < generalityLevels.length; level++)
+            for (int c1 = 0; c1 < auprcs.numClassifiers(); c1++)
+                for (int c2 = c1 + 1; c2 < auprcs.numClassifiers(); c2++)
+                {
+                    double[] d = new double[auprcs.numFunctions()];
+                    int n = 0;
+
+                    for (int f = 0; f < auprcs.numFunctions(); f++)
+                        if (generality[f] == level && !Double.isNaN(auprcs.auprc(c1, f)) && !Double.isNaN(auprcs.auprc(c2, f)))
+                            d[n++] = auprcs.auprc(c1, f) - auprcs.auprc(c2, f);
+
+                    comparisons.add(new String[] {generalityLevels[level], auprcs.classifier(c1), auprcs.classifier(c2)});
+                    differences.add(Arrays.copyOf(d, n));
+                }
+
+        int numComparisons = comparisons.size();
+
+        SplittableRandom root = new SplittableRandom(seed);
+
+        double[][] pValues = new double[TESTS.length][numComparisons];
+
+        for (int c = 0; c < numComparisons; c++)
+        {
+            double[] d = differences.get(c);
+
+            pValues[0][c] = wilcoxonSignedRankTest(d);
+            pValues[1][c] = signTest(d);
+            pValues[2][c] = permutationTest(d, numPermutations, root.split());
+        }
+
+        double[][] holm = new double[TESTS.length][];
+        double[][] bh = new double[TESTS.length][];
+
+        for (int t = 0; t < TESTS.length; t++)
+        {
+            holm[t] = holmCorrection(pValues[t]);
+            bh[t] = benjaminiHochbergCorrection(pValues[t]);
+        }
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
+
+        bw.write("Generality\tClassifier 1\tClassifier 2\t# of GO functions\tMean difference\tMedian difference");
+        for (String test : TESTS)
+            bw.write("\t" + test + " p-value\t" + test + " Holm\t" + test + " BH");
+        bw.write("\n");
+
+        for (int c = 0; c < numComparisons; c++)
+        {
+            String[] comparison = comparisons.get(c);
+            double[] d = differences.get(c);
+
+            bw.write(comparison[0] + "\t" + comparison[1] + "\t" + comparison[2] + "\t" + d.length + "\t" +
+                     format(mean(d), 4) + "\t" + format(median(d), 4));
+
+            for (int t = 0; t < TESTS.length; t++)
+                bw.write("\t" + formatPValue(pValues[t][c]) + "\t" + formatPValue(holm[t][c]) + "\t" + formatPValue(bh[t][c]));
+
+            bw.write("\n");
+        }
+
+        bw.close();
+    }
+
+    /**
+     * Two-sided Wilcoxon signed-rank test of differences, without zero differences.
+     *
+     * @return p-value or NaN if all differences are zero.
+     */
+    static double wilcoxonSignedRankTest(double[] differences)
+    {
+        double[] nonZero = nonZero(differences);
+
+        if (nonZero.length == 0)
+            return Double.NaN;
+
+        return new WilcoxonSignedRankTest().wilcoxonSignedRankTest(nonZero, new double[nonZero.length],
+                                                                   nonZero.length <= MAX_EXACT_PERMUTATION_SIZE);
+    }
+
+    /**
+     * Two-sided sign test of differences, without zero differences.
+     *
+     * @return p-value or NaN if all differences are zero.
+     */
+    static double signTest(double[] differences)
+    {
+        int numPositive = 0, numNonZero = 0;
+
+        for (double d : differences)
+            if (d != 0)
+            {
+                numNonZero++;
+
+                if (d > 0)
+                    numPositive++;
+            }
+
+        if (numNonZero == 0)
+            return Double.NaN;
+
+        return new BinomialTest().binomialTest(numNonZero, numPositive, 0.5, AlternativeHypothesis.TWO_SIDED);
+    }
+
+    /**
+     * Two-sided paired permutation test of the mean difference.
+     *
+     * @return p-value or NaN if there are no differences.
+     */
+    static double permutationTest(double[] differences, int numPermutations, SplittableRandom random)
+    {
+        double[] nonZero = nonZero(differences);
+        int n = nonZero.length;
+
+        if (differences.length == 0)
+            return Double.NaN;
+        if (n == 0)
+            return 1;
+
+        double observed = 0;
+        for (double d : nonZero)
+            observed += d;
+
+        //Sums that differ from the observed sum only by rounding errors count as equal
+        double threshold = Math.abs(observed) - 1e-9 * (1 + Math.abs(observed));
+
+        if (n <= MAX_EXACT_PERMUTATION_SIZE)
+        {
+            long numAtLeastObserved = IntStream.range(0, 1 << n).parallel().filter(signs -> {
+                double sum = 0;
+                for (int i = 0; i < n; i++)
+                    sum += ((signs >>> i) & 1) == 0 ? nonZero[i] : -nonZero[i];
+
+                return Math.abs(sum) >= threshold;
+            }).count();
+
+            return numAtLeastObserved / (double)(1L << n);
+        }
+
+        SplittableRandom[] randoms = splitRandoms(random, NUM_PERMUTATION_BLOCKS);
+
+        long numAtLeastObserved = IntStream.range(0, NUM_PERMUTATION_BLOCKS).parallel().mapToLong(b -> {
+            int from = (int)((long)numPermutations * b / NUM_PERMUTATION_BLOCKS);
+            int to = (int)((long)numPermutations * (b + 1) / NUM_PERMUTATION_BLOCKS);
+
+            long count = 0;
+
+            for (int p = from; p < to; p++)
+            {
+                double sum = 0;
+                for (double d : nonZero)
+                    sum += randoms[b].nextBoolean() ? d : -d;
+
+                if (Math.abs(sum) >= threshold)
+                    count++;
+            }
+
+            return count;
+        }).sum();
+
+        return (1 + numAtLeastObserved) / (double)(1 + numPermutations);
+    }
+
+    /**
+     * Holm's step-down correction of p-values. Missing p-values (NaN) are not counted.
+     */
+    static double[] holmCorrection(double[] pValues)
+    {
+        Integer[] order = sortedIndices(pValues);
+        int m = order.length;
+
+        double[] corrected = new double[pValues.length];
+        Arrays.fill(corrected, Double.NaN);
+
+        double max = 0;
+        for (int r = 0; r < m; r++)
+        {
+            max = Math.max(max, Math.min(1, (m - r) * pValues[order[r]]));
+            corrected[order[r]] = max;
+        }
+
+        return corrected;
+    }
+
+    /**
+     * Benjamini-Hochberg correction of p-values (false discovery rate). Missing p-values (NaN) are not counted.
+     */
+    static double[] benjaminiHochbergCorrection(double[] pValues)
+    {
+        Integer[] order = sortedIndices(pValues);
+        int m = order.length;
+
+        double[] corrected = new double[pValues.length];
+        Arrays.fill(corrected, Double.NaN);
+
+        double min = 1;
+        for (int r = m - 1; r >= 0; r--)
+        {
+            min = Math.min(min, m * pValues[order[r]] / (r + 1));
+            corrected[order[r]] = min;
+        }
+
+        return corrected;
+    }
+
+    /**
+     * Indices of non-missing p-values in ascending order of p-values.
+     */
+    private static Integer[] sortedIndices(double[] pValues)
+    {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < pValues.length; i++)
+            if (!Double.isNaN(pValues[i]))
+                indices.add(i);
+
+        indices.sort((a, b) -> Double.compare(pValues[a], pValues[b]));
+
+        return indices.toArray(new Integer[indices.size()]);
+    }
+
+    private static double[] nonZero(double[] values)
+    {
+        return Arrays.stream(values).filter(v -> v != 0).toArray();
+    }
+
+    private static double mean(double[] values)
+    {
+        return (values.length == 0 ? Double.NaN : Arrays.stream(values).sum() / values.length);
+    }
+
+    private static double median(double[] values)
+    {
+        if (values.length == 0)
+            return Double.NaN;
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        int middle = sorted.length / 2;
+        return (sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2);
+    }
+
+    private static String format(double value, int places)
+    {
+        return (Double.isNaN(value) ? "NA" : String.valueOf(round(value, places)));
+    }
+
+    /**
+     * P-values below 1e-6 are written unrounded, so that they are not written as 0.
+     */
+    private static String formatPValue(double pValue)
+    {
+        return (pValue < 1e-6 ? String.valueOf(pValue) : format(pValue, 6));
+    }
+}
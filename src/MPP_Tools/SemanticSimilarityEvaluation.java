@@ -0,0 +1,279 @@
+package MPP_Tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import static org.apache.commons.math3.util.Precision.round;
+import utils.GeneOntology;
+import utils.InformationContent;
+import static utils.ResourceLoaders.loadOg2FunctionsFromFile;
+import static utils.ResourceLoaders.ogToStr;
+import utils.SemanticSimilarity;
+
+/**
+ * Evaluates predictions of gene family functions with semantic similarity between predicted and known GO functions,
+ * so that a prediction of a function close to a known function in the GO DAG is not counted as wrong.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class SemanticSimilarityEvaluation
+{
+    /** Maximum number of cached most informative common ancestors. */
+    private static final int CACHE_CAPACITY = 1 << 20;
+
+    private static final String[] STATISTICS = {"precision", "recall", "BMA"};
+
+    /**
+     * Compares for each gene family the set of GO functions predicted at Pr >= prThreshold by each classification model
+     * with the set of its known functions using Resnik, Lin and Jiang semantic similarity (see "SemanticSimilarity") over
+     * the GO DAG with "is_a" and "part_of" relations and IC from Uniprot-GOA frequencies. For each measure:
+     *  - precision: mean over predicted functions of the similarity to the most similar known function,
+     *  - recall: mean over known functions of the similarity to the most similar predicted function (0 if there are
+     *    no predictions),
+     *  - BMA: best-match average, i.e., the mean of precision and recall (NA if there are no predictions).
+     * Lin and Jiang similarity of a function to itself is 1, so their precision and recall are at least the precision
+     * and recall of exact matches, which are written to the summary for comparison.
+     *
+     * As in the complementarity graphs, only functions from the prokaryotic GO subset gosubset_prok are considered;
+     * functions without known IC are left out. Gene families that have known functions and Pr scores in all tables are
+     * evaluated in parallel; MICAs of pairs of functions are cached.
+     *
+     * Outputs:
+     *  1. Semantic_similarity-gene_families.txt - for each gene family the number of known functions and for each
+     *     model the number of predicted functions and precision, recall and BMA of each measure.
+     *  2. Semantic_similarity-summary.txt - means over gene families for each model and measure, together with
+     *     precision and recall of exact matches. Means of precision and BMA are over gene families with predictions.
+     *
+     * @param inFilesWithPrScores           Tables with Pr scores outputted by the classification models.
+     * @param methodsNames                  Names of the methods, i.e., classification models.
+     * @param prThreshold                   Predictions with Pr >= prThreshold will be considered as positive.
+     * @param inOg2FunctionsFile            File with known functions from Uniprot-GOA that are assigned to gene families.
+     * @param inGeneOntologyFile            Gene ontology in obo-xml.gz format.
+     * @param inFileWithFunctionFrequencies File with frequencies of GO functions appearance in Uniprot-GOA.
+     * @param outFolder                     Folder in which the output files will be saved.
+     *
+     * @throws IOException
+     */
+    public static void evaluateSemanticSimilarity(File[] inFilesWithPrScores, String[] methodsNames, double prThreshold,
+                                                  File inOg2FunctionsFile, File inGeneOntologyFile,
+                                                  File inFileWithFunctionFrequencies, File outFolder) throws IOException
+    {
+        if (!outFolder.exists())
+            outFolder.mkdirs();
+
+        int numMethods = inFilesWithPrScores.length;
+
+        GeneOntology ontology = GeneOntology.load(inGeneOntologyFile);
+        InformationContent informationContent = InformationContent.load(inFileWithFunctionFrequencies);
+        SemanticSimilarity similarity = new SemanticSimilarity(ontology, informationContent, CACHE_CAPACITY);
+
+        Map<Integer, Set<Integer>> og2functions = loadOg2FunctionsFromFile(inOg2FunctionsFile);
+
+        AUPRCEvaluation.PrScores[] tables = new AUPRCEvaluation.PrScores[numMethods];
+        for (int m = 0; m < numMethods; m++)
+            tables[m] = AUPRCEvaluation.PrScores.load(inFilesWithPrScores[m]);
+
+        List<Map<Integer, Integer>> rowOfOg = new ArrayList<>();
+        for (AUPRCEvaluation.PrScores table : tables)
+        {
+            Map<Integer, Integer> rows = new HashMap<>();
+            for (int i = 0; i < table.ogs.length; i++)
+                rows.put(table.ogs[i], i);
+            rowOfOg.add(rows);
+        }
+
+        //Gene families with known prokaryotic functions with known IC that have Pr scores in all tables
+        List<Integer> ogList = new ArrayList<>();
+        List<int[]> knownList = new ArrayList<>();
+
+        for (int og : og2functions.keySet())
+        {
+            int[] known = og2functions.get(og).stream().mapToInt(Integer::intValue)
+                                      .filter(func -> isEvaluated(func, ontology, similarity)).sorted().toArray();
+
+            if (known.length > 0 && rowOfOg.stream().allMatch(rows -> rows.containsKey(og)))
+            {
+                ogList.add(og);
+                knownList.add(known);
+            }
+        }
+
+        int numOGs = ogList.size();
+
+        //Columns of evaluated functions in each table
+        int[][] evaluatedColumns = new int[numMethods][];
+        for (int m = 0; m < numMethods; m++)
+        {
+            int[] functions = tables[m].functions;
+            evaluatedColumns[m] = IntStream.range(0, functions.length)
+                                           .filter(j -> isEvaluated(functions[j], ontology, similarity)).toArray();
+        }
+
+        System.out.println("Gene families in evaluation: " + numOGs);
+
+        int numMeasures = SemanticSimilarity.MEASURES.length;
+
+        int[][] numPredicted = new int[numMethods][numOGs];
+        int[][] numExactMatches = new int[numMethods][numOGs];
+        double[][][][] results = new double[numMethods][numMeasures][STATISTICS.length][numOGs];
+
+        long start = System.currentTimeMillis();
+
+        IntStream.range(0, numOGs).parallel().forEach(k -> {
+            int[] known = knownList.get(k);
+
+            for (int m = 0; m < numMethods; m++)
+            {
+                AUPRCEvaluation.PrScores table = tables[m];
+                int row = rowOfOg.get(m).get(ogList.get(k));
+
+                int[] predicted = Arrays.stream(evaluatedColumns[m])
+                                        .filter(j -> table.scores[j][row] >= prThreshold)
+                                        .map(j -> table.functions[j]).toArray();
+
+                numPredicted[m][k] = predicted.length;
+
+                for (int p : predicted)
+                    if (Arrays.binarySearch(known, p) >= 0)
+                        numExactMatches[m][k]++;
+
+                //Best matches of predicted functions among known functions and vice versa
+                double[][] bestOfPredicted = new double[numMeasures][predicted.length];
+                double[][] bestOfKnown = new double[numMeasures][known.length];
+
+                for (int i = 0; i < predicted.length; i++)
+                    for (int j = 0; j < known.length; j++)
+                    {
+                        double[] sims = similarity.similarities(predicted[i], known[j]);
+
+                        for (int s = 0; s < numMeasures; s++)
+                        {
+                            bestOfPredicted[s][i] = Math.max(bestOfPredicted[s][i], sims[s]);
+                            bestOfKnown[s][j] = Math.max(bestOfKnown[s][j], sims[s]);
+                        }
+                    }
+
+                for (int s = 0; s < numMeasures; s++)
+                {
+                    double precision = (predicted.length == 0 ? Double.NaN : mean(bestOfPredicted[s]));
+                    double recall = mean(bestOfKnown[s]);
+
+                    results[m][s][0][k] = precision;
+                    results[m][s][1][k] = recall;
+                    results[m][s][2][k] = (precision + recall) / 2;
+                }
+            }
+        });
+
+        System.out.println("Semantic similarity computed in " + (System.currentTimeMillis() - start) + " ms");
+
+        //Per gene family
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFolder + "/Semantic_similarity-gene_families.txt"));
+
+        bw.write("Gene family\t# of known functions");
+        for (String method : methodsNames)
+        {
+            bw.write("\t" + method + " # of predicted functions");
+
+            for (String measure : SemanticSimilarity.MEASURES)
+                for (String statistic : STATISTICS)
+                    bw.write("\t" + method + " " + measure + " " + statistic);
+        }
+        bw.write("\n");
+
+        for (int k = 0; k < numOGs; k++)
+        {
+            bw.write(ogToStr(ogList.get(k)) + "\t" + knownList.get(k).length);
+
+            for (int m = 0; m < numMethods; m++)
+            {
+                bw.write("\t" + numPredicted[m][k]);
+
+                for (int s = 0; s < numMeasures; s++)
+                    for (int t = 0; t < STATISTICS.length; t++)
+                        bw.write("\t" + format(results[m][s][t][k]));
+            }
+
+            bw.write("\n");
+        }
+
+        bw.close();
+
+        //Summary
+        bw = new BufferedWriter(new FileWriter(outFolder + "/Semantic_similarity-summary.txt"));
+
+        bw.write("Method\t# of gene families\t# of gene families with predictions\tExact precision\tExact recall");
+        for (String measure : SemanticSimilarity.MEASURES)
+            for (String statistic : STATISTICS)
+                bw.write("\t" + measure + " " + statistic);
+        bw.write("\n");
+
+        System.out.println("-----------------------------------------------------");
+        System.out.println("SEMANTIC SIMILARITY (BMA)");
+        System.out.println("-----------------------------------------------------");
+
+        for (int m = 0; m < numMethods; m++)
+        {
+            int numWithPredictions = 0;
+            double exactPrecision = 0, exactRecall = 0;
+
+            for (int k = 0; k < numOGs; k++)
+            {
+                if (numPredicted[m][k] > 0)
+                {
+                    numWithPredictions++;
+                    exactPrecision += numExactMatches[m][k] / (double)numPredicted[m][k];
+                }
+
+                exactRecall += numExactMatches[m][k] / (double)knownList.get(k).length;
+            }
+
+            bw.write(methodsNames[m] + "\t" + numOGs + "\t" + numWithPredictions + "\t" +
+                     format(numWithPredictions == 0 ? Double.NaN : exactPrecision / numWithPredictions) + "\t" +
+                     format(numOGs == 0 ? Double.NaN : exactRecall / numOGs));
+
+            for (int s = 0; s < numMeasures; s++)
+                for (int t = 0; t < STATISTICS.length; t++)
+                    bw.write("\t" + format(meanWithoutNaN(results[m][s][t])));
+
+            bw.write("\n");
+
+            for (int s = 0; s < numMeasures; s++)
+                System.out.println(methodsNames[m] + " - " + SemanticSimilarity.MEASURES[s] + ": " +
+                                   format(meanWithoutNaN(results[m][s][2])));
+        }
+
+        bw.close();
+    }
+
+    /**
+     * Functions from gosubset_prok with known IC are evaluated.
+     */
+    private static boolean isEvaluated(int func, GeneOntology ontology, SemanticSimilarity similarity)
+    {
+        return ontology.inSubset(func, "gosubset_prok") && !Double.isNaN(similarity.ic(func));
+    }
+
+    private static double mean(double[] values)
+    {
+        return (values.length == 0 ? Double.NaN : Arrays.stream(values).sum() / values.length);
+    }
+
+    private static double meanWithoutNaN(double[] values)
+    {
+        return mean(Arrays.stream(values).filter(v -> !Double.isNaN(v)).toArray());
+    }
+
+    private static String format(double value)
+    {
+        return (Double.isNaN(value) ? "NA" : String.valueOf(round(value, 4)));
+    }
+}
@@ -0,0 +1,41 @@
+import static MPP_Tools.CoEvolutionNetwork.computeSimilaritiesBetweenOGs;
+import static MPP_Tools.CoEvolutionNetwork.mergeSimilarityShards;
+import java.io.File;
+
+/**
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ *
+ * Command line entry point for computing similarities between gene families in several independent processes
+ * (on one or more machines that share a file system) and merging their outputs.
+ *
+ * Compute shard i (0-based) of N:
+ *      java ShardedSimilarities compute i N tileSize MPP.csv PP.csv workFolder shardOutputFile
+ *
+ * Merge outputs of all shards into the file with Pearson correlation coefficients:
+ *      java ShardedSimilarities merge outputFile shardOutputFile1 shardOutputFile2 ...
+ *
+ */
+public class ShardedSimilarities
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 8 && args[0].equals("compute"))
+            computeSimilaritiesBetweenOGs(new File(args[4]), new File(args[5]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                                          Integer.parseInt(args[3]), new File(args[6]), new File(args[7]));
+        else if (args.length >= 3 && args[0].equals("merge"))
+        {
+            File[] shardFiles = new File[args.length - 2];
+            for (int i = 2; i < args.length; i++)
+                shardFiles[i - 2] = new File(args[i]);
+
+            mergeSimilarityShards(shardFiles, new File(args[1]));
+        }
+        else
+        {
+            System.out.println("Usage:");
+            System.out.println("\tjava ShardedSimilarities compute shardIndex numShards tileSize MPP.csv PP.csv workFolder shardOutputFile");
+            System.out.println("\tjava ShardedSimilarities merge outputFile shardOutputFile1 shardOutputFile2 ...");
+        }
+    }
+}
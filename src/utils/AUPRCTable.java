@@ -0,0 +1,206 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import static utils.FileUtils.findReaderType;
+
+/**
+ * GO function-level AUPRCs and prediction statistics of several classifiers joined by GO function. Functions are kept
+ * in a sorted dictionary of ids and values are stored in one primitive column per classifier, so a function missing
+ * from a file stays missing (NaN) for that classifier only.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class AUPRCTable
+{
+    private final String[] classifiers;
+    private final int[] functions;
+    private final double[][] auprcs;
+    private final int[][] numPredictions;
+
+    private AUPRCTable(String[] classifiers, int[] functions, double[][] auprcs, int[][] numPredictions)
+    {
+        this.classifiers = classifiers;
+        this.functions = functions;
+        this.auprcs = auprcs;
+        this.numPredictions = numPredictions;
+    }
+
+    /**
+     * Loads tab delimited files with columns "GO function", "AUPRC" and "# of gene families for which a GO function was
+     * predicted at Pr>=50%" (e.g., *-AUPRCs+prediction_statistics.txt), one for each classifier. Files are parsed in
+     * parallel.
+     *
+     * @param inFilesWithAUPRCsAndPredictionsStats  Files, one for each classifier.
+     * @param classifierNames                       Names of classifiers in the same order as files.
+     *
+     * @throws IOException
+     */
+    public static AUPRCTable load(File[] inFilesWithAUPRCsAndPredictionsStats, String[] classifierNames) throws IOException
+    {
+        int numClassifiers = inFilesWithAUPRCsAndPredictionsStats.length;
+
+        int[][] fileFunctions = new int[numClassifiers][];
+        double[][] fileAUPRCs = new double[numClassifiers][];
+        int[][] fileNumPredictions = new int[numClassifiers][];
+
+        try
+        {
+            IntStream.range(0, numClassifiers).parallel().forEach(c -> {
+                try
+                {
+                    BufferedReader br = findReaderType(inFilesWithAUPRCsAndPredictionsStats[c]);
+
+                    int size = 0;
+                    int[] funcs = new int[1024];
+                    double[] auprcs = new double[1024];
+                    int[] predictions = new int[1024];
+
+                    String line;
+
+                    while ((line = br.readLine()) != null)
+                        if (!line.startsWith("#") && !line.trim().isEmpty())
+                        {
+                            String[] parts = line.split("\t");
+
+                            if (size == funcs.length)
+                            {
+                                funcs = Arrays.copyOf(funcs, 2 * size);
+                                auprcs = Arrays.copyOf(auprcs, 2 * size);
+                                predictions = Arrays.copyOf(predictions, 2 * size);
+                            }
+
+                            funcs[size] = Integer.parseInt(parts[0].trim());
+                            auprcs[size] = (parts[1].trim().equals("NA") ? Double.NaN : Double.parseDouble(parts[1]));
+                            predictions[size] = Integer.parseInt(parts[2].trim());
+                            size++;
+                        }
+
+                    br.close();
+
+                    fileFunctions[c] = Arrays.copyOf(funcs, size);
+                    fileAUPRCs[c] = Arrays.copyOf(auprcs, size);
+                    fileNumPredictions[c] = Arrays.copyOf(predictions, size);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+
+        //Dictionary of function ids from all files
+        int[] functions = Arrays.stream(fileFunctions).flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+
+        double[][] auprcs = new double[numClassifiers][];
+        int[][] numPredictions = new int[numClassifiers][];
+
+        IntStream.range(0, numClassifiers).parallel().forEach(c -> {
+            auprcs[c] = new double[functions.length];
+            numPredictions[c] = new int[functions.length];
+
+            Arrays.fill(auprcs[c], Double.NaN);
+            Arrays.fill(numPredictions[c], -1);
+
+            for (int i = 0; i < fileFunctions[c].length; i++)
+            {
+                int f = Arrays.binarySearch(functions, fileFunctions[c][i]);
+
+                auprcs[c][f] = fileAUPRCs[c][i];
+                numPredictions[c][f] = fileNumPredictions[c][i];
+            }
+        });
+
+        System.out.println("Classifiers: " + numClassifiers + ", GO functions: " + functions.length);
+
+        return new AUPRCTable(classifierNames.clone(), functions, auprcs, numPredictions);
+    }
+
+    /**
+     * Returns a table with only the functions for which keep[f] is true.
+     */
+    public AUPRCTable select(boolean[] keep)
+    {
+        int numKept = 0;
+        for (boolean k : keep)
+            if (k)
+                numKept++;
+
+        int[] keptFunctions = new int[numKept];
+        double[][] keptAUPRCs = new double[classifiers.length][numKept];
+        int[][] keptNumPredictions = new int[classifiers.length][numKept];
+
+        int i = 0;
+        for (int f = 0; f < functions.length; f++)
+            if (keep[f])
+            {
+                keptFunctions[i] = functions[f];
+
+                for (int c = 0; c < classifiers.length; c++)
+                {
+                    keptAUPRCs[c][i] = auprcs[c][f];
+                    keptNumPredictions[c][i] = numPredictions[c][f];
+                }
+
+                i++;
+            }
+
+        return new AUPRCTable(classifiers, keptFunctions, keptAUPRCs, keptNumPredictions);
+    }
+
+    public int numClassifiers()
+    {
+        return classifiers.length;
+    }
+
+    public String classifier(int c)
+    {
+        return classifiers[c];
+    }
+
+    public int numFunctions()
+    {
+        return functions.length;
+    }
+
+    /**
+     * Id of the f-th function; ids are in ascending order.
+     */
+    public int function(int f)
+    {
+        return functions[f];
+    }
+
+    /**
+     * Position of a function in the dictionary or a negative number if the function is not in the table.
+     */
+    public int indexOf(int function)
+    {
+        return Arrays.binarySearch(functions, function);
+    }
+
+    /**
+     * AUPRC of the f-th function for classifier c or NaN if it is missing.
+     */
+    public double auprc(int c, int f)
+    {
+        return auprcs[c][f];
+    }
+
+    /**
+     * Number of gene families for which the f-th function was predicted by classifier c at Pr>=50% or -1 if it is
+     * missing.
+     */
+    public int numPredictions(int c, int f)
+    {
+        return numPredictions[c][f];
+    }
+}
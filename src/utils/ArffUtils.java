@@ -1,13 +1,21 @@
 package utils;
 
 import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import static utils.FileUtils.findReaderType;
 
@@ -19,8 +27,61 @@ public class ArffUtils
 {
     public static void selectSubsetOfLabelsFromHMCArff(List<String> labels, File inArffFile, File outArffFile) throws IOException
     {
-        FileWriter fw = new FileWriter(outArffFile);
-        BufferedWriter bw = new BufferedWriter(fw);
+        selectSubsetsOfLabelsFromHMCArff(Collections.singletonList(labels), inArffFile, new File[] {outArffFile}, null);
+    }
+    
+    /**
+     * Performs "selectSubsetOfLabelsFromHMCArff" for many subsets of labels in a single read of the input file. Labels
+     * of each instance are parsed only once into a bit set over all requested labels, from which the binary label
+     * columns of all outputs are written.
+     * 
+     * @param labelSubsets  Labels (GO functions) for each output file: one label for a single-label output or more
+     *                      labels for an output with several binary label columns. Labels that are not in the class
+     *                      hierarchy of the input file are removed from the lists.
+     * @param inArffFile    Input data set in CLUS HMC ARFF format.
+     * @param outArffFiles  outArffFiles[i] will contain binary label columns for labelSubsets.get(i).
+     * 
+     * @throws IOException 
+     */
+    public static void selectSubsetsOfLabelsFromHMCArff(List<List<String>> labelSubsets, File inArffFile, File[] outArffFiles) throws IOException
+    {
+        selectSubsetsOfLabelsFromHMCArff(labelSubsets, inArffFile, outArffFiles, null);
+    }
+    
+    /**
+     * Performs "selectSubsetsOfLabelsFromHMCArff" and writes data rows in the selected ARFF format. In sparse format
+     * ("{index value, ...}") zero feature values and labels with value 0 are omitted.
+     * 
+     * @param sparseOutput  True for sparse and false for dense output rows.
+     * 
+     * @throws IOException 
+     */
+    public static void selectSubsetsOfLabelsFromHMCArff(List<List<String>> labelSubsets, File inArffFile, File[] outArffFiles,
+                                                        boolean sparseOutput) throws IOException
+    {
+        selectSubsetsOfLabelsFromHMCArff(labelSubsets, inArffFile, outArffFiles, Boolean.valueOf(sparseOutput));
+    }
+    
+    /**
+     * @param sparseOutput  True for sparse, false for dense output rows and null to write each row in the format of the
+     *                      input row.
+     */
+    private static void selectSubsetsOfLabelsFromHMCArff(List<List<String>> labelSubsets, File inArffFile, File[] outArffFiles,
+                                                         Boolean sparseOutput) throws IOException
+    {
+        int numOutputs = outArffFiles.length;
+        
+        BufferedWriter[] bws = new BufferedWriter[numOutputs];
+        for (int k = 0; k < numOutputs; k++)
+            bws[k] = new BufferedWriter(new FileWriter(outArffFiles[k]), 1 << 16);
+        
+        //Index of each requested label in the bit set and indices of label columns of each output
+        Map<String, Integer> labelIndices = new HashMap<>();
+        int[][] columns = new int[numOutputs][0];
+        
+        BitSet instanceLabels = new BitSet();
+        
+        int numAttributes = 0; //attributes before the class attribute
         
         BufferedReader br = findReaderType(inArffFile);
         
@@ -47,31 +108,316 @@ public class ArffUtils
                         labelsInArff.add(secondLabel);
                 }
                 
-                labels.retainAll(labelsInArff);
-                
-                for (String label : labels)
-                    bw.write("@ATTRIBUTE " + label + "\t{0,1}\n");
+                for (int k = 0; k < numOutputs; k++)
+                {
+                    List<String> labels = labelSubsets.get(k);
+                    labels.retainAll(labelsInArff);
+                    
+                    columns[k] = new int[labels.size()];
+                    
+                    for (int c = 0; c < labels.size(); c++)
+                    {
+                        Integer index = labelIndices.get(labels.get(c));
+                        
+                        if (index == null)
+                        {
+                            index = labelIndices.size();
+                            labelIndices.put(labels.get(c), index);
+                        }
+                        
+                        columns[k][c] = index;
+                        
+                        bws[k].write("@ATTRIBUTE " + labels.get(c) + "\t{0,1}\n");
+                    }
+                }
             }
             else if (line.startsWith("@") || line.isEmpty())
-                bw.write(line + "\n");
+            {
+                if (line.toUpperCase().startsWith("@ATTRIBUTE"))
+                    numAttributes++;
+                
+                for (BufferedWriter bw : bws)
+                    bw.write(line + "\n");
+            }
             else
-            {                
-                bw.write(line.substring(0, line.lastIndexOf(",")));
+            {
+                boolean sparseInput = isSparseRow(line);
+                boolean sparse = (sparseOutput == null ? sparseInput : sparseOutput);
+                
+                String[] values = null;
+                String labelsStr;
+                
+                if (sparseInput)
+                {
+                    values = parseSparseRow(line, numAttributes + 1);
+                    labelsStr = (values[numAttributes] == null ? "" : values[numAttributes]);
+                }
+                else
+                    labelsStr = line.substring(line.lastIndexOf(",") + 1).trim();
                 
-                String labelsStr = line.substring(line.lastIndexOf(",") + 1).trim();
+                //Parse labels of the instance once
+                instanceLabels.clear();
                 
-                String[] parts = labelsStr.split("@");
-                List<String> instanceLabels = Arrays.asList(parts);
+                int start = 0;
+                while (start <= labelsStr.length())
+                {
+                    int end = labelsStr.indexOf("@", start);
+                    if (end == -1)
+                        end = labelsStr.length();
+                    
+                    Integer index = labelIndices.get(labelsStr.substring(start, end));
+                    if (index != null)
+                        instanceLabels.set(index);
+                    
+                    start = end + 1;
+                }
                 
-                for (String label : labels)
-                    if (instanceLabels.contains(label))
-                        bw.write(", 1");
+                String features;
+                
+                if (sparse)
+                    features = toSparseRow(sparseInput ? values : line.substring(0, line.lastIndexOf(",")).split(","), numAttributes);
+                else if (sparseInput)
+                    features = String.join(",", Arrays.stream(values, 0, numAttributes).map(v -> (v == null ? "0" : v)).toArray(String[]::new));
+                else
+                    features = line.substring(0, line.lastIndexOf(","));
+                
+                for (int k = 0; k < numOutputs; k++)
+                {
+                    bws[k].write(features);
+                    
+                    if (sparse)
+                    {
+                        boolean empty = features.equals("{");
+                        
+                        for (int c = 0; c < columns[k].length; c++)
+                            if (instanceLabels.get(columns[k][c]))
+                            {
+                                bws[k].write((empty ? "" : ",") + (numAttributes + c) + " 1");
+                                empty = false;
+                            }
+                        
+                        bws[k].write("}\n");
+                    }
                     else
-                        bw.write(", 0");
+                    {
+                        for (int index : columns[k])
+                            bws[k].write(instanceLabels.get(index) ? ", 1" : ", 0");
+                        
+                        bws[k].write("\n");
+                    }
+                }
+            }
+        
+        br.close();
+        
+        for (BufferedWriter bw : bws)
+            bw.close();
+    }
+    
+    /**
+     * Checks whether a data row is in sparse ARFF format: "{index value, index value, ...}", where attributes are
+     * indexed from 0 and omitted attributes have value 0.
+     */
+    public static boolean isSparseRow(String line)
+    {
+        for (int i = 0; i < line.length(); i++)
+            if (!Character.isWhitespace(line.charAt(i)))
+                return line.charAt(i) == '{';
+        
+        return false;
+    }
+    
+    /**
+     * Parses a data row in sparse ARFF format.
+     * 
+     * @param numAttributes Number of attributes in the data set.
+     * 
+     * @return Value of each attribute, or null for attributes omitted from the row.
+     */
+    public static String[] parseSparseRow(String line, int numAttributes)
+    {
+        String[] values = new String[numAttributes];
+        
+        int start = line.indexOf("{") + 1;
+        int end = line.lastIndexOf("}");
+        
+        while (start < end)
+        {
+            int next = line.indexOf(",", start);
+            if (next == -1 || next > end)
+                next = end;
+            
+            String pair = line.substring(start, next).trim();
+            
+            if (!pair.isEmpty())
+            {
+                int space = pair.indexOf(" ");
+                values[Integer.parseInt(pair.substring(0, space))] = pair.substring(space + 1).trim();
+            }
+            
+            start = next + 1;
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Writes the first numAttributes values of a row in sparse ARFF format without the closing "}". Zero values of
+     * features (attributes after the ID attribute) and null values are omitted.
+     */
+    private static String toSparseRow(String[] values, int numAttributes)
+    {
+        StringBuilder sb = new StringBuilder("{");
+        
+        for (int j = 0; j < numAttributes; j++)
+        {
+            String value = (values[j] == null ? null : values[j].trim());
+            
+            if (value == null || (j > 0 && isZero(value)))
+                continue;
+            
+            if (sb.length() > 1)
+                sb.append(",");
+            
+            sb.append(j).append(" ").append(value);
+        }
+        
+        return sb.toString();
+    }
+    
+    private static boolean isZero(String value)
+    {
+        try
+        {
+            return Double.parseDouble(value) == 0;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+    
+    /**
+     * Projects a data set loaded into memory onto a subset of features and gene families and replaces the hierarchical
+     * class with a binary class for one GO function.
+     * 
+     * The format of the output is determined by the extension of outFile:
+     *  - ".bin" - binary format (DataOutputStream): number of selected features, names of the ID attribute, selected
+     *    features and class, followed by records of (byte 1, gene family, feature values as doubles, byte class) and
+     *    byte 0 at the end; missing values are NaN.
+     *  - otherwise CSV format in the same layout as Weka CSVSaver: header with attribute names and one row per gene
+     *    family with its ID, selected feature values and class (1 if annotated with the function, 0 otherwise).
+     * 
+     * @param dataset       Data set in CLUS HMC ARFF format loaded with "HmcDataset".
+     * @param keepFeatures  keepFeatures[j] is true if the j-th feature (not counting the ID attribute) is kept.
+     * @param keepOGs       Gene families that are kept, or null to keep all.
+     * @param function      GO function used as binary class.
+     * @param outFile       Output file.
+     * 
+     * @return Number of gene families written to the output.
+     * 
+     * @throws IOException 
+     */
+    public static int projectHMCDataset(HmcDataset dataset, boolean[] keepFeatures, Set<String> keepOGs, int function, File outFile) throws IOException
+    {
+        if (keepFeatures.length != dataset.numFeatures())
+            throw new IllegalArgumentException("Feature mask has " + keepFeatures.length + " elements, but the data set has " + dataset.numFeatures() + " features");
+        
+        List<String> keptNames = new ArrayList<>();
+        List<Integer> keptFeatures = new ArrayList<>();
+        
+        for (int j = 0; j < dataset.numFeatures(); j++)
+            if (keepFeatures[j])
+            {
+                keptNames.add(dataset.featureName(j));
+                keptFeatures.add(j);
+            }
+        
+        ProjectionWriter writer = new ProjectionWriter(outFile, dataset.idAttribute(), keptNames, String.valueOf(function));
+        
+        int[] classes = dataset.binaryClasses(function);
+        double[] values = new double[keptFeatures.size()];
+        int numWritten = 0;
+        
+        for (int i = 0; i < dataset.numInstances(); i++)
+            if (keepOGs == null || keepOGs.contains(dataset.og(i)))
+            {
+                for (int k = 0; k < values.length; k++)
+                    values[k] = dataset.value(i, keptFeatures.get(k));
                 
-                bw.write("\n");
+                writer.writeRow(dataset.og(i), values, classes[i]);
+                
+                numWritten++;
             }
         
-        bw.close();
+        writer.close();
+        
+        return numWritten;
+    }
+    
+    /**
+     * Writer of projections in CSV or binary format (see "projectHMCDataset").
+     */
+    private static class ProjectionWriter
+    {
+        private final BufferedWriter bw;
+        private final DataOutputStream dos;
+        private final StringBuilder sb = new StringBuilder();
+        
+        ProjectionWriter(File outFile, String idAttribute, List<String> featureNames, String className) throws IOException
+        {
+            if (outFile.getName().toLowerCase().endsWith(".bin"))
+            {
+                bw = null;
+                dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFile), 1 << 16));
+                
+                dos.writeInt(featureNames.size());
+                dos.writeUTF(idAttribute);
+                for (String name : featureNames)
+                    dos.writeUTF(name);
+                dos.writeUTF(className);
+            }
+            else
+            {
+                dos = null;
+                bw = new BufferedWriter(new FileWriter(outFile), 1 << 16);
+                
+                sb.append(idAttribute);
+                for (String name : featureNames)
+                    sb.append(",").append(name);
+                bw.write(sb.append(",").append(className).append("\n").toString());
+            }
+        }
+        
+        void writeRow(String og, double[] values, int cls) throws IOException
+        {
+            if (dos != null)
+            {
+                dos.writeByte(1);
+                dos.writeUTF(og);
+                for (double value : values)
+                    dos.writeDouble(value);
+                dos.writeByte(cls);
+            }
+            else
+            {
+                sb.setLength(0);
+                sb.append(og);
+                for (double value : values)
+                    sb.append(",").append(HmcDataset.formatValue(value));
+                bw.write(sb.append(",").append(cls).append("\n").toString());
+            }
+        }
+        
+        void close() throws IOException
+        {
+            if (dos != null)
+            {
+                dos.writeByte(0);
+                dos.close();
+            }
+            else
+                bw.close();
+        }
     }
 }
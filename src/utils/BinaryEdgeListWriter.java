@@ -0,0 +1,96 @@
+package utils;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes a network as a compact binary edge list (big-endian, as written by DataOutputStream):
+ * <pre>
+ * int      magic number 0x4D50504E ("MPPN")
+ * header   only if there are node attributes: byte 'H', int number of attributes, UTF name of each attribute
+ * records  node: byte 'N', int id, UTF label, int ARGB color (0 for no color)
+ *          node with position: byte 'P', int id, UTF label, int ARGB color (0 for no color), double x, double y
+ *          node attributes (after the node record): byte 'A', int id, int value of each attribute
+ *          edge: byte 'E', int source id, int target id, double weight, int ARGB color (0 for no color)
+ * </pre>
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class BinaryEdgeListWriter extends NetworkWriter
+{
+    public static final int MAGIC = 0x4D50504E;
+
+    private final DataOutputStream out;
+
+    private boolean writingEdges = false;
+
+    public BinaryEdgeListWriter(File outFile) throws IOException
+    {
+        this(outFile, new String[0]);
+    }
+
+    public BinaryEdgeListWriter(File outFile, String[] nodeAttributes) throws IOException
+    {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)));
+        out.writeInt(MAGIC);
+
+        if (nodeAttributes.length > 0)
+        {
+            out.writeByte('H');
+            out.writeInt(nodeAttributes.length);
+
+            for (String attribute : nodeAttributes)
+                out.writeUTF(attribute);
+        }
+    }
+
+    @Override
+    public void writeNode(int id, String label, Color color, Point2D position, int[] attributeValues) throws IOException
+    {
+        if (writingEdges)
+            throw new IllegalStateException("Nodes have to be written before edges");
+
+        out.writeByte(position == null ? 'N' : 'P');
+        out.writeInt(id);
+        out.writeUTF(label);
+        out.writeInt(color == null ? 0 : color.getRGB());
+
+        if (position != null)
+        {
+            out.writeDouble(position.getX());
+            out.writeDouble(position.getY());
+        }
+
+        if (attributeValues != null)
+        {
+            out.writeByte('A');
+            out.writeInt(id);
+
+            for (int value : attributeValues)
+                out.writeInt(value);
+        }
+    }
+
+    @Override
+    public void writeEdge(int source, int target, double weight, Color color) throws IOException
+    {
+        writingEdges = true;
+
+        out.writeByte('E');
+        out.writeInt(source);
+        out.writeInt(target);
+        out.writeDouble(weight);
+        out.writeInt(color == null ? 0 : color.getRGB());
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
@@ -0,0 +1,186 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.apache.commons.math3.util.Precision.round;
+
+/**
+ * Statistics of a notched box plot (R boxplot with notch = T) computed from a quantile sketch: quartiles, notches
+ * (+/-1.58 * IQR / sqrt(n) around the median), whiskers (the most extreme values within 1.5 * IQR from the box) and
+ * outliers.
+ *
+ * If the sketch is exact, quartiles are Tukey's hinges and the statistics are the same as in R. Otherwise, quartiles are
+ * sketch quantiles whose ranks are within "rankError * n" of the true ranks (see "QuantileSketch"), whiskers are the
+ * most extreme retained values within the fences and outliers are the retained values beyond the whiskers, together
+ * with the exact minimum and maximum, so that each drawn outlier stands for one or more values.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class BoxPlotStatistics
+{
+    public final long n;
+    public final double min;
+    public final double whiskerLow;
+    public final double q1;
+    public final double notchLow;
+    public final double median;
+    public final double notchHigh;
+    public final double q3;
+    public final double whiskerHigh;
+    public final double max;
+    public final double mean;
+
+    /** Values drawn as outliers and the (estimated) number of values beyond the whiskers. */
+    public final double[] outliers;
+    public final long numOutliers;
+
+    /** Bound on the rank error of quantiles as a fraction of n, 0 if the statistics are exact. */
+    public final double rankError;
+
+    private BoxPlotStatistics(QuantileSketch sketch)
+    {
+        n = sketch.count();
+        min = sketch.min();
+        max = sketch.max();
+        mean = sketch.mean();
+        rankError = sketch.normalizedRankError();
+
+        if (n == 0)
+        {
+            whiskerLow = q1 = notchLow = median = notchHigh = q3 = whiskerHigh = Double.NaN;
+            outliers = new double[0];
+            numOutliers = 0;
+
+            return;
+        }
+
+        double[] values = sketch.retainedValues();
+        long[] weights = sketch.retainedWeights();
+
+        if (sketch.isExact())
+        {
+            q1 = tukeyHinge(values, true);
+            median = quantile(values, 0.5);
+            q3 = tukeyHinge(values, false);
+        }
+        else
+        {
+            q1 = sketch.quantile(0.25);
+            median = sketch.quantile(0.5);
+            q3 = sketch.quantile(0.75);
+        }
+
+        double iqr = q3 - q1;
+
+        //As in R (boxplot.stats), notches are not limited to the box; they can extend beyond the hinges for small n
+        notchLow = median - 1.58 * iqr / Math.sqrt(n);
+        notchHigh = median + 1.58 * iqr / Math.sqrt(n);
+
+        double low = q1;
+        double high = q3;
+        for (double value : values)
+            if (value >= q1 - 1.5 * iqr)
+            {
+                low = Math.min(value, q1);
+                break;
+            }
+        for (int i = values.length - 1; i >= 0; i--)
+            if (values[i] <= q3 + 1.5 * iqr)
+            {
+                high = Math.max(values[i], q3);
+                break;
+            }
+
+        //Exact extremes are used if they lie within the fences, since the sketch may not retain them
+        whiskerLow = (min >= q1 - 1.5 * iqr ? Math.min(min, q1) : low);
+        whiskerHigh = (max <= q3 + 1.5 * iqr ? Math.max(max, q3) : high);
+
+        double[] beyond = new double[values.length + 2];
+        int numBeyond = 0;
+        long numValuesBeyond = 0;
+
+        if (min < whiskerLow && values[0] != min)
+            beyond[numBeyond++] = min;
+
+        for (int i = 0; i < values.length; i++)
+            if (values[i] < whiskerLow || values[i] > whiskerHigh)
+            {
+                beyond[numBeyond++] = values[i];
+                numValuesBeyond += weights[i];
+            }
+
+        if (max > whiskerHigh && values[values.length - 1] != max)
+            beyond[numBeyond++] = max;
+
+        outliers = Arrays.copyOf(beyond, numBeyond);
+        numOutliers = numValuesBeyond;
+    }
+
+    public static BoxPlotStatistics of(QuantileSketch sketch)
+    {
+        return new BoxPlotStatistics(sketch);
+    }
+
+    /**
+     * Exact statistics of values; NaN values are ignored.
+     */
+    public static BoxPlotStatistics of(double[] values)
+    {
+        return new BoxPlotStatistics(QuantileSketch.of(values, values.length + 1));
+    }
+
+    /**
+     * Writes a tab delimited file with one row of statistics for each box plot.
+     *
+     * @param names     Name of each box plot.
+     * @param stats     Statistics of each box plot.
+     * @param outFile   Output file.
+     *
+     * @throws IOException
+     */
+    public static void write(String[] names, BoxPlotStatistics[] stats, File outFile) throws IOException
+    {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
+
+        bw.write("Name\tN\tMin\tLower whisker\tQ1\tNotch low\tMedian\tNotch high\tQ3\tUpper whisker\tMax\tMean" +
+                 "\t# of outliers\tRank error\n");
+
+        for (int b = 0; b < names.length; b++)
+        {
+            BoxPlotStatistics s = stats[b];
+
+            bw.write(names[b] + "\t" + s.n);
+
+            for (double value : new double[] {s.min, s.whiskerLow, s.q1, s.notchLow, s.median, s.notchHigh, s.q3,
+                                              s.whiskerHigh, s.max, s.mean})
+                bw.write("\t" + (Double.isNaN(value) ? "NA" : String.valueOf(round(value, 4))));
+
+            bw.write("\t" + s.numOutliers + "\t" + round(s.rankError, 6) + "\n");
+        }
+
+        bw.close();
+    }
+
+    /**
+     * Tukey's lower or upper hinge of sorted values (as in R "fivenum").
+     */
+    private static double tukeyHinge(double[] sorted, boolean lower)
+    {
+        int n = sorted.length;
+        double n4 = Math.floor((n + 3) / 2.0) / 2.0;
+
+        double position = (lower ? n4 : n + 1 - n4) - 1;
+
+        return (sorted[(int)Math.floor(position)] + sorted[(int)Math.ceil(position)]) / 2;
+    }
+
+    private static double quantile(double[] sorted, double p)
+    {
+        double position = p * (sorted.length - 1);
+
+        return (sorted[(int)Math.floor(position)] + sorted[(int)Math.ceil(position)]) / 2;
+    }
+}
@@ -0,0 +1,827 @@
+package utils;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws the charts used in the figures directly from data in memory, without R: horizontal stacked bars, notched box
+ * plots, histograms and bar charts, and area-proportional Venn diagrams of two sets. The layout follows the defaults of
+ * R base graphics used in the former R scripts (Sturges' bins for histograms, Tukey's hinges and 1.5 * IQR whiskers
+ * for box plots). Box plots and histograms can also be drawn from quantile sketches of values streamed from large
+ * files (see "QuantileSketch" and "BoxPlotStatistics").
+ *
+ * A chart is written to each of the output files passed to a drawing method, in SVG format for files with ".svg"
+ * extension and in PNG format otherwise.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class ChartRenderer
+{
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+    private static final Map<String, Color> R_COLORS = new HashMap<>();
+
+    static
+    {
+        R_COLORS.put("black", Color.BLACK);
+        R_COLORS.put("white", Color.WHITE);
+        R_COLORS.put("red", new Color(255, 0, 0));
+        R_COLORS.put("green", new Color(0, 255, 0));
+        R_COLORS.put("blue", new Color(0, 0, 255));
+        R_COLORS.put("yellow", new Color(255, 255, 0));
+        R_COLORS.put("cyan", new Color(0, 255, 255));
+        R_COLORS.put("magenta", new Color(255, 0, 255));
+        R_COLORS.put("orange", new Color(255, 165, 0));
+        R_COLORS.put("purple", new Color(160, 32, 240));
+        R_COLORS.put("brown", new Color(165, 42, 42));
+        R_COLORS.put("pink", new Color(255, 192, 203));
+        R_COLORS.put("grey", new Color(190, 190, 190));
+        R_COLORS.put("gray", new Color(190, 190, 190));
+        R_COLORS.put("lightgrey", new Color(211, 211, 211));
+        R_COLORS.put("lightgray", new Color(211, 211, 211));
+        R_COLORS.put("darkgrey", new Color(169, 169, 169));
+        R_COLORS.put("darkgray", new Color(169, 169, 169));
+        R_COLORS.put("darkgreen", new Color(0, 100, 0));
+        R_COLORS.put("darkblue", new Color(0, 0, 139));
+        R_COLORS.put("lightblue", new Color(173, 216, 230));
+    }
+
+    /**
+     * Converts a color definition used in the former R scripts into a color: an R color name (e.g., 'red', quotes are
+     * ignored), a hexadecimal definition "#RRGGBB" or a number between 0 and 1, which is interpreted as hue (as in
+     * R package 'venneuler').
+     */
+    public static Color parseColor(String color)
+    {
+        String name = color.replace("'", "").replace("\"", "").trim().toLowerCase();
+
+        if (name.startsWith("#"))
+            return new Color(Integer.parseInt(name.substring(1, 7), 16));
+
+        if (R_COLORS.containsKey(name))
+            return R_COLORS.get(name);
+
+        try
+        {
+            return Color.getHSBColor((float)Double.parseDouble(name), 0.8f, 0.9f);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Unknown color: " + color);
+        }
+    }
+
+    /**
+     * Draws a single horizontal bar divided into segments.
+     *
+     * @param values    Length of each segment.
+     * @param colors    Color of each segment.
+     * @param barLabel  Label on the left side of the bar.
+     * @param xLabel    Label of the x axis.
+     * @param outFiles  Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawHorizontalStackedBar(double[] values, Color[] colors, String barLabel, String xLabel,
+                                                File... outFiles) throws IOException
+    {
+        int width = 500;
+        int height = 180;
+
+        double sum = 0;
+        for (double value : values)
+            sum += value;
+
+        double total = sum;
+        double[] ticks = prettyTicks(0, Math.max(total, 1), 5);
+        double xMax = Math.max(total, ticks[ticks.length - 1]);
+
+        double left = textWidth(barLabel, 16) + 20;
+        double right = width - 20;
+        double top = 15;
+        double bottom = height - 60;
+
+        render(width, height, canvas -> {
+            double x = left;
+
+            for (int i = 0; i < values.length; i++)
+            {
+                double w = values[i] / xMax * (right - left);
+                canvas.rect(x, top + 10, w, bottom - top - 20, colors[i], Color.BLACK);
+                x += w;
+            }
+
+            canvas.text(left - 8, (top + bottom) / 2 + 6, barLabel, 16, 1, false);
+
+            canvas.line(left, bottom, left + total / xMax * (right - left), bottom, Color.BLACK);
+
+            for (double tick : ticks)
+            {
+                double tx = left + tick / xMax * (right - left);
+                canvas.line(tx, bottom, tx, bottom + 6, Color.BLACK);
+                canvas.text(tx, bottom + 24, formatNumber(tick), 16, 0, false);
+            }
+
+            canvas.text((left + right) / 2, height - 10, xLabel, 14, 0, false);
+        }, outFiles);
+    }
+
+    /**
+     * Draws notched box plots with box widths proportional to the square root of the number of values (R boxplot with
+     * notch = T, varwidth = T and outline = T). Notches extend to +/-1.58 * IQR / sqrt(n) around the median, but not
+     * beyond the hinges.
+     *
+     * @param names     Name of each box plot, written vertically below the box.
+     * @param values    Values of each box plot; NaN values are ignored.
+     * @param positions Position of each box plot on the x axis (1, 2, 3, ...); gaps in positions separate groups.
+     * @param colors    Fill color of each box.
+     * @param yLabel    Label of the y axis.
+     * @param outFiles  Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawBoxPlot(String[] names, double[][] values, double[] positions, Color[] colors, String yLabel,
+                                   File... outFiles) throws IOException
+    {
+        BoxPlotStatistics[] stats = new BoxPlotStatistics[names.length];
+        for (int b = 0; b < names.length; b++)
+            stats[b] = BoxPlotStatistics.of(values[b]);
+
+        drawBoxPlot(names, stats, positions, colors, yLabel, outFiles);
+    }
+
+    /**
+     * Draws notched box plots from statistics computed in advance, e.g., from quantile sketches of values streamed from
+     * files (see "BoxPlotStatistics").
+     *
+     * @param names     Name of each box plot, written vertically below the box.
+     * @param stats     Statistics of each box plot.
+     * @param positions Position of each box plot on the x axis (1, 2, 3, ...); gaps in positions separate groups.
+     * @param colors    Fill color of each box.
+     * @param yLabel    Label of the y axis.
+     * @param outFiles  Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawBoxPlot(String[] names, BoxPlotStatistics[] stats, double[] positions, Color[] colors,
+                                   String yLabel, File... outFiles) throws IOException
+    {
+        int width = 480;
+        int height = 480;
+
+        int numBoxes = names.length;
+
+        double yMin = Double.POSITIVE_INFINITY;
+        double yMax = Double.NEGATIVE_INFINITY;
+        long maxN = 1;
+
+        for (int b = 0; b < numBoxes; b++)
+        {
+            if (stats[b].n > 0)
+            {
+                yMin = Math.min(yMin, stats[b].min);
+                yMax = Math.max(yMax, stats[b].max);
+            }
+
+            maxN = Math.max(maxN, stats[b].n);
+        }
+
+        if (yMin > yMax)
+        {
+            yMin = 0;
+            yMax = 1;
+        }
+
+        double[] ticks = prettyTicks(yMin, yMax, 5);
+        double low = Math.min(yMin, ticks[0]);
+        double high = Math.max(yMax, ticks[ticks.length - 1]);
+
+        double xMin = Double.POSITIVE_INFINITY;
+        double xMax = Double.NEGATIVE_INFINITY;
+        double maxLabelWidth = 0;
+
+        for (int b = 0; b < numBoxes; b++)
+        {
+            xMin = Math.min(xMin, positions[b]);
+            xMax = Math.max(xMax, positions[b]);
+            maxLabelWidth = Math.max(maxLabelWidth, textWidth(names[b], 12));
+        }
+
+        double left = 60;
+        double right = width - 15;
+        double top = 15;
+        double bottom = height - maxLabelWidth - 20;
+
+        double unit = (right - left) / (xMax - xMin + 1);
+        double x0 = xMin - 0.5;
+        long maxCount = maxN;
+
+        render(width, height, canvas -> {
+            drawYAxis(canvas, ticks, low, high, left, top, bottom, 12);
+
+            canvas.text(16, (top + bottom) / 2, yLabel, 14, 0, true);
+
+            canvas.rect(left, top, right - left, bottom - top, null, Color.BLACK);
+
+            for (int b = 0; b < numBoxes; b++)
+            {
+                double x = left + (positions[b] - x0) * unit;
+
+                canvas.text(x + 4, bottom + 8, names[b], 12, 1, true);
+
+                BoxPlotStatistics s = stats[b];
+                long n = s.n;
+
+                if (n == 0)
+                    continue;
+
+                double q1 = s.q1;
+                double median = s.median;
+                double q3 = s.q3;
+                double notchLow = Math.max(q1, s.notchLow); //notches beyond the hinges are drawn at the hinges
+                double notchHigh = Math.min(q3, s.notchHigh);
+                double whiskerLow = s.whiskerLow;
+                double whiskerHigh = s.whiskerHigh;
+
+                double w = 0.4 * unit * Math.sqrt(n / (double)maxCount);
+
+                //Whiskers and outliers
+                canvas.line(x, yPixel(whiskerLow, low, high, top, bottom), x, yPixel(q1, low, high, top, bottom), Color.BLACK);
+                canvas.line(x, yPixel(q3, low, high, top, bottom), x, yPixel(whiskerHigh, low, high, top, bottom), Color.BLACK);
+                canvas.line(x - w / 2, yPixel(whiskerLow, low, high, top, bottom), x + w / 2, yPixel(whiskerLow, low, high, top, bottom), Color.BLACK);
+                canvas.line(x - w / 2, yPixel(whiskerHigh, low, high, top, bottom), x + w / 2, yPixel(whiskerHigh, low, high, top, bottom), Color.BLACK);
+
+                for (double value : s.outliers)
+                    canvas.circle(x, yPixel(value, low, high, top, bottom), 3, null, Color.BLACK);
+
+                //Notched box
+                double[] ys = {q1, notchLow, median, notchHigh, q3, q3, notchHigh, median, notchLow, q1};
+                double[] xs = {x - w, x - w, x - w / 2, x - w, x - w, x + w, x + w, x + w / 2, x + w, x + w};
+
+                for (int k = 0; k < ys.length; k++)
+                    ys[k] = yPixel(ys[k], low, high, top, bottom);
+
+                canvas.polygon(xs, ys, colors[b], Color.BLACK);
+
+                //Median, in white on dark boxes
+                double my = yPixel(median, low, high, top, bottom);
+                Color medianColor = (brightness(colors[b]) < 0.3 ? Color.WHITE : Color.BLACK);
+                canvas.line(x - w / 2, my - 1, x + w / 2, my - 1, medianColor);
+                canvas.line(x - w / 2, my, x + w / 2, my, medianColor);
+                canvas.line(x - w / 2, my + 1, x + w / 2, my + 1, medianColor);
+            }
+        }, outFiles);
+    }
+
+    /**
+     * Draws a histogram with the number of values written above each bar. Bins are right-closed and their number is
+     * determined with Sturges' rule on rounded breaks, as in R "hist".
+     *
+     * @param values    Values.
+     * @param xLabel    Label of the x axis.
+     * @param outFiles  Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawHistogram(double[] values, String xLabel, File... outFiles) throws IOException
+    {
+        drawHistogram(QuantileSketch.of(values, values.length + 1), xLabel, outFiles);
+    }
+
+    /**
+     * Draws a histogram of values summarized by a quantile sketch. The number of values in a bin is the difference of
+     * ranks of its breaks, so it is exact if the sketch is exact and otherwise within 2 * "normalizedRankError() * n"
+     * of the true number (see "QuantileSketch"); approximate numbers are written with the prefix "~" and the y axis is
+     * labelled "Frequency (approximate)".
+     *
+     * @param sketch    Sketch of values.
+     * @param xLabel    Label of the x axis.
+     * @param outFiles  Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawHistogram(QuantileSketch sketch, String xLabel, File... outFiles) throws IOException
+    {
+        double min = sketch.min();
+        double max = sketch.max();
+
+        if (sketch.count() == 0)
+        {
+            min = 0;
+            max = 1;
+        }
+
+        int numClasses = (int)Math.ceil(Math.log(Math.max(sketch.count(), 1)) / Math.log(2) + 1);
+        double[] breaks = prettyTicks(min, max, numClasses);
+
+        //Bins (breaks[k], breaks[k+1]], the first bin also includes its lower break
+        long[] counts = new long[breaks.length - 1];
+
+        for (int k = 0; k < counts.length; k++)
+            counts[k] = sketch.rank(breaks[k + 1]) - (k == 0 ? 0 : sketch.rank(breaks[k]));
+
+        long maxCount = 1;
+        for (long count : counts)
+            maxCount = Math.max(maxCount, count);
+
+        boolean exact = sketch.isExact();
+
+        double[] yTicks = prettyTicks(0, maxCount, 5);
+        double yMax = Math.max(yTicks[yTicks.length - 1], maxCount * 1.08);
+
+        int width = 480;
+        int height = 480;
+
+        double left = 70;
+        double right = width - 20;
+        double top = 20;
+        double bottom = height - 70;
+
+        render(width, height, canvas -> {
+            double first = breaks[0];
+            double last = breaks[breaks.length - 1];
+
+            for (int k = 0; k < counts.length; k++)
+            {
+                double x1 = left + (breaks[k] - first) / (last - first) * (right - left);
+                double x2 = left + (breaks[k + 1] - first) / (last - first) * (right - left);
+                double y = yPixel(counts[k], 0, yMax, top, bottom);
+
+                canvas.rect(x1, y, x2 - x1, bottom - y, null, Color.BLACK);
+                canvas.text((x1 + x2) / 2, y - 5, (exact ? "" : "~") + counts[k], 10, 0, false);
+            }
+
+            //Axis ticks are chosen independently of breaks, so that their labels do not overlap
+            for (double tick : prettyTicks(first, last, 5))
+            {
+                if (tick < first || tick > last)
+                    continue;
+
+                double tx = left + (tick - first) / (last - first) * (right - left);
+                canvas.line(tx, bottom + 4, tx, bottom + 10, Color.BLACK);
+                canvas.text(tx, bottom + 26, formatNumber(tick), 12, 0, false);
+            }
+
+            canvas.line(left, bottom + 4, right, bottom + 4, Color.BLACK);
+
+            drawYAxis(canvas, yTicks, 0, yMax, left - 4, top, bottom, 12);
+
+            canvas.text((left + right) / 2, height - 20, xLabel, 14, 0, false);
+            canvas.text(18, (top + bottom) / 2, (exact ? "Frequency" : "Frequency (approximate)"), 14, 0, true);
+        }, outFiles);
+    }
+
+    /**
+     * Draws a bar chart with one bar for each category (R "barplot" of a table of counts).
+     *
+     * @param categories    Name of each category, written below its bar.
+     * @param heights       Height of each bar.
+     * @param color         Fill color of bars.
+     * @param lineWidth     Width of bar borders and axis lines.
+     * @param outFiles      Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawBarChart(String[] categories, double[] heights, Color color, double lineWidth,
+                                    File... outFiles) throws IOException
+    {
+        double maxHeight = 1;
+        for (double h : heights)
+            maxHeight = Math.max(maxHeight, h);
+
+        double[] yTicks = prettyTicks(0, maxHeight, 5);
+        double yMax = Math.max(yTicks[yTicks.length - 1], maxHeight);
+
+        int width = 480;
+        int height = 480;
+
+        double left = 90;
+        double right = width - 15;
+        double top = 40;
+        double bottom = height - 50;
+
+        //Bars of width 1 separated by spaces of 0.2, as in R
+        double unit = (right - left) / (1.2 * categories.length + 0.2);
+
+        render(width, height, canvas -> {
+            canvas.setLineWidth(lineWidth);
+
+            for (int k = 0; k < categories.length; k++)
+            {
+                double x = left + (0.2 + 1.2 * k) * unit;
+                double y = yPixel(heights[k], 0, yMax, top, bottom);
+
+                canvas.rect(x, y, unit, bottom - y, color, Color.BLACK);
+                canvas.text(x + unit / 2, bottom + 30, categories[k], 26, 0, false);
+            }
+
+            drawYAxis(canvas, yTicks, 0, yMax, left - 8, top, bottom, 20);
+        }, outFiles);
+    }
+
+    /**
+     * Draws an area-proportional Venn diagram of two sets without labels.
+     *
+     * @param firstOnly     Size of the part of the first set that does not overlap with the second set.
+     * @param overlap       Size of the overlap.
+     * @param secondOnly    Size of the part of the second set that does not overlap with the first set.
+     * @param firstColor    Color of the first set.
+     * @param secondColor   Color of the second set.
+     * @param outFiles      Output files.
+     *
+     * @throws IOException
+     */
+    public static void drawVennDiagram(double firstOnly, double overlap, double secondOnly, Color firstColor,
+                                       Color secondColor, File... outFiles) throws IOException
+    {
+        double r1 = Math.sqrt((firstOnly + overlap) / Math.PI);
+        double r2 = Math.sqrt((secondOnly + overlap) / Math.PI);
+
+        //Distance between centers at which the area of the lens equals the overlap (the area decreases with distance)
+        double lo = Math.abs(r1 - r2);
+        double hi = r1 + r2;
+
+        if (overlap <= 0)
+            lo = hi;
+
+        for (int iter = 0; iter < 100 && hi - lo > 1e-12 * Math.max(hi, 1); iter++)
+        {
+            double mid = (lo + hi) / 2;
+
+            if (lensArea(r1, r2, mid) > overlap)
+                lo = mid;
+            else
+                hi = mid;
+        }
+
+        double d = (lo + hi) / 2;
+
+        int size = 480;
+        double margin = 30;
+
+        double extent = Math.max(r1 + d + r2, 2 * Math.max(r1, r2));
+        double scale = (extent > 0 ? (size - 2 * margin) / extent : 0);
+
+        double cx1 = (size - (r1 + d + r2) * scale) / 2 + r1 * scale;
+        double cx2 = cx1 + d * scale;
+
+        render(size, size, canvas -> {
+            canvas.circle(cx1, size / 2.0, r1 * scale, transparent(firstColor, 0.5), firstColor.darker());
+            canvas.circle(cx2, size / 2.0, r2 * scale, transparent(secondColor, 0.5), secondColor.darker());
+        }, outFiles);
+    }
+
+    /**
+     * Area of the intersection of two circles with radii r1 and r2 and distance d between their centers.
+     */
+    private static double lensArea(double r1, double r2, double d)
+    {
+        if (d >= r1 + r2)
+            return 0;
+
+        if (d <= Math.abs(r1 - r2))
+            return Math.PI * Math.pow(Math.min(r1, r2), 2);
+
+        double a1 = Math.acos((d * d + r1 * r1 - r2 * r2) / (2 * d * r1));
+        double a2 = Math.acos((d * d + r2 * r2 - r1 * r1) / (2 * d * r2));
+
+        return r1 * r1 * (a1 - Math.sin(2 * a1) / 2) + r2 * r2 * (a2 - Math.sin(2 * a2) / 2);
+    }
+
+    /**
+     * Equally spaced round values (steps 1, 2 or 5 times a power of 10) that cover [min, max] with about n intervals,
+     * similar to R "pretty".
+     */
+    public static double[] prettyTicks(double min, double max, int n)
+    {
+        if (max <= min)
+            max = min + (min == 0 ? 1 : Math.abs(min) * 0.1);
+
+        double rawStep = (max - min) / Math.max(n, 1);
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rawStep)));
+
+        double step = 10 * magnitude;
+        for (double m : new double[] {1, 2, 5, 10})
+            if (m * magnitude >= rawStep * 0.7)
+            {
+                step = m * magnitude;
+                break;
+            }
+
+        long first = (long)Math.floor(min / step + 1e-10);
+        long last = (long)Math.ceil(max / step - 1e-10);
+
+        double[] ticks = new double[(int)(last - first) + 1];
+        for (int k = 0; k < ticks.length; k++)
+            ticks[k] = (first + k) * step;
+
+        return ticks;
+    }
+
+    private static String formatNumber(double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return String.valueOf(value);
+
+        //Fixed notation without trailing zeros, e.g., 0.0001 instead of 1.0E-4 and 2 instead of 2.
+        int scale = (Math.abs(value - Math.rint(value)) < 1e-9 ? 0 : 6);
+        BigDecimal rounded = BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+
+        return (rounded.signum() == 0 ? "0" : rounded.stripTrailingZeros().toPlainString());
+    }
+
+    /**
+     * Draws a vertical axis at x with labels parallel to the axis, as in R.
+     */
+    private static void drawYAxis(Canvas canvas, double[] ticks, double low, double high, double x, double top, double bottom,
+                                  double fontSize)
+    {
+        canvas.line(x, yPixel(ticks[0], low, high, top, bottom), x, yPixel(ticks[ticks.length - 1], low, high, top, bottom), Color.BLACK);
+
+        for (double tick : ticks)
+        {
+            double ty = yPixel(tick, low, high, top, bottom);
+            canvas.line(x - 6, ty, x, ty, Color.BLACK);
+            canvas.text(x - 9 - fontSize / 2, ty, formatNumber(tick), fontSize, 0, true);
+        }
+    }
+
+    private static double yPixel(double value, double low, double high, double top, double bottom)
+    {
+        return bottom - (value - low) / (high - low) * (bottom - top);
+    }
+
+    private static double brightness(Color color)
+    {
+        return (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue()) / 255;
+    }
+
+    private static Color transparent(Color color, double alpha)
+    {
+        return new Color(color.getRed(), color.getGreen(), color.getBlue(), (int)Math.round(alpha * 255));
+    }
+
+    private static double textWidth(String text, double size)
+    {
+        return new Font(Font.SANS_SERIF, Font.PLAIN, 1).deriveFont((float)size).getStringBounds(text, FONT_RENDER_CONTEXT).getWidth();
+    }
+
+    /**
+     * Draws the chart once for each output file.
+     */
+    private static void render(int width, int height, Consumer<Canvas> drawing, File... outFiles) throws IOException
+    {
+        for (File outFile : outFiles)
+        {
+            if (outFile.getName().toLowerCase().endsWith(".svg"))
+            {
+                SvgCanvas canvas = new SvgCanvas(width, height);
+                drawing.accept(canvas);
+                Files.write(outFile.toPath(), canvas.toSvg().getBytes(StandardCharsets.UTF_8));
+            }
+            else
+            {
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+
+                drawing.accept(new GraphicsCanvas(g));
+
+                g.dispose();
+                ImageIO.write(image, "png", outFile);
+            }
+        }
+    }
+
+    /**
+     * Drawing primitives shared by SVG and PNG output. Fill and stroke colors can be null for no fill or no stroke.
+     */
+    private interface Canvas
+    {
+        void setLineWidth(double width);
+
+        void rect(double x, double y, double w, double h, Color fill, Color stroke);
+
+        void line(double x1, double y1, double x2, double y2, Color stroke);
+
+        void polygon(double[] xs, double[] ys, Color fill, Color stroke);
+
+        void circle(double cx, double cy, double r, Color fill, Color stroke);
+
+        /**
+         * Draws text with the baseline at y, or centered vertically on y if the text is vertical (rotated by -90
+         * degrees, reading upwards).
+         *
+         * @param anchor    -1 to start the text at x, 0 to center it on x and 1 to end it at x (in the direction of
+         *                  reading).
+         */
+        void text(double x, double y, String text, double size, int anchor, boolean vertical);
+    }
+
+    private static class GraphicsCanvas implements Canvas
+    {
+        private final Graphics2D g;
+
+        GraphicsCanvas(Graphics2D g)
+        {
+            this.g = g;
+            g.setStroke(new BasicStroke(1));
+        }
+
+        @Override
+        public void setLineWidth(double width)
+        {
+            g.setStroke(new BasicStroke((float)width));
+        }
+
+        @Override
+        public void rect(double x, double y, double w, double h, Color fill, Color stroke)
+        {
+            draw(new Rectangle2D.Double(x, y, w, h), fill, stroke);
+        }
+
+        @Override
+        public void line(double x1, double y1, double x2, double y2, Color stroke)
+        {
+            draw(new Line2D.Double(x1, y1, x2, y2), null, stroke);
+        }
+
+        @Override
+        public void polygon(double[] xs, double[] ys, Color fill, Color stroke)
+        {
+            Path2D.Double path = new Path2D.Double();
+            path.moveTo(xs[0], ys[0]);
+            for (int k = 1; k < xs.length; k++)
+                path.lineTo(xs[k], ys[k]);
+            path.closePath();
+
+            draw(path, fill, stroke);
+        }
+
+        @Override
+        public void circle(double cx, double cy, double r, Color fill, Color stroke)
+        {
+            draw(new Ellipse2D.Double(cx - r, cy - r, 2 * r, 2 * r), fill, stroke);
+        }
+
+        private void draw(Shape shape, Color fill, Color stroke)
+        {
+            if (fill != null)
+            {
+                g.setColor(fill);
+                g.fill(shape);
+            }
+
+            if (stroke != null)
+            {
+                g.setColor(stroke);
+                g.draw(shape);
+            }
+        }
+
+        @Override
+        public void text(double x, double y, String text, double size, int anchor, boolean vertical)
+        {
+            Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 1).deriveFont((float)size);
+            double width = font.getStringBounds(text, g.getFontRenderContext()).getWidth();
+            double offset = -width * (anchor + 1) / 2;
+
+            Graphics2D copy = (Graphics2D)g.create();
+            copy.setColor(Color.BLACK);
+            copy.setFont(font);
+            copy.translate(x, y);
+
+            if (vertical)
+            {
+                copy.rotate(-Math.PI / 2);
+                copy.drawString(text, (float)offset, (float)(size * 0.35));
+            }
+            else
+                copy.drawString(text, (float)offset, 0f);
+
+            copy.dispose();
+        }
+    }
+
+    private static class SvgCanvas implements Canvas
+    {
+        private final StringBuilder sb = new StringBuilder();
+        private double lineWidth = 1;
+
+        SvgCanvas(int width, int height)
+        {
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width).append("\" height=\"").append(height)
+              .append("\" viewBox=\"0 0 ").append(width).append(" ").append(height).append("\" font-family=\"sans-serif\">\n");
+            sb.append("<rect x=\"0\" y=\"0\" width=\"").append(width).append("\" height=\"").append(height).append("\" fill=\"white\"/>\n");
+        }
+
+        String toSvg()
+        {
+            return sb.toString() + "</svg>\n";
+        }
+
+        @Override
+        public void setLineWidth(double width)
+        {
+            lineWidth = width;
+        }
+
+        @Override
+        public void rect(double x, double y, double w, double h, Color fill, Color stroke)
+        {
+            sb.append("<rect x=\"").append(num(x)).append("\" y=\"").append(num(y)).append("\" width=\"").append(num(w))
+              .append("\" height=\"").append(num(h)).append("\"").append(style(fill, stroke)).append("/>\n");
+        }
+
+        @Override
+        public void line(double x1, double y1, double x2, double y2, Color stroke)
+        {
+            sb.append("<line x1=\"").append(num(x1)).append("\" y1=\"").append(num(y1)).append("\" x2=\"").append(num(x2))
+              .append("\" y2=\"").append(num(y2)).append("\"").append(style(null, stroke)).append("/>\n");
+        }
+
+        @Override
+        public void polygon(double[] xs, double[] ys, Color fill, Color stroke)
+        {
+            List<String> points = new ArrayList<>();
+            for (int k = 0; k < xs.length; k++)
+                points.add(num(xs[k]) + "," + num(ys[k]));
+
+            sb.append("<polygon points=\"").append(String.join(" ", points)).append("\"").append(style(fill, stroke)).append("/>\n");
+        }
+
+        @Override
+        public void circle(double cx, double cy, double r, Color fill, Color stroke)
+        {
+            sb.append("<circle cx=\"").append(num(cx)).append("\" cy=\"").append(num(cy)).append("\" r=\"").append(num(r))
+              .append("\"").append(style(fill, stroke)).append("/>\n");
+        }
+
+        @Override
+        public void text(double x, double y, String text, double size, int anchor, boolean vertical)
+        {
+            String textAnchor = (anchor < 0 ? "start" : anchor == 0 ? "middle" : "end");
+
+            sb.append("<text x=\"").append(num(x)).append("\" y=\"").append(num(y)).append("\" font-size=\"").append(num(size))
+              .append("\" text-anchor=\"").append(textAnchor).append("\"");
+
+            if (vertical)
+                sb.append(" dominant-baseline=\"central\" transform=\"rotate(-90 ").append(num(x)).append(" ").append(num(y)).append(")\"");
+
+            sb.append(">").append(text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")).append("</text>\n");
+        }
+
+        private String style(Color fill, Color stroke)
+        {
+            StringBuilder style = new StringBuilder();
+
+            style.append(" fill=\"").append(fill == null ? "none" : rgb(fill)).append("\"");
+            if (fill != null && fill.getAlpha() < 255)
+                style.append(" fill-opacity=\"").append(num(fill.getAlpha() / 255.0)).append("\"");
+
+            style.append(" stroke=\"").append(stroke == null ? "none" : rgb(stroke)).append("\"");
+            if (stroke != null && lineWidth != 1)
+                style.append(" stroke-width=\"").append(num(lineWidth)).append("\"");
+
+            return style.toString();
+        }
+
+        private static String rgb(Color color)
+        {
+            return "rgb(" + color.getRed() + "," + color.getGreen() + "," + color.getBlue() + ")";
+        }
+
+        private static String num(double value)
+        {
+            return formatNumber(Math.round(value * 100) / 100.0);
+        }
+    }
+}
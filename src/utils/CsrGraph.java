@@ -0,0 +1,159 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Undirected weighted graph in compressed sparse row (CSR) form. Neighbours of node i are
+ * neighbours[offsets[i]] ... neighbours[offsets[i+1] - 1], sorted in increasing order, with the corresponding edge
+ * weights at the same positions in weights. Each undirected edge is stored once for each of its two nodes.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class CsrGraph
+{
+    private final int numNodes;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final double[] weights;
+
+    /**
+     * Builds a graph from an edge list. Self-loops are ignored; duplicated edges are kept.
+     *
+     * @param numNodes  Number of nodes (node ids are 0..numNodes-1).
+     * @param sources   Source node of each edge.
+     * @param targets   Target node of each edge.
+     * @param edgeWeights Weight of each edge.
+     * @param numEdges  Number of edges (only the first numEdges entries of the arrays are used).
+     */
+    public CsrGraph(int numNodes, int[] sources, int[] targets, double[] edgeWeights, int numEdges)
+    {
+        this.numNodes = numNodes;
+
+        offsets = new int[numNodes + 1];
+
+        for (int e = 0; e < numEdges; e++)
+            if (sources[e] != targets[e])
+            {
+                offsets[sources[e] + 1]++;
+                offsets[targets[e] + 1]++;
+            }
+
+        for (int i = 0; i < numNodes; i++)
+            offsets[i + 1] += offsets[i];
+
+        neighbours = new int[offsets[numNodes]];
+        weights = new double[offsets[numNodes]];
+
+        int[] next = Arrays.copyOf(offsets, numNodes);
+
+        for (int e = 0; e < numEdges; e++)
+            if (sources[e] != targets[e])
+            {
+                neighbours[next[sources[e]]] = targets[e];
+                weights[next[sources[e]]++] = edgeWeights[e];
+                neighbours[next[targets[e]]] = sources[e];
+                weights[next[targets[e]]++] = edgeWeights[e];
+            }
+
+        //Sort adjacency lists (insertion sort for short lists, index sort otherwise)
+        for (int i = 0; i < numNodes; i++)
+            sortAdjacency(offsets[i], offsets[i + 1]);
+    }
+
+    private void sortAdjacency(int from, int to)
+    {
+        if (to - from < 32)
+        {
+            for (int i = from + 1; i < to; i++)
+            {
+                int neighbour = neighbours[i];
+                double weight = weights[i];
+
+                int j = i - 1;
+                while (j >= from && neighbours[j] > neighbour)
+                {
+                    neighbours[j + 1] = neighbours[j];
+                    weights[j + 1] = weights[j];
+                    j--;
+                }
+
+                neighbours[j + 1] = neighbour;
+                weights[j + 1] = weight;
+            }
+        }
+        else
+        {
+            long[] keyed = new long[to - from];
+            for (int i = from; i < to; i++)
+                keyed[i - from] = ((long)neighbours[i] << 32) | (i - from);
+
+            Arrays.sort(keyed);
+
+            double[] sortedWeights = new double[to - from];
+            for (int i = 0; i < keyed.length; i++)
+            {
+                neighbours[from + i] = (int)(keyed[i] >>> 32);
+                sortedWeights[i] = weights[from + (int)keyed[i]];
+            }
+
+            System.arraycopy(sortedWeights, 0, weights, from, sortedWeights.length);
+        }
+    }
+
+    public int numNodes()
+    {
+        return numNodes;
+    }
+
+    /**
+     * Number of undirected edges.
+     */
+    public int numEdges()
+    {
+        return neighbours.length / 2;
+    }
+
+    public int degree(int node)
+    {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int[] offsets()
+    {
+        return offsets;
+    }
+
+    public int[] neighbours()
+    {
+        return neighbours;
+    }
+
+    public double[] weights()
+    {
+        return weights;
+    }
+
+    /**
+     * Counts common neighbours of two nodes by merging their sorted adjacency lists.
+     */
+    public int countCommonNeighbours(int first, int second)
+    {
+        int i = offsets[first];
+        int j = offsets[second];
+        int cnt = 0;
+
+        while (i < offsets[first + 1] && j < offsets[second + 1])
+            if (neighbours[i] < neighbours[j])
+                i++;
+            else if (neighbours[i] > neighbours[j])
+                j++;
+            else
+            {
+                cnt++;
+                i++;
+                j++;
+            }
+
+        return cnt;
+    }
+}
@@ -0,0 +1,299 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Fruchterman-Reingold force-directed layout with Barnes-Hut approximation of repulsive forces. Repulsion between a
+ * node and a distant group of nodes is approximated by the repulsion from their center of mass stored in a quadtree,
+ * which reduces the cost of an iteration from O(n^2) to O(n log n). Forces are computed in parallel, one node per
+ * task, and the result does not depend on the number of threads.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class ForceDirectedLayout
+{
+    /** Opening angle: a quadtree cell is approximated by its center of mass if cell size / distance < THETA. */
+    private static final double THETA = 0.8;
+
+    /** Optimal distance between connected nodes. */
+    private static final double K = 100;
+
+    /** Pull towards the center that keeps disconnected components close together. */
+    private static final double GRAVITY = 0.01;
+
+    /**
+     * Computes positions of nodes.
+     *
+     * @param graph         Network; edge weights scale the attractive forces.
+     * @param iterations    Number of iterations.
+     * @param seed          Seed for the random initial positions.
+     *
+     * @return Coordinates x and y of node i at positions 2*i and 2*i+1.
+     */
+    public static double[] layout(CsrGraph graph, int iterations, long seed)
+    {
+        int numNodes = graph.numNodes();
+
+        int[] offsets = graph.offsets();
+        int[] neighbours = graph.neighbours();
+        double[] weights = graph.weights();
+
+        double side = K * Math.sqrt(Math.max(numNodes, 1));
+
+        double[] positions = new double[2 * numNodes];
+
+        Random random = new Random(seed);
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = (random.nextDouble() - 0.5) * side;
+
+        double[] displacements = new double[2 * numNodes];
+
+        for (int iteration = 0; iteration < iterations; iteration++)
+        {
+            //Temperature (maximum displacement) decreases linearly
+            double temperature = side / 10 * (1 - iteration / (double)iterations);
+
+            QuadTree tree = new QuadTree(positions, numNodes);
+
+            IntStream.range(0, numNodes).parallel().forEach(i -> {
+                double x = positions[2 * i];
+                double y = positions[2 * i + 1];
+
+                //Repulsion
+                double[] force = new double[2];
+                tree.repulsion(x, y, i, force);
+
+                double dx = force[0];
+                double dy = force[1];
+
+                //Attraction along edges
+                for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                {
+                    int j = neighbours[k];
+
+                    double ex = positions[2 * j] - x;
+                    double ey = positions[2 * j + 1] - y;
+                    double distance = Math.sqrt(ex * ex + ey * ey);
+
+                    dx += ex * distance / K * Math.abs(weights[k]);
+                    dy += ey * distance / K * Math.abs(weights[k]);
+                }
+
+                //Gravity
+                dx -= GRAVITY * x;
+                dy -= GRAVITY * y;
+
+                displacements[2 * i] = dx;
+                displacements[2 * i + 1] = dy;
+            });
+
+            for (int i = 0; i < numNodes; i++)
+            {
+                double dx = displacements[2 * i];
+                double dy = displacements[2 * i + 1];
+                double length = Math.sqrt(dx * dx + dy * dy);
+
+                if (length > 0)
+                {
+                    double step = Math.min(length, temperature) / length;
+
+                    positions[2 * i] += dx * step;
+                    positions[2 * i + 1] += dy * step;
+                }
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Quadtree over node positions. Cells are stored in arrays; each internal cell has four children and holds the
+     * total number and the center of mass of nodes in its area.
+     */
+    private static class QuadTree
+    {
+        private static final int MAX_DEPTH = 48;
+
+        private int numCells = 0;
+
+        private double[] centerX;       //center of the cell's area
+        private double[] centerY;
+        private double[] halfSize;
+        private double[] massX;         //center of mass of nodes in the cell
+        private double[] massY;
+        private int[] mass;             //number of nodes in the cell
+        private int[] node;             //node in a leaf with a single node, -1 otherwise
+        private int[] firstChild;       //index of the first of four children, -1 for leaves
+
+        private final double[] positions;
+
+        QuadTree(double[] positions, int numNodes)
+        {
+            this.positions = positions;
+
+            int capacity = Math.max(16, 8 * numNodes);
+            centerX = new double[capacity];
+            centerY = new double[capacity];
+            halfSize = new double[capacity];
+            massX = new double[capacity];
+            massY = new double[capacity];
+            mass = new int[capacity];
+            node = new int[capacity];
+            firstChild = new int[capacity];
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < numNodes; i++)
+            {
+                minX = Math.min(minX, positions[2 * i]);
+                maxX = Math.max(maxX, positions[2 * i]);
+                minY = Math.min(minY, positions[2 * i + 1]);
+                maxY = Math.max(maxY, positions[2 * i + 1]);
+            }
+
+            newCell((minX + maxX) / 2, (minY + maxY) / 2, Math.max(maxX - minX, maxY - minY) / 2 + 1);
+
+            for (int i = 0; i < numNodes; i++)
+                insert(0, i, positions[2 * i], positions[2 * i + 1], 0);
+        }
+
+        private int newCell(double x, double y, double half)
+        {
+            if (numCells == mass.length)
+            {
+                int capacity = 2 * numCells;
+                centerX = Arrays.copyOf(centerX, capacity);
+                centerY = Arrays.copyOf(centerY, capacity);
+                halfSize = Arrays.copyOf(halfSize, capacity);
+                massX = Arrays.copyOf(massX, capacity);
+                massY = Arrays.copyOf(massY, capacity);
+                mass = Arrays.copyOf(mass, capacity);
+                node = Arrays.copyOf(node, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+            }
+
+            centerX[numCells] = x;
+            centerY[numCells] = y;
+            halfSize[numCells] = half;
+            massX[numCells] = 0;
+            massY[numCells] = 0;
+            mass[numCells] = 0;
+            node[numCells] = -1;
+            firstChild[numCells] = -1;
+
+            return numCells++;
+        }
+
+        private void insert(int cell, int i, double x, double y, int depth)
+        {
+            while (true)
+            {
+                //Update center of mass
+                massX[cell] = (massX[cell] * mass[cell] + x) / (mass[cell] + 1);
+                massY[cell] = (massY[cell] * mass[cell] + y) / (mass[cell] + 1);
+                mass[cell]++;
+
+                if (mass[cell] == 1)
+                {
+                    node[cell] = i;
+                    return;
+                }
+
+                //Nodes at (almost) the same position stay together in a leaf
+                if (depth == MAX_DEPTH)
+                {
+                    node[cell] = -1;
+                    return;
+                }
+
+                if (firstChild[cell] == -1)
+                {
+                    double half = halfSize[cell] / 2;
+
+                    int first = newCell(centerX[cell] - half, centerY[cell] - half, half);
+                    newCell(centerX[cell] + half, centerY[cell] - half, half);
+                    newCell(centerX[cell] - half, centerY[cell] + half, half);
+                    newCell(centerX[cell] + half, centerY[cell] + half, half);
+
+                    firstChild[cell] = first;
+
+                    //Push down the node that was stored in the leaf
+                    int previous = node[cell];
+                    node[cell] = -1;
+
+                    if (previous != -1)
+                    {
+                        double px = positions[2 * previous];
+                        double py = positions[2 * previous + 1];
+
+                        insert(child(cell, px, py), previous, px, py, depth + 1);
+                    }
+                }
+
+                cell = child(cell, x, y);
+                depth++;
+            }
+        }
+
+        private int child(int cell, double x, double y)
+        {
+            return firstChild[cell] + (x < centerX[cell] ? 0 : 1) + (y < centerY[cell] ? 0 : 2);
+        }
+
+        /**
+         * Adds repulsive force acting on node i at (x, y) to force.
+         */
+        void repulsion(double x, double y, int i, double[] force)
+        {
+            int[] stack = new int[4 * MAX_DEPTH + 4];
+            int top = 0;
+            stack[top++] = 0;
+
+            while (top > 0)
+            {
+                int cell = stack[--top];
+
+                if (mass[cell] == 0 || node[cell] == i)
+                    continue;
+
+                double dx = x - massX[cell];
+                double dy = y - massY[cell];
+                double distance2 = dx * dx + dy * dy;
+
+                boolean leaf = (firstChild[cell] == -1);
+
+                if (leaf || 4 * halfSize[cell] * halfSize[cell] < THETA * THETA * distance2)
+                {
+                    int cellMass = mass[cell];
+
+                    //Leaf at the maximum depth may contain node i itself
+                    if (leaf && node[cell] == -1 && Math.abs(dx) < 1e-9 && Math.abs(dy) < 1e-9)
+                        cellMass--;
+
+                    if (cellMass == 0)
+                        continue;
+
+                    if (distance2 < 1e-4)
+                    {
+                        //Separate overlapping nodes in a deterministic direction
+                        dx = (i % 2 == 0 ? 0.01 : -0.01);
+                        dy = (i % 3 == 0 ? 0.01 : -0.01);
+                        distance2 = dx * dx + dy * dy;
+                    }
+
+                    //Fruchterman-Reingold repulsion k^2 / d in the direction of (dx, dy)
+                    double factor = cellMass * K * K / distance2;
+
+                    force[0] += dx * factor;
+                    force[1] += dy * factor;
+                }
+                else
+                    for (int c = 0; c < 4; c++)
+                        stack[top++] = firstChild[cell] + c;
+            }
+        }
+    }
+}
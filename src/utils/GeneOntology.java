@@ -0,0 +1,241 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import static utils.FileUtils.findReaderType;
+
+/**
+ * GO DAG with "is_a" and "part_of" relations loaded from gene ontology in obo-xml format. Terms are numbered 0, 1, ...
+ * in the order of the file; a dense array maps GO ids to term numbers, parents are stored in compressed sparse row
+ * arrays and the ancestors of each term (including the term) are precomputed as sorted arrays of term numbers.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class GeneOntology
+{
+    private final int[] goOfTerm;
+    private final int[] termOfGo;
+    private final int[][] ancestors;
+    private final Map<String, BitSet> subsets;
+
+    private GeneOntology(int[] goOfTerm, int[] termOfGo, int[][] ancestors, Map<String, BitSet> subsets)
+    {
+        this.goOfTerm = goOfTerm;
+        this.termOfGo = termOfGo;
+        this.ancestors = ancestors;
+        this.subsets = subsets;
+    }
+
+    /**
+     * Loads terms, their "is_a" and "part_of" parents and subsets (e.g., gosubset_prok) from gene ontology in
+     * obo-xml(.gz) format. Other relations (e.g., regulates) are ignored.
+     *
+     * @param inGeneOntologyFile    Gene ontology in obo-xml.gz format.
+     *
+     * @throws IOException
+     */
+    public static GeneOntology load(File inGeneOntologyFile) throws IOException
+    {
+        int numTerms = 0;
+        int[] gos = new int[1024];
+
+        //Edges as pairs (term, parent GO id); parents are numbered when all terms are known
+        int numEdges = 0;
+        int[] children = new int[1024];
+        int[] parentGos = new int[1024];
+
+        Map<String, BitSet> subsets = new HashMap<>();
+
+        BufferedReader br = findReaderType(inGeneOntologyFile);
+
+        boolean inTerm = false, inRelationship = false, partOf = false;
+        int maxGo = -1;
+
+        String line;
+
+        while ((line = br.readLine()) != null)
+        {
+            line = line.trim();
+
+            if (line.equals("<term>"))
+                inTerm = true;
+            else if (line.equals("</term>"))
+            {
+                inTerm = false;
+                numTerms++;
+            }
+            else if (!inTerm)
+                continue;
+            else if (line.startsWith("<id>GO:"))
+            {
+                if (numTerms == gos.length)
+                    gos = Arrays.copyOf(gos, 2 * numTerms);
+
+                gos[numTerms] = parseGo(line);
+                maxGo = Math.max(maxGo, gos[numTerms]);
+            }
+            else if (line.equals("<relationship>"))
+            {
+                inRelationship = true;
+                partOf = false;
+            }
+            else if (line.equals("</relationship>"))
+                inRelationship = false;
+            else if (inRelationship && line.startsWith("<type>"))
+                partOf = line.equals("<type>part_of</type>");
+            else if ((line.startsWith("<is_a>GO:") && !inRelationship) || (line.startsWith("<to>GO:") && inRelationship && partOf))
+            {
+                if (numEdges == children.length)
+                {
+                    children = Arrays.copyOf(children, 2 * numEdges);
+                    parentGos = Arrays.copyOf(parentGos, 2 * numEdges);
+                }
+
+                children[numEdges] = numTerms;
+                parentGos[numEdges] = parseGo(line);
+                numEdges++;
+            }
+            else if (line.startsWith("<subset>"))
+                subsets.computeIfAbsent(line.substring(line.indexOf(">") + 1, line.lastIndexOf("<")).trim().toLowerCase(),
+                                        s -> new BitSet()).set(numTerms);
+        }
+
+        br.close();
+
+        int[] goOfTerm = Arrays.copyOf(gos, numTerms);
+
+        int[] termOfGo = new int[maxGo + 1];
+        Arrays.fill(termOfGo, -1);
+        for (int t = 0; t < numTerms; t++)
+            termOfGo[goOfTerm[t]] = t;
+
+        //Parents in compressed sparse row arrays
+        int[] offsets = new int[numTerms + 1];
+        for (int e = 0; e < numEdges; e++)
+            if (parentGos[e] < termOfGo.length && termOfGo[parentGos[e]] >= 0)
+                offsets[children[e] + 1]++;
+
+        for (int t = 0; t < numTerms; t++)
+            offsets[t + 1] += offsets[t];
+
+        int[] parents = new int[offsets[numTerms]];
+        int[] next = Arrays.copyOf(offsets, numTerms);
+
+        for (int e = 0; e < numEdges; e++)
+            if (parentGos[e] < termOfGo.length && termOfGo[parentGos[e]] >= 0)
+                parents[next[children[e]]++] = termOfGo[parentGos[e]];
+
+        int[][] ancestors = new int[numTerms][];
+        boolean[] visiting = new boolean[numTerms];
+
+        for (int t = 0; t < numTerms; t++)
+            computeAncestors(t, offsets, parents, ancestors, visiting);
+
+        System.out.println("GO terms: " + numTerms + ", is_a and part_of relations: " + parents.length);
+
+        return new GeneOntology(goOfTerm, termOfGo, ancestors, subsets);
+    }
+
+    public int numTerms()
+    {
+        return goOfTerm.length;
+    }
+
+    /**
+     * Term number of a GO id or -1 if the id is not in the ontology.
+     */
+    public int termOf(int go)
+    {
+        return (go >= 0 && go < termOfGo.length ? termOfGo[go] : -1);
+    }
+
+    public int go(int term)
+    {
+        return goOfTerm[term];
+    }
+
+    /**
+     * GO ids of the ancestors of a GO function, including the function, or an empty array if the id is not in the
+     * ontology.
+     */
+    public int[] ancestors(int go)
+    {
+        int term = termOf(go);
+
+        if (term < 0)
+            return new int[0];
+
+        return Arrays.stream(ancestors[term]).map(t -> goOfTerm[t]).toArray();
+    }
+
+    /**
+     * True if a GO function is in a subset (e.g., gosubset_prok).
+     */
+    public boolean inSubset(int go, String subset)
+    {
+        BitSet terms = subsets.get(subset.toLowerCase());
+        int term = termOf(go);
+
+        return terms != null && term >= 0 && terms.get(term);
+    }
+
+    /**
+     * Sorted term numbers of the ancestors of a term, including the term. The array must not be modified.
+     */
+    int[] ancestorTerms(int term)
+    {
+        return ancestors[term];
+    }
+
+    private static int parseGo(String line)
+    {
+        return Integer.parseInt(line.substring(line.indexOf(":") + 1, line.lastIndexOf("<")));
+    }
+
+    /**
+     * Ancestors of a term are the union of the ancestors of its parents and the term; edges that would close a cycle
+     * are ignored.
+     */
+    private static int[] computeAncestors(int term, int[] offsets, int[] parents, int[][] ancestors, boolean[] visiting)
+    {
+        if (ancestors[term] != null)
+            return ancestors[term];
+
+        visiting[term] = true;
+
+        int[] union = {term};
+
+        for (int p = offsets[term]; p < offsets[term + 1]; p++)
+            if (!visiting[parents[p]])
+                union = mergeSorted(union, computeAncestors(parents[p], offsets, parents, ancestors, visiting));
+
+        visiting[term] = false;
+        ancestors[term] = union;
+
+        return union;
+    }
+
+    private static int[] mergeSorted(int[] a, int[] b)
+    {
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, m = 0;
+
+        while (i < a.length || j < b.length)
+            if (j == b.length || (i < a.length && a[i] < b[j]))
+                merged[m++] = a[i++];
+            else if (i == a.length || b[j] < a[i])
+                merged[m++] = b[j++];
+            else
+            {
+                merged[m++] = a[i++];
+                j++;
+            }
+
+        return Arrays.copyOf(merged, m);
+    }
+}
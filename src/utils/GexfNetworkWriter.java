@@ -0,0 +1,223 @@
+package utils;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a network in GEXF format, which can be opened in Gephi (http://gephi.org).
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class GexfNetworkWriter extends NetworkWriter
+{
+    private static final String GEXF_NAMESPACE = "http://www.gexf.net/1.3draft";
+    private static final String VIZ_NAMESPACE = "http://www.gexf.net/1.1draft/viz";
+
+    private final OutputStream out;
+    private final XMLStreamWriter xml;
+
+    private boolean writingEdges = false;
+    private int numEdges = 0;
+
+    public GexfNetworkWriter(File outFile) throws IOException
+    {
+        this(outFile, new String[0]);
+    }
+
+    public GexfNetworkWriter(File outFile, String[] nodeAttributes) throws IOException
+    {
+        out = new BufferedOutputStream(new FileOutputStream(outFile));
+
+        try
+        {
+            xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.setDefaultNamespace(GEXF_NAMESPACE);
+            xml.setPrefix("viz", VIZ_NAMESPACE);
+            xml.writeStartElement(GEXF_NAMESPACE, "gexf");
+            xml.writeDefaultNamespace(GEXF_NAMESPACE);
+            xml.writeNamespace("viz", VIZ_NAMESPACE);
+            xml.writeAttribute("version", "1.3");
+            indent(1);
+            xml.writeStartElement(GEXF_NAMESPACE, "graph");
+            xml.writeAttribute("defaultedgetype", "undirected");
+            xml.writeAttribute("idtype", "string");
+            xml.writeAttribute("type", "static");
+
+            if (nodeAttributes.length > 0)
+            {
+                indent(2);
+                xml.writeStartElement(GEXF_NAMESPACE, "attributes");
+                xml.writeAttribute("class", "node");
+
+                for (int a = 0; a < nodeAttributes.length; a++)
+                {
+                    indent(3);
+                    xml.writeEmptyElement(GEXF_NAMESPACE, "attribute");
+                    xml.writeAttribute("id", String.valueOf(a));
+                    xml.writeAttribute("title", nodeAttributes[a]);
+                    xml.writeAttribute("type", "integer");
+                }
+
+                indent(2);
+                xml.writeEndElement();
+            }
+
+            indent(2);
+            xml.writeStartElement(GEXF_NAMESPACE, "nodes");
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void writeNode(int id, String label, Color color, Point2D position, int[] attributeValues) throws IOException
+    {
+        if (writingEdges)
+            throw new IllegalStateException("Nodes have to be written before edges");
+
+        try
+        {
+            indent(3);
+            xml.writeStartElement(GEXF_NAMESPACE, "node");
+            xml.writeAttribute("id", String.valueOf(id));
+            xml.writeAttribute("label", label);
+
+            if (attributeValues != null)
+            {
+                indent(4);
+                xml.writeStartElement(GEXF_NAMESPACE, "attvalues");
+
+                for (int a = 0; a < attributeValues.length; a++)
+                {
+                    indent(5);
+                    xml.writeEmptyElement(GEXF_NAMESPACE, "attvalue");
+                    xml.writeAttribute("for", String.valueOf(a));
+                    xml.writeAttribute("value", String.valueOf(attributeValues[a]));
+                }
+
+                indent(4);
+                xml.writeEndElement();
+            }
+
+            if (color != null)
+            {
+                indent(4);
+                writeColor(color);
+            }
+
+            if (position != null)
+            {
+                indent(4);
+                xml.writeEmptyElement(VIZ_NAMESPACE, "position");
+                xml.writeAttribute("x", String.valueOf((float)position.getX()));
+                xml.writeAttribute("y", String.valueOf((float)position.getY()));
+                xml.writeAttribute("z", "0.0");
+            }
+
+            indent(3);
+            xml.writeEndElement();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void writeEdge(int source, int target, double weight, Color color) throws IOException
+    {
+        try
+        {
+            if (!writingEdges)
+            {
+                indent(2);
+                xml.writeEndElement(); //nodes
+                indent(2);
+                xml.writeStartElement(GEXF_NAMESPACE, "edges");
+                writingEdges = true;
+            }
+
+            indent(3);
+            xml.writeStartElement(GEXF_NAMESPACE, "edge");
+            xml.writeAttribute("id", String.valueOf(numEdges++));
+            xml.writeAttribute("source", String.valueOf(source));
+            xml.writeAttribute("target", String.valueOf(target));
+            xml.writeAttribute("weight", String.valueOf(weight));
+
+            if (color != null)
+            {
+                indent(4);
+                writeColor(color);
+            }
+
+            indent(3);
+            xml.writeEndElement();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if (!writingEdges)
+            {
+                indent(2);
+                xml.writeEndElement(); //nodes
+                indent(2);
+                xml.writeStartElement(GEXF_NAMESPACE, "edges");
+            }
+
+            indent(2);
+            xml.writeEndElement(); //edges
+            indent(1);
+            xml.writeEndElement(); //graph
+            xml.writeCharacters("\n");
+            xml.writeEndElement(); //gexf
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.close();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+
+        out.close();
+    }
+
+    private void writeColor(Color color) throws XMLStreamException
+    {
+        xml.writeEmptyElement(VIZ_NAMESPACE, "color");
+        xml.writeAttribute("r", String.valueOf(color.getRed()));
+        xml.writeAttribute("g", String.valueOf(color.getGreen()));
+        xml.writeAttribute("b", String.valueOf(color.getBlue()));
+        xml.writeAttribute("a", alpha(color));
+    }
+
+    private void indent(int level) throws XMLStreamException
+    {
+        StringBuilder sb = new StringBuilder("\n");
+        for (int i = 0; i < level; i++)
+            sb.append('\t');
+
+        xml.writeCharacters(sb.toString());
+    }
+}
@@ -0,0 +1,183 @@
+package utils;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a network in GraphML format (http://graphml.graphdrawing.org). Colors are stored as r, g, b and a attributes and
+ * node positions as x and y attributes.
+ * Additional integer node attributes are stored under keys "d0", "d1", ..., since their names (e.g., "MPP community")
+ * are not necessarily valid XML ids; the names are kept in "attr.name".
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class GraphMLNetworkWriter extends NetworkWriter
+{
+    private static final String GRAPHML_NAMESPACE = "http://graphml.graphdrawing.org/xmlns";
+
+    private final OutputStream out;
+    private final XMLStreamWriter xml;
+
+    private boolean writingEdges = false;
+
+    public GraphMLNetworkWriter(File outFile) throws IOException
+    {
+        this(outFile, new String[0]);
+    }
+
+    public GraphMLNetworkWriter(File outFile, String[] nodeAttributes) throws IOException
+    {
+        out = new BufferedOutputStream(new FileOutputStream(outFile));
+
+        try
+        {
+            xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.setDefaultNamespace(GRAPHML_NAMESPACE);
+            xml.writeStartElement(GRAPHML_NAMESPACE, "graphml");
+            xml.writeDefaultNamespace(GRAPHML_NAMESPACE);
+
+            writeKey("label", "label", "node", "string");
+            writeKey("weight", "weight", "edge", "double");
+            writeKey("r", "r", "all", "int");
+            writeKey("g", "g", "all", "int");
+            writeKey("b", "b", "all", "int");
+            writeKey("a", "a", "all", "double");
+            writeKey("x", "x", "node", "double");
+            writeKey("y", "y", "node", "double");
+
+            for (int a = 0; a < nodeAttributes.length; a++)
+                writeKey(attributeKey(a), nodeAttributes[a], "node", "int");
+
+            xml.writeCharacters("\n\t");
+            xml.writeStartElement(GRAPHML_NAMESPACE, "graph");
+            xml.writeAttribute("id", "G");
+            xml.writeAttribute("edgedefault", "undirected");
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void writeNode(int id, String label, Color color, Point2D position, int[] attributeValues) throws IOException
+    {
+        if (writingEdges)
+            throw new IllegalStateException("Nodes have to be written before edges");
+
+        try
+        {
+            xml.writeCharacters("\n\t\t");
+            xml.writeStartElement(GRAPHML_NAMESPACE, "node");
+            xml.writeAttribute("id", "n" + id);
+
+            writeData("label", label);
+            writeColor(color);
+
+            if (position != null)
+            {
+                writeData("x", String.valueOf((float)position.getX()));
+                writeData("y", String.valueOf((float)position.getY()));
+            }
+
+            if (attributeValues != null)
+                for (int a = 0; a < attributeValues.length; a++)
+                    writeData(attributeKey(a), String.valueOf(attributeValues[a]));
+
+            xml.writeEndElement();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void writeEdge(int source, int target, double weight, Color color) throws IOException
+    {
+        writingEdges = true;
+
+        try
+        {
+            xml.writeCharacters("\n\t\t");
+            xml.writeStartElement(GRAPHML_NAMESPACE, "edge");
+            xml.writeAttribute("source", "n" + source);
+            xml.writeAttribute("target", "n" + target);
+
+            writeData("weight", String.valueOf(weight));
+            writeColor(color);
+
+            xml.writeEndElement();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            xml.writeCharacters("\n\t");
+            xml.writeEndElement(); //graph
+            xml.writeCharacters("\n");
+            xml.writeEndElement(); //graphml
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.close();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new IOException(e);
+        }
+
+        out.close();
+    }
+
+    private static String attributeKey(int attribute)
+    {
+        return "d" + attribute;
+    }
+
+    private void writeKey(String id, String name, String domain, String type) throws XMLStreamException
+    {
+        xml.writeCharacters("\n\t");
+        xml.writeEmptyElement(GRAPHML_NAMESPACE, "key");
+        xml.writeAttribute("id", id);
+        xml.writeAttribute("for", domain);
+        xml.writeAttribute("attr.name", name);
+        xml.writeAttribute("attr.type", type);
+    }
+
+    private void writeData(String key, String value) throws XMLStreamException
+    {
+        xml.writeStartElement(GRAPHML_NAMESPACE, "data");
+        xml.writeAttribute("key", key);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    private void writeColor(Color color) throws XMLStreamException
+    {
+        if (color == null)
+            return;
+
+        writeData("r", String.valueOf(color.getRed()));
+        writeData("g", String.valueOf(color.getGreen()));
+        writeData("b", String.valueOf(color.getBlue()));
+        writeData("a", alpha(color));
+    }
+}
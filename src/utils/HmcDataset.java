@@ -0,0 +1,638 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import static utils.ArffUtils.isSparseRow;
+import static utils.ArffUtils.parseSparseRow;
+import static utils.FileUtils.findReaderType;
+
+/**
+ * Data set in CLUS HMC ARFF format (see examples in "data" folder) loaded into memory: the first attribute is the
+ * string type ID of a gene family, followed by numeric features and the hierarchical class attribute with GO
+ * functions separated by "@".
+ *
+ * Values are stored by columns in compact form: 0/1 features (phyletic profiles) as bit sets packed into longs,
+ * features with at most 256 distinct values (e.g., metagenome phyletic profiles rounded to a few decimals) as byte
+ * codes into a table of values, and other features as doubles. Annotations with each GO function are stored as a bit
+ * set over gene families. Missing values ("?") are stored as NaN.
+ *
+ * The data set can be saved in binary form (".hmc"), which is memory-mapped when opened, so that it is not parsed
+ * again (see "loadWithCache").
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class HmcDataset
+{
+    private static final int MAGIC = 0x484D4344; //"HMCD"
+    private static final int VERSION = 2;
+
+    private static final byte BITS = 0;
+    private static final byte CODES = 1;
+    private static final byte DOUBLES = 2;
+
+    private String idAttribute;
+    private final List<String> featureNames = new ArrayList<>();
+    private final Set<Integer> functionsInHierarchy = new TreeSet<>();
+
+    private final List<String> ogs = new ArrayList<>();
+
+    private byte[] encodings;           //encoding of each feature
+    private LongBuffer[] bitColumns;    //BITS: bit i of the column is the value of instance i
+    private ByteBuffer[] codeColumns;   //CODES: index of the value of instance i in levels
+    private double[][] levels;
+    private DoubleBuffer[] doubleColumns;
+
+    private int[] functionIds;          //sorted GO functions that annotate at least one instance
+    private LongBuffer[] functionInstances; //bit set of instances annotated with each function
+
+    private double[][] decodedFeatures;
+
+    private long sourceLength = -1;     //length and CRC32 of the ARFF file the binary form was made from
+    private long sourceChecksum = -1;
+
+    /**
+     * Loads a data set from a file in binary form (".hmc" extension) or in CLUS HMC ARFF format (plain, gzip or zip)
+     * with dense or sparse data rows.
+     */
+    public static HmcDataset load(File inFile) throws IOException
+    {
+        if (inFile.getName().toLowerCase().endsWith(".hmc"))
+            return open(inFile);
+        else
+            return parse(inFile);
+    }
+
+    /**
+     * Loads a data set in CLUS HMC ARFF format from its binary form in the cache folder (file with the name of the ARFF
+     * file and additional ".hmc" extension). The binary form records the length and CRC32 checksum of the ARFF file it
+     * was made from; if it does not exist or was made from a different file, the ARFF file is parsed and the binary
+     * form is saved for the next time.
+     *
+     * @param inArffFile    Data set in CLUS HMC ARFF format.
+     * @param cacheFolder   Folder for the binary form or null to parse the ARFF file without caching.
+     */
+    public static HmcDataset loadWithCache(File inArffFile, File cacheFolder) throws IOException
+    {
+        if (cacheFolder == null)
+            return parse(inArffFile);
+
+        File cacheFile = new File(cacheFolder, inArffFile.getName() + ".hmc");
+
+        long[] source = {inArffFile.length(), checksum(inArffFile)};
+
+        if (cacheFile.exists())
+        {
+            try
+            {
+                HmcDataset dataset = open(cacheFile);
+
+                if (dataset.sourceLength == source[0] && dataset.sourceChecksum == source[1])
+                    return dataset;
+            }
+            catch (IOException e)
+            {
+                //Binary form of an older version or a damaged file is replaced
+            }
+
+            System.out.println("Binary form " + cacheFile + " is stale and will be replaced");
+        }
+
+        HmcDataset dataset = parse(inArffFile);
+        dataset.sourceLength = source[0];
+        dataset.sourceChecksum = source[1];
+
+        if (!cacheFolder.exists())
+            cacheFolder.mkdirs();
+
+        dataset.save(cacheFile);
+
+        return dataset;
+    }
+
+    private static long checksum(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+
+        try (InputStream is = new FileInputStream(file))
+        {
+            for (int n; (n = is.read(buffer)) > 0; )
+                crc.update(buffer, 0, n);
+        }
+
+        return crc.getValue();
+    }
+
+    private static HmcDataset parse(File inArffFile) throws IOException
+    {
+        HmcDataset dataset = new HmcDataset();
+
+        List<double[]> rows = new ArrayList<>();
+        Map<Integer, BitSet> annotated = new TreeMap<>();
+
+        BufferedReader br = findReaderType(inArffFile);
+
+        String line;
+
+        while((line=br.readLine()) != null)
+            if (line.startsWith("@ATTRIBUTE class hierarchical"))
+            {
+                for (String part : line.substring(line.indexOf("hierarchical") + 12).trim().split(","))
+                    for (String function : part.split("/"))
+                        if (!function.equals("root"))
+                            dataset.functionsInHierarchy.add(Integer.parseInt(function.trim()));
+            }
+            else if (line.toUpperCase().startsWith("@ATTRIBUTE"))
+            {
+                String name = line.substring(10).trim().split("\\s+")[0];
+
+                if (dataset.idAttribute == null)
+                    dataset.idAttribute = name;
+                else
+                    dataset.featureNames.add(name);
+            }
+            else if (!line.startsWith("@") && !line.startsWith("%") && !line.trim().isEmpty())
+            {
+                int instance = dataset.ogs.size();
+
+                double[] values = new double[dataset.featureNames.size()];
+                String functionsStr;
+
+                if (isSparseRow(line))
+                {
+                    String[] sparseValues = parseSparseRow(line, values.length + 2);
+
+                    dataset.ogs.add(sparseValues[0].trim());
+
+                    for (int j = 0; j < values.length; j++)
+                        if (sparseValues[j + 1] != null)
+                            values[j] = parseValue(sparseValues[j + 1].trim());
+
+                    functionsStr = (sparseValues[values.length + 1] == null ? "" : sparseValues[values.length + 1]);
+                }
+                else
+                {
+                    int firstComma = line.indexOf(",");
+                    int lastComma = line.lastIndexOf(",");
+
+                    dataset.ogs.add(line.substring(0, firstComma).trim());
+
+                    int start = firstComma + 1;
+                    for (int j = 0; j < values.length; j++)
+                    {
+                        int end = (j == values.length - 1 ? lastComma : line.indexOf(",", start));
+                        values[j] = parseValue(line.substring(start, end).trim());
+                        start = end + 1;
+                    }
+
+                    functionsStr = line.substring(lastComma + 1).trim();
+                }
+
+                rows.add(values);
+
+                for (String part : functionsStr.split("@"))
+                    if (!part.isEmpty() && !part.equals("?"))
+                        annotated.computeIfAbsent(Integer.parseInt(part), f -> new BitSet()).set(instance);
+            }
+
+        br.close();
+
+        int numInstances = rows.size();
+        int numFeatures = dataset.featureNames.size();
+
+        dataset.allocateColumns(numFeatures, annotated.size());
+
+        double[] column = new double[numInstances];
+
+        for (int j = 0; j < numFeatures; j++)
+        {
+            for (int i = 0; i < numInstances; i++)
+                column[i] = rows.get(i)[j];
+
+            dataset.encodeColumn(j, column);
+        }
+
+        int k = 0;
+        for (Map.Entry<Integer, BitSet> entry : annotated.entrySet())
+        {
+            dataset.functionIds[k] = entry.getKey();
+            dataset.functionInstances[k++] = LongBuffer.wrap(Arrays.copyOf(entry.getValue().toLongArray(), numWords(numInstances)));
+        }
+
+        return dataset;
+    }
+
+    private static double parseValue(String value)
+    {
+        return (value.equals("?") ? Double.NaN : Double.parseDouble(value));
+    }
+
+    private static int numWords(int numBits)
+    {
+        return (numBits + 63) >>> 6;
+    }
+
+    private void allocateColumns(int numFeatures, int numFunctions)
+    {
+        encodings = new byte[numFeatures];
+        bitColumns = new LongBuffer[numFeatures];
+        codeColumns = new ByteBuffer[numFeatures];
+        levels = new double[numFeatures][];
+        doubleColumns = new DoubleBuffer[numFeatures];
+
+        functionIds = new int[numFunctions];
+        functionInstances = new LongBuffer[numFunctions];
+    }
+
+    /**
+     * Stores a column in the most compact encoding that keeps the values.
+     */
+    private void encodeColumn(int feature, double[] column)
+    {
+        int numInstances = column.length;
+
+        double[] sorted = column.clone();
+        Arrays.sort(sorted);
+
+        int numDistinct = 0;
+        for (int i = 0; i < numInstances && numDistinct <= 256; i++)
+            if (numDistinct == 0 || Double.compare(sorted[i], sorted[numDistinct - 1]) != 0)
+                sorted[numDistinct++] = sorted[i];
+
+        boolean binary = true;
+        for (int i = 0; i < numDistinct && binary; i++)
+            binary = (sorted[i] == 0 || sorted[i] == 1);
+
+        if (binary)
+        {
+            long[] bits = new long[numWords(numInstances)];
+            for (int i = 0; i < numInstances; i++)
+                if (column[i] == 1)
+                    bits[i >>> 6] |= 1L << i;
+
+            encodings[feature] = BITS;
+            bitColumns[feature] = LongBuffer.wrap(bits);
+        }
+        else if (numDistinct <= 256)
+        {
+            levels[feature] = Arrays.copyOf(sorted, numDistinct);
+
+            byte[] codes = new byte[numInstances];
+            for (int i = 0; i < numInstances; i++)
+                codes[i] = (byte)Arrays.binarySearch(levels[feature], column[i]);
+
+            encodings[feature] = CODES;
+            codeColumns[feature] = ByteBuffer.wrap(codes);
+        }
+        else
+        {
+            encodings[feature] = DOUBLES;
+            doubleColumns[feature] = DoubleBuffer.wrap(column.clone());
+        }
+    }
+
+    /**
+     * Saves the data set in binary form: a header with names, encodings and value tables, followed by columns and
+     * bit sets of functions aligned to 8 bytes. The file is written to a temporary file in the same folder and moved
+     * in place, so an interrupted save never leaves a truncated file under the name of outFile.
+     */
+    public void save(File outFile) throws IOException
+    {
+        int numInstances = numInstances();
+        int numFeatures = numFeatures();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+
+        header.writeLong(sourceLength);
+        header.writeLong(sourceChecksum);
+        header.writeInt(numInstances);
+        header.writeInt(numFeatures);
+        header.writeUTF(idAttribute);
+
+        for (String name : featureNames)
+            header.writeUTF(name);
+
+        for (String og : ogs)
+            header.writeUTF(og);
+
+        header.writeInt(functionsInHierarchy.size());
+        for (int function : functionsInHierarchy)
+            header.writeInt(function);
+
+        header.writeInt(functionIds.length);
+        for (int function : functionIds)
+            header.writeInt(function);
+
+        for (int j = 0; j < numFeatures; j++)
+        {
+            header.writeByte(encodings[j]);
+
+            if (encodings[j] == CODES)
+            {
+                header.writeShort(levels[j].length);
+                for (double level : levels[j])
+                    header.writeDouble(level);
+            }
+        }
+
+        header.close();
+
+        File tmpFile = File.createTempFile(outFile.getName(), ".tmp", outFile.getAbsoluteFile().getParentFile());
+
+        try
+        {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(headerBytes.size());
+            headerBytes.writeTo(dos);
+            pad(dos, 12 + headerBytes.size());
+
+            for (int j = 0; j < numFeatures; j++)
+                switch (encodings[j])
+                {
+                    case BITS:
+                        for (int w = 0; w < numWords(numInstances); w++)
+                            dos.writeLong(bitColumns[j].get(w));
+                        break;
+                    case CODES:
+                        for (int i = 0; i < numInstances; i++)
+                            dos.writeByte(codeColumns[j].get(i));
+                        pad(dos, numInstances);
+                        break;
+                    default:
+                        for (int i = 0; i < numInstances; i++)
+                            dos.writeDouble(doubleColumns[j].get(i));
+                }
+
+            for (LongBuffer instances : functionInstances)
+                for (int w = 0; w < numWords(numInstances); w++)
+                    dos.writeLong(instances.get(w));
+
+            dos.close();
+
+            Files.move(tmpFile.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            tmpFile.delete();
+        }
+    }
+
+    private static void pad(DataOutputStream dos, long length) throws IOException
+    {
+        for (long i = length; i % 8 != 0; i++)
+            dos.writeByte(0);
+    }
+
+    private static long padded(long length)
+    {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * Opens a data set saved in binary form. Columns and bit sets of functions are memory-mapped, only names are read
+     * into memory.
+     */
+    private static HmcDataset open(File inHmcFile) throws IOException
+    {
+        HmcDataset dataset = new HmcDataset();
+
+        try (RandomAccessFile file = new RandomAccessFile(inHmcFile, "r"))
+        {
+            FileChannel channel = file.getChannel();
+
+            if (file.readInt() != MAGIC || file.readInt() != VERSION)
+                throw new IOException("Unsupported format of file " + inHmcFile);
+
+            byte[] headerBytes = new byte[file.readInt()];
+            file.readFully(headerBytes);
+
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+
+            dataset.sourceLength = header.readLong();
+            dataset.sourceChecksum = header.readLong();
+            int numInstances = header.readInt();
+            int numFeatures = header.readInt();
+            dataset.idAttribute = header.readUTF();
+
+            for (int j = 0; j < numFeatures; j++)
+                dataset.featureNames.add(header.readUTF());
+
+            for (int i = 0; i < numInstances; i++)
+                dataset.ogs.add(header.readUTF());
+
+            int numFunctionsInHierarchy = header.readInt();
+            for (int k = 0; k < numFunctionsInHierarchy; k++)
+                dataset.functionsInHierarchy.add(header.readInt());
+
+            dataset.allocateColumns(numFeatures, header.readInt());
+
+            for (int k = 0; k < dataset.functionIds.length; k++)
+                dataset.functionIds[k] = header.readInt();
+
+            for (int j = 0; j < numFeatures; j++)
+            {
+                dataset.encodings[j] = header.readByte();
+
+                if (dataset.encodings[j] == CODES)
+                {
+                    dataset.levels[j] = new double[header.readShort()];
+                    for (int l = 0; l < dataset.levels[j].length; l++)
+                        dataset.levels[j][l] = header.readDouble();
+                }
+            }
+
+            long position = padded(12 + headerBytes.length);
+            long bitsLength = 8L * numWords(numInstances);
+
+            //Each column is mapped separately, so that the file is not limited to 2 GB
+            for (int j = 0; j < numFeatures; j++)
+                switch (dataset.encodings[j])
+                {
+                    case BITS:
+                        dataset.bitColumns[j] = channel.map(FileChannel.MapMode.READ_ONLY, position, bitsLength).asLongBuffer();
+                        position += bitsLength;
+                        break;
+                    case CODES:
+                        dataset.codeColumns[j] = channel.map(FileChannel.MapMode.READ_ONLY, position, numInstances);
+                        position += padded(numInstances);
+                        break;
+                    default:
+                        dataset.doubleColumns[j] = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * numInstances).asDoubleBuffer();
+                        position += 8L * numInstances;
+                }
+
+            for (int k = 0; k < dataset.functionIds.length; k++)
+            {
+                dataset.functionInstances[k] = channel.map(FileChannel.MapMode.READ_ONLY, position, bitsLength).asLongBuffer();
+                position += bitsLength;
+            }
+        }
+
+        return dataset;
+    }
+
+    public String idAttribute()
+    {
+        return idAttribute;
+    }
+
+    public int numInstances()
+    {
+        return ogs.size();
+    }
+
+    public int numFeatures()
+    {
+        return featureNames.size();
+    }
+
+    public String og(int instance)
+    {
+        return ogs.get(instance);
+    }
+
+    public String featureName(int feature)
+    {
+        return featureNames.get(feature);
+    }
+
+    /**
+     * Values of all features: features()[feature][instance]. Values are decoded into doubles on the first call and
+     * the array is shared by all callers, so it must not be modified. The decoded array takes 8 bytes per value
+     * (e.g., about 59 MB for PP-I with 2071 features and 3536 gene families, where the bit columns take 0.9 MB) and is
+     * kept as long as the data set; it is decoded because Random Forest reads values of a feature many times in each
+     * tree, where decoding every read would be slower. Use "value" to read single values without decoding all
+     * features.
+     */
+    public synchronized double[][] features()
+    {
+        if (decodedFeatures == null)
+        {
+            decodedFeatures = new double[numFeatures()][numInstances()];
+
+            for (int j = 0; j < numFeatures(); j++)
+                for (int i = 0; i < numInstances(); i++)
+                    decodedFeatures[j][i] = value(i, j);
+        }
+
+        return decodedFeatures;
+    }
+
+    public double value(int instance, int feature)
+    {
+        switch (encodings[feature])
+        {
+            case BITS:
+                return (bitColumns[feature].get(instance >>> 6) >>> instance) & 1;
+            case CODES:
+                return levels[feature][codeColumns[feature].get(instance) & 0xFF];
+            default:
+                return doubleColumns[feature].get(instance);
+        }
+    }
+
+    /**
+     * GO functions that appear in the class hierarchy of the ARFF header.
+     */
+    public Set<Integer> functionsInHierarchy()
+    {
+        return functionsInHierarchy;
+    }
+
+    /**
+     * Sorted GO functions that annotate at least one gene family.
+     */
+    public int[] functions()
+    {
+        return functionIds.clone();
+    }
+
+    public boolean isAnnotatedWith(int instance, int function)
+    {
+        int k = Arrays.binarySearch(functionIds, function);
+
+        return k >= 0 && ((functionInstances[k].get(instance >>> 6) >>> instance) & 1) != 0;
+    }
+
+    /**
+     * Instances annotated with the function, in increasing order.
+     */
+    public int[] instancesAnnotatedWith(int function)
+    {
+        int k = Arrays.binarySearch(functionIds, function);
+
+        if (k < 0)
+            return new int[0];
+
+        int[] instances = new int[numInstances()];
+        int cnt = 0;
+
+        for (int w = 0; w < numWords(numInstances()); w++)
+            for (long word = functionInstances[k].get(w); word != 0; word &= word - 1)
+                instances[cnt++] = (w << 6) + Long.numberOfTrailingZeros(word);
+
+        return Arrays.copyOf(instances, cnt);
+    }
+
+    /**
+     * Binary class of each instance: 1 if the gene family is annotated with the function, 0 otherwise.
+     */
+    public int[] binaryClasses(int function)
+    {
+        int[] classes = new int[numInstances()];
+
+        int k = Arrays.binarySearch(functionIds, function);
+
+        if (k >= 0)
+            for (int i = 0; i < classes.length; i++)
+                classes[i] = (int)((functionInstances[k].get(i >>> 6) >>> i) & 1);
+
+        return classes;
+    }
+
+    /**
+     * Formats a value in the same way as Weka when saving data sets (at most 6 decimal places, no trailing zeros,
+     * "?" for missing values).
+     */
+    public static String formatValue(double value)
+    {
+        if (Double.isNaN(value))
+            return "?";
+
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return String.valueOf((long)value);
+
+        return new BigDecimal(value).setScale(6, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+}
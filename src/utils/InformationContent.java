@@ -0,0 +1,256 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.apache.commons.math3.util.Precision.round;
+import static utils.FileUtils.findReaderType;
+
+/**
+ * Information content (IC) of GO functions, IC = -log2(frequency), where frequency is the frequency of a function's
+ * appearance in Uniprot-GOA. High IC indicates that a function is specific and, therefore, contributes more information
+ * about gene's function. IC is computed once when the frequencies are loaded and stored in a dense array indexed by GO
+ * id, so lookups do not box ids or hash them.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class InformationContent
+{
+    private final double[] ics;
+
+    private InformationContent(double[] ics)
+    {
+        this.ics = ics;
+    }
+
+    /**
+     * Loads a tab delimited file with columns "go" and "freq" (e.g., Uniprot-freqs-2071_organisms-Uniprot-GOA-2013-12-10.txt).
+     *
+     * @param inFileWithUniprotFrequencies  File with frequencies of GO functions appearance in Uniprot-GOA.
+     *
+     * @throws IOException
+     */
+    public static InformationContent load(File inFileWithUniprotFrequencies) throws IOException
+    {
+        int size = 0;
+        int[] gos = new int[1024];
+        double[] frequencies = new double[1024];
+        int maxGo = -1;
+
+        BufferedReader br = findReaderType(inFileWithUniprotFrequencies);
+
+        String line;
+
+        while ((line = br.readLine()) != null)
+            if (!line.startsWith("#") && !line.trim().isEmpty())
+            {
+                String[] parts = line.split("\t");
+
+                if (size == gos.length)
+                {
+                    gos = Arrays.copyOf(gos, 2 * size);
+                    frequencies = Arrays.copyOf(frequencies, 2 * size);
+                }
+
+                gos[size] = Integer.parseInt(parts[0]);
+                frequencies[size] = Double.parseDouble(parts[1]);
+                maxGo = Math.max(maxGo, gos[size]);
+                size++;
+            }
+
+        br.close();
+
+        double[] ics = new double[maxGo + 1];
+        Arrays.fill(ics, Double.NaN);
+
+        for (int i = 0; i < size; i++)
+            ics[gos[i]] = -(Math.log(frequencies[i]) / Math.log(2));
+
+        return new InformationContent(ics);
+    }
+
+    /**
+     * IC of a GO function or NaN if its frequency is not known.
+     */
+    public double ic(int go)
+    {
+        return (go >= 0 && go < ics.length ? ics[go] : Double.NaN);
+    }
+
+    public boolean contains(int go)
+    {
+        return !Double.isNaN(ic(go));
+    }
+
+    /**
+     * Bin of each function or -1 if its IC is not known.
+     */
+    public int[] bins(int[] functions, Bins bins)
+    {
+        int[] binOfFunction = new int[functions.length];
+        for (int f = 0; f < functions.length; f++)
+            binOfFunction[f] = bins.bin(ic(functions[f]));
+
+        return binOfFunction;
+    }
+
+    /**
+     * Levels of GO functions generality defined by IC cut-offs. Bins are ordered from specific to general functions;
+     * with m bins and cut-offs c[0] > c[1] > ... > c[m-2], the first bin holds functions with IC>c[0], the second
+     * c[1]<=IC<=c[0] (IC<=c[0] if it is the last bin), bin i (1 < i < m-1) c[i]<=IC<c[i-1] and the last bin IC<c[m-2],
+     * as in the default S/M/G bins.
+     */
+    public static class Bins
+    {
+        /** S - specific (IC>8), M - medium specific (4<=IC<=8) and G - general (IC<4) functions. */
+        public static final Bins DEFAULT = new Bins(new String[] {"S", "M", "G"},
+                                                    new String[] {"specific GO functions", "medium specific GO functions",
+                                                                  "general GO functions"},
+                                                    new double[] {8, 4});
+
+        private final String[] names;
+        private final String[] descriptions;
+        private final double[] cutOffs;
+
+        /**
+         * @param names         Name of each bin (e.g., S, M, G).
+         * @param descriptions  Description of each bin used in legends (e.g., specific GO functions).
+         * @param cutOffs       IC cut-offs in descending order, one less than bins; null for quantile bins that have
+         *                      cut-offs set by "fit".
+         */
+        public Bins(String[] names, String[] descriptions, double[] cutOffs)
+        {
+            if (cutOffs != null)
+            {
+                if (cutOffs.length != names.length - 1)
+                    throw new IllegalArgumentException("Number of cut-offs must be one less than the number of bins");
+
+                for (int i = 1; i < cutOffs.length; i++)
+                    if (cutOffs[i] >= cutOffs[i - 1])
+                        throw new IllegalArgumentException("Cut-offs must be in descending order");
+            }
+
+            this.names = names.clone();
+            this.descriptions = descriptions.clone();
+            this.cutOffs = (cutOffs == null ? null : cutOffs.clone());
+        }
+
+        public Bins(String[] names, double[] cutOffs)
+        {
+            this(names, defaultDescriptions(names.length), cutOffs);
+        }
+
+        /**
+         * Bins with (about) equal numbers of functions; cut-offs are set from ICs of functions by "fit".
+         */
+        public static Bins quantiles(String[] names)
+        {
+            return new Bins(names, null);
+        }
+
+        /**
+         * Returns bins with cut-offs at quantiles of ICs if these are quantile bins, otherwise returns these bins.
+         *
+         * @param ics   ICs of the functions to be binned; NaN values are ignored.
+         */
+        public Bins fit(double[] ics)
+        {
+            if (cutOffs != null)
+                return this;
+
+            double[] sorted = Arrays.stream(ics).filter(ic -> !Double.isNaN(ic)).sorted().toArray();
+
+            if (sorted.length == 0)
+                throw new IllegalArgumentException("No ICs to compute quantile bins from");
+
+            int m = names.length;
+            double[] quantileCutOffs = new double[m - 1];
+
+            for (int i = 0; i < m - 1; i++)
+            {
+                //Type 7 quantile at 1 - (i + 1) / m
+                double position = (1 - (i + 1) / (double)m) * (sorted.length - 1);
+                int low = (int)Math.floor(position);
+                int high = (int)Math.ceil(position);
+
+                quantileCutOffs[i] = sorted[low] + (position - low) * (sorted[high] - sorted[low]);
+
+                //Ties may give equal cut-offs, which have to be in descending order
+                if (i > 0 && quantileCutOffs[i] >= quantileCutOffs[i - 1])
+                    quantileCutOffs[i] = Math.nextDown(quantileCutOffs[i - 1]);
+            }
+
+            return new Bins(names, descriptions, quantileCutOffs);
+        }
+
+        public int numBins()
+        {
+            return names.length;
+        }
+
+        public String name(int bin)
+        {
+            return names[bin];
+        }
+
+        public String[] names()
+        {
+            return names.clone();
+        }
+
+        /**
+         * Bin of a function with a given IC or -1 if IC is NaN.
+         */
+        public int bin(double ic)
+        {
+            if (cutOffs == null)
+                throw new IllegalStateException("Cut-offs of quantile bins are not set (see \"fit\")");
+
+            if (Double.isNaN(ic))
+                return -1;
+
+            if (cutOffs.length == 0 || ic > cutOffs[0])
+                return 0;
+
+            for (int i = 1; i < cutOffs.length; i++)
+                if (ic >= cutOffs[i])
+                    return i;
+
+            return cutOffs.length;
+        }
+
+        /**
+         * Legend line of a bin, e.g., "S - specific GO functions with IC>8".
+         */
+        public String legend(int bin)
+        {
+            String range;
+            int m = names.length;
+
+            if (m == 1)
+                range = "any IC";
+            else if (bin == 0)
+                range = "IC>" + format(cutOffs[0]);
+            else if (bin == m - 1)
+                range = "IC" + (m == 2 ? "<=" : "<") + format(cutOffs[m - 2]);
+            else
+                range = format(cutOffs[bin]) + "<=IC" + (bin == 1 ? "<=" : "<") + format(cutOffs[bin - 1]);
+
+            return names[bin] + " - " + descriptions[bin] + " with " + range;
+        }
+
+        private static String[] defaultDescriptions(int numBins)
+        {
+            String[] descriptions = new String[numBins];
+            Arrays.fill(descriptions, "GO functions");
+
+            return descriptions;
+        }
+
+        private static String format(double cutOff)
+        {
+            return (cutOff == Math.rint(cutOff) ? String.valueOf((long)cutOff) : String.valueOf(round(cutOff, 4)));
+        }
+    }
+}
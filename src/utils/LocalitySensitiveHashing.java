@@ -0,0 +1,167 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Candidate generation for approximate all-pairs similarity search. Profiles are hashed into bands so that similar
+ * profiles are likely to share at least one band bucket; only pairs that share a bucket need to be compared exactly.
+ * More bands increase recall, more rows per band increase precision (and speed).
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class LocalitySensitiveHashing
+{
+    /**
+     * Computes random-hyperplane (SimHash) band keys for continuous profiles. For standardized profiles the probability
+     * that a hyperplane separates two profiles depends only on the angle between them, which is arccos of their Pearson
+     * correlation coefficient. Each band is canonicalized so that a profile and its negation fall into the same bucket,
+     * because only the strength of correlation is relevant.
+     *
+     * @param standardized  Profiles standardized with "SimilarityUtils.standardizeProfile" (constant profiles are null).
+     * @param numBands      Number of bands.
+     * @param rowsPerBand   Number of hyperplanes per band (at most 63).
+     * @param seed          Seed for generating hyperplanes.
+     *
+     * @return Band keys [profile][band], or null rows for constant profiles.
+     */
+    public static long[][] simHashBandKeys(double[][] standardized, int numBands, int rowsPerBand, long seed)
+    {
+        if (rowsPerBand < 1 || rowsPerBand > 63)
+            throw new IllegalArgumentException("Number of rows per band must be between 1 and 63");
+
+        int dimensionOfProfiles = 0;
+        for (double[] profile : standardized)
+            if (profile != null)
+            {
+                dimensionOfProfiles = profile.length;
+                break;
+            }
+
+        final int dimension = dimensionOfProfiles;
+
+        Random random = new Random(seed);
+
+        double[][] hyperplanes = new double[numBands * rowsPerBand][dimension];
+        for (double[] hyperplane : hyperplanes)
+            for (int i = 0; i < dimension; i++)
+                hyperplane[i] = random.nextGaussian();
+
+        long[][] keys = new long[standardized.length][];
+
+        IntStream.range(0, standardized.length).parallel().forEach(p -> {
+            if (standardized[p] == null)
+                return;
+
+            keys[p] = new long[numBands];
+
+            for (int b = 0; b < numBands; b++)
+            {
+                long bits = 0;
+
+                for (int r = 0; r < rowsPerBand; r++)
+                {
+                    double[] hyperplane = hyperplanes[b * rowsPerBand + r];
+
+                    double dot = 0;
+                    for (int i = 0; i < dimension; i++)
+                        dot += hyperplane[i] * standardized[p][i];
+
+                    if (dot >= 0)
+                        bits |= 1L << r;
+                }
+
+                if ((bits & 1L) != 0) //canonical form of the band shared by the profile and its negation
+                    bits = ~bits & ((1L << rowsPerBand) - 1);
+
+                keys[p][b] = bits;
+            }
+        });
+
+        return keys;
+    }
+
+    /**
+     * Collects pairs of profiles that share a bucket in at least one band.
+     *
+     * @param bandKeys  Band keys outputted by "simHashBandKeys".
+     *
+     * @return Sorted unique candidate pairs, each encoded as (smaller index << 32 | larger index).
+     */
+    public static long[] candidatePairs(long[][] bandKeys)
+    {
+        int numBands = 0;
+        for (long[] keys : bandKeys)
+            if (keys != null)
+            {
+                numBands = keys.length;
+                break;
+            }
+
+        List<long[]> pairsPerBand = new ArrayList<>();
+
+        for (int b = 0; b < numBands; b++)
+        {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+
+            for (int p = 0; p < bandKeys.length; p++)
+                if (bandKeys[p] != null)
+                    buckets.computeIfAbsent(bandKeys[p][b], key -> new ArrayList<>()).add(p);
+
+            long numPairs = 0;
+            for (List<Integer> bucket : buckets.values())
+                numPairs += (long)bucket.size() * (bucket.size() - 1) / 2;
+
+            if (numPairs > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many candidate pairs in band " + b + ", increase the number of rows per band");
+
+            long[] pairs = new long[(int)numPairs];
+            int cnt = 0;
+
+            for (List<Integer> bucket : buckets.values())
+                for (int i = 0; i < bucket.size(); i++)
+                    for (int j = i + 1; j < bucket.size(); j++)
+                        pairs[cnt++] = ((long)bucket.get(i) << 32) | bucket.get(j); //profiles were added in increasing order
+
+            pairsPerBand.add(pairs);
+        }
+
+        return mergePairs(pairsPerBand);
+    }
+
+    /**
+     * Merges lists of encoded pairs into one sorted list without duplicates.
+     */
+    public static long[] mergePairs(List<long[]> pairLists)
+    {
+        long total = 0;
+        for (long[] pairs : pairLists)
+            total += pairs.length;
+
+        if (total > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Too many candidate pairs to merge (" + total + "), increase the number of rows per band");
+
+        long[] merged = new long[(int)total];
+
+        int cnt = 0;
+        for (long[] pairs : pairLists)
+        {
+            System.arraycopy(pairs, 0, merged, cnt, pairs.length);
+            cnt += pairs.length;
+        }
+
+        Arrays.parallelSort(merged);
+
+        int unique = 0;
+        for (int i = 0; i < merged.length; i++)
+            if (i == 0 || merged[i] != merged[i - 1])
+                merged[unique++] = merged[i];
+
+        return Arrays.copyOf(merged, unique);
+    }
+}
@@ -0,0 +1,452 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Louvain community detection (Blondel et al., 2008) on undirected weighted graphs. Each level alternates local moving
+ * of nodes between communities and aggregation of communities into nodes of the next level. Local moving goes through
+ * the classes of a greedy node colouring: nodes of one colour are not adjacent, so their weights to neighbouring
+ * communities do not change while the class is processed and their best communities are found in parallel. The moves
+ * are then applied in node order if they still increase modularity with the community totals updated by the preceding
+ * moves, so modularity never decreases and the result does not depend on the number of threads.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class Louvain
+{
+    private static final int MAX_PASSES = 100;
+    private static final double MIN_GAIN = 1e-12;
+
+    /**
+     * Detects communities.
+     *
+     * @param graph     Graph with positive edge weights.
+     *
+     * @return Community of each node. Communities are numbered 0, 1, 2, ... in decreasing order of size;
+     *         nodes without edges get -1.
+     */
+    public static int[] detectCommunities(CsrGraph graph)
+    {
+        int numNodes = graph.numNodes();
+
+        Level level = new Level(graph);
+
+        //Level node of each node of the input graph
+        int[] membership = new int[numNodes];
+        for (int i = 0; i < numNodes; i++)
+            membership[i] = i;
+
+        while (true)
+        {
+            int[] communities = level.moveNodes();
+
+            int numCommunities = 0;
+            for (int c : communities)
+                numCommunities = Math.max(numCommunities, c + 1);
+
+            if (numCommunities == level.numNodes)
+                break;
+
+            for (int i = 0; i < numNodes; i++)
+                membership[i] = communities[membership[i]];
+
+            level = level.aggregate(communities, numCommunities);
+        }
+
+        //Renumber communities by decreasing size (ties by the smallest node id), exclude isolated nodes
+        int[] sizes = new int[numNodes];
+        int[] firstNode = new int[numNodes];
+        Arrays.fill(firstNode, -1);
+
+        for (int i = 0; i < numNodes; i++)
+            if (graph.degree(i) > 0)
+            {
+                sizes[membership[i]]++;
+                if (firstNode[membership[i]] == -1)
+                    firstNode[membership[i]] = i;
+            }
+
+        List<Integer> order = new ArrayList<>();
+        for (int c = 0; c < numNodes; c++)
+            if (sizes[c] > 0)
+                order.add(c);
+
+        order.sort((a, b) -> (sizes[a] != sizes[b] ? Integer.compare(sizes[b], sizes[a]) : Integer.compare(firstNode[a], firstNode[b])));
+
+        int[] newId = new int[numNodes];
+        for (int k = 0; k < order.size(); k++)
+            newId[order.get(k)] = k;
+
+        int[] communities = new int[numNodes];
+        for (int i = 0; i < numNodes; i++)
+            communities[i] = (graph.degree(i) > 0 ? newId[membership[i]] : -1);
+
+        return communities;
+    }
+
+    /**
+     * Computes modularity of a partition of the graph. Nodes in community -1 are ignored.
+     */
+    public static double modularity(CsrGraph graph, int[] communities)
+    {
+        int[] offsets = graph.offsets();
+        int[] neighbours = graph.neighbours();
+        double[] weights = graph.weights();
+
+        int numCommunities = 0;
+        for (int c : communities)
+            numCommunities = Math.max(numCommunities, c + 1);
+
+        double[] internal = new double[numCommunities];
+        double[] total = new double[numCommunities];
+        double m2 = 0;
+
+        for (int i = 0; i < graph.numNodes(); i++)
+            for (int k = offsets[i]; k < offsets[i + 1]; k++)
+            {
+                m2 += weights[k];
+
+                if (communities[i] == -1)
+                    continue;
+
+                total[communities[i]] += weights[k];
+
+                if (communities[neighbours[k]] == communities[i])
+                    internal[communities[i]] += weights[k];
+            }
+
+        if (m2 == 0)
+            return 0;
+
+        double q = 0;
+        for (int c = 0; c < numCommunities; c++)
+            q += internal[c] / m2 - (total[c] / m2) * (total[c] / m2);
+
+        return q;
+    }
+
+    /**
+     * Graph of one level: nodes are communities of the previous level. Weights of edges inside those communities are
+     * not stored as self-loops, but are included in node strengths.
+     */
+    private static class Level
+    {
+        final int numNodes;
+        final int[] offsets;
+        final int[] neighbours;
+        final double[] weights;
+        final double[] strengths;   //sum of weights of incident edges, self-loops counted twice
+        final double m2;            //sum of strengths
+
+        Level(CsrGraph graph)
+        {
+            numNodes = graph.numNodes();
+            offsets = graph.offsets();
+            neighbours = graph.neighbours();
+            weights = graph.weights();
+
+            strengths = new double[numNodes];
+            double sum = 0;
+
+            for (int i = 0; i < numNodes; i++)
+            {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                    strengths[i] += weights[k];
+
+                sum += strengths[i];
+            }
+
+            m2 = sum;
+        }
+
+        Level(int numNodes, int[] offsets, int[] neighbours, double[] weights, double[] strengths, double m2)
+        {
+            this.numNodes = numNodes;
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+            this.weights = weights;
+            this.strengths = strengths;
+            this.m2 = m2;
+        }
+
+        /**
+         * Local moving phase.
+         *
+         * @return Community of each node, numbered 0, 1, 2, ...
+         */
+        int[] moveNodes()
+        {
+            int[] communities = new int[numNodes];
+            double[] totals = new double[numNodes];
+
+            for (int i = 0; i < numNodes; i++)
+            {
+                communities[i] = i;
+                totals[i] = strengths[i];
+            }
+
+            if (m2 > 0)
+            {
+                ThreadLocal<double[]> neighbourWeights = ThreadLocal.withInitial(() -> new double[numNodes]);
+                ThreadLocal<int[]> touched = ThreadLocal.withInitial(() -> new int[numNodes]);
+
+                int[][] colourClasses = colourClasses();
+                int[] nodes = colourClasses[0];
+                int[] colourOffsets = colourClasses[1];
+
+                int[] proposals = new int[numNodes];
+                double[] weightsToProposed = new double[numNodes];
+                double[] weightsToCurrent = new double[numNodes];
+
+                for (int pass = 0; pass < MAX_PASSES; pass++)
+                {
+                    int numMoves = 0;
+
+                    for (int colour = 0; colour + 1 < colourOffsets.length; colour++)
+                    {
+                        //Best communities of the nodes of the colour; their neighbours do not move in the meantime
+                        IntStream.range(colourOffsets[colour], colourOffsets[colour + 1]).parallel().forEach(n ->
+                            proposals[nodes[n]] = bestCommunity(nodes[n], communities, totals, neighbourWeights.get(),
+                                                                touched.get(), weightsToProposed, weightsToCurrent));
+
+                        //Apply moves that still increase modularity after the moves of the preceding nodes of the colour
+                        for (int n = colourOffsets[colour]; n < colourOffsets[colour + 1]; n++)
+                        {
+                            int i = nodes[n];
+                            int current = communities[i];
+                            int best = proposals[i];
+
+                            if (best == current)
+                                continue;
+
+                            double strength = strengths[i];
+                            double stayGain = weightsToCurrent[i] - strength * (totals[current] - strength) / m2;
+                            double moveGain = weightsToProposed[i] - strength * totals[best] / m2;
+
+                            if (moveGain > stayGain + MIN_GAIN)
+                            {
+                                totals[current] -= strength;
+                                totals[best] += strength;
+                                communities[i] = best;
+                                numMoves++;
+                            }
+                        }
+                    }
+
+                    if (numMoves == 0)
+                        break;
+                }
+            }
+
+            //Renumber communities
+            int[] newId = new int[numNodes];
+            Arrays.fill(newId, -1);
+
+            int numCommunities = 0;
+
+            for (int i = 0; i < numNodes; i++)
+            {
+                if (newId[communities[i]] == -1)
+                    newId[communities[i]] = numCommunities++;
+
+                communities[i] = newId[communities[i]];
+            }
+
+            return communities;
+        }
+
+        /**
+         * Finds the community with the largest modularity gain for node i. The current community is kept unless
+         * another one is strictly better.
+         *
+         * @param neighbourWeights  Work array of size numNodes filled with zeros; it is left filled with zeros.
+         * @param touched           Work array of size numNodes.
+         * @param weightsToBest     Receives at index i the weight of edges between node i and the best community.
+         * @param weightsToCurrent  Receives at index i the weight of edges between node i and its current community.
+         */
+        private int bestCommunity(int i, int[] communities, double[] totals, double[] neighbourWeights, int[] touched,
+                                  double[] weightsToBest, double[] weightsToCurrent)
+        {
+            int numTouched = 0;
+
+            for (int k = offsets[i]; k < offsets[i + 1]; k++)
+            {
+                int c = communities[neighbours[k]];
+
+                if (neighbourWeights[c] == 0)
+                    touched[numTouched++] = c;
+
+                neighbourWeights[c] += weights[k];
+            }
+
+            int current = communities[i];
+            double strength = strengths[i];
+
+            int best = current;
+            double bestWeight = neighbourWeights[current];
+            double bestGain = bestWeight - strength * (totals[current] - strength) / m2;
+
+            weightsToCurrent[i] = bestWeight;
+
+            for (int t = 0; t < numTouched; t++)
+            {
+                int c = touched[t];
+
+                if (c != current)
+                {
+                    double gain = neighbourWeights[c] - strength * totals[c] / m2;
+
+                    if (gain > bestGain + MIN_GAIN)
+                    {
+                        best = c;
+                        bestWeight = neighbourWeights[c];
+                        bestGain = gain;
+                    }
+                }
+
+                neighbourWeights[c] = 0;
+            }
+
+            neighbourWeights[current] = 0;
+            weightsToBest[i] = bestWeight;
+
+            return best;
+        }
+
+        /**
+         * Greedy colouring in node order, in which adjacent nodes get different colours.
+         *
+         * @return Nodes grouped by colour and the offsets of the groups.
+         */
+        private int[][] colourClasses()
+        {
+            int[] colours = new int[numNodes];
+            int[] usedBy = new int[numNodes];   //the last node whose neighbour has the colour
+            Arrays.fill(usedBy, -1);
+
+            int numColours = 0;
+
+            for (int i = 0; i < numNodes; i++)
+            {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                    if (neighbours[k] < i)
+                        usedBy[colours[neighbours[k]]] = i;
+
+                int colour = 0;
+                while (usedBy[colour] == i)
+                    colour++;
+
+                colours[i] = colour;
+                numColours = Math.max(numColours, colour + 1);
+            }
+
+            int[] colourOffsets = new int[numColours + 1];
+            for (int i = 0; i < numNodes; i++)
+                colourOffsets[colours[i] + 1]++;
+
+            for (int c = 0; c < numColours; c++)
+                colourOffsets[c + 1] += colourOffsets[c];
+
+            int[] nodes = new int[numNodes];
+            int[] next = Arrays.copyOf(colourOffsets, numColours);
+            for (int i = 0; i < numNodes; i++)
+                nodes[next[colours[i]]++] = i;
+
+            return new int[][] {nodes, colourOffsets};
+        }
+
+        /**
+         * Builds the graph of the next level, in which each community is a node.
+         */
+        Level aggregate(int[] communities, int numCommunities)
+        {
+            //Members of each community
+            int[] memberOffsets = new int[numCommunities + 1];
+            for (int i = 0; i < numNodes; i++)
+                memberOffsets[communities[i] + 1]++;
+
+            for (int c = 0; c < numCommunities; c++)
+                memberOffsets[c + 1] += memberOffsets[c];
+
+            int[] members = new int[numNodes];
+            int[] next = Arrays.copyOf(memberOffsets, numCommunities);
+            for (int i = 0; i < numNodes; i++)
+                members[next[communities[i]]++] = i;
+
+            //Edges between communities
+            int[][] communityNeighbours = new int[numCommunities][];
+            double[][] communityWeights = new double[numCommunities][];
+            double[] communityStrengths = new double[numCommunities];
+
+            ThreadLocal<double[]> accumulated = ThreadLocal.withInitial(() -> new double[numCommunities]);
+            ThreadLocal<int[]> touched = ThreadLocal.withInitial(() -> new int[numCommunities]);
+
+            IntStream.range(0, numCommunities).parallel().forEach(c -> {
+                double[] weightsToCommunities = accumulated.get();
+                int[] touchedCommunities = touched.get();
+                int numTouched = 0;
+
+                double strength = 0;
+
+                for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++)
+                {
+                    int i = members[m];
+                    strength += strengths[i];
+
+                    for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                    {
+                        int d = communities[neighbours[k]];
+
+                        if (weightsToCommunities[d] == 0)
+                            touchedCommunities[numTouched++] = d;
+
+                        weightsToCommunities[d] += weights[k];
+                    }
+                }
+
+                //Edges inside the community are not kept: they are accounted for in the strength
+                int cnt = 0;
+                for (int t = 0; t < numTouched; t++)
+                    if (touchedCommunities[t] != c)
+                        cnt++;
+
+                communityNeighbours[c] = new int[cnt];
+                communityWeights[c] = new double[cnt];
+
+                cnt = 0;
+                for (int t = 0; t < numTouched; t++)
+                {
+                    int d = touchedCommunities[t];
+
+                    if (d != c)
+                    {
+                        communityNeighbours[c][cnt] = d;
+                        communityWeights[c][cnt++] = weightsToCommunities[d];
+                    }
+
+                    weightsToCommunities[d] = 0;
+                }
+
+                communityStrengths[c] = strength;
+            });
+
+            int[] newOffsets = new int[numCommunities + 1];
+            for (int c = 0; c < numCommunities; c++)
+                newOffsets[c + 1] = newOffsets[c] + communityNeighbours[c].length;
+
+            int[] newNeighbours = new int[newOffsets[numCommunities]];
+            double[] newWeights = new double[newOffsets[numCommunities]];
+
+            for (int c = 0; c < numCommunities; c++)
+            {
+                System.arraycopy(communityNeighbours[c], 0, newNeighbours, newOffsets[c], communityNeighbours[c].length);
+                System.arraycopy(communityWeights[c], 0, newWeights, newOffsets[c], communityWeights[c].length);
+            }
+
+            return new Level(numCommunities, newOffsets, newNeighbours, newWeights, communityStrengths, m2);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package utils;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Streaming writer of undirected weighted networks. Nodes are identified by dense integer ids and have to be written
+ * before edges; each edge is written to the output as soon as it is passed to the writer.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public abstract class NetworkWriter implements Closeable
+{
+    /**
+     * Creates a writer for the format determined by the extension of the output file: ".graphml" for GraphML,
+     * ".bin" for binary edge list and GEXF (Gephi) format otherwise.
+     *
+     * @param outFile           Output file.
+     * @param nodeAttributes    Names of integer node attributes (e.g., community ids), whose values are passed to
+     *                          "writeNode" in the same order.
+     */
+    public static NetworkWriter create(File outFile, String... nodeAttributes) throws IOException
+    {
+        String name = outFile.getName().toLowerCase();
+
+        if (name.endsWith(".graphml"))
+            return new GraphMLNetworkWriter(outFile, nodeAttributes);
+        else if (name.endsWith(".bin"))
+            return new BinaryEdgeListWriter(outFile, nodeAttributes);
+        else
+            return new GexfNetworkWriter(outFile, nodeAttributes);
+    }
+
+    /**
+     * Writes a node without position.
+     *
+     * @param id        Dense node id (0, 1, 2, ...).
+     * @param label     Node label.
+     * @param color     Node color (including transparency), or null for no color.
+     */
+    public void writeNode(int id, String label, Color color) throws IOException
+    {
+        writeNode(id, label, color, null, null);
+    }
+
+    /**
+     * Writes a node without attributes.
+     *
+     * @param id        Dense node id (0, 1, 2, ...).
+     * @param label     Node label.
+     * @param color     Node color (including transparency), or null for no color.
+     * @param position  Position of the node in the layout, or null for no position.
+     */
+    public void writeNode(int id, String label, Color color, Point2D position) throws IOException
+    {
+        writeNode(id, label, color, position, null);
+    }
+
+    /**
+     * Writes a node.
+     *
+     * @param id        Dense node id (0, 1, 2, ...).
+     * @param label     Node label.
+     * @param color     Node color (including transparency), or null for no color.
+     * @param position  Position of the node in the layout, or null for no position.
+     * @param attributeValues   Values of node attributes declared in "create", or null for no attributes.
+     */
+    public abstract void writeNode(int id, String label, Color color, Point2D position, int[] attributeValues) throws IOException;
+
+    /**
+     * Writes an edge. After the first edge is written, no more nodes can be written.
+     *
+     * @param source    Id of the source node.
+     * @param target    Id of the target node.
+     * @param weight    Edge weight.
+     * @param color     Edge color, or null for no color.
+     */
+    public abstract void writeEdge(int source, int target, double weight, Color color) throws IOException;
+
+    /**
+     * Formats transparency of a color as a number between 0 and 1.
+     */
+    protected static String alpha(Color color)
+    {
+        return String.valueOf(Math.round(color.getAlpha() / 255.0 * 100) / 100.0).replaceAll("\\.0$", "");
+    }
+}
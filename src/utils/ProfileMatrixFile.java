@@ -0,0 +1,188 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import static utils.FileUtils.findReaderType;
+import static utils.SimilarityUtils.standardizeProfile;
+
+/**
+ * Binary on-disk matrix of standardized gene family profiles, which is read in blocks of rows through memory mapping,
+ * so that profiles of any number of gene families can be processed without loading them all into memory.
+ *
+ * File layout: a header with the number of rows and the number of columns (two ints), followed by rows of doubles.
+ * A row of a constant profile (for which Pearson correlation coefficient is undefined) is filled with NaN.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class ProfileMatrixFile
+{
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * Streams gene family profiles from a CSV file outputted by "randomForestFeatureSelection" into a binary matrix of
+     * standardized profiles (see "SimilarityUtils.standardizeProfile").
+     *
+     * @param inCsvFile     CSV file with gene family profiles.
+     * @param ogToRow       Row of each gene family in the matrix. Set to null to keep the order of the CSV file.
+     *                      Gene families that are not in the map are skipped, and rows of gene families that are not
+     *                      in the CSV file are filled with NaN.
+     * @param outMatrixFile Output binary matrix file.
+     *
+     * @return Names of gene families in the order of rows.
+     *
+     * @throws IOException
+     */
+    public static List<String> writeStandardizedProfiles(File inCsvFile, Map<String, Integer> ogToRow, File outMatrixFile) throws IOException
+    {
+        List<String> ogs = new ArrayList<>();
+
+        if (ogToRow != null)
+        {
+            ogs.addAll(ogToRow.keySet());
+            for (Map.Entry<String, Integer> entry : ogToRow.entrySet())
+                ogs.set(entry.getValue(), entry.getKey());
+        }
+
+        BitSet writtenRows = new BitSet();
+
+        int numColumns = -1;
+
+        try (RandomAccessFile raf = new RandomAccessFile(outMatrixFile, "rw"))
+        {
+            raf.setLength(0);
+
+            FileChannel channel = raf.getChannel();
+
+            BufferedReader br = findReaderType(inCsvFile);
+
+            String line;
+
+            boolean header = true;
+
+            while((line=br.readLine()) != null)
+                if (header)
+                    header = false;
+                else
+                {
+                    String og = line.substring(0, line.indexOf(","));
+                    String parts[] = line.substring(line.indexOf(",") + 1).trim().split(",");
+
+                    double[] vals = new double[parts.length - 1];
+                    for (int i = 0; i < parts.length - 1; i++)
+                        vals[i] = Double.parseDouble(parts[i]);
+
+                    if (numColumns == -1)
+                        numColumns = vals.length;
+                    else if (numColumns != vals.length)
+                        throw new IOException("Gene family " + og + " in " + inCsvFile.getName() + " has " + vals.length +
+                                              " features instead of " + numColumns);
+
+                    int row;
+
+                    if (ogToRow == null)
+                    {
+                        row = ogs.size();
+                        ogs.add(og);
+                    }
+                    else if (ogToRow.containsKey(og))
+                        row = ogToRow.get(og);
+                    else
+                        continue;
+
+                    writeRow(channel, row, numColumns, standardizeProfile(vals));
+                    writtenRows.set(row);
+                }
+
+            br.close();
+
+            if (numColumns == -1)
+                numColumns = 0;
+
+            for (int row = writtenRows.nextClearBit(0); row < ogs.size(); row = writtenRows.nextClearBit(row + 1))
+                writeRow(channel, row, numColumns, null);
+
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_BYTES);
+            headerBuffer.putInt(ogs.size()).putInt(numColumns).flip();
+            channel.write(headerBuffer, 0);
+        }
+
+        return ogs;
+    }
+
+    private static void writeRow(FileChannel channel, int row, int numColumns, double[] standardized) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(numColumns * 8);
+
+        for (int i = 0; i < numColumns; i++)
+            buffer.putDouble(standardized == null ? Double.NaN : standardized[i]);
+
+        buffer.flip();
+
+        long position = HEADER_BYTES + (long)row * numColumns * 8;
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Reads the number of rows and the number of columns of a binary matrix file.
+     */
+    public static int[] readDimensions(File matrixFile) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(matrixFile, "r"))
+        {
+            return new int[] {raf.readInt(), raf.readInt()};
+        }
+    }
+
+    /**
+     * Reads a block of consecutive rows from a binary matrix file by memory mapping only the region of the block.
+     *
+     * @param matrixFile    Binary matrix file written by "writeStandardizedProfiles".
+     * @param firstRow      Index of the first row of the block.
+     * @param numRows       Number of rows in the block.
+     *
+     * @return Standardized profiles of the block, where constant profiles are null.
+     *
+     * @throws IOException
+     */
+    public static double[][] readBlock(File matrixFile, int firstRow, int numRows) throws IOException
+    {
+        int[] dimensions = readDimensions(matrixFile);
+        int numColumns = dimensions[1];
+
+        numRows = Math.min(numRows, dimensions[0] - firstRow);
+
+        if ((long)numRows * numColumns * 8 > Integer.MAX_VALUE)
+            throw new IOException("Block of " + numRows + " rows is too large to be memory mapped, decrease the tile size");
+
+        double[][] block = new double[numRows][];
+
+        try (RandomAccessFile raf = new RandomAccessFile(matrixFile, "r"))
+        {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                                           HEADER_BYTES + (long)firstRow * numColumns * 8,
+                                                           (long)numRows * numColumns * 8);
+            DoubleBuffer doubles = mapped.asDoubleBuffer();
+
+            for (int r = 0; r < numRows; r++)
+            {
+                double[] row = new double[numColumns];
+                doubles.get(row);
+
+                block[r] = (numColumns > 0 && Double.isNaN(row[0]) ? null : row);
+            }
+        }
+
+        return block;
+    }
+}
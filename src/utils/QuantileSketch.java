@@ -0,0 +1,333 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Mergeable streaming quantile sketch (KLL, Karnin, Lang and Liberty, 2016). Values are kept in levels of compactors;
+ * a value at level h stands for 2^h values of the stream. When a level is full, it is sorted and every second value
+ * (starting at a random offset) is promoted to the next level, so the sketch keeps O(k) values regardless of the
+ * number of values in the stream. Minimum, maximum, count and sum are kept exactly.
+ *
+ * Error bound: while the stream has fewer than k values, nothing is compacted and all statistics are exact (see
+ * "isExact"). Afterwards, the rank of a value returned by "quantile", as well as the rank estimated by "rank", differs
+ * from the true rank by at most "normalizedRankError() * count()" with probability 99%. The bound is the empirical
+ * fit 2.296 / k^0.9723 for KLL sketches with the same level capacities (Apache DataSketches), which is about 0.27% for
+ * the default k = 1024 and 1.33% for k = 200. Compaction offsets are drawn from a random generator with a fixed seed,
+ * so the same stream always gives the same sketch.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class QuantileSketch
+{
+    public static final int DEFAULT_K = 1024;
+
+    /** Capacity of a level is 2/3 of the capacity of the level above it, but at least MIN_WIDTH. */
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_WIDTH = 8;
+
+    private final int k;
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities = new int[1];
+
+    private long count = 0;
+    private double sum = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    //Retained values in ascending order with cumulative weights, built on demand
+    private double[] sortedValues;
+    private long[] cumulativeWeights;
+
+    public QuantileSketch()
+    {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k Capacity of the top level; accuracy grows and the error bound decreases with k.
+     */
+    public QuantileSketch(int k)
+    {
+        this.k = Math.max(k, MIN_WIDTH);
+        levels[0] = new double[this.k];
+        capacities[0] = this.k;
+    }
+
+    /**
+     * Sketch of values; NaN values are ignored. The sketch is exact if k > number of values.
+     */
+    public static QuantileSketch of(double[] values, int k)
+    {
+        QuantileSketch sketch = new QuantileSketch(k);
+
+        for (double value : values)
+            sketch.update(value);
+
+        return sketch;
+    }
+
+    /**
+     * Adds a value to the sketch; NaN values are ignored.
+     */
+    public void update(double value)
+    {
+        if (Double.isNaN(value))
+            return;
+
+        count++;
+        sum += value;
+        min = (count == 1 ? value : Math.min(min, value));
+        max = (count == 1 ? value : Math.max(max, value));
+
+        add(0, value);
+        compress();
+
+        sortedValues = null;
+    }
+
+    /**
+     * Adds values of another sketch to this sketch. Values of a level of the other sketch are added to the same
+     * level, so their weights are preserved.
+     */
+    public void merge(QuantileSketch other)
+    {
+        if (other.count == 0)
+            return;
+
+        min = (count == 0 ? other.min : Math.min(min, other.min));
+        max = (count == 0 ? other.max : Math.max(max, other.max));
+        count += other.count;
+        sum += other.sum;
+
+        for (int h = 0; h < other.levels.length; h++)
+            for (int i = 0; i < other.sizes[h]; i++)
+                add(h, other.levels[h][i]);
+
+        compress();
+
+        sortedValues = null;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public double min()
+    {
+        return min;
+    }
+
+    public double max()
+    {
+        return max;
+    }
+
+    public double mean()
+    {
+        return (count == 0 ? Double.NaN : sum / count);
+    }
+
+    /**
+     * True if no values were compacted, i.e., the sketch holds all values of the stream.
+     */
+    public boolean isExact()
+    {
+        return levels.length == 1;
+    }
+
+    /**
+     * Bound on the rank error as a fraction of count (99% confidence), 0 if the sketch is exact.
+     */
+    public double normalizedRankError()
+    {
+        return (isExact() ? 0 : 2.296 / Math.pow(k, 0.9723));
+    }
+
+    /**
+     * Smallest retained value whose rank is at least p * count; 0 gives the minimum and 1 the maximum.
+     *
+     * @return Quantile or NaN if the sketch is empty.
+     */
+    public double quantile(double p)
+    {
+        if (count == 0)
+            return Double.NaN;
+        if (p <= 0)
+            return min;
+        if (p >= 1)
+            return max;
+
+        buildSortedView();
+
+        long target = (long)Math.ceil(p * count);
+
+        int i = Arrays.binarySearch(cumulativeWeights, target);
+        if (i < 0)
+            i = -i - 1;
+
+        return sortedValues[Math.min(i, sortedValues.length - 1)];
+    }
+
+    /**
+     * Estimated number of values <= x.
+     */
+    public long rank(double x)
+    {
+        if (count == 0 || x < min)
+            return 0;
+        if (x >= max)
+            return count;
+
+        buildSortedView();
+
+        //Index of the last retained value <= x
+        int low = 0, high = sortedValues.length - 1, last = -1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+
+            if (sortedValues[middle] <= x)
+            {
+                last = middle;
+                low = middle + 1;
+            }
+            else
+                high = middle - 1;
+        }
+
+        return (last < 0 ? 0 : cumulativeWeights[last]);
+    }
+
+    /**
+     * Retained values in ascending order. If the sketch is exact, these are all values of the stream.
+     */
+    public double[] retainedValues()
+    {
+        buildSortedView();
+
+        return sortedValues.clone();
+    }
+
+    /**
+     * Number of values of the stream that a retained value stands for, in the order of "retainedValues".
+     */
+    public long[] retainedWeights()
+    {
+        buildSortedView();
+
+        long[] weights = new long[cumulativeWeights.length];
+        for (int i = 0; i < weights.length; i++)
+            weights[i] = cumulativeWeights[i] - (i == 0 ? 0 : cumulativeWeights[i - 1]);
+
+        return weights;
+    }
+
+    private void add(int level, double value)
+    {
+        while (level >= levels.length)
+        {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            levels[levels.length - 1] = new double[MIN_WIDTH];
+
+            //Adding a level reduces capacities of lower levels
+            capacities = new int[levels.length];
+            for (int h = 0; h < levels.length; h++)
+                capacities[h] = Math.max(MIN_WIDTH, (int)Math.round(k * Math.pow(CAPACITY_DECAY, levels.length - 1 - h)));
+        }
+
+        if (sizes[level] == levels[level].length)
+            levels[level] = Arrays.copyOf(levels[level], 2 * levels[level].length);
+
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Compacts the lowest full level until no level is full.
+     */
+    private void compress()
+    {
+        for (int h = 0; h < levels.length; h++)
+        {
+            if (sizes[h] < capacities[h])
+                continue;
+
+            double[] items = levels[h];
+            int size = sizes[h];
+
+            Arrays.sort(items, 0, size);
+
+            //With an odd number of values, the largest one stays at this level
+            int numPairs = size / 2;
+            int offset = (random.nextBoolean() ? 1 : 0);
+
+            for (int i = 0; i < numPairs; i++)
+                add(h + 1, items[2 * i + offset]);
+
+            items = levels[h];
+
+            if (size % 2 == 1)
+                items[0] = items[size - 1];
+
+            sizes[h] = size % 2;
+
+            //Promoted values may have filled the next level and a new level reduces capacities of lower levels
+            h = -1;
+        }
+    }
+
+    private void buildSortedView()
+    {
+        if (sortedValues != null)
+            return;
+
+        int numRetained = 0;
+        for (int size : sizes)
+            numRetained += size;
+
+        double[] values = new double[numRetained];
+        long[] weights = new long[numRetained];
+
+        //Merge sorted levels into the sorted view
+        int length = 0;
+
+        for (int h = 0; h < levels.length; h++)
+        {
+            double[] level = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(level);
+
+            double[] mergedValues = new double[length + level.length];
+            long[] mergedWeights = new long[length + level.length];
+
+            int i = 0, j = 0, m = 0;
+
+            while (i < length || j < level.length)
+                if (j == level.length || (i < length && values[i] <= level[j]))
+                {
+                    mergedValues[m] = values[i];
+                    mergedWeights[m++] = weights[i++];
+                }
+                else
+                {
+                    mergedValues[m] = level[j++];
+                    mergedWeights[m++] = 1L << h;
+                }
+
+            values = mergedValues;
+            weights = mergedWeights;
+            length = m;
+        }
+
+        for (int i = 1; i < length; i++)
+            weights[i] += weights[i - 1];
+
+        sortedValues = values;
+        cumulativeWeights = weights;
+    }
+}
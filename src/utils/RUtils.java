@@ -1,44 +1,412 @@
 package utils;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Runs R scripts either as one-shot Rscript processes or in a pool of long-lived R sessions (see "startRSessions").
  *
  * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
  */
 public class RUtils
 {
+    private static final String OK_MARKER = "<<RUtils:OK>>";
+    private static final String FAILED_MARKER = "<<RUtils:FAILED>>";
+    private static final String EOF_MARKER = "<<RUtils:EOF>>";
+
+    //Pool of idle R sessions, null if the pool is not started
+    private static BlockingQueue<RSession> sessions;
+    private static List<RSession> allSessions;
+    private static ExecutorService executor;
+    private static long timeoutSeconds;
+
+    //Scripts submitted to the pool, until "waitForRScripts" is called
+    private static final List<Future<Void>> pendingJobs = new ArrayList<>();
+
+    /**
+     * Runs R script and waits for it to finish. The script is run in a pooled R session if the pool is started,
+     * otherwise by a new Rscript process.
+     *
+     * @param rscriptFileName   R script.
+     *
+     * @throws IOException  If the script fails in a pooled session or times out.
+     * @throws InterruptedException
+     */
     public static void executeRScript(String rscriptFileName) throws IOException, InterruptedException
+    {
+        waitForRScript(submitRScript(rscriptFileName));
+    }
+
+    /**
+     * Submits R script for execution in a pooled R session, so that several scripts (e.g., figures) can be run
+     * concurrently. If the pool is not started, the script is run immediately by a new Rscript process and a completed
+     * future is returned.
+     *
+     * @param rscriptFileName   R script.
+     * @param temporaryFiles    Files that are deleted when the script finishes successfully (e.g., the script and its
+     *                          data files).
+     *
+     * @return Future that completes when the script is finished. Use "waitForRScript" to wait for it or
+     *         "waitForRScripts" to wait for all submitted scripts.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static Future<Void> submitRScript(String rscriptFileName, String... temporaryFiles) throws IOException, InterruptedException
+    {
+        synchronized (RUtils.class)
+        {
+            if (executor != null)
+            {
+                Future<Void> job = executor.submit(() -> {
+                    runInSession(rscriptFileName);
+                    deleteFiles(temporaryFiles);
+                    return null;
+                });
+
+                pendingJobs.add(job);
+
+                return job;
+            }
+        }
+
+        executeRScriptInNewProcess(rscriptFileName);
+        deleteFiles(temporaryFiles);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Waits for R script submitted by "submitRScript" to finish.
+     *
+     * @param job   Future returned by "submitRScript".
+     *
+     * @throws IOException  If the script failed or timed out.
+     * @throws InterruptedException
+     */
+    public static void waitForRScript(Future<Void> job) throws IOException, InterruptedException
+    {
+        try
+        {
+            job.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Waits for all scripts submitted to the pooled R sessions since the last call.
+     *
+     * @throws IOException  If a script failed or timed out; the first failure is reported after all scripts finish.
+     * @throws InterruptedException
+     */
+    public static void waitForRScripts() throws IOException, InterruptedException
+    {
+        List<Future<Void>> jobs;
+
+        synchronized (RUtils.class)
+        {
+            jobs = new ArrayList<>(pendingJobs);
+            pendingJobs.clear();
+        }
+
+        IOException failure = null;
+
+        for (Future<Void> job : jobs)
+            try
+            {
+                waitForRScript(job);
+            }
+            catch (IOException e)
+            {
+                if (failure == null)
+                    failure = e;
+            }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Starts a pool of long-lived R sessions ("R --vanilla --slave") that are fed with scripts over stdin. Scripts are
+     * run by "source" in a fresh environment of a free session, so R does not have to be started for each script and
+     * up to numSessions scripts run concurrently. Output of R is printed as it arrives. A session whose script runs
+     * longer than the timeout is killed and replaced by a new one. Drawing methods submit their scripts without waiting,
+     * so figures are drawn concurrently; call "waitForRScripts" to wait for them and to find out about failures.
+     *
+     * @param numSessions       Number of R sessions.
+     * @param timeoutSeconds    Time limit for a single script in seconds. Set to 0 for no limit.
+     *
+     * @throws IOException  If R cannot be started.
+     */
+    public static synchronized void startRSessions(int numSessions, long timeoutSeconds) throws IOException
+    {
+        if (executor != null)
+            stopRSessions();
+
+        RUtils.timeoutSeconds = timeoutSeconds;
+
+        sessions = new LinkedBlockingQueue<>();
+        allSessions = new ArrayList<>();
+
+        for (int i = 0; i < numSessions; i++)
+        {
+            RSession session = new RSession();
+            sessions.add(session);
+            allSessions.add(session);
+        }
+
+        executor = Executors.newFixedThreadPool(numSessions, r -> {
+            Thread thread = new Thread(r, "R session job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for the submitted scripts to finish and stops the pooled R sessions. Afterwards, scripts are again run by
+     * new Rscript processes.
+     */
+    public static synchronized void stopRSessions()
+    {
+        if (executor == null)
+            return;
+
+        executor.shutdown();
+
+        try
+        {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (allSessions)
+        {
+            for (RSession session : allSessions)
+                session.close();
+        }
+
+        executor = null;
+        sessions = null;
+        allSessions = null;
+    }
+
+    /**
+     * Runs script in a free session. A session that timed out or terminated is replaced by a new one.
+     */
+    private static void runInSession(String rscriptFileName) throws IOException, InterruptedException
+    {
+        RSession session = sessions.take();
+
+        try
+        {
+            session.run(rscriptFileName, timeoutSeconds);
+        }
+        finally
+        {
+            if (session.isBroken())
+            {
+                session.close();
+
+                try
+                {
+                    RSession restarted = new RSession();
+
+                    synchronized (allSessions)
+                    {
+                        allSessions.remove(session);
+                        allSessions.add(restarted);
+                    }
+
+                    session = restarted;
+                }
+                catch (IOException e)
+                {
+                    //The broken session is kept in the pool, so that the next script tries to restart it again
+                    System.out.println("R session could not be restarted: " + e.getMessage());
+                }
+            }
+
+            sessions.add(session);
+        }
+    }
+
+    private static void executeRScriptInNewProcess(String rscriptFileName) throws IOException, InterruptedException
     {
         Runtime rt = Runtime.getRuntime();
         String[] rscript = {"Rscript", rscriptFileName};
 
         Process p = rt.exec(rscript);
-        p.waitFor();
 
-        InputStream stdout = p.getInputStream();
-        InputStream stderr = p.getErrorStream();   			    
+        //Output is drained while the script runs, otherwise the script blocks when the pipe buffer is full
+        Thread stdout = drain(p.getInputStream(), "[Stdout] ");
+        Thread stderr = drain(p.getErrorStream(), "[Stderr] ");
 
-        //Clean up if any output in stdout
-        BufferedReader brCleanUp = new BufferedReader(new InputStreamReader(stdout));
+        int exitValue = p.waitFor();
 
-        String line;
-        
-        while ((line = brCleanUp.readLine ()) != null)
-            System.out.println ("[Stdout] " + line);
+        stdout.join();
+        stderr.join();
 
-        brCleanUp.close();
+        p.destroy();
 
-        //Clean up if any output in stderr
-        brCleanUp = new BufferedReader(new InputStreamReader(stderr));
-        while ((line = brCleanUp.readLine ()) != null)
-            System.out.println ("[Stderr] " + line);
+        if (exitValue != 0)
+            throw new IOException("R script " + rscriptFileName + " failed with exit code " + exitValue);
+    }
 
-        brCleanUp.close();
+    private static void deleteFiles(String[] files)
+    {
+        for (String file : files)
+            new File(file).delete();
+    }
 
-        p.destroy();
+    /**
+     * Prints lines from the stream in a separate thread until the end of the stream.
+     */
+    private static Thread drain(InputStream stream, String prefix)
+    {
+        Thread thread = new Thread(() -> {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(stream)))
+            {
+                String line;
+
+                while ((line = br.readLine()) != null)
+                    System.out.println(prefix + line);
+            }
+            catch (IOException e)
+            {
+                //Stream closed when the process was destroyed
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    /**
+     * Long-lived R process. Stdout is read by a separate thread that prints the output of scripts and passes the
+     * markers written after each script to the waiting job.
+     */
+    private static class RSession
+    {
+        private final Process process;
+        private final Writer stdin;
+        private final BlockingQueue<String> markers = new LinkedBlockingQueue<>();
+        private boolean broken = false;
+
+        RSession() throws IOException
+        {
+            process = new ProcessBuilder("R", "--vanilla", "--slave").start();
+            stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+
+            Thread stdout = new Thread(() -> {
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream())))
+                {
+                    String line;
+
+                    while ((line = br.readLine()) != null)
+                        if (line.equals(OK_MARKER) || line.equals(FAILED_MARKER))
+                            markers.add(line);
+                        else if (!line.isEmpty())
+                            System.out.println("[Stdout] " + line);
+                }
+                catch (IOException e)
+                {
+                    //Stream closed when the process was destroyed
+                }
+
+                markers.add(EOF_MARKER);
+            });
+
+            stdout.setDaemon(true);
+            stdout.start();
+
+            drain(process.getErrorStream(), "[Stderr] ");
+        }
+
+        void run(String rscriptFileName, long timeoutSeconds) throws IOException, InterruptedException
+        {
+            if (broken || !process.isAlive())
+            {
+                broken = true;
+                throw new IOException("R session terminated before running " + rscriptFileName);
+            }
+
+            String path = rscriptFileName.replace('\\', '/').replace("'", "\\'");
+
+            //Devices left open by a failed script are closed, so that they do not leak into the next script
+            stdin.write("local({ok <- tryCatch({source('" + path + "', local = new.env()); TRUE}, " +
+                        "error = function(e) {message('Error: ', conditionMessage(e)); FALSE}); graphics.off(); " +
+                        "cat('\\n', if (ok) '" + OK_MARKER + "' else '" + FAILED_MARKER + "', '\\n', sep = ''); " +
+                        "flush(stdout())})\n");
+            stdin.flush();
+
+            String marker = (timeoutSeconds > 0 ? markers.poll(timeoutSeconds, TimeUnit.SECONDS) : markers.take());
+
+            if (marker == null)
+            {
+                broken = true;
+                process.destroyForcibly();
+                throw new IOException("R script " + rscriptFileName + " timed out after " + timeoutSeconds + " s");
+            }
+            else if (marker.equals(EOF_MARKER))
+            {
+                broken = true;
+                throw new IOException("R session terminated while running " + rscriptFileName);
+            }
+            else if (marker.equals(FAILED_MARKER))
+                throw new IOException("R script " + rscriptFileName + " failed");
+        }
+
+        boolean isBroken()
+        {
+            return broken;
+        }
+
+        void close()
+        {
+            try
+            {
+                stdin.write("q('no')\n");
+                stdin.close();
+
+                if (!process.waitFor(5, TimeUnit.SECONDS))
+                    process.destroyForcibly();
+            }
+            catch (IOException e)
+            {
+                process.destroyForcibly();
+            }
+            catch (InterruptedException e)
+            {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
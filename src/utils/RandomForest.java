@@ -0,0 +1,436 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import static utils.RandomUtils.splitRandoms;
+
+/**
+ * Random Forest classifier (Breiman, 2001) used for feature selection. It follows the defaults of R package
+ * 'randomForest' for classification: bootstrap samples of the size of the data set, floor(sqrt(# of features))
+ * features tried at each split, trees grown until nodes are pure, splits on numeric features at midpoints between
+ * consecutive values and Gini index as the split criterion. Trees are grown in parallel; each tree uses its own random
+ * generator split from the generator initialized with the seed, so the forest is the same regardless of the number of
+ * threads.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class RandomForest
+{
+    /**
+     * Feature importances computed as in R package 'randomForest' ("importance(rf)" with the default scale=TRUE).
+     */
+    public static class Importances
+    {
+        /** Mean decrease in accuracy on out-of-bag samples of each class after permuting a feature, divided by its
+         *  standard error: classSpecificMeanDecreaseAccuracy[class][feature]. */
+        public final double[][] classSpecificMeanDecreaseAccuracy;
+
+        /** Mean decrease in accuracy on all out-of-bag samples, divided by its standard error. As in R, importance is
+         *  NaN for features that were never used in a split (0 / 0). */
+        public final double[] meanDecreaseAccuracy;
+
+        /** Total decrease of Gini index in splits on a feature, averaged over trees. */
+        public final double[] meanDecreaseGini;
+
+        Importances(double[][] classSpecificMeanDecreaseAccuracy, double[] meanDecreaseAccuracy, double[] meanDecreaseGini)
+        {
+            this.classSpecificMeanDecreaseAccuracy = classSpecificMeanDecreaseAccuracy;
+            this.meanDecreaseAccuracy = meanDecreaseAccuracy;
+            this.meanDecreaseGini = meanDecreaseGini;
+        }
+    }
+
+    /**
+     * Grows a forest and computes feature importances.
+     *
+     * @param features      Values of features: features[feature][instance]. Binary features are represented as 0/1.
+     * @param classes       Class of each instance (0, 1, ..., numClasses-1).
+     * @param numClasses    Number of classes.
+     * @param numTrees      Number of trees (R default is 500; the original R script used 200).
+     * @param seed          Seed for the random generator.
+     */
+    public static Importances computeFeatureImportances(double[][] features, int[] classes, int numClasses, int numTrees, long seed)
+    {
+        int numFeatures = features.length;
+        int numInstances = classes.length;
+        int mtry = Math.max(1, (int)Math.floor(Math.sqrt(numFeatures)));
+
+        SplittableRandom[] randoms = splitRandoms(new SplittableRandom(seed), numTrees);
+
+        //Per tree: decreases of accuracy (index 0 for all classes, c+1 for class c) and Gini index per feature
+        double[][][] accuracyDecreases = new double[numTrees][][];
+        double[][] giniDecreases = new double[numTrees][];
+
+        IntStream.range(0, numTrees).parallel().forEach(t -> {
+            SplittableRandom random = randoms[t];
+
+            //Bootstrap sample
+            int[] inBag = new int[numInstances];
+            int[] sample = new int[numInstances];
+            for (int i = 0; i < numInstances; i++)
+            {
+                sample[i] = random.nextInt(numInstances);
+                inBag[sample[i]]++;
+            }
+
+            Tree tree = new Tree(features, classes, numClasses, mtry, sample, random);
+
+            giniDecreases[t] = tree.giniDecrease;
+            accuracyDecreases[t] = tree.permutationImportance(features, classes, numClasses, inBag, random);
+        });
+
+        //Average over trees and scale by standard errors
+        double[][] classSpecific = new double[numClasses][numFeatures];
+        double[] overall = new double[numFeatures];
+        double[] gini = new double[numFeatures];
+
+        for (int f = 0; f < numFeatures; f++)
+        {
+            for (int t = 0; t < numTrees; t++)
+                gini[f] += giniDecreases[t][f];
+
+            gini[f] /= numTrees;
+
+            for (int c = 0; c <= numClasses; c++)
+            {
+                double sum = 0, sumOfSquares = 0;
+
+                for (int t = 0; t < numTrees; t++)
+                {
+                    double decrease = accuracyDecreases[t][c][f];
+                    sum += decrease;
+                    sumOfSquares += decrease * decrease;
+                }
+
+                double mean = sum / numTrees;
+                double standardError = Math.sqrt(Math.max(0, sumOfSquares / numTrees - mean * mean) / numTrees);
+
+                if (c == 0)
+                    overall[f] = mean / standardError;
+                else
+                    classSpecific[c - 1][f] = mean / standardError;
+            }
+        }
+
+        return new Importances(classSpecific, overall, gini);
+    }
+
+    /**
+     * Classification tree stored in arrays; node 0 is the root.
+     */
+    private static class Tree
+    {
+        private int numNodes = 0;
+        private int[] splitFeature = new int[64];   //-1 for leaves
+        private double[] threshold = new double[64]; //instances with value <= threshold go left
+        private int[] left = new int[64];
+        private int[] right = new int[64];
+        private int[] prediction = new int[64];
+
+        final double[] giniDecrease;
+        final boolean[] usedFeatures;
+
+        Tree(double[][] features, int[] classes, int numClasses, int mtry, int[] sample, SplittableRandom random)
+        {
+            int numFeatures = features.length;
+
+            giniDecrease = new double[numFeatures];
+            usedFeatures = new boolean[numFeatures];
+
+            int[] featureOrder = new int[numFeatures];
+            for (int f = 0; f < numFeatures; f++)
+                featureOrder[f] = f;
+
+            //Work arrays: values of a feature in the node split by class
+            double[][] valuesByClass = new double[numClasses][sample.length];
+            int[] numValuesByClass = new int[numClasses];
+
+            //Stack of nodes to split: node id, first and last (exclusive) position in sample
+            int[] stack = new int[3 * 64];
+            int top = 0;
+
+            newNode();
+            stack[top++] = 0;
+            stack[top++] = 0;
+            stack[top++] = sample.length;
+
+            int[] counts = new int[numClasses];
+            int[] leftCounts = new int[numClasses];
+            int[] positions = new int[numClasses];
+
+            while (top > 0)
+            {
+                int end = stack[--top];
+                int start = stack[--top];
+                int node = stack[--top];
+
+                Arrays.fill(counts, 0);
+                for (int k = start; k < end; k++)
+                    counts[classes[sample[k]]]++;
+
+                prediction[node] = majority(counts);
+
+                int size = end - start;
+                if (counts[prediction[node]] == size)
+                    continue; //pure node
+
+                double nodeGini = giniTimesSize(counts, size);
+
+                int bestFeature = -1;
+                double bestThreshold = 0;
+                double bestDecrease = 1e-12;
+
+                //Sample mtry features without replacement (partial Fisher-Yates shuffle)
+                for (int m = 0; m < mtry; m++)
+                {
+                    int r = m + random.nextInt(numFeatures - m);
+                    int f = featureOrder[r];
+                    featureOrder[r] = featureOrder[m];
+                    featureOrder[m] = f;
+
+                    //Sorted values of the feature for each class
+                    Arrays.fill(numValuesByClass, 0);
+                    for (int k = start; k < end; k++)
+                    {
+                        int c = classes[sample[k]];
+                        valuesByClass[c][numValuesByClass[c]++] = features[f][sample[k]];
+                    }
+
+                    for (int c = 0; c < numClasses; c++)
+                        Arrays.sort(valuesByClass[c], 0, numValuesByClass[c]);
+
+                    //Scan split points in increasing order of values by merging sorted values of classes
+                    Arrays.fill(leftCounts, 0);
+                    Arrays.fill(positions, 0);
+                    int numLeft = 0;
+
+                    while (numLeft < size)
+                    {
+                        //Smallest remaining value
+                        double value = Double.POSITIVE_INFINITY;
+                        for (int c = 0; c < numClasses; c++)
+                            if (positions[c] < numValuesByClass[c])
+                                value = Math.min(value, valuesByClass[c][positions[c]]);
+
+                        //Move all instances with that value to the left
+                        for (int c = 0; c < numClasses; c++)
+                            while (positions[c] < numValuesByClass[c] && valuesByClass[c][positions[c]] == value)
+                            {
+                                positions[c]++;
+                                leftCounts[c]++;
+                                numLeft++;
+                            }
+
+                        if (numLeft == size)
+                            break;
+
+                        double nextValue = Double.POSITIVE_INFINITY;
+                        for (int c = 0; c < numClasses; c++)
+                            if (positions[c] < numValuesByClass[c])
+                                nextValue = Math.min(nextValue, valuesByClass[c][positions[c]]);
+
+                        double decrease = nodeGini - giniTimesSize(leftCounts, numLeft) - giniTimesSize(counts, leftCounts, size - numLeft);
+
+                        if (decrease > bestDecrease)
+                        {
+                            bestDecrease = decrease;
+                            bestFeature = f;
+                            bestThreshold = (value + nextValue) / 2;
+                        }
+                    }
+                }
+
+                if (bestFeature == -1)
+                    continue; //no split improves the node
+
+                //Partition instances of the node
+                int i = start, j = end - 1;
+                while (i <= j)
+                    if (features[bestFeature][sample[i]] <= bestThreshold)
+                        i++;
+                    else
+                    {
+                        int tmp = sample[i];
+                        sample[i] = sample[j];
+                        sample[j--] = tmp;
+                    }
+
+                splitFeature[node] = bestFeature;
+                threshold[node] = bestThreshold;
+                giniDecrease[bestFeature] += bestDecrease;
+                usedFeatures[bestFeature] = true;
+
+                int leftNode = newNode();
+                int rightNode = newNode();
+                left[node] = leftNode;
+                right[node] = rightNode;
+
+                if (top + 6 > stack.length)
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+
+                stack[top++] = leftNode;
+                stack[top++] = start;
+                stack[top++] = i;
+                stack[top++] = rightNode;
+                stack[top++] = i;
+                stack[top++] = end;
+            }
+        }
+
+        private int newNode()
+        {
+            if (numNodes == splitFeature.length)
+            {
+                int capacity = 2 * numNodes;
+                splitFeature = Arrays.copyOf(splitFeature, capacity);
+                threshold = Arrays.copyOf(threshold, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                prediction = Arrays.copyOf(prediction, capacity);
+            }
+
+            splitFeature[numNodes] = -1;
+
+            return numNodes++;
+        }
+
+        /**
+         * Predicts the class of an instance, in which the value of feature permutedFeature is replaced by permutedValue.
+         */
+        int predict(double[][] features, int instance, int permutedFeature, double permutedValue)
+        {
+            int node = 0;
+
+            while (splitFeature[node] != -1)
+            {
+                int f = splitFeature[node];
+                double value = (f == permutedFeature ? permutedValue : features[f][instance]);
+
+                node = (value <= threshold[node] ? left[node] : right[node]);
+            }
+
+            return prediction[node];
+        }
+
+        /**
+         * Computes decreases of out-of-bag accuracy after permuting values of each feature among out-of-bag instances.
+         *
+         * @return Decreases: [0][feature] for all out-of-bag instances and [c+1][feature] for instances of class c.
+         *         Features not used in the tree do not change predictions and have zero decrease.
+         */
+        double[][] permutationImportance(double[][] features, int[] classes, int numClasses, int[] inBag, SplittableRandom random)
+        {
+            int numFeatures = features.length;
+
+            int numOOB = 0;
+            for (int count : inBag)
+                if (count == 0)
+                    numOOB++;
+
+            int[] oob = new int[numOOB];
+            numOOB = 0;
+            for (int i = 0; i < inBag.length; i++)
+                if (inBag[i] == 0)
+                    oob[numOOB++] = i;
+
+            int[] oobByClass = new int[numClasses];
+            int[] correctByClass = new int[numClasses];
+
+            for (int i : oob)
+            {
+                oobByClass[classes[i]]++;
+
+                if (predict(features, i, -1, 0) == classes[i])
+                    correctByClass[classes[i]]++;
+            }
+
+            int correct = 0;
+            for (int c = 0; c < numClasses; c++)
+                correct += correctByClass[c];
+
+            double[][] decreases = new double[numClasses + 1][numFeatures];
+
+            if (numOOB == 0)
+                return decreases;
+
+            double[] permutedValues = new double[numOOB];
+            int[] permutedCorrectByClass = new int[numClasses];
+
+            for (int f = 0; f < numFeatures; f++)
+            {
+                if (!usedFeatures[f])
+                    continue;
+
+                for (int k = 0; k < numOOB; k++)
+                    permutedValues[k] = features[f][oob[k]];
+
+                for (int k = numOOB - 1; k > 0; k--)
+                {
+                    int r = random.nextInt(k + 1);
+                    double tmp = permutedValues[k];
+                    permutedValues[k] = permutedValues[r];
+                    permutedValues[r] = tmp;
+                }
+
+                Arrays.fill(permutedCorrectByClass, 0);
+                int permutedCorrect = 0;
+
+                for (int k = 0; k < numOOB; k++)
+                    if (predict(features, oob[k], f, permutedValues[k]) == classes[oob[k]])
+                    {
+                        permutedCorrectByClass[classes[oob[k]]]++;
+                        permutedCorrect++;
+                    }
+
+                decreases[0][f] = (correct - permutedCorrect) / (double)numOOB;
+
+                for (int c = 0; c < numClasses; c++)
+                    if (oobByClass[c] > 0)
+                        decreases[c + 1][f] = (correctByClass[c] - permutedCorrectByClass[c]) / (double)oobByClass[c];
+            }
+
+            return decreases;
+        }
+
+        private static int majority(int[] counts)
+        {
+            int best = 0;
+            for (int c = 1; c < counts.length; c++)
+                if (counts[c] > counts[best])
+                    best = c;
+
+            return best;
+        }
+
+        /**
+         * Gini index multiplied by the number of instances.
+         */
+        private static double giniTimesSize(int[] counts, int size)
+        {
+            if (size == 0)
+                return 0;
+
+            double sumOfSquares = 0;
+            for (int count : counts)
+                sumOfSquares += (double)count * count;
+
+            return size - sumOfSquares / size;
+        }
+
+        /**
+         * Gini index multiplied by the number of instances, for class counts (counts - leftCounts).
+         */
+        private static double giniTimesSize(int[] counts, int[] leftCounts, int size)
+        {
+            if (size == 0)
+                return 0;
+
+            double sumOfSquares = 0;
+            for (int c = 0; c < counts.length; c++)
+                sumOfSquares += (double)(counts[c] - leftCounts[c]) * (counts[c] - leftCounts[c]);
+
+            return size - sumOfSquares / size;
+        }
+    }
+}
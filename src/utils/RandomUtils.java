@@ -0,0 +1,31 @@
+package utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random generators for parallel processing.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class RandomUtils
+{
+    /**
+     * Splits random generators from the parent generator in a fixed order, one for each unit of work that is processed
+     * in parallel (e.g., a tree, a bootstrap replicate or a permutation). Each unit draws only from its own generator,
+     * so the results are the same for the same seed regardless of the number of threads and the order in which the
+     * units are processed.
+     *
+     * @param parent    Random generator, e.g., initialized with seed.
+     * @param num       Number of generators.
+     *
+     * @return Generators in the order in which they were split.
+     */
+    public static SplittableRandom[] splitRandoms(SplittableRandom parent, int num)
+    {
+        SplittableRandom[] randoms = new SplittableRandom[num];
+        for (int i = 0; i < num; i++)
+            randoms[i] = parent.split();
+
+        return randoms;
+    }
+}
@@ -2,8 +2,11 @@ package utils;
 
 import com.google.common.collect.ArrayTable;
 import com.google.common.collect.Table;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -14,6 +17,8 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import static utils.ArffUtils.isSparseRow;
+import static utils.ArffUtils.parseSparseRow;
 import static utils.FileUtils.findReaderType;
 
 /**
@@ -138,25 +143,135 @@ public class ResourceLoaders
         return og2funcs;
     }
     
+    /**
+     * Loads gene family profiles from a CSV file outputted by "randomForestFeatureSelection", where the first column
+     * is gene family name, the last column is class and the columns in between are features. Files with ".bin"
+     * extension are read as binary projections outputted by "ArffUtils.projectHMCDataset".
+     */
+    public static Map<String, double[]> loadOgProfilesFromCsv(File inCsvFile) throws IOException
+    {
+        if (inCsvFile.getName().toLowerCase().endsWith(".bin"))
+            return loadOgProfilesFromBinaryProjection(inCsvFile);
+        
+        Map<String, double[]> ogProfiles = new TreeMap<>();
+
+        BufferedReader br = findReaderType(inCsvFile);
+
+        String line;
+
+        boolean header = true;
+
+        while((line=br.readLine()) != null)
+            if (header)
+                header = false;
+            else
+            {
+                String parts[] = line.substring(line.indexOf(",") + 1).trim().split(",");
+
+                double[] vals = new double[parts.length - 1];
+                for (int i = 0; i < parts.length - 1; i++)
+                    vals[i] = Double.parseDouble(parts[i]);
+
+                ogProfiles.put(line.substring(0, line.indexOf(",")), vals);
+            }
+
+        br.close();
+
+        return ogProfiles;
+    }
+
+    private static Map<String, double[]> loadOgProfilesFromBinaryProjection(File inBinFile) throws IOException
+    {
+        Map<String, double[]> ogProfiles = new TreeMap<>();
+        
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(inBinFile), 1 << 16));
+        
+        int numFeatures = dis.readInt();
+        for (int j = 0; j < numFeatures + 2; j++) //ID, features and class
+            dis.readUTF();
+        
+        while (dis.readByte() == 1)
+        {
+            String og = dis.readUTF();
+            
+            double[] vals = new double[numFeatures];
+            for (int j = 0; j < numFeatures; j++)
+                vals[j] = dis.readDouble();
+            
+            dis.readByte(); //class
+            
+            ogProfiles.put(og, vals);
+        }
+        
+        dis.close();
+        
+        return ogProfiles;
+    }
+    
     public static Map<Integer, Set<Integer>> loadOg2FunctionsFromFile(File inOg2FunctionsFile) throws IOException
     {
         Map<Integer, Set<Integer>> og2functions = new TreeMap<>();
         
         Set<Integer> allFunctions = new HashSet<>(); 
         
+        if (inOg2FunctionsFile.getName().endsWith(".hmc")) //data set in binary form (see "HmcDataset")
+        {
+            HmcDataset dataset = HmcDataset.load(inOg2FunctionsFile);
+            
+            for (int function : dataset.functions())
+                for (int i : dataset.instancesAnnotatedWith(function))
+                {
+                    int og = ogStrToOgInt(dataset.og(i));
+                    
+                    if (og != 0)
+                    {
+                        og2functions.computeIfAbsent(og, k -> new TreeSet<>()).add(function);
+                        allFunctions.add(function);
+                    }
+                }
+            
+            System.out.println("Gene families with known functions: " + og2functions.size());
+            System.out.println("Known functions: " + allFunctions.size());
+            
+            return og2functions;
+        }
+        
         BufferedReader br = findReaderType(inOg2FunctionsFile);
         
         String line;
         
+        int numAttributes = 0;
+        int lineNumber = 0;
+        
         while ((line = br.readLine()) != null)
         {
+            lineNumber++;
+            
+            if (line.toUpperCase().startsWith("@ATTRIBUTE"))
+                numAttributes++;
+            
             if (line.startsWith("@") || line.isEmpty() || line.startsWith("#"))
                 continue;
             
             int og;
             String functionsStr;
             
-            if (inOg2FunctionsFile.getName().endsWith(".arff.zip") || inOg2FunctionsFile.getName().endsWith(".arff"))
+            if (isSparseRow(line)) //sparse ARFF row, the class attribute is the last one
+            {
+                String[] values = parseSparseRow(line, numAttributes);
+                
+                //The gene family ID (attribute 0) must not be omitted from a sparse row
+                if (values[0] == null)
+                {
+                    br.close();
+                    throw new IOException("Sparse row at line " + lineNumber + " of " + inOg2FunctionsFile +
+                                          " has no gene family ID (attribute 0)");
+                }
+                
+                og = ogStrToOgInt(values[0].trim());
+                functionsStr = (values[numAttributes - 1] == null ? "" : values[numAttributes - 1]);
+            }
+            else if (inOg2FunctionsFile.getName().endsWith(".arff.zip") || inOg2FunctionsFile.getName().endsWith(".arff"))
             {
                 og = ogStrToOgInt(line.substring(0, line.indexOf(",")));
                 functionsStr = line.substring(line.lastIndexOf(",") + 1).trim();
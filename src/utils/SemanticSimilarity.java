@@ -0,0 +1,192 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Semantic similarity of GO functions based on the information content (IC) of their most informative common ancestor
+ * (MICA) in the GO DAG with "is_a" and "part_of" relations:
+ *  - Resnik: IC(MICA),
+ *  - Lin: 2 * IC(MICA) / (IC(a) + IC(b)),
+ *  - Jiang and Conrath: 1 / (1 + IC(a) + IC(b) - 2 * IC(MICA)), i.e., the distance of Jiang and Conrath turned into
+ *    a similarity in [0, 1].
+ * Ancestors without known IC cannot be the MICA; functions without a common ancestor with known IC have IC(MICA) = 0.
+ *
+ * MICAs are cached in a bounded cache keyed by pairs of term numbers packed into a long. The cache is split into
+ * stripes, each with its own lock and open addressing table of primitive keys and values, so threads rarely contend;
+ * a full stripe is cleared.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class SemanticSimilarity
+{
+    public static final String[] MEASURES = {"Resnik", "Lin", "Jiang"};
+
+    private static final int NUM_STRIPES = 64;
+
+    private final GeneOntology ontology;
+    private final double[] icOfTerm;
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+
+    /**
+     * @param ontology              GO DAG.
+     * @param informationContent    IC of GO functions.
+     * @param cacheCapacity         Maximum number of cached MICAs (e.g., 1 << 20).
+     */
+    public SemanticSimilarity(GeneOntology ontology, InformationContent informationContent, int cacheCapacity)
+    {
+        this.ontology = ontology;
+
+        icOfTerm = new double[ontology.numTerms()];
+        for (int t = 0; t < icOfTerm.length; t++)
+            icOfTerm[t] = informationContent.ic(ontology.go(t));
+
+        int stripeCapacity = Integer.highestOneBit(Math.max(cacheCapacity / NUM_STRIPES, 16) * 2 - 1);
+        for (int s = 0; s < NUM_STRIPES; s++)
+            stripes[s] = new Stripe(stripeCapacity);
+    }
+
+    /**
+     * IC of a GO function or NaN if it is not known or the function is not in the ontology.
+     */
+    public double ic(int go)
+    {
+        int term = ontology.termOf(go);
+
+        return (term < 0 ? Double.NaN : icOfTerm[term]);
+    }
+
+    /**
+     * Resnik, Lin and Jiang similarities of two GO functions, in the order of MEASURES, or NaN values if the IC of one of
+     * the functions is not known.
+     */
+    public double[] similarities(int goA, int goB)
+    {
+        int a = ontology.termOf(goA);
+        int b = ontology.termOf(goB);
+
+        double[] similarities = new double[MEASURES.length];
+
+        if (a < 0 || b < 0 || Double.isNaN(icOfTerm[a]) || Double.isNaN(icOfTerm[b]))
+        {
+            Arrays.fill(similarities, Double.NaN);
+            return similarities;
+        }
+
+        int mica = mica(a, b);
+        double icMica = (mica < 0 ? 0 : icOfTerm[mica]);
+        double icSum = icOfTerm[a] + icOfTerm[b];
+
+        similarities[0] = icMica;
+        similarities[1] = (icSum == 0 ? 1 : 2 * icMica / icSum);
+        similarities[2] = 1 / (1 + Math.max(0, icSum - 2 * icMica));
+
+        return similarities;
+    }
+
+    /**
+     * Term number of the most informative common ancestor of two terms or -1 if they have no common ancestor with known
+     * IC.
+     */
+    private int mica(int a, int b)
+    {
+        long key = (a < b ? ((long)a << 32) | b : ((long)b << 32) | a);
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        Stripe stripe = stripes[(int)(hash >>> 58) & (NUM_STRIPES - 1)];
+
+        int mica = stripe.get(key, hash);
+
+        if (mica == Stripe.MISSING)
+        {
+            mica = computeMica(a, b);
+            stripe.put(key, hash, mica);
+        }
+
+        return mica;
+    }
+
+    private int computeMica(int a, int b)
+    {
+        int[] ancestorsA = ontology.ancestorTerms(a);
+        int[] ancestorsB = ontology.ancestorTerms(b);
+
+        int mica = -1;
+        double maxIC = Double.NEGATIVE_INFINITY;
+
+        //Intersection of sorted ancestors
+        int i = 0, j = 0;
+
+        while (i < ancestorsA.length && j < ancestorsB.length)
+            if (ancestorsA[i] < ancestorsB[j])
+                i++;
+            else if (ancestorsA[i] > ancestorsB[j])
+                j++;
+            else
+            {
+                int t = ancestorsA[i];
+
+                if (icOfTerm[t] > maxIC)
+                {
+                    maxIC = icOfTerm[t];
+                    mica = t;
+                }
+
+                i++;
+                j++;
+            }
+
+        return mica;
+    }
+
+    /**
+     * Open addressing table of (key, MICA) pairs with linear probing; it is cleared when it is 3/4 full. Slots are taken
+     * from the upper half of the hash and the stripe from its top bits.
+     */
+    private static class Stripe
+    {
+        static final int MISSING = Integer.MIN_VALUE;
+        static final long EMPTY = -1;
+
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+        private int size = 0;
+
+        Stripe(int capacity)
+        {
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+
+            Arrays.fill(keys, EMPTY);
+        }
+
+        synchronized int get(long key, long hash)
+        {
+            for (int i = (int)(hash >>> 32) & mask; keys[i] != EMPTY; i = (i + 1) & mask)
+                if (keys[i] == key)
+                    return values[i];
+
+            return MISSING;
+        }
+
+        synchronized void put(long key, long hash, int value)
+        {
+            if (size >= keys.length / 4 * 3)
+            {
+                Arrays.fill(keys, EMPTY);
+                size = 0;
+            }
+
+            int i = (int)(hash >>> 32) & mask;
+            while (keys[i] != EMPTY && keys[i] != key)
+                i = (i + 1) & mask;
+
+            if (keys[i] == EMPTY)
+                size++;
+
+            keys[i] = key;
+            values[i] = value;
+        }
+    }
+}
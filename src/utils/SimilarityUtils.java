@@ -0,0 +1,203 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class SimilarityUtils
+{
+    /**
+     * Centers a profile on its mean and scales it to unit length, so that Pearson correlation coefficient between two
+     * standardized profiles is their dot product.
+     *
+     * @param profile   Gene family profile.
+     *
+     * @return Standardized profile, or null if the profile is constant (correlation is then undefined).
+     */
+    public static double[] standardizeProfile(double[] profile)
+    {
+        double mean = 0;
+        for (double val : profile)
+            mean += val;
+        mean /= profile.length;
+
+        double[] standardized = new double[profile.length];
+
+        double norm = 0;
+        for (int i = 0; i < profile.length; i++)
+        {
+            standardized[i] = profile[i] - mean;
+            norm += standardized[i] * standardized[i];
+        }
+
+        if (norm == 0)
+            return null;
+
+        norm = Math.sqrt(norm);
+
+        for (int i = 0; i < standardized.length; i++)
+            standardized[i] /= norm;
+
+        return standardized;
+    }
+
+    /**
+     * Standardizes profiles of the listed gene families (see "standardizeProfile").
+     *
+     * @param ogs       Gene families in the order in which the standardized profiles will be returned.
+     * @param profiles  Gene family profiles.
+     *
+     * @return Standardized profiles, where constant profiles are null.
+     *
+     * @throws IllegalArgumentException if a listed gene family has no profile.
+     */
+    public static double[][] standardizeProfiles(List<String> ogs, Map<String, double[]> profiles)
+    {
+        double[][] standardized = new double[ogs.size()][];
+
+        for (int i = 0; i < ogs.size(); i++)
+        {
+            double[] profile = profiles.get(ogs.get(i));
+
+            if (profile == null)
+                throw new IllegalArgumentException("Gene family " + ogs.get(i) + " has no profile");
+
+            standardized[i] = standardizeProfile(profile);
+        }
+
+        return standardized;
+    }
+
+    /**
+     * Computes Pearson correlation coefficient between two profiles standardized with "standardizeProfile".
+     *
+     * @return Pearson correlation coefficient or NaN if one of the profiles is constant.
+     */
+    public static double pearsonCorrelation(double[] firstStandardized, double[] secondStandardized)
+    {
+        if (firstStandardized == null || secondStandardized == null)
+            return Double.NaN;
+
+        double dot = 0;
+        for (int i = 0; i < firstStandardized.length; i++)
+            dot += firstStandardized[i] * secondStandardized[i];
+
+        return Math.max(-1, Math.min(1, dot));
+    }
+
+    /**
+     * Finds for each profile the k most similar other profiles, where similarity is the absolute value of Pearson
+     * correlation coefficient. Each profile keeps its own bounded heap of k candidates, so the full list of pairs is
+     * never materialized. Profiles are processed in parallel.
+     *
+     * @param standardized  Profiles standardized with "standardizeProfile".
+     * @param k             Number of nearest neighbours per profile; at most all other profiles are kept.
+     *
+     * @return For each profile, indices of its nearest neighbours sorted from the most to the least similar.
+     */
+    public static int[][] findNearestNeighbours(double[][] standardized, int k)
+    {
+        int[][] neighbours = new int[standardized.length][];
+
+        int capacity = Math.max(0, Math.min(k, standardized.length - 1));
+
+        IntStream.range(0, standardized.length).parallel().forEach(i -> {
+            BoundedHeap heap = new BoundedHeap(capacity);
+
+            for (int j = 0; j < standardized.length; j++)
+                if (j != i)
+                {
+                    double similarity = Math.abs(pearsonCorrelation(standardized[i], standardized[j]));
+
+                    if (!Double.isNaN(similarity))
+                        heap.offer(j, similarity);
+                }
+
+            neighbours[i] = heap.sortedIndices();
+        });
+
+        return neighbours;
+    }
+
+    /**
+     * Min-heap that keeps the k elements with the highest scores.
+     */
+    private static class BoundedHeap
+    {
+        private final int[] indices;
+        private final double[] scores;
+        private int size = 0;
+
+        BoundedHeap(int capacity)
+        {
+            indices = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void offer(int index, double score)
+        {
+            if (indices.length == 0)
+                return;
+
+            if (size < indices.length)
+            {
+                int pos = size++;
+
+                while (pos > 0 && scores[(pos - 1) / 2] > score)
+                {
+                    indices[pos] = indices[(pos - 1) / 2];
+                    scores[pos] = scores[(pos - 1) / 2];
+                    pos = (pos - 1) / 2;
+                }
+
+                indices[pos] = index;
+                scores[pos] = score;
+            }
+            else if (score > scores[0])
+            {
+                int pos = 0;
+
+                while (true)
+                {
+                    int child = 2 * pos + 1;
+
+                    if (child >= size)
+                        break;
+
+                    if (child + 1 < size && scores[child + 1] < scores[child])
+                        child++;
+
+                    if (scores[child] >= score)
+                        break;
+
+                    indices[pos] = indices[child];
+                    scores[pos] = scores[child];
+                    pos = child;
+                }
+
+                indices[pos] = index;
+                scores[pos] = score;
+            }
+        }
+
+        int[] sortedIndices()
+        {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++)
+                sorted[i] = indices[order[i]];
+
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package utils;
+
+/**
+ * Disjoint sets over elements 0..n-1 with union by size and path halving.
+ *
+ * @author Vedrana Vidulin [vedrana.vidulin@ijs.si]
+ */
+public class UnionFind
+{
+    private final int[] parent;
+    private final int[] size;
+    private int numSets;
+    private int largestSetSize;
+
+    public UnionFind(int numElements)
+    {
+        parent = new int[numElements];
+        size = new int[numElements];
+
+        for (int i = 0; i < numElements; i++)
+        {
+            parent[i] = i;
+            size[i] = 1;
+        }
+
+        numSets = numElements;
+        largestSetSize = (numElements > 0 ? 1 : 0);
+    }
+
+    public int find(int element)
+    {
+        while (parent[element] != element)
+        {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+
+        return element;
+    }
+
+    /**
+     * Merges sets of the two elements.
+     *
+     * @return true if the elements were in different sets.
+     */
+    public boolean union(int first, int second)
+    {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+
+        if (firstRoot == secondRoot)
+            return false;
+
+        if (size[firstRoot] < size[secondRoot])
+        {
+            int tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+
+        largestSetSize = Math.max(largestSetSize, size[firstRoot]);
+        numSets--;
+
+        return true;
+    }
+
+    public int setSize(int element)
+    {
+        return size[find(element)];
+    }
+
+    public int numSets()
+    {
+        return numSets;
+    }
+
+    public int largestSetSize()
+    {
+        return largestSetSize;
+    }
+}